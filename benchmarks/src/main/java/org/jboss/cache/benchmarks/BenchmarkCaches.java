@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.benchmarks;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.DefaultCacheFactory;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.Configuration.CacheMode;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import org.jboss.cache.transaction.DummyTransactionManagerLookup;
+
+/**
+ * Creates and populates the caches used by the benchmarks.
+ *
+ * @since 3.1
+ */
+public class BenchmarkCaches
+{
+   /**
+    * Creates and starts a local cache, using the {@link org.jboss.cache.transaction.DummyTransactionManager}.
+    *
+    * @param nodeLockingScheme  locking scheme to use
+    * @param invocationBatching whether invocation batching is enabled
+    * @return a started cache
+    */
+   @SuppressWarnings("unchecked")
+   public static CacheSPI<String, String> createCache(NodeLockingScheme nodeLockingScheme, boolean invocationBatching)
+   {
+      Configuration c = new Configuration();
+      c.setCacheMode(CacheMode.LOCAL);
+      c.setNodeLockingScheme(nodeLockingScheme);
+      c.setTransactionManagerLookupClass(DummyTransactionManagerLookup.class.getName());
+      c.setInvocationBatchingEnabled(invocationBatching);
+      // no JMX noise in the measurements
+      c.setExposeManagementStatistics(false);
+      return (CacheSPI<String, String>) new DefaultCacheFactory<String, String>().createCache(c);
+   }
+
+   /**
+    * Creates Fqns spread across a two level tree, as /[0..9]/[0..numNodes]
+    *
+    * @param numNodes number of Fqns to create
+    * @return array of Fqns
+    */
+   public static Fqn[] createFqns(int numNodes)
+   {
+      Fqn[] fqns = new Fqn[numNodes];
+      for (int i = 0; i < numNodes; i++) fqns[i] = Fqn.fromElements(String.valueOf(i % 10), "node" + i);
+      return fqns;
+   }
+
+   /**
+    * Puts a single key/value pair in each of the given Fqns.
+    */
+   public static void populate(CacheSPI<String, String> cache, Fqn[] fqns, String key)
+   {
+      for (Fqn fqn : fqns) cache.put(fqn, key, "value");
+   }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.benchmarks;
+
+import org.jboss.cache.Fqn;
+import org.jboss.cache.config.EvictionConfig;
+import org.jboss.cache.eviction.ConcurrentEvictionEventQueue;
+import org.jboss.cache.eviction.EvictionEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application threads recording node visits in a region's eviction event queue while the eviction thread drains it.
+ *
+ * @since 3.1
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EvictionEventQueueBenchmark
+{
+   @Param({"CONCURRENT", "LINKED"})
+   public EvictionQueueBenchmark.EventQueue eventQueueType;
+
+   @Param({"1000"})
+   public int numNodes;
+
+   private BlockingQueue<EvictionEvent> eventQueue;
+   private Fqn[] fqns;
+
+   @Setup
+   public void setUp()
+   {
+      eventQueue = eventQueueType == EvictionQueueBenchmark.EventQueue.LINKED
+            ? new LinkedBlockingQueue<EvictionEvent>(EvictionConfig.EVENT_QUEUE_SIZE_DEFAULT)
+            : new ConcurrentEvictionEventQueue();
+      fqns = BenchmarkCaches.createFqns(numNodes);
+   }
+
+   @Benchmark
+   @Group("visits")
+   @GroupThreads(3)
+   public void visit(FqnCursor cursor) throws InterruptedException
+   {
+      eventQueue.put(new EvictionEvent(cursor.next(fqns), EvictionEvent.Type.VISIT_NODE_EVENT, 0));
+   }
+
+   @Benchmark
+   @Group("visits")
+   @GroupThreads(1)
+   public EvictionEvent drain()
+   {
+      return eventQueue.poll();
+   }
+}
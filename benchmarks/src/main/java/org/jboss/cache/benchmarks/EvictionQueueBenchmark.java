@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.benchmarks;
+
+import org.jboss.cache.Cache;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.config.EvictionAlgorithmConfig;
+import org.jboss.cache.eviction.ConcurrentEvictionEventQueue;
+import org.jboss.cache.eviction.EvictionActionPolicy;
+import org.jboss.cache.eviction.EvictionAlgorithm;
+import org.jboss.cache.eviction.EvictionEvent;
+import org.jboss.cache.eviction.FIFOAlgorithmConfig;
+import org.jboss.cache.eviction.LFUAlgorithmConfig;
+import org.jboss.cache.eviction.LRUAlgorithmConfig;
+import org.jboss.cache.eviction.MRUAlgorithmConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processing of eviction event queues by each of the main eviction algorithms, in isolation from a cache.  Each
+ * invocation processes a batch of add and visit events for a region that is kept at its maximum size, so every batch
+ * also causes evictions.
+ *
+ * @since 3.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EvictionQueueBenchmark
+{
+   private static final int EVENTS_PER_INVOCATION = 1000;
+
+   public enum Algorithm
+   {
+      LRU, FIFO, LFU, MRU
+   }
+
+   public enum EventQueue
+   {
+      /**
+       * The queue used by regions, which coalesces visits to the same node.
+       */
+      CONCURRENT,
+      /**
+       * A plain FIFO queue holding every event, as regions used before 3.1.
+       */
+      LINKED
+   }
+
+   @Param({"LRU", "FIFO", "LFU", "MRU"})
+   public Algorithm algorithm;
+
+   @Param({"CONCURRENT", "LINKED"})
+   public EventQueue eventQueueType;
+
+   @Param({"10000"})
+   public int maxNodes;
+
+   /**
+    * Percentage of events that are visits to existing nodes rather than new nodes being added.
+    */
+   @Param({"90"})
+   public int visitPercentage;
+
+   private EvictionAlgorithm evictionAlgorithm;
+   private BlockingQueue<EvictionEvent> eventQueue;
+   private Fqn[] fqns;
+   private int next;
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      EvictionAlgorithmConfig config;
+      switch (algorithm)
+      {
+         case FIFO:
+            config = new FIFOAlgorithmConfig(maxNodes);
+            break;
+         case LFU:
+            config = new LFUAlgorithmConfig(maxNodes, 0);
+            break;
+         case MRU:
+            config = new MRUAlgorithmConfig(maxNodes);
+            break;
+         default:
+            LRUAlgorithmConfig lru = new LRUAlgorithmConfig();
+            lru.setMaxNodes(maxNodes);
+            lru.setTimeToLive(-1);
+            config = lru;
+      }
+      Fqn region = Fqn.fromString("/benchmark");
+      evictionAlgorithm = (EvictionAlgorithm) Class.forName(config.getEvictionAlgorithmClassName()).newInstance();
+      evictionAlgorithm.setEvictionActionPolicy(new NoOpEvictionActionPolicy());
+      evictionAlgorithm.assignToRegion(region, null, config, null);
+
+      // twice as many Fqns as the region can hold, so that adds cause evictions
+      fqns = new Fqn[maxNodes * 2];
+      for (int i = 0; i < fqns.length; i++) fqns[i] = Fqn.fromRelativeElements(region, "node" + i);
+
+      // fill the region up to its maximum size
+      eventQueue = eventQueueType == EventQueue.LINKED ? new LinkedBlockingQueue<EvictionEvent>() : new ConcurrentEvictionEventQueue();
+      for (int i = 0; i < maxNodes; i++) eventQueue.add(new EvictionEvent(nextFqn(), EvictionEvent.Type.ADD_NODE_EVENT, 0));
+      evictionAlgorithm.process(eventQueue);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+   public void process() throws Exception
+   {
+      for (int i = 0; i < EVENTS_PER_INVOCATION; i++)
+      {
+         if (i % 100 < visitPercentage)
+         {
+            // visit one of the 100 most recently added nodes, which are still in the region
+            Fqn recent = fqns[(next + fqns.length - 1 - (i % 100)) % fqns.length];
+            eventQueue.add(new EvictionEvent(recent, EvictionEvent.Type.VISIT_NODE_EVENT, 0));
+         }
+         else
+         {
+            eventQueue.add(new EvictionEvent(nextFqn(), EvictionEvent.Type.ADD_NODE_EVENT, 0));
+         }
+      }
+      evictionAlgorithm.process(eventQueue);
+   }
+
+   private Fqn nextFqn()
+   {
+      if (next == fqns.length) next = 0;
+      return fqns[next++];
+   }
+
+   /**
+    * Discards evicted Fqns, since there is no cache to evict from.
+    */
+   public static class NoOpEvictionActionPolicy implements EvictionActionPolicy
+   {
+      public void setCache(Cache<?, ?> cache)
+      {
+      }
+
+      public boolean evict(Fqn fqn)
+      {
+         return true;
+      }
+   }
+}
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.benchmarks;
+
+import org.jboss.cache.Fqn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction, parsing, hashing and comparison of {@link Fqn}s of varying depth.
+ *
+ * @since 3.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FqnBenchmark
+{
+   @Param({"1", "3", "6"})
+   public int depth;
+
+   private String fqnString;
+   private String[] elements;
+   private Fqn fqn;
+   private Fqn equalFqn;
+   private Fqn parent;
+
+   @Setup
+   public void setUp()
+   {
+      elements = new String[depth];
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < depth; i++)
+      {
+         elements[i] = "element" + i;
+         sb.append(Fqn.SEPARATOR).append(elements[i]);
+      }
+      fqnString = sb.toString();
+      fqn = Fqn.fromElements(elements);
+      equalFqn = Fqn.fromString(fqnString);
+      parent = fqn.getParent();
+   }
+
+   @Benchmark
+   public Fqn fromString()
+   {
+      return Fqn.fromString(fqnString);
+   }
+
+   @Benchmark
+   public Fqn fromElements()
+   {
+      return Fqn.fromElements(elements);
+   }
+
+   /**
+    * Fqns cache their hash codes, so this hashes a newly constructed Fqn each time.
+    */
+   @Benchmark
+   public int fromElementsAndHashCode()
+   {
+      return Fqn.fromElements(elements).hashCode();
+   }
+
+   @Benchmark
+   public boolean equalsDistinctInstance()
+   {
+      return fqn.equals(equalFqn);
+   }
+
+   @Benchmark
+   public boolean isChildOf()
+   {
+      return fqn.isChildOf(parent);
+   }
+
+   @Benchmark
+   public Fqn getParent()
+   {
+      return fqn.getParent();
+   }
+
+   @Benchmark
+   public String toStringRepresentation()
+   {
+      return Fqn.fromElements(elements).toString();
+   }
+}
@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.benchmarks;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.commands.CommandsFactory;
+import org.jboss.cache.commands.ReplicableCommand;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import org.jboss.cache.marshall.Marshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of replicated commands through the cache's marshaller, which delegates to
+ * {@link org.jboss.cache.marshall.CacheMarshaller300} for the default replication version.
+ *
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MarshallingBenchmark
+{
+   public enum Payload
+   {
+      /**
+       * A single put of a String key and value.
+       */
+      PUT_KEY_VALUE,
+      /**
+       * A put of a map of 10 entries.
+       */
+      PUT_DATA_MAP,
+      /**
+       * A replicated batch of 10 puts, as sent on transaction commit.
+       */
+      REPLICATE_BATCH
+   }
+
+   @Param({"PUT_KEY_VALUE", "PUT_DATA_MAP", "REPLICATE_BATCH"})
+   public Payload payload;
+
+   private CacheSPI<String, String> cache;
+   private Marshaller marshaller;
+   private ReplicableCommand command;
+   private byte[] bytes;
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      cache = BenchmarkCaches.createCache(NodeLockingScheme.MVCC, false);
+      marshaller = cache.getMarshaller();
+      CommandsFactory commandsFactory = cache.getComponentRegistry().getComponent(CommandsFactory.class);
+      Fqn fqn = Fqn.fromString("/benchmark/marshalling/node");
+      switch (payload)
+      {
+         case PUT_KEY_VALUE:
+            command = commandsFactory.buildPutKeyValueCommand(null, fqn, "key", "value");
+            break;
+         case PUT_DATA_MAP:
+            Map<Object, Object> data = new HashMap<Object, Object>();
+            for (int i = 0; i < 10; i++) data.put("key" + i, "value" + i);
+            command = commandsFactory.buildPutDataMapCommand(null, fqn, data);
+            break;
+         case REPLICATE_BATCH:
+            List<ReplicableCommand> modifications = new ArrayList<ReplicableCommand>();
+            for (int i = 0; i < 10; i++)
+               modifications.add(commandsFactory.buildPutKeyValueCommand(null, Fqn.fromRelativeElements(fqn, "child" + i), "key", "value"));
+            command = commandsFactory.buildReplicateCommand(modifications);
+            break;
+      }
+      bytes = marshaller.objectToByteBuffer(command);
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      cache.stop();
+      cache.destroy();
+   }
+
+   @Benchmark
+   public byte[] marshall() throws Exception
+   {
+      return marshaller.objectToByteBuffer(command);
+   }
+
+   @Benchmark
+   public Object unmarshall() throws Exception
+   {
+      return marshaller.objectFromByteBuffer(bytes);
+   }
+
+   @Benchmark
+   public Object roundTrip() throws Exception
+   {
+      return marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(command));
+   }
+}
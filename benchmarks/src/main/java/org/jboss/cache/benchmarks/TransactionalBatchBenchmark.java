@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.benchmarks;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches of puts, committed with {@link org.jboss.cache.Cache#endBatch(boolean)}, for each node locking scheme.
+ *
+ * @since 3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransactionalBatchBenchmark
+{
+   private static final String KEY = "key";
+
+   @Param({"MVCC", "PESSIMISTIC", "OPTIMISTIC"})
+   public NodeLockingScheme nodeLockingScheme;
+
+   @Param({"1", "10", "100"})
+   public int batchSize;
+
+   @Param({"10000"})
+   public int numNodes;
+
+   private CacheSPI<String, String> cache;
+   private Fqn[] fqns;
+
+   @Setup
+   public void setUp()
+   {
+      cache = BenchmarkCaches.createCache(nodeLockingScheme, true);
+      fqns = BenchmarkCaches.createFqns(numNodes);
+      BenchmarkCaches.populate(cache, fqns, KEY);
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      cache.stop();
+      cache.destroy();
+   }
+
+   @Benchmark
+   public void putBatch(FqnCursor cursor)
+   {
+      cache.startBatch();
+      boolean success = false;
+      try
+      {
+         for (int i = 0; i < batchSize; i++) cache.put(cursor.next(fqns), KEY, "value");
+         success = true;
+      }
+      finally
+      {
+         cache.endBatch(success);
+      }
+   }
+
+   @Benchmark
+   public void readWriteBatch(FqnCursor cursor)
+   {
+      cache.startBatch();
+      boolean success = false;
+      try
+      {
+         for (int i = 0; i < batchSize; i++)
+         {
+            Fqn fqn = cursor.next(fqns);
+            String value = cache.get(fqn, KEY);
+            cache.put(fqn, KEY, value == null ? "value" : value);
+         }
+         success = true;
+      }
+      finally
+      {
+         cache.endBatch(success);
+      }
+   }
+}
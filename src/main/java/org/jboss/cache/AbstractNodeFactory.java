@@ -141,7 +141,7 @@ public abstract class AbstractNodeFactory<K, V> implements NodeFactory<K, V>
          throw new UnsupportedOperationException("wrapWithNodeReferences is not supported in this impl!");
       NodeInvocationDelegate<K, V> nid = new NodeInvocationDelegate<K, V>(internalNode);
       nid.initialize(configuration, invocationContextContainer, componentRegistry, interceptorChain);
-      nid.injectDependencies(cache);
+      nid.injectDependencies(cache, dataContainer);
       return nid;
    }
 
@@ -26,6 +26,7 @@ import org.jboss.cache.config.Configuration;
 import org.jboss.cache.interceptors.base.CommandInterceptor;
 import org.jgroups.Address;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -196,6 +197,24 @@ public interface Cache<K, V> extends Lifecycle
     */
    void put(Fqn fqn, Map<? extends K, ? extends V> data);
 
+   /**
+    * Copies mappings into several {@link Node}s, as if {@link #put(Fqn, java.util.Map)} was called for each of them,
+    * but in a single invocation.  Locks on the nodes are acquired in {@link Fqn} order, and the nodes are written to
+    * any cache loader and replicated together.
+    * <p/>
+    * With {@link org.jboss.cache.config.Configuration.NodeLockingScheme#MVCC} locking, the nodes are written atomically
+    * even without a transaction.  With other locking schemes this is equivalent to calling {@link #put(Fqn, java.util.Map)}
+    * for each node in turn.
+    * <p/>
+    * With region based marshalling, nodes in different marshalling regions are written by separate invocations, one
+    * per region, which are only atomic together within a transaction.
+    *
+    * @param data map of <b><i>absolute</i></b> {@link Fqn}s to the mappings to copy to each node
+    * @throws IllegalStateException if the cache is not in a started state
+    * @since 3.1
+    */
+   void putAll(Map<Fqn, ? extends Map<? extends K, ? extends V>> data);
+
    /**
     * Convenience method that takes a string representation of an Fqn.  Otherwise identical to {@link #put(Fqn, java.util.Map)}
     *
@@ -504,6 +523,18 @@ public interface Cache<K, V> extends Lifecycle
     */
    Map<K, V> getData(Fqn fqn);
 
+   /**
+    * Retrieves defensively copied data maps of several nodes, as if {@link #getData(Fqn)} was called for each of them,
+    * but in a single invocation.  With region based marshalling, nodes in different marshalling regions are read by
+    * separate invocations, one per region.
+    *
+    * @param fqns <b><i>absolute</i></b> {@link Fqn}s of the nodes to read
+    * @return map of Fqn to the node's data, containing only the nodes that exist
+    * @throws IllegalStateException if {@link #getCacheStatus()} would not return {@link CacheStatus#STARTED}.
+    * @since 3.1
+    */
+   Map<Fqn, Map<K, V>> getAll(Collection<Fqn> fqns);
+
    /**
     * Convenience method that takes in a String represenation of the Fqn.  Otherwise identical to {@link #getKeys(Fqn)}.
     */
@@ -221,6 +221,34 @@ public interface DataContainer
     */
    public InternalNode[] peekInternalNodeAndDirectParent(Fqn fqn, boolean includeInvalidNodes);
 
+   /**
+    * Removes any entry for the given Fqn from the Fqn index, if one is maintained.  Should be called by components that
+    * detach nodes from the tree directly rather than via this container, so that the index does not retain removed nodes.
+    * <p/>
+    * Nodes that are marked as invalid when detached are never returned from the index, so purging just the detached node
+    * is sufficient.  If a subtree is detached without being invalidated, use {@link #removeFromIndexRecursively(InternalNode)}.
+    *
+    * @param fqn Fqn of the node detached
+    * @see org.jboss.cache.config.Configuration#isUseFqnIndex()
+    */
+   void removeFromIndex(Fqn fqn);
+
+   /**
+    * Removes the entries for a node and all of its descendants from the Fqn index, if one is maintained.  The subtree is
+    * walked through the children of the node passed in, so this may be called once the node has been detached, and
+    * takes time in proportion to the size of the subtree rather than that of the index.
+    *
+    * @param node node detached, along with its subtree, without being invalidated
+    * @see org.jboss.cache.config.Configuration#isUseFqnIndex()
+    */
+   void removeFromIndexRecursively(InternalNode<?, ?> node);
+
+   /**
+    * @return true if an Fqn index is maintained, in which case nodes detached without being invalidated need purging
+    * @see org.jboss.cache.config.Configuration#isUseFqnIndex()
+    */
+   boolean isFqnIndexed();
+
    /**
     * Sets a new root node
     *
@@ -42,6 +42,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A container for the root node in the cache, which also provides helpers for efficiently accessing nodes, walking trees, etc.
@@ -75,6 +77,17 @@ public class DataContainerImpl implements DataContainer
    volatile boolean started = false;
    private static final InternalNode[] NULL_ARRAY = {null, null};
 
+   /**
+    * Optional flat index of Fqns to nodes, allowing exact-path lookups without walking the tree.  Only used with MVCC,
+    * and null if {@link org.jboss.cache.config.Configuration#isUseFqnIndex()} is false.
+    */
+   private volatile ConcurrentMap<Fqn, IndexEntry> fqnIndex;
+
+   /**
+    * Shallow Fqns are cheaper to walk than to look up and validate in the Fqn index, so are never indexed.
+    */
+   private static final int MIN_INDEXED_FQN_SIZE = 3;
+
    @Inject
    public void injectDependencies(NodeFactory nodeFactory, LockManager lockManager, BuddyFqnTransformer transformer, Configuration configuration)
    {
@@ -122,6 +135,15 @@ public class DataContainerImpl implements DataContainer
       }
 
       if (usingMvcc && rootInternal == null) setRoot(root); // sets the "internal root"
+
+      if (usingMvcc && config.isUseFqnIndex())
+      {
+         if (fqnIndex == null) fqnIndex = new ConcurrentHashMap<Fqn, IndexEntry>(256, 0.75f, config.getConcurrencyLevel());
+      }
+      else
+      {
+         fqnIndex = null;
+      }
    }
 
    @Stop(priority = 100)
@@ -139,6 +161,7 @@ public class DataContainerImpl implements DataContainer
          rootInternal.clear();
          rootInternal.removeChildren();
       }
+      clearIndex();
    }
 
    @Deprecated
@@ -156,6 +179,7 @@ public class DataContainerImpl implements DataContainer
    {
       if (root == null) throw new CacheException("Attempting to set a null node as a root node!");
       // Mega-Ugh!
+      InternalNode oldRootInternal = rootInternal;
       if (usingMvcc && root instanceof InternalNode)
       {
          if (log.isDebugEnabled()) log.debug("Setting rootInternal to " + root);
@@ -172,6 +196,10 @@ public class DataContainerImpl implements DataContainer
             this.root = null;
          }
       }
+
+      // copies of the root (e.g., with repeatable read) share the same children, so index entries are still valid.
+      if (oldRootInternal != null && rootInternal != null && oldRootInternal.getChildrenMap() != rootInternal.getChildrenMap())
+         clearIndex();
    }
 
    public boolean isResident(Fqn fqn)
@@ -598,6 +626,7 @@ public class DataContainerImpl implements DataContainer
 
             // but now remove all children, since the call has been to remove("/")
             n.removeChildren();
+            clearIndex();
             return true;
          }
          else
@@ -605,6 +634,7 @@ public class DataContainerImpl implements DataContainer
             // mark the node to be removed (and all children) as invalid so anyone holding a direct reference to it will
             // be aware that it is no longer valid.
             n.setValid(false, true);
+            removeFromIndexRecursively(n);
             InternalNode parent = peekInternalNode(f.getParent(), true);
             return parent.removeChild(n.getFqn().getLastElement());
          }
@@ -720,6 +750,7 @@ public class DataContainerImpl implements DataContainer
       if (targetNode == null) return;
       InternalNode parentNode = peekInternalNode(fqn.getParent(), true);
       targetNode.setValid(false, false);
+      removeFromIndex(fqn);
       if (parentNode != null)
       {
          parentNode.removeChild(fqn.getLastElement());
@@ -783,10 +814,19 @@ public class DataContainerImpl implements DataContainer
    public InternalNode peekInternalNode(Fqn fqn, boolean includeInvalidNodes)
    {
       if (fqn == null || fqn.size() == 0) return rootInternal;
+      ConcurrentMap<Fqn, IndexEntry> index = fqn.size() < MIN_INDEXED_FQN_SIZE ? null : fqnIndex;
+      if (index != null)
+      {
+         IndexEntry entry = lookupIndex(index, fqn);
+         if (entry != null) return entry.node;
+      }
+
       InternalNode n = rootInternal;
+      InternalNode directParent = null;
       int fqnSize = fqn.size();
       for (int i = 0; i < fqnSize; i++)
       {
+         directParent = n;
          Object obj = fqn.get(i);
          n = n.getChild(obj);
          if (n == null)
@@ -798,12 +838,20 @@ public class DataContainerImpl implements DataContainer
             return null;
          }
       }
+      if (index != null) addToIndex(index, n, directParent);
       return n;
    }
 
    public InternalNode[] peekInternalNodeAndDirectParent(Fqn fqn, boolean includeInvalidNodes)
    {
       if (fqn == null || fqn.size() == 0) return new InternalNode[]{rootInternal, null};
+      ConcurrentMap<Fqn, IndexEntry> index = fqn.size() < MIN_INDEXED_FQN_SIZE ? null : fqnIndex;
+      if (index != null)
+      {
+         IndexEntry entry = lookupIndex(index, fqn);
+         if (entry != null) return new InternalNode[]{entry.node, entry.parent};
+      }
+
       InternalNode n = rootInternal;
       InternalNode directParent = null;
       int fqnSize = fqn.size();
@@ -821,9 +869,90 @@ public class DataContainerImpl implements DataContainer
             return NULL_ARRAY;
          }
       }
+      if (index != null) addToIndex(index, n, directParent);
       return new InternalNode[]{n, directParent};
    }
 
+   public void removeFromIndex(Fqn fqn)
+   {
+      ConcurrentMap<Fqn, IndexEntry> index = fqnIndex;
+      if (index != null) index.remove(fqn);
+   }
+
+   public boolean isFqnIndexed()
+   {
+      return fqnIndex != null;
+   }
+
+   public void removeFromIndexRecursively(InternalNode<?, ?> node)
+   {
+      ConcurrentMap<Fqn, IndexEntry> index = fqnIndex;
+      if (index == null || index.isEmpty()) return;
+      removeFromIndexRecursively(index, node);
+   }
+
+   private void removeFromIndexRecursively(ConcurrentMap<Fqn, IndexEntry> index, InternalNode<?, ?> node)
+   {
+      for (InternalNode child : node.getChildrenMap().values()) removeFromIndexRecursively(index, child);
+      index.remove(node.getFqn());
+   }
+
+   private void clearIndex()
+   {
+      ConcurrentMap<Fqn, IndexEntry> index = fqnIndex;
+      if (index != null) index.clear();
+   }
+
+   /**
+    * Retrieves a current entry from the Fqn index.  Entries that no longer reflect the tree are discarded.
+    *
+    * @param index Fqn index to use
+    * @param fqn   Fqn to look up
+    * @return a current entry, or null if the Fqn is not indexed.
+    */
+   private IndexEntry lookupIndex(ConcurrentMap<Fqn, IndexEntry> index, Fqn fqn)
+   {
+      IndexEntry entry = index.get(fqn);
+      if (entry == null) return null;
+      if (entry.isCurrent()) return entry;
+      index.remove(fqn, entry);
+      return null;
+   }
+
+   private void addToIndex(ConcurrentMap<Fqn, IndexEntry> index, InternalNode node, InternalNode parent)
+   {
+      IndexEntry entry = new IndexEntry(node, parent);
+      if (!entry.isCurrent()) return;
+      Fqn fqn = node.getFqn();
+      index.put(fqn, entry);
+      // guard against a concurrent removal of the node between the check above and the put.
+      if (!entry.isCurrent()) index.remove(fqn, entry);
+   }
+
+   /**
+    * An entry in the Fqn index, holding a node along with the direct parent it was attached to when indexed.
+    * <p/>
+    * Since copies of a node made for MVCC updates share the same child map, an entry is considered current as long as
+    * both nodes are valid and the parent's child map still contains the indexed node.  This way a node replaced with a
+    * copy, evicted or removed is detected on lookup, and the lookup falls back to walking the tree.
+    */
+   private static final class IndexEntry
+   {
+      private final InternalNode node;
+      private final InternalNode parent;
+
+      private IndexEntry(InternalNode node, InternalNode parent)
+      {
+         this.node = node;
+         this.parent = parent;
+      }
+
+      private boolean isCurrent()
+      {
+         return node.isValid() && parent.isValid() && parent.getChild(node.getFqn().getLastElement()) == node;
+      }
+   }
+
    public void setBuddyFqnTransformer(BuddyFqnTransformer buddyFqnTransformer)
    {
       this.buddyFqnTransformer = buddyFqnTransformer;
@@ -163,7 +163,8 @@ public interface InternalNode<K, V>
 
    /**
     * Creates a new instance of the same type and copies internal state.  Note that a shallow copy is made for all fields
-    * except the data map, where a new map is created.
+    * except the data map, where a new map is created.  For a large data map the new map may be an overlay recording the
+    * changes made to the copy over the original map, which must then no longer be modified.
     *
     * @return a copy.
     */
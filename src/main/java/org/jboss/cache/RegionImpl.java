@@ -34,7 +34,6 @@ import org.jboss.cache.util.Util;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -52,6 +51,7 @@ public class RegionImpl implements Region
    private ClassLoader classLoader;
    private volatile BlockingQueue<EvictionEvent> evictionEventQueue = null;
    private int capacityWarnThreshold = 0;
+   private volatile boolean capacityWarned;
    private EvictionRegionConfig evictionRegionConfig;
    private EvictionAlgorithm evictionAlgorithm;
 
@@ -126,6 +126,7 @@ public class RegionImpl implements Region
    {
       if (trace) log.trace("Processing eviction queue for region ["+getFqn()+"].  Queue size is " + evictionEventQueue.size());
       evictionAlgorithm.process(evictionEventQueue);
+      capacityWarned = false;
    }
 
    public Fqn getFqn()
@@ -237,23 +238,17 @@ public class RegionImpl implements Region
 
    private void registerEvictionEvent(EvictionEvent ee)
    {
-      try
-      {
-         if (evictionEventQueue == null) createQueue();// in case the queue does not exist yet.
-         if (evictionEventQueue.size() > capacityWarnThreshold && log.isWarnEnabled())
-         {
-            log.warn("putNodeEvent(): eviction node event queue size is at 98% threshold value of capacity: " + evictionRegionConfig.getEventQueueSize() +
-                  " Region: " + fqn +
-                  " You will need to reduce the wakeUpIntervalSeconds parameter.");
-         }
-         evictionEventQueue.put(ee);
-      }
-      catch (InterruptedException e)
+      if (evictionEventQueue == null) createQueue();// in case the queue does not exist yet.
+      // the queue is unbounded and never blocks, so the configured event queue size is only used to warn that the
+      // eviction thread is falling behind.  Warn once until the queue is next processed, rather than on every event.
+      if (!capacityWarned && evictionEventQueue.size() > capacityWarnThreshold && log.isWarnEnabled())
       {
-         if (log.isDebugEnabled()) log.debug("Interrupted on adding event", e);
-         // reinstate interrupt flag
-         Thread.currentThread().interrupt();
+         capacityWarned = true;
+         log.warn("putNodeEvent(): eviction node event queue size is at 98% threshold value of capacity: " + evictionRegionConfig.getEventQueueSize() +
+               " Region: " + fqn +
+               " You will need to reduce the wakeUpIntervalSeconds parameter.");
       }
+      evictionEventQueue.offer(ee);
    }
 
    private void createQueue()
@@ -272,7 +267,7 @@ public class RegionImpl implements Region
          }
          synchronized (this)
          {
-            if (evictionEventQueue == null) evictionEventQueue = new LinkedBlockingQueue<EvictionEvent>(size);
+            if (evictionEventQueue == null) evictionEventQueue = new ConcurrentEvictionEventQueue();
          }
       }
    }
@@ -48,7 +48,9 @@ import org.jgroups.Address;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -69,6 +71,10 @@ public class RegionManagerImpl implements RegionManager
    public static final Fqn DEFAULT_REGION = Fqn.fromString("/_default_");
 
    private RegionRegistry regionsRegistry;
+   /**
+    * Resolves regions for Fqns, rebuilt when the registry is modified.  See {@link #getRegionTree()}.
+    */
+   private volatile RegionTree regionTree;
    private boolean defaultInactive;
    protected static final Log log = LogFactory.getLog(RegionManagerImpl.class);
    protected static final boolean trace = log.isTraceEnabled();
@@ -146,7 +152,7 @@ public class RegionManagerImpl implements RegionManager
 
       if (isUsingEvictions())
       {
-         evictionTimerTask.init(evictionConfig.getWakeupInterval(), configuration.getRuntimeConfig().getEvictionTimerThreadFactory(), regionsRegistry);
+         evictionTimerTask.init(evictionConfig.getWakeupInterval(), evictionConfig.getThreadPoolSize(), configuration.getRuntimeConfig().getEvictionTimerThreadFactory(), regionsRegistry);
       }
    }
 
@@ -223,24 +229,14 @@ public class RegionManagerImpl implements RegionManager
       if (trace) log.trace("Contents of RegionsRegistry: " + regionsRegistry);
       Fqn fqnToUse = fqn;
       if (DEFAULT_REGION.equals(fqnToUse)) fqnToUse = Fqn.ROOT;
-      // first see if a region for this specific Fqn exists
-      if (regionsRegistry.containsKey(fqnToUse))
-      {
-         Region r = regionsRegistry.get(fqnToUse);
 
-         // this is a very poor way of telling whether a region is a marshalling one or an eviction one.  :-(
-         // mandates that class loaders be registered for marshalling regions.
-         if (type == ANY
-               || (type == MARSHALLING && r.getClassLoader() != null)
-               || (type == EVICTION && r.getEvictionRegionConfig() != null))
-         {
-            return r;
-         }
-      }
-
-      // if not, attempt to create one ...
       if (createIfAbsent)
       {
+         // first see if a region for this specific Fqn exists
+         Region existing = regionsRegistry.get(fqnToUse);
+         if (existing != null && isOfType(existing, type)) return existing;
+
+         // if not, attempt to create one ...
          Region r = new RegionImpl(fqnToUse, this);
 
          // could be created concurrently; so make sure we use appropriate methods on regionsRegistry for this.
@@ -254,29 +250,9 @@ public class RegionManagerImpl implements RegionManager
          return r;
       }
 
-      // else try and find a parent which has a defined region, may return null if nothing is defined.
-      Region nextBestThing = null;
-      Fqn nextFqn = fqnToUse;
-
-      while (nextBestThing == null)
-      {
-         nextFqn = nextFqn.getParent();
-         if (regionsRegistry.containsKey(nextFqn))
-         {
-            Region r = regionsRegistry.get(nextFqn);
-            if (trace) log.trace("Trying next region " + nextFqn + " and got " + r);
-
-            // this is a very poor way of telling whether a region is a marshalling one or an eviction one.  :-(
-            // mandates that class loaders be registered for marshalling regions.
-            if (type == ANY
-                  || (type == MARSHALLING && r.getClassLoader() != null)
-                  || (type == EVICTION && r.getEvictionRegionConfig() != null))
-            {
-               nextBestThing = r;
-            }
-         }
-         if (nextFqn.isRoot()) break;
-      }
+      // else find the region of this Fqn or of its closest ancestor, may return null if nothing is defined.
+      Region nextBestThing = getRegionTree().findRegion(fqnToUse, type);
+      if (trace) log.trace("Resolved region " + nextBestThing + " for " + fqnToUse);
 
       // test if the default region has been defined.  If not, and if the request
       // is for an eviction region, return null
@@ -289,6 +265,34 @@ public class RegionManagerImpl implements RegionManager
       return nextBestThing;
    }
 
+   /**
+    * Tells whether a region is of the given type.
+    */
+   private static boolean isOfType(Region r, Region.Type type)
+   {
+      // this is a very poor way of telling whether a region is a marshalling one or an eviction one.  :-(
+      // mandates that class loaders be registered for marshalling regions.
+      return type == ANY
+            || (type == MARSHALLING && r.getClassLoader() != null)
+            || (type == EVICTION && r.getEvictionRegionConfig() != null);
+   }
+
+   /**
+    * Returns the region tree for the regions currently registered, building a new one if the registry was modified
+    * since the last one was built.
+    */
+   private RegionTree getRegionTree()
+   {
+      RegionTree tree = regionTree;
+      int modificationCount = regionsRegistry.getModificationCount();
+      if (tree == null || tree.modificationCount != modificationCount)
+      {
+         tree = new RegionTree(regionsRegistry, modificationCount);
+         regionTree = tree;
+      }
+      return tree;
+   }
+
    public Region getRegion(String fqn, boolean createIfAbsent)
    {
       return getRegion(Fqn.fromString(fqn), createIfAbsent);
@@ -750,7 +754,7 @@ public class RegionManagerImpl implements RegionManager
     */
    public void startEvictionThread()
    {
-      evictionTimerTask.init(evictionConfig.getWakeupInterval(), configuration.getRuntimeConfig().getEvictionTimerThreadFactory(), regionsRegistry);
+      evictionTimerTask.init(evictionConfig.getWakeupInterval(), evictionConfig.getThreadPoolSize(), configuration.getRuntimeConfig().getEvictionTimerThreadFactory(), regionsRegistry);
    }
 
    /**
@@ -766,4 +770,91 @@ public class RegionManagerImpl implements RegionManager
    {
       return regionsRegistry.size();
    }
+
+   @ManagedOperation(description = "Time spent processing each eviction region")
+   public String dumpEvictionStatistics()
+   {
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<Fqn, EvictionTimerTask.RegionStatistics> entry : evictionTimerTask.getRegionStatistics().entrySet())
+      {
+         sb.append("\tRegion ").append(entry.getKey()).append(": ").append(entry.getValue());
+         sb.append("\n");
+      }
+      return sb.toString();
+   }
+
+   @ManagedOperation(description = "Resets eviction processing statistics")
+   public void resetEvictionStatistics()
+   {
+      evictionTimerTask.resetStatistics();
+   }
+
+   @ManagedAttribute(name = "lastEvictionRunTime", description = "Time taken, in milliseconds, by the last run of the eviction thread across all regions")
+   public long getLastEvictionRunTime()
+   {
+      return evictionTimerTask.getLastRunTime();
+   }
+
+   @ManagedAttribute(name = "evictionOverruns", description = "Number of eviction thread runs that took longer than the wakeup interval")
+   public long getEvictionOverruns()
+   {
+      return evictionTimerTask.getOverruns();
+   }
+
+   /**
+    * An immutable prefix tree of the registered regions.  It finds the region of an Fqn by walking down the Fqn's
+    * elements from the root, rather than looking up each of the Fqn's ancestors in the registry, so it creates no
+    * objects and stops as soon as there are no regions further down.
+    */
+   private static final class RegionTree
+   {
+      private final int modificationCount;
+      private final Node root = new Node();
+
+      private RegionTree(RegionRegistry registry, int modificationCount)
+      {
+         this.modificationCount = modificationCount;
+         for (Map.Entry<Fqn, Region> entry : registry.entrySet())
+         {
+            Fqn fqn = entry.getKey();
+            Node node = root;
+            for (int i = 0; i < fqn.size(); i++)
+            {
+               if (node.children == null) node.children = new HashMap<Object, Node>(4);
+               Node child = node.children.get(fqn.get(i));
+               if (child == null)
+               {
+                  child = new Node();
+                  node.children.put(fqn.get(i), child);
+               }
+               node = child;
+            }
+            node.region = entry.getValue();
+         }
+      }
+
+      /**
+       * Returns the region of the given type registered for the Fqn or for its closest ancestor, or null if there is
+       * none.
+       */
+      private Region findRegion(Fqn fqn, Region.Type type)
+      {
+         Region found = null;
+         Node node = root;
+         for (int i = 0; ; i++)
+         {
+            if (node.region != null && isOfType(node.region, type)) found = node.region;
+            if (i == fqn.size() || node.children == null) break;
+            node = node.children.get(fqn.get(i));
+            if (node == null) break;
+         }
+         return found;
+      }
+
+      private static final class Node
+      {
+         private Region region;
+         private Map<Object, Node> children;
+      }
+   }
 }
@@ -23,10 +23,15 @@ package org.jboss.cache;
 
 import org.jboss.cache.factories.annotations.NonVolatile;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An extension of the ConcurrentHashMap that acts as a container for regions.
+ * <p/>
+ * Counts the modifications made through the map's methods, so that structures derived from the registered regions,
+ * such as the {@link RegionManagerImpl}'s region resolution, can tell when to rebuild.
  *
  * @author Manik Surtani (<a href="mailto:manik AT jboss DOT org">manik AT jboss DOT org</a>)
  * @since 3.0
@@ -34,9 +39,82 @@ import java.util.concurrent.ConcurrentHashMap;
 @NonVolatile
 public class RegionRegistry extends ConcurrentHashMap<Fqn, Region>
 {
+   private final AtomicInteger modificationCount = new AtomicInteger();
+
    public RegionRegistry()
    {
       // default CHM constructor.  Potentially fine-tune later?
       super();
    }
+
+   /**
+    * Returns a number that changes whenever regions are added, replaced or removed.  Read it before reading the
+    * registered regions: if it is unchanged afterwards, so are they.
+    */
+   public int getModificationCount()
+   {
+      return modificationCount.get();
+   }
+
+   @Override
+   public Region put(Fqn key, Region value)
+   {
+      Region previous = super.put(key, value);
+      modificationCount.incrementAndGet();
+      return previous;
+   }
+
+   @Override
+   public void putAll(Map<? extends Fqn, ? extends Region> m)
+   {
+      super.putAll(m);
+      modificationCount.incrementAndGet();
+   }
+
+   @Override
+   public Region putIfAbsent(Fqn key, Region value)
+   {
+      Region previous = super.putIfAbsent(key, value);
+      if (previous == null) modificationCount.incrementAndGet();
+      return previous;
+   }
+
+   @Override
+   public Region remove(Object key)
+   {
+      Region previous = super.remove(key);
+      if (previous != null) modificationCount.incrementAndGet();
+      return previous;
+   }
+
+   @Override
+   public boolean remove(Object key, Object value)
+   {
+      boolean removed = super.remove(key, value);
+      if (removed) modificationCount.incrementAndGet();
+      return removed;
+   }
+
+   @Override
+   public Region replace(Fqn key, Region value)
+   {
+      Region previous = super.replace(key, value);
+      if (previous != null) modificationCount.incrementAndGet();
+      return previous;
+   }
+
+   @Override
+   public boolean replace(Fqn key, Region oldValue, Region newValue)
+   {
+      boolean replaced = super.replace(key, oldValue, newValue);
+      if (replaced) modificationCount.incrementAndGet();
+      return replaced;
+   }
+
+   @Override
+   public void clear()
+   {
+      super.clear();
+      modificationCount.incrementAndGet();
+   }
 }
@@ -25,6 +25,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import static org.jboss.cache.AbstractNode.NodeFlags.*;
 import org.jboss.cache.marshall.MarshalledValue;
+import org.jboss.cache.util.CompactArrayMap;
+import org.jboss.cache.util.DeltaMap;
 import org.jboss.cache.util.FastCopyHashMap;
 import org.jboss.cache.util.Immutables;
 import org.jboss.cache.util.concurrent.SelfInitializingConcurrentHashMap;
@@ -102,7 +104,7 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
    public UnversionedNode(Fqn fqn, CacheSPI<K, V> cache, boolean lockForChildInsertRemove, Map<K, V> data)
    {
       this(fqn, cache, lockForChildInsertRemove);
-      if (data != null) this.data = new FastCopyHashMap<K, V>(data);
+      if (data != null) this.data = copyDataMap(data);
    }
 
    /**
@@ -177,13 +179,15 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
          data = Collections.singletonMap(key, value);
          return null;
       }
+      // an overlay is never resized; its size() is not constant-time either
+      if (data instanceof DeltaMap) return data.put(key, value);
       if (data.size() == 1 && data.containsKey(key))
       {
          V oldVal = data.get(key);
          data = Collections.singletonMap(key, value);
          return oldVal;
       }
-      upgradeDataMap();
+      upgradeDataMap(data.containsKey(key) ? data.size() : data.size() + 1);
       return data.put(key, value);
    }
 
@@ -293,8 +297,9 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
    public V remove(K key)
    {
       if (data == null) return null;
+      if (data instanceof DeltaMap) return data.remove(key);
       V value;
-      if (data instanceof FastCopyHashMap)
+      if (data.size() > 1)
       {
          value = data.remove(key);
          downgradeDataMapIfNeeded();
@@ -303,7 +308,7 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
       {
          // singleton maps cannot remove!
          value = data.get(key);
-         data = null;
+         if (data.containsKey(key)) data = null;
       }
       return value;
    }
@@ -461,6 +466,8 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
       {
          if (this.data == null)
             this.data = copyDataMap(data);
+         else if (this.data instanceof DeltaMap)
+            this.data.putAll(data);
          else
          if (this.data.size() == 1 && data.size() == 1 && this.data.keySet().iterator().next().equals(data.keySet().iterator().next()))
          {
@@ -472,25 +479,43 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
          }
          else
          {
-            // size. Do we need to update the existing data map to a FCHM?
-            upgradeDataMap();
+            // size. Do we need to update the existing data map to a CompactArrayMap or a FCHM?
+            int newSize = this.data.size();
+            if (!(this.data instanceof FastCopyHashMap))
+            {
+               for (Object key : data.keySet()) if (!this.data.containsKey(key)) newSize++;
+            }
+            upgradeDataMap(newSize);
             this.data.putAll(data);
          }
       }
    }
 
-   protected final void upgradeDataMap()
+   /**
+    * Makes sure the data map is mutable and suited to holding the given number of entries: a {@link CompactArrayMap}
+    * for a few entries, a {@link FastCopyHashMap} beyond that.
+    */
+   protected final void upgradeDataMap(int newSize)
    {
-      if (data != null && !(data instanceof FastCopyHashMap)) data = new FastCopyHashMap<K, V>(data);
+      if (data == null || data instanceof FastCopyHashMap || data instanceof DeltaMap) return;
+      if (newSize > CompactArrayMap.MAX_SIZE)
+         data = new FastCopyHashMap<K, V>(data);
+      else if (!(data instanceof CompactArrayMap))
+         data = new CompactArrayMap<K, V>(data);
    }
 
    protected final void downgradeDataMapIfNeeded()
    {
-      if (data.size() == 1 && data instanceof FastCopyHashMap)
+      if (data.size() == 1)
       {
          Entry<K, V> e = data.entrySet().iterator().next();
          data = Collections.singletonMap(e.getKey(), e.getValue());
       }
+      else if (data instanceof FastCopyHashMap && data.size() <= CompactArrayMap.MAX_SIZE / 2)
+      {
+         // only well below the threshold, so that a node hovering around it doesn't keep switching maps
+         data = new CompactArrayMap<K, V>(data);
+      }
    }
 
    public void removeChildren()
@@ -616,7 +641,7 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
    public InternalNode<K, V> copy()
    {
       UnversionedNode<K, V> n = new UnversionedNode<K, V>(fqn, cache, isFlagSet(LOCK_FOR_CHILD_INSERT_REMOVE));
-      n.data = copyDataMap(data);
+      n.data = copyDataMapForUpdate(data);
       copyInternals(n);
       return n;
    }
@@ -642,6 +667,26 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
       }
    }
 
+   /**
+    * Copies the data map for a copy of this node that is about to be updated.  A large map is not cloned: the copy gets a
+    * {@link DeltaMap} over it recording only the keys it changes or removes, so a single write to a large node costs
+    * O(1) rather than O(n).  The map overlaid is never modified, since readers of the node this was copied from may still
+    * be reading it.  Instead, the changes are merged into a new map once they outgrow the square root of its size, which
+    * bounds both the extra memory held by an overlay and the cost of copying it along to the next copy.
+    */
+   @SuppressWarnings("unchecked")
+   protected final Map copyDataMapForUpdate(Map<K, V> toCopyFrom)
+   {
+      if (toCopyFrom instanceof FastCopyHashMap) return DeltaMap.create(toCopyFrom);
+      if (toCopyFrom instanceof DeltaMap)
+      {
+         DeltaMap<K, V> delta = (DeltaMap<K, V>) toCopyFrom;
+         int changes = delta.getChanged().size() + delta.getRemoved().size();
+         if (changes * changes <= delta.getOriginal().size()) return delta.copy();
+      }
+      return copyDataMap(toCopyFrom);
+   }
+
    protected final Map copyDataMap(Map<? extends K, ? extends V> toCopyFrom)
    {
       if (toCopyFrom != null && toCopyFrom.size() > 0)
@@ -656,6 +701,14 @@ public class UnversionedNode<K, V> extends AbstractNode<K, V> implements Interna
             Entry<? extends K, ? extends V> e = toCopyFrom.entrySet().iterator().next();
             map = Collections.singletonMap(e.getKey(), e.getValue());
          }
+         else if (toCopyFrom instanceof CompactArrayMap)
+         {
+            map = (CompactArrayMap<K, V>) ((CompactArrayMap<K, V>) toCopyFrom).clone();
+         }
+         else if (toCopyFrom.size() <= CompactArrayMap.MAX_SIZE)
+         {
+            map = new CompactArrayMap<K, V>(toCopyFrom);
+         }
          else
          {
             map = new FastCopyHashMap<K, V>(toCopyFrom);
@@ -360,6 +360,11 @@ public class BuddyManager
       return config.isDataGravitationSearchBackupTrees();
    }
 
+   public boolean isDataGravitationBuddiesFirst()
+   {
+      return config.isDataGravitationBuddiesFirst();
+   }
+
    public int getBuddyCommunicationTimeout()
    {
       return config.getBuddyCommunicationTimeout();
@@ -729,6 +734,24 @@ public class BuddyManager
       return buddyGroup.getBuddiesAsVector();
    }
 
+   /**
+    * Returns the members of the buddy groups this instance belongs to - its own buddies, and the data owners it backs
+    * up - excluding itself.
+    *
+    * @since 3.1
+    */
+   public List<Address> getBuddyGroupMembers()
+   {
+      List<Address> members = new ArrayList<Address>();
+      if (buddyGroup != null) members.addAll(buddyGroup.getBuddies());
+      for (Address owner : getBackupDataOwners())
+      {
+         if (!members.contains(owner)) members.add(owner);
+      }
+      members.remove(rpcManager.getLocalAddress());
+      return members;
+   }
+
    public List<Address> getMembersOutsideBuddyGroup()
    {
       List<Address> members = new ArrayList<Address>(rpcManager.getMembers());
@@ -28,6 +28,7 @@ import org.jboss.cache.commands.CommandsFactory;
 import org.jboss.cache.commands.WriteCommand;
 import org.jboss.cache.commands.legacy.write.CreateNodeCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -42,6 +43,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -49,7 +51,9 @@ import org.jboss.cache.commands.write.RemoveKeyCommand;
 import org.jboss.cache.commands.write.RemoveNodeCommand;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * For each command the fqns are changed such that they are under the current buddy group's backup subtree
@@ -90,6 +94,17 @@ public class Fqn2BuddyFqnVisitor extends AbstractVisitor
       return factory.buildPutDataMapCommand(null, transformed, command.getData());
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      Map<Fqn, Map> transformed = new HashMap<Fqn, Map>();
+      for (Map.Entry<Fqn, Map> e : command.getData().entrySet())
+      {
+         transformed.put(getBackupFqn(e.getKey()), e.getValue());
+      }
+      return factory.buildPutAllCommand(null, transformed);
+   }
+
    @Override
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
@@ -139,6 +154,14 @@ public class Fqn2BuddyFqnVisitor extends AbstractVisitor
       return factory.buildRemoveKeyCommand(null, transformed, command.getKey());
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      List<Fqn> transformed = new ArrayList<Fqn>(command.getFqns().size());
+      for (Fqn fqn : command.getFqns()) transformed.add(getBackupFqn(fqn));
+      return factory.buildGetAllCommand(transformed);
+   }
+
    @Override
    public Object visitGetDataMapCommand(InvocationContext ctx, GetDataMapCommand command) throws Throwable
    {
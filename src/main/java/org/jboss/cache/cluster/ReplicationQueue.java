@@ -23,26 +23,46 @@ package org.jboss.cache.cluster;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.Fqn;
 import org.jboss.cache.RPCManager;
 import org.jboss.cache.commands.CommandsFactory;
 import org.jboss.cache.commands.ReplicableCommand;
 import org.jboss.cache.commands.remote.ReplicateCommand;
+import org.jboss.cache.commands.write.PutKeyValueCommand;
 import org.jboss.cache.config.Configuration;
 import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.factories.annotations.Start;
 import org.jboss.cache.factories.annotations.Stop;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Periodically (or when certain size is exceeded) takes elements and replicates them.
+ * <p/>
+ * Commands are added to a lock-free queue, so threads replicating asynchronously do not contend with each other.
+ * Flushes are serialized, so that commands are replicated in the order in which they were queued.  The queue is
+ * flushed when it holds {@link Configuration#getReplQueueMaxElements()} commands, or, if configured, when the commands
+ * held are estimated to marshall to {@link Configuration#getReplQueueMaxBytes()} bytes.
+ * <p/>
+ * If {@link Configuration#isReplQueueCoalesceWrites()} is set, a non-transactional put of a key that is still waiting
+ * to be replicated replaces the earlier put.  Any other command is a barrier: puts queued before it are never
+ * replaced by puts queued after it.  Each queued put is stamped with the number of barriers queued before it, so a put
+ * that registers itself for replacement while a barrier is queued cannot be replaced once the barrier is in the queue.
  *
  * @author <a href="mailto:bela@jboss.org">Bela Ban</a> May 24, 2003
  * @version $Revision: 7168 $
@@ -55,12 +75,32 @@ public class ReplicationQueue
    /**
     * Max elements before we flush
     */
-   private long max_elements = 500;
+   private volatile long max_elements = 500;
 
    /**
-    * Holds the replication jobs: LinkedList<MethodCall>
+    * Estimated marshalled size of application objects other than strings, numbers, byte arrays, maps and collections
     */
-   final List<ReplicableCommand> elements = new LinkedList<ReplicableCommand>();
+   static final int OBJECT_SIZE_ESTIMATE = 64;
+
+   /**
+    * Max marshalled bytes before we flush, disabled if 0 or less
+    */
+   private volatile long maxBytes = 0;
+
+   private volatile boolean coalesceWrites = false;
+
+   /**
+    * Holds the replication jobs
+    */
+   final Queue<AtomicReference<QueuedCommand>> elements = new ConcurrentLinkedQueue<AtomicReference<QueuedCommand>>();
+   // ConcurrentLinkedQueue.size() is O(n)
+   private final AtomicInteger numElements = new AtomicInteger();
+   private final AtomicLong numBytes = new AtomicLong();
+   // puts waiting to be replicated, by node and key, that later puts of the same key may replace
+   final ConcurrentMap<WriteKey, AtomicReference<QueuedCommand>> pendingWrites = new ConcurrentHashMap<WriteKey, AtomicReference<QueuedCommand>>();
+   // number of barriers queued so far
+   private final AtomicLong barriers = new AtomicLong();
+   private final ReentrantLock flushLock = new ReentrantLock();
 
    /**
     * For periodical replication
@@ -96,6 +136,8 @@ public class ReplicationQueue
    {
       long interval = configuration.getReplQueueInterval();
       this.max_elements = configuration.getReplQueueMaxElements();
+      this.maxBytes = configuration.getReplQueueMaxBytes();
+      this.coalesceWrites = configuration.isReplQueueCoalesceWrites();
       // check again
       enabled = configuration.isUseReplQueue() && (configuration.getBuddyReplicationConfig() == null || !configuration.getBuddyReplicationConfig().isEnabled());
       if (enabled && interval > 0 && scheduledExecutor == null)
@@ -138,11 +180,48 @@ public class ReplicationQueue
    {
       if (job == null)
          throw new NullPointerException("job is null");
-      synchronized (elements)
+
+      int size = maxBytes > 0 ? estimatedSize(job) : 0;
+      if (coalesceWrites)
+      {
+         WriteKey key = WriteKey.forCommand(job);
+         if (key == null)
+         {
+            // puts queued so far must not be replaced by puts queued after this command.  Puts that have not yet
+            // registered themselves carry an older stamp, and are not replaced either.
+            barriers.incrementAndGet();
+            pendingWrites.clear();
+            enqueue(new QueuedCommand(job, size, null, 0));
+         }
+         else
+         {
+            QueuedCommand queued = new QueuedCommand(job, size, key, barriers.get());
+            if (!replacePendingWrite(queued))
+            {
+               AtomicReference<QueuedCommand> slot = enqueue(queued);
+               pendingWrites.put(key, slot);
+               // don't hold on to it if it has been flushed, or may not be replaced, in the meantime
+               if (slot.get() == null || queued.barriers != barriers.get()) pendingWrites.remove(key, slot);
+            }
+         }
+      }
+      else
       {
-         elements.add(job);
-         if (elements.size() >= max_elements)
-            flush();
+         enqueue(new QueuedCommand(job, size, null, 0));
+      }
+
+      if (isFull())
+      {
+         // producers that fill the queue while a flush is in progress wait for it, to apply back pressure
+         flushLock.lock();
+         try
+         {
+            if (isFull()) flush();
+         }
+         finally
+         {
+            flushLock.unlock();
+         }
       }
    }
 
@@ -152,27 +231,177 @@ public class ReplicationQueue
    public void flush()
    {
       List<ReplicableCommand> toReplicate;
-      synchronized (elements)
+      flushLock.lock();
+      try
       {
+         // only drain what is there now, rather than chase producers
+         int count = numElements.get();
          if (log.isTraceEnabled())
-            log.trace("flush(): flushing repl queue (num elements=" + elements.size() + ")");
-         toReplicate = new ArrayList<ReplicableCommand>(elements);
-         elements.clear();
+            log.trace("flush(): flushing repl queue (num elements=" + count + ", bytes=" + numBytes.get() + ")");
+         toReplicate = new ArrayList<ReplicableCommand>(count);
+         for (int i = 0; i < count; i++)
+         {
+            AtomicReference<QueuedCommand> slot = elements.poll();
+            if (slot == null) break;
+            numElements.decrementAndGet();
+            QueuedCommand queued = slot.getAndSet(null);
+            numBytes.addAndGet(-queued.size);
+            if (queued.key != null) pendingWrites.remove(queued.key, slot);
+            toReplicate.add(queued.command);
+         }
+
+         if (toReplicate.size() > 0)
+         {
+            try
+            {
+
+               ReplicateCommand replicateCommand = commandsFactory.buildReplicateCommand(toReplicate);
+               // send to all live nodes in the cluster
+               rpcManager.callRemoteMethods(null, replicateCommand, false, configuration.getSyncReplTimeout(), false);
+            }
+            catch (Throwable t)
+            {
+               log.error("failed replicating " + toReplicate.size() + " elements in replication queue", t);
+            }
+         }
+      }
+      finally
+      {
+         flushLock.unlock();
       }
+   }
+
+   private AtomicReference<QueuedCommand> enqueue(QueuedCommand queued)
+   {
+      AtomicReference<QueuedCommand> slot = new AtomicReference<QueuedCommand>(queued);
+      numBytes.addAndGet(queued.size);
+      elements.offer(slot);
+      numElements.incrementAndGet();
+      return slot;
+   }
+
+   private boolean isFull()
+   {
+      return numElements.get() >= max_elements || (maxBytes > 0 && numBytes.get() >= maxBytes);
+   }
 
-      if (toReplicate.size() > 0)
+   /**
+    * Replaces a queued put of the same key, unless it has been flushed already or a barrier has been queued since.
+    */
+   private boolean replacePendingWrite(QueuedCommand replacement)
+   {
+      AtomicReference<QueuedCommand> slot = pendingWrites.get(replacement.key);
+      if (slot == null) return false;
+      while (true)
       {
-         try
+         QueuedCommand current = slot.get();
+         if (current == null || current.barriers != barriers.get()) return false;
+         if (slot.compareAndSet(current, replacement))
          {
-
-            ReplicateCommand replicateCommand = commandsFactory.buildReplicateCommand(toReplicate);
-            // send to all live nodes in the cluster
-            rpcManager.callRemoteMethods(null, replicateCommand, false, configuration.getSyncReplTimeout(), false);
+            numBytes.addAndGet(replacement.size - current.size);
+            return true;
          }
-         catch (Throwable t)
+      }
+   }
+
+   /**
+    * Estimates the number of bytes an object marshalls to from its contents, so that commands need not be marshalled
+    * once more just to be counted.  Commands are counted by their parameters, and strings, numbers, byte arrays, Fqns,
+    * maps and collections by their contents.  Other objects count as {@link #OBJECT_SIZE_ESTIMATE} bytes.
+    */
+   static int estimatedSize(Object o)
+   {
+      if (o == null) return 1;
+      if (o instanceof String) return 3 + ((String) o).length();
+      if (o instanceof Number || o instanceof Boolean || o instanceof Character) return 9;
+      if (o instanceof byte[]) return 5 + ((byte[]) o).length;
+      if (o instanceof Fqn) return estimatedSize(((Fqn) o).peekElements());
+      if (o instanceof ReplicableCommand) return 2 + estimatedSize(((ReplicableCommand) o).getParameters());
+      int size = 5;
+      if (o instanceof Object[])
+      {
+         for (Object element : (Object[]) o) size += estimatedSize(element);
+      }
+      else if (o instanceof Collection)
+      {
+         for (Object element : (Collection) o) size += estimatedSize(element);
+      }
+      else if (o instanceof Map)
+      {
+         for (Object entry : ((Map) o).entrySet())
          {
-            log.error("failed replicating " + toReplicate.size() + " elements in replication queue", t);
+            size += estimatedSize(((Map.Entry) entry).getKey()) + estimatedSize(((Map.Entry) entry).getValue());
          }
       }
+      else
+      {
+         size = OBJECT_SIZE_ESTIMATE;
+      }
+      return size;
+   }
+
+   /**
+    * A command waiting in the queue, with its estimated marshalled size if counted, and the key it writes if it may be
+    * replaced by a later put.  A put also carries the number of barriers queued before it was, and may only be replaced
+    * as long as no further barrier has been queued.
+    */
+   static final class QueuedCommand
+   {
+      final ReplicableCommand command;
+      final int size;
+      final WriteKey key;
+      final long barriers;
+
+      QueuedCommand(ReplicableCommand command, int size, WriteKey key, long barriers)
+      {
+         this.command = command;
+         this.size = size;
+         this.key = key;
+         this.barriers = barriers;
+      }
+   }
+
+   /**
+    * Identifies the key written by a non-transactional put.
+    */
+   static final class WriteKey
+   {
+      private final Fqn fqn;
+      private final Object key;
+
+      private WriteKey(Fqn fqn, Object key)
+      {
+         this.fqn = fqn;
+         this.key = key;
+      }
+
+      /**
+       * @return the key written by the command, or null if the command is anything but a plain, non-transactional put.
+       */
+      static WriteKey forCommand(ReplicateCommand job)
+      {
+         if (!job.isSingleCommand()) return null;
+         ReplicableCommand command = job.getSingleModification();
+         // subclasses such as PutForExternalReadCommand have different semantics
+         if (command == null || command.getClass() != PutKeyValueCommand.class) return null;
+         PutKeyValueCommand put = (PutKeyValueCommand) command;
+         if (put.getGlobalTransaction() != null || put.isVersioned()) return null;
+         return new WriteKey(put.getFqn(), put.getKey());
+      }
+
+      @Override
+      public boolean equals(Object o)
+      {
+         if (this == o) return true;
+         if (!(o instanceof WriteKey)) return false;
+         WriteKey writeKey = (WriteKey) o;
+         return fqn.equals(writeKey.fqn) && (key == null ? writeKey.key == null : key.equals(writeKey.key));
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return 31 * fqn.hashCode() + (key != null ? key.hashCode() : 0);
+      }
    }
-}
\ No newline at end of file
+}
@@ -24,6 +24,7 @@ package org.jboss.cache.commands;
 import org.jboss.cache.InvocationContext;
 import org.jboss.cache.commands.legacy.write.CreateNodeCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -38,6 +39,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -60,6 +62,11 @@ public abstract class AbstractVisitor implements Visitor
       return handleDefault(ctx, command);
    }
 
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      return handleDefault(ctx, command);
+   }
+
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
       return handleDefault(ctx, command);
@@ -100,6 +107,11 @@ public abstract class AbstractVisitor implements Visitor
       return handleDefault(ctx, command);
    }
 
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      return handleDefault(ctx, command);
+   }
+
    public Object visitExistsNodeCommand(InvocationContext ctx, ExistsCommand command) throws Throwable
    {
       return handleDefault(ctx, command);
@@ -25,6 +25,7 @@ import org.jboss.cache.Fqn;
 import org.jboss.cache.buddyreplication.BuddyGroup;
 import org.jboss.cache.commands.legacy.write.CreateNodeCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -46,6 +47,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -54,6 +56,7 @@ import org.jboss.cache.commands.write.RemoveNodeCommand;
 import org.jboss.cache.transaction.GlobalTransaction;
 import org.jgroups.Address;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -76,6 +79,8 @@ public interface CommandsFactory
 {
    PutDataMapCommand buildPutDataMapCommand(GlobalTransaction gtx, Fqn fqn, Map data);
 
+   PutAllCommand buildPutAllCommand(GlobalTransaction gtx, Map<Fqn, ? extends Map> data);
+
    PutKeyValueCommand buildPutKeyValueCommand(GlobalTransaction gtx, Fqn fqn, Object key, Object value);
 
    PutForExternalReadCommand buildPutForExternalReadCommand(GlobalTransaction gtx, Fqn fqn, Object key, Object value);
@@ -106,6 +111,8 @@ public interface CommandsFactory
 
    GetDataMapCommand buildGetDataMapCommand(Fqn fqn);
 
+   GetAllCommand buildGetAllCommand(Collection<Fqn> fqns);
+
    ExistsCommand buildExistsNodeCommand(Fqn fqn);
 
    GetKeyValueCommand buildGetKeyValueCommand(Fqn fqn, Object key, boolean sendNodeEvent);
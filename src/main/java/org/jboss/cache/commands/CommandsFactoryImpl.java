@@ -31,6 +31,7 @@ import org.jboss.cache.buddyreplication.BuddyGroup;
 import org.jboss.cache.buddyreplication.BuddyManager;
 import org.jboss.cache.commands.legacy.write.CreateNodeCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -52,6 +53,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -66,6 +68,7 @@ import org.jboss.cache.transaction.TransactionTable;
 import org.jgroups.Address;
 
 import javax.transaction.TransactionManager;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -115,6 +118,13 @@ public class CommandsFactoryImpl implements CommandsFactory
       return cmd;
    }
 
+   public PutAllCommand buildPutAllCommand(GlobalTransaction gtx, Map<Fqn, ? extends Map> data)
+   {
+      PutAllCommand cmd = new PutAllCommand(gtx, data);
+      cmd.initialize(notifier, dataContainer);
+      return cmd;
+   }
+
    public PutKeyValueCommand buildPutKeyValueCommand(GlobalTransaction gtx, Fqn fqn, Object key, Object value)
    {
       PutKeyValueCommand cmd = new PutKeyValueCommand(gtx, fqn, key, value);
@@ -193,6 +203,13 @@ public class CommandsFactoryImpl implements CommandsFactory
       return command;
    }
 
+   public GetAllCommand buildGetAllCommand(Collection<Fqn> fqns)
+   {
+      GetAllCommand command = new GetAllCommand(fqns);
+      command.initialize(dataContainer);
+      return command;
+   }
+
    public ExistsCommand buildExistsNodeCommand(Fqn fqn)
    {
       ExistsCommand command = new ExistsCommand(fqn);
@@ -325,6 +342,13 @@ public class CommandsFactoryImpl implements CommandsFactory
             command = returnValue;
             break;
          }
+         case GetAllCommand.METHOD_ID:
+         {
+            GetAllCommand returnValue = new GetAllCommand();
+            returnValue.initialize(dataContainer);
+            command = returnValue;
+            break;
+         }
          case GetKeysCommand.METHOD_ID:
          {
             GetKeysCommand returnValue = new GetKeysCommand();
@@ -363,6 +387,13 @@ public class CommandsFactoryImpl implements CommandsFactory
             command = returnValue;
             break;
          }
+         case PutAllCommand.METHOD_ID:
+         {
+            PutAllCommand returnValue = new PutAllCommand();
+            returnValue.initialize(notifier, dataContainer);
+            command = returnValue;
+            break;
+         }
          case PutKeyValueCommand.METHOD_ID:
          case PutKeyValueCommand.VERSIONED_METHOD_ID:
          {
@@ -24,6 +24,7 @@ package org.jboss.cache.commands;
 import org.jboss.cache.InvocationContext;
 import org.jboss.cache.commands.legacy.write.CreateNodeCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -38,6 +39,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -65,6 +67,17 @@ public interface Visitor
     */
    Object visitPutDataMapCommand(InvocationContext ctx, PutDataMapCommand command) throws Throwable;
 
+   /**
+    * Visits a PutAllCommand.
+    *
+    * @param ctx     invocation context
+    * @param command command to visit
+    * @return response from the visit
+    * @throws Throwable in the event of problems.
+    * @since 3.1
+    */
+   Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable;
+
    /**
     * Visits a PutKeyValueCommand.
     *
@@ -145,6 +158,17 @@ public interface Visitor
     */
    Object visitGetDataMapCommand(InvocationContext ctx, GetDataMapCommand command) throws Throwable;
 
+   /**
+    * Visits a GetAllCommand.
+    *
+    * @param ctx     invocation context
+    * @param command command to visit
+    * @return response from the visit
+    * @throws Throwable in the event of problems.
+    * @since 3.1
+    */
+   Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable;
+
    /**
     * Visits a RemoteExistsCommand.
     *
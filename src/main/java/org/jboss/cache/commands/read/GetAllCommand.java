@@ -0,0 +1,132 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.commands.read;
+
+import org.jboss.cache.DataContainer;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InvocationContext;
+import org.jboss.cache.NodeSPI;
+import org.jboss.cache.commands.VisitableCommand;
+import org.jboss.cache.commands.Visitor;
+import org.jboss.cache.util.Immutables;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Implements functionality defined by {@link org.jboss.cache.Cache#getAll(java.util.Collection)}.
+ * <p/>
+ * Reads the data of several nodes in a single invocation of the interceptor chain.  The Fqns are kept in
+ * {@link Fqn} order, like those of a {@link org.jboss.cache.commands.write.PutAllCommand}.
+ *
+ * @since 3.1
+ */
+public class GetAllCommand implements VisitableCommand
+{
+   public static final int METHOD_ID = 51;
+
+   protected DataContainer dataContainer;
+
+   private TreeSet<Fqn> fqns;
+
+   public GetAllCommand(Collection<Fqn> fqns)
+   {
+      this.fqns = new TreeSet<Fqn>(fqns);
+   }
+
+   public GetAllCommand()
+   {
+   }
+
+   public void initialize(DataContainer dataContainer)
+   {
+      this.dataContainer = dataContainer;
+   }
+
+   /**
+    * Retrieves unmodifiable copies of the data of each node.
+    *
+    * @return a Map of Fqn to an unmodifiable Map of the node's data, with no entries for nodes that do not exist.
+    */
+   public Object perform(InvocationContext ctx)
+   {
+      Map<Fqn, Map> result = new HashMap<Fqn, Map>(fqns.size() * 4 / 3 + 1);
+      for (Fqn fqn : fqns)
+      {
+         NodeSPI<?, ?> n = ctx.lookUpNode(fqn);
+         if (n != null && !n.isDeleted()) result.put(fqn, Immutables.immutableMapCopy(n.getDataDirect()));
+      }
+      return result;
+   }
+
+   public Object acceptVisitor(InvocationContext ctx, Visitor visitor) throws Throwable
+   {
+      return visitor.visitGetAllCommand(ctx, this);
+   }
+
+   public Set<Fqn> getFqns()
+   {
+      return fqns;
+   }
+
+   public int getCommandId()
+   {
+      return METHOD_ID;
+   }
+
+   public Object[] getParameters()
+   {
+      return new Object[]{fqns};
+   }
+
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args)
+   {
+      fqns = new TreeSet<Fqn>((Collection<Fqn>) args[0]);
+   }
+
+   @Override
+   public boolean equals(Object o)
+   {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      GetAllCommand that = (GetAllCommand) o;
+      return fqns != null ? fqns.equals(that.fqns) : that.fqns == null;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return fqns != null ? fqns.hashCode() : 0;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "GetAllCommand{" +
+            "fqns=" + fqns +
+            '}';
+   }
+}
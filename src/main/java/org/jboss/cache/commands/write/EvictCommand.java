@@ -147,6 +147,7 @@ public class EvictCommand extends AbstractDataCommand
             }
             node.setValid(false, false);
             node.markAsDeleted(true);
+            dataContainer.removeFromIndex(fqn);
             node.setDataLoaded(false);
             node.getDelegationTarget().clear();
             return true;
@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.commands.write;
+
+import org.jboss.cache.DataContainer;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InvocationContext;
+import org.jboss.cache.commands.VisitableCommand;
+import org.jboss.cache.commands.Visitor;
+import org.jboss.cache.notifications.Notifier;
+import org.jboss.cache.transaction.GlobalTransaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Implements functionality defined by {@link org.jboss.cache.Cache#putAll(java.util.Map)}.
+ * <p/>
+ * Copies data into several nodes in a single invocation of the interceptor chain.  The nodes are kept in {@link Fqn}
+ * order, so interceptors that lock each of them in turn always acquire locks in the same order.  Each node is written
+ * by a {@link PutDataMapCommand}, and these are what end up in a transaction's list of modifications.
+ *
+ * @since 3.1
+ */
+public class PutAllCommand implements VisitableCommand
+{
+   public static final int METHOD_ID = 50;
+
+   /* dependencies */
+   protected Notifier notifier;
+   protected DataContainer dataContainer;
+
+   /* parameters */
+   private GlobalTransaction globalTransaction;
+   private TreeMap<Fqn, Map> data;
+
+   private List<PutDataMapCommand> commands;
+
+   public PutAllCommand(GlobalTransaction globalTransaction, Map<Fqn, ? extends Map> data)
+   {
+      this.globalTransaction = globalTransaction;
+      setData(data);
+   }
+
+   public PutAllCommand()
+   {
+   }
+
+   public void initialize(Notifier notifier, DataContainer dataContainer)
+   {
+      this.notifier = notifier;
+      this.dataContainer = dataContainer;
+   }
+
+   /**
+    * Copies the data into each node in turn.  The nodes are expected to have been wrapped in the context already.
+    */
+   public Object perform(InvocationContext ctx)
+   {
+      for (PutDataMapCommand command : getPutDataMapCommands()) command.perform(ctx);
+      return null;
+   }
+
+   public Object acceptVisitor(InvocationContext ctx, Visitor visitor) throws Throwable
+   {
+      return visitor.visitPutAllCommand(ctx, this);
+   }
+
+   /**
+    * @return the Fqns of the nodes written to, in the order in which they are locked and written
+    */
+   public Set<Fqn> getFqns()
+   {
+      return data.keySet();
+   }
+
+   public Map<Fqn, Map> getData()
+   {
+      return data;
+   }
+
+   public void setData(Map<Fqn, ? extends Map> data)
+   {
+      this.data = new TreeMap<Fqn, Map>(data);
+      commands = null;
+   }
+
+   /**
+    * @return one command per node, which write the data held by this command
+    */
+   public List<PutDataMapCommand> getPutDataMapCommands()
+   {
+      if (commands == null)
+      {
+         List<PutDataMapCommand> list = new ArrayList<PutDataMapCommand>(data.size());
+         for (Map.Entry<Fqn, Map> e : data.entrySet())
+         {
+            PutDataMapCommand command = new PutDataMapCommand(globalTransaction, e.getKey(), e.getValue());
+            command.initialize(notifier, dataContainer);
+            list.add(command);
+         }
+         commands = Collections.unmodifiableList(list);
+      }
+      return commands;
+   }
+
+   public GlobalTransaction getGlobalTransaction()
+   {
+      return globalTransaction;
+   }
+
+   public void setGlobalTransaction(GlobalTransaction gtx)
+   {
+      this.globalTransaction = gtx;
+      if (commands != null)
+      {
+         for (PutDataMapCommand command : commands) command.setGlobalTransaction(gtx);
+      }
+   }
+
+   public int getCommandId()
+   {
+      return METHOD_ID;
+   }
+
+   public Object[] getParameters()
+   {
+      return new Object[]{globalTransaction, data};
+   }
+
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args)
+   {
+      globalTransaction = (GlobalTransaction) args[0];
+      setData((Map<Fqn, Map>) args[1]);
+   }
+
+   @Override
+   public boolean equals(Object o)
+   {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      PutAllCommand that = (PutAllCommand) o;
+      if (data != null ? !data.equals(that.data) : that.data != null) return false;
+      if (globalTransaction != null ? !globalTransaction.equals(that.globalTransaction) : that.globalTransaction != null)
+         return false;
+      return true;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      int result = globalTransaction != null ? globalTransaction.hashCode() : 0;
+      result = 31 * result + (data != null ? data.hashCode() : 0);
+      return result;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PutAllCommand{" +
+            "fqns=" + (data == null ? null : data.keySet()) +
+            ", globalTransaction=" + globalTransaction +
+            '}';
+   }
+}
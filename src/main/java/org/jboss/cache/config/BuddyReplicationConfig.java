@@ -44,6 +44,7 @@ public class BuddyReplicationConfig extends ConfigurationComponent
    private boolean autoDataGravitation = true;
    private boolean dataGravitationRemoveOnFind = true;
    private boolean dataGravitationSearchBackupTrees = true;
+   private boolean dataGravitationBuddiesFirst = false;
    @Dynamic
    private int buddyCommunicationTimeout = 10000;
    private BuddyLocatorConfig buddyLocatorConfig;
@@ -103,6 +104,22 @@ public class BuddyReplicationConfig extends ConfigurationComponent
       this.dataGravitationSearchBackupTrees = dataGravitationSearchBackupTrees;
    }
 
+   /**
+    * @return true if remote gravitation asks the members of this instance's buddy groups for data before asking the
+    *         rest of the cluster.
+    * @since 3.1
+    */
+   public boolean isDataGravitationBuddiesFirst()
+   {
+      return dataGravitationBuddiesFirst;
+   }
+
+   public void setDataGravitationBuddiesFirst(boolean dataGravitationBuddiesFirst)
+   {
+      testImmutability("dataGravitationBuddiesFirst");
+      this.dataGravitationBuddiesFirst = dataGravitationBuddiesFirst;
+   }
+
    public boolean isEnabled()
    {
       return enabled;
@@ -138,6 +155,7 @@ public class BuddyReplicationConfig extends ConfigurationComponent
          return (this.autoDataGravitation == other.autoDataGravitation)
                && (this.dataGravitationRemoveOnFind == other.dataGravitationRemoveOnFind)
                && (this.dataGravitationSearchBackupTrees == other.dataGravitationSearchBackupTrees)
+               && (this.dataGravitationBuddiesFirst == other.dataGravitationBuddiesFirst)
                && (this.enabled == other.enabled)
                && (this.buddyCommunicationTimeout == other.buddyCommunicationTimeout)
                && Util.safeEquals(this.buddyPoolName, other.buddyPoolName)
@@ -154,6 +172,7 @@ public class BuddyReplicationConfig extends ConfigurationComponent
       result = 29 * result + (autoDataGravitation ? 0 : 1);
       result = 29 * result + (dataGravitationRemoveOnFind ? 0 : 1);
       result = 29 * result + (dataGravitationSearchBackupTrees ? 0 : 1);
+      result = 29 * result + (dataGravitationBuddiesFirst ? 0 : 1);
       result = 29 * result + (enabled ? 0 : 1);
       result = 29 * result + buddyCommunicationTimeout;
       result = 29 * result + (buddyPoolName == null ? 0 : buddyPoolName.hashCode());
@@ -47,6 +47,11 @@ public class CacheLoaderConfig extends ConfigurationComponent
 
    private boolean shared;
 
+   private long negativeLookupCacheTTL;
+   private int negativeLookupCacheMaxEntries = 10000;
+   private String negativeLookupCacheRegions;
+   private long bloomFilterExpectedNodes;
+
    public String getPreload()
    {
       return preload;
@@ -104,7 +109,7 @@ public class CacheLoaderConfig extends ConfigurationComponent
    @Override
    public String toString()
    {
-      return new StringBuilder().append("CacheLoaderConfig{").append("shared=").append(shared).append(", passivation=").append(passivation).append(", preload='").append(preload).append('\'').append(", cacheLoaderConfigs.size()=").append(cacheLoaderConfigs.size()).append('}').toString();
+      return new StringBuilder().append("CacheLoaderConfig{").append("shared=").append(shared).append(", passivation=").append(passivation).append(", preload='").append(preload).append('\'').append(", negativeLookupCacheTTL=").append(negativeLookupCacheTTL).append(", bloomFilterExpectedNodes=").append(bloomFilterExpectedNodes).append(", cacheLoaderConfigs.size()=").append(cacheLoaderConfigs.size()).append('}').toString();
    }
 
    public void setShared(boolean shared)
@@ -118,6 +123,69 @@ public class CacheLoaderConfig extends ConfigurationComponent
       return shared;
    }
 
+   /**
+    * @return how long, in milliseconds, an Fqn the cache loader reported as absent is remembered as absent.  0 means
+    *         that misses are not remembered.
+    * @since 3.1
+    */
+   public long getNegativeLookupCacheTTL()
+   {
+      return negativeLookupCacheTTL;
+   }
+
+   public void setNegativeLookupCacheTTL(long negativeLookupCacheTTL)
+   {
+      testImmutability("negativeLookupCacheTTL");
+      this.negativeLookupCacheTTL = negativeLookupCacheTTL;
+   }
+
+   /**
+    * @return the maximum number of absent Fqns remembered per region of the negative lookup cache.
+    * @since 3.1
+    */
+   public int getNegativeLookupCacheMaxEntries()
+   {
+      return negativeLookupCacheMaxEntries;
+   }
+
+   public void setNegativeLookupCacheMaxEntries(int negativeLookupCacheMaxEntries)
+   {
+      testImmutability("negativeLookupCacheMaxEntries");
+      this.negativeLookupCacheMaxEntries = negativeLookupCacheMaxEntries;
+   }
+
+   /**
+    * @return a comma-separated list of the Fqns of the regions misses are remembered in, or null if misses are
+    *         remembered for the entire tree.
+    * @since 3.1
+    */
+   public String getNegativeLookupCacheRegions()
+   {
+      return negativeLookupCacheRegions;
+   }
+
+   public void setNegativeLookupCacheRegions(String negativeLookupCacheRegions)
+   {
+      testImmutability("negativeLookupCacheRegions");
+      this.negativeLookupCacheRegions = negativeLookupCacheRegions;
+   }
+
+   /**
+    * @return the number of persisted nodes the Bloom filter of persisted Fqns is sized for.  0 means that no Bloom filter
+    *         is maintained.
+    * @since 3.1
+    */
+   public long getBloomFilterExpectedNodes()
+   {
+      return bloomFilterExpectedNodes;
+   }
+
+   public void setBloomFilterExpectedNodes(long bloomFilterExpectedNodes)
+   {
+      testImmutability("bloomFilterExpectedNodes");
+      this.bloomFilterExpectedNodes = bloomFilterExpectedNodes;
+   }
+
    @Override
    public boolean equals(Object obj)
    {
@@ -129,6 +197,10 @@ public class CacheLoaderConfig extends ConfigurationComponent
          CacheLoaderConfig other = (CacheLoaderConfig) obj;
          return (this.passivation == other.passivation)
                && (this.shared == other.shared)
+               && (this.negativeLookupCacheTTL == other.negativeLookupCacheTTL)
+               && (this.negativeLookupCacheMaxEntries == other.negativeLookupCacheMaxEntries)
+               && (this.bloomFilterExpectedNodes == other.bloomFilterExpectedNodes)
+               && Util.safeEquals(this.negativeLookupCacheRegions, other.negativeLookupCacheRegions)
                && Util.safeEquals(this.preload, other.preload)
                && Util.safeEquals(this.cacheLoaderConfigs, other.cacheLoaderConfigs);
       }
@@ -142,6 +214,10 @@ public class CacheLoaderConfig extends ConfigurationComponent
       result = 51 * result + (passivation ? 0 : 1);
       result = 51 * result + (shared ? 0 : 1);
       result = 51 * result + (preload == null ? 0 : preload.hashCode());
+      result = 51 * result + (int) (negativeLookupCacheTTL ^ (negativeLookupCacheTTL >>> 32));
+      result = 51 * result + negativeLookupCacheMaxEntries;
+      result = 51 * result + (negativeLookupCacheRegions == null ? 0 : negativeLookupCacheRegions.hashCode());
+      result = 51 * result + (int) (bloomFilterExpectedNodes ^ (bloomFilterExpectedNodes >>> 32));
       result = 51 * result + (cacheLoaderConfigs == null ? 0 : cacheLoaderConfigs.hashCode());
       return result;
    }
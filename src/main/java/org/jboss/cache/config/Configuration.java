@@ -65,6 +65,28 @@ public class Configuration extends ConfigurationComponent
       DONT_REGISTER
    }
 
+   /**
+    * What to do when an asynchronous listener's queue of batched events is full.
+    *
+    * @since 3.1
+    */
+   public static enum ListenerAsyncOverflowPolicy
+   {
+      /**
+       * The thread generating the event waits until the listener has caught up.
+       */
+      BLOCK,
+      /**
+       * The oldest event waiting for the listener is discarded.
+       */
+      DROP_OLDEST,
+      /**
+       * An older event of the same type, for the same node, waiting for the listener is discarded in favour of the new
+       * one.  If there is no such event the thread generating the event waits, as with {@link #BLOCK}.
+       */
+      COALESCE
+   }
+
    /**
     * Cache replication mode.
     */
@@ -179,6 +201,9 @@ public class Configuration extends ConfigurationComponent
    private int replQueueMaxElements = 1000;
    @Dynamic
    private long replQueueInterval = 5000;
+   @Dynamic
+   private long replQueueMaxBytes = 0;
+   private boolean replQueueCoalesceWrites = false;
    private boolean exposeManagementStatistics = true;
    @Dynamic
    private boolean fetchInMemoryState = true;
@@ -192,6 +217,8 @@ public class Configuration extends ConfigurationComponent
    private boolean inactiveOnStartup = false;
    @Dynamic
    private long stateRetrievalTimeout = 10000;
+   @Dynamic
+   private int stateRetrievalChunkSize = 0;
    private IsolationLevel isolationLevel = IsolationLevel.REPEATABLE_READ;
    @Dynamic
    private boolean lockParentForChildInsertRemove = false;
@@ -217,15 +244,19 @@ public class Configuration extends ConfigurationComponent
    private int objectInputStreamPoolSize = 50;
    private int objectOutputStreamPoolSize = 50;
    private List<CustomInterceptorConfig> customInterceptors = Collections.emptyList();
+   private List<ExternalizerConfig> externalizers = Collections.emptyList();
    private boolean writeSkewCheck = false;
    private int concurrencyLevel = 500;
    private int listenerAsyncPoolSize = 1;
    private int listenerAsyncQueueSize = 50000;
+   private boolean listenerAsyncBatching = false;
+   private ListenerAsyncOverflowPolicy listenerAsyncOverflowPolicy = ListenerAsyncOverflowPolicy.BLOCK;
    private int serializationExecutorPoolSize = 0;
    private int serializationExecutorQueueSize = 50000;
    private Marshaller marshaller;
    private boolean invocationBatchingEnabled;
    private boolean useLockStriping = true;
+   private boolean useFqnIndex = false;
    private URL jgroupsConfigFile;
 
    @Start(priority = 1)
@@ -283,6 +314,28 @@ public class Configuration extends ConfigurationComponent
       this.useLockStriping = useLockStriping;
    }
 
+   /**
+    * @return true if the data container maintains a flat Fqn index alongside the tree of nodes.
+    * @since 3.1
+    */
+   public boolean isUseFqnIndex()
+   {
+      return useFqnIndex;
+   }
+
+   /**
+    * If set to <tt>true</tt>, the data container maintains a concurrent Fqn-to-node index alongside the tree so that
+    * exact-path lookups do not need to walk the tree from the root.  Only applies when using {@link NodeLockingScheme#MVCC}.
+    *
+    * @param useFqnIndex if true, an Fqn index is maintained.
+    * @since 3.1
+    */
+   public void setUseFqnIndex(boolean useFqnIndex)
+   {
+      testImmutability("useFqnIndex");
+      this.useFqnIndex = useFqnIndex;
+   }
+
    public int getConcurrencyLevel()
    {
       return concurrencyLevel;
@@ -326,6 +379,34 @@ public class Configuration extends ConfigurationComponent
       this.replQueueInterval = replQueueInterval;
    }
 
+   /**
+    * Flushes the replication queue once the commands held in it are estimated to marshall to at least this many bytes.
+    * Commands are not marshalled to measure them, so application objects other than strings, numbers, byte arrays,
+    * maps and collections are counted at a flat size.  A value of 0 or less disables this, so the queue is only flushed
+    * on {@link #getReplQueueMaxElements()} or {@link #getReplQueueInterval()}.
+    *
+    * @param replQueueMaxBytes threshold, in marshalled bytes
+    * @since 3.1
+    */
+   public void setReplQueueMaxBytes(long replQueueMaxBytes)
+   {
+      testImmutability("replQueueMaxBytes");
+      this.replQueueMaxBytes = replQueueMaxBytes;
+   }
+
+   /**
+    * If set to <tt>true</tt>, successive puts of the same key in the same node that are waiting in the replication queue
+    * are replaced by the latest one, so only the last value written in a flush interval is replicated.
+    *
+    * @param replQueueCoalesceWrites if true, writes are coalesced
+    * @since 3.1
+    */
+   public void setReplQueueCoalesceWrites(boolean replQueueCoalesceWrites)
+   {
+      testImmutability("replQueueCoalesceWrites");
+      this.replQueueCoalesceWrites = replQueueCoalesceWrites;
+   }
+
    public void setExposeManagementStatistics(boolean useMbean)
    {
       testImmutability("exposeManagementStatistics");
@@ -483,6 +564,41 @@ public class Configuration extends ConfigurationComponent
       this.listenerAsyncQueueSize = listenerAsyncQueueSize;
    }
 
+   /**
+    * If true, events for each asynchronous listener are queued and delivered in batches, in the order they were
+    * generated, by at most one thread of the async listener thread pool at a time.  The queue size then bounds the
+    * number of events waiting for each listener.  Defaults to false, where each event is a separate task for the pool.
+    *
+    * @param listenerAsyncBatching if true, events for async listeners are batched
+    * @since 3.1
+    */
+   public void setListenerAsyncBatching(boolean listenerAsyncBatching)
+   {
+      testImmutability("listenerAsyncBatching");
+      this.listenerAsyncBatching = listenerAsyncBatching;
+   }
+
+   /**
+    * Sets what happens when a batching async listener's queue is full.  Defaults to
+    * {@link ListenerAsyncOverflowPolicy#BLOCK}.
+    *
+    * @param listenerAsyncOverflowPolicy policy to use
+    * @since 3.1
+    */
+   public void setListenerAsyncOverflowPolicy(ListenerAsyncOverflowPolicy listenerAsyncOverflowPolicy)
+   {
+      testImmutability("listenerAsyncOverflowPolicy");
+      this.listenerAsyncOverflowPolicy = listenerAsyncOverflowPolicy;
+   }
+
+   public void setListenerAsyncOverflowPolicy(String listenerAsyncOverflowPolicy)
+   {
+      testImmutability("listenerAsyncOverflowPolicy");
+      if (listenerAsyncOverflowPolicy == null)
+         throw new ConfigurationException("Listener async overflow policy cannot be null", "ListenerAsyncOverflowPolicy");
+      this.listenerAsyncOverflowPolicy = ListenerAsyncOverflowPolicy.valueOf(uc(listenerAsyncOverflowPolicy));
+   }
+
    /**
     * Sets the queue size of the bounded queue used to store async serialization events on.  This defaults to 50,000.
     *
@@ -543,6 +659,22 @@ public class Configuration extends ConfigurationComponent
       this.stateRetrievalTimeout = stateRetrievalTimeout;
    }
 
+   /**
+    * Sets the maximum number of nodes sent in each chunk of in-memory state.  Each chunk is applied as soon as it has
+    * been received, so neither the state provider nor the recipient hold the entire state in memory.  Released versions,
+    * 3.1.0.GA included, cannot read chunked state, so this defaults to 0, which sends in-memory state as a single list.
+    * Only enable it once every member of the cluster can read chunked state.
+    *
+    * @param stateRetrievalChunkSize number of nodes per chunk, or 0
+    * @since 3.1
+    */
+   public void setStateRetrievalChunkSize(int stateRetrievalChunkSize)
+   {
+      testImmutability("stateRetrievalChunkSize");
+      if (stateRetrievalChunkSize < 0) throw new IllegalArgumentException("stateRetrievalChunkSize cannot be negative");
+      this.stateRetrievalChunkSize = stateRetrievalChunkSize;
+   }
+
    public void setNodeLockingScheme(String nodeLockingScheme)
    {
       testImmutability("nodeLockingScheme");
@@ -733,6 +865,24 @@ public class Configuration extends ConfigurationComponent
       return replQueueInterval;
    }
 
+   /**
+    * @return the size, in marshalled bytes, at which the replication queue is flushed, or 0 if this is disabled.
+    * @since 3.1
+    */
+   public long getReplQueueMaxBytes()
+   {
+      return replQueueMaxBytes;
+   }
+
+   /**
+    * @return true if successive puts of the same key are coalesced in the replication queue.
+    * @since 3.1
+    */
+   public boolean isReplQueueCoalesceWrites()
+   {
+      return replQueueCoalesceWrites;
+   }
+
    /**
     * @deprecated use isExposeManagementStatistics()
     */
@@ -865,6 +1015,16 @@ public class Configuration extends ConfigurationComponent
       return stateRetrievalTimeout;
    }
 
+   /**
+    * @return the maximum number of nodes sent in each chunk of in-memory state, or 0 if in-memory state is sent as a
+    *         single list, as released versions expect
+    * @since 3.1
+    */
+   public int getStateRetrievalChunkSize()
+   {
+      return stateRetrievalChunkSize;
+   }
+
    public String getMultiplexerStack()
    {
       return muxStackName;
@@ -966,6 +1126,24 @@ public class Configuration extends ConfigurationComponent
       return listenerAsyncQueueSize;
    }
 
+   /**
+    * @return true if events for async listeners are delivered in batches
+    * @since 3.1
+    */
+   public boolean isListenerAsyncBatching()
+   {
+      return listenerAsyncBatching;
+   }
+
+   /**
+    * @return what happens when a batching async listener's queue is full
+    * @since 3.1
+    */
+   public ListenerAsyncOverflowPolicy getListenerAsyncOverflowPolicy()
+   {
+      return listenerAsyncOverflowPolicy;
+   }
+
    /**
     *
     * @return the bounded queue size for async serializers
@@ -1000,8 +1178,11 @@ public class Configuration extends ConfigurationComponent
       if (objectOutputStreamPoolSize != that.objectOutputStreamPoolSize) return false;
       if (replQueueInterval != that.replQueueInterval) return false;
       if (replQueueMaxElements != that.replQueueMaxElements) return false;
+      if (replQueueMaxBytes != that.replQueueMaxBytes) return false;
+      if (replQueueCoalesceWrites != that.replQueueCoalesceWrites) return false;
       if (replicationVersion != that.replicationVersion) return false;
       if (stateRetrievalTimeout != that.stateRetrievalTimeout) return false;
+      if (stateRetrievalChunkSize != that.stateRetrievalChunkSize) return false;
       if (syncCommitPhase != that.syncCommitPhase) return false;
       if (syncReplTimeout != that.syncReplTimeout) return false;
       if (syncRollbackPhase != that.syncRollbackPhase) return false;
@@ -1032,6 +1213,8 @@ public class Configuration extends ConfigurationComponent
       if (serializationExecutorPoolSize != that.serializationExecutorPoolSize) return false;
       if (jgroupsConfigFile != that.jgroupsConfigFile) return false;
       if (listenerAsyncQueueSize != that.listenerAsyncQueueSize) return false;
+      if (listenerAsyncBatching != that.listenerAsyncBatching) return false;
+      if (listenerAsyncOverflowPolicy != that.listenerAsyncOverflowPolicy) return false;
       if (serializationExecutorQueueSize != that.serializationExecutorQueueSize) return false;
 
       return true;
@@ -1047,6 +1230,8 @@ public class Configuration extends ConfigurationComponent
       result = 31 * result + (useReplQueue ? 1 : 0);
       result = 31 * result + replQueueMaxElements;
       result = 31 * result + (int) (replQueueInterval ^ (replQueueInterval >>> 32));
+      result = 31 * result + (int) (replQueueMaxBytes ^ (replQueueMaxBytes >>> 32));
+      result = 31 * result + (replQueueCoalesceWrites ? 1 : 0);
       result = 31 * result + (exposeManagementStatistics ? 1 : 0);
       result = 31 * result + (fetchInMemoryState ? 1 : 0);
       result = 31 * result + (int) replicationVersion;
@@ -1055,6 +1240,7 @@ public class Configuration extends ConfigurationComponent
       result = 31 * result + (cacheMode != null ? cacheMode.hashCode() : 0);
       result = 31 * result + (inactiveOnStartup ? 1 : 0);
       result = 31 * result + (int) (stateRetrievalTimeout ^ (stateRetrievalTimeout >>> 32));
+      result = 31 * result + stateRetrievalChunkSize;
       result = 31 * result + (isolationLevel != null ? isolationLevel.hashCode() : 0);
       result = 31 * result + (lockParentForChildInsertRemove ? 1 : 0);
       result = 31 * result + (evictionConfig != null ? evictionConfig.hashCode() : 0);
@@ -1077,6 +1263,8 @@ public class Configuration extends ConfigurationComponent
       result = 31 * result + listenerAsyncPoolSize;
       result = 31 * result + serializationExecutorQueueSize;
       result = 31 * result + listenerAsyncQueueSize;
+      result = 31 * result + (listenerAsyncBatching ? 1 : 0);
+      result = 31 * result + (listenerAsyncOverflowPolicy != null ? listenerAsyncOverflowPolicy.hashCode() : 0);
       result = 31 * result + (jgroupsConfigFile != null ? jgroupsConfigFile.hashCode() : 0);
       return result;
    }
@@ -1148,6 +1336,28 @@ public class Configuration extends ConfigurationComponent
       this.customInterceptors = customInterceptors;
    }
 
+   /**
+    * Returns the {@link org.jboss.cache.marshall.Externalizer}s used to serialize instances of the registered types
+    * when they are wrapped in {@link org.jboss.cache.marshall.MarshalledValue}s, in place of Java serialization.
+    *
+    * @return list of externalizers, never null
+    * @since 3.1
+    */
+   public List<ExternalizerConfig> getExternalizers()
+   {
+      return externalizers == null ? Collections.<ExternalizerConfig>emptyList() : externalizers;
+   }
+
+   /**
+    * @see #getExternalizers()
+    * @since 3.1
+    */
+   public void setExternalizers(List<ExternalizerConfig> externalizers)
+   {
+      testImmutability("externalizers");
+      this.externalizers = externalizers;
+   }
+
    public BuddyManager getConsistentHashing()
    {
       return null;
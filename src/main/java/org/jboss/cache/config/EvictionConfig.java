@@ -45,6 +45,7 @@ public class EvictionConfig extends ConfigurationComponent
 
    public static final int WAKEUP_DEFAULT = 5000;
    public static final int EVENT_QUEUE_SIZE_DEFAULT = 200000;
+   public static final int THREAD_POOL_SIZE_DEFAULT = 1;
    public static final String EVICTION_ACTION_POLICY_CLASS_DEFAULT = DefaultEvictionActionPolicy.class.getName();
 
    /**
@@ -55,6 +56,8 @@ public class EvictionConfig extends ConfigurationComponent
 
    private int defaultEventQueueSize = EVENT_QUEUE_SIZE_DEFAULT;
 
+   private int threadPoolSize = THREAD_POOL_SIZE_DEFAULT;
+
    // Dynamic to support runtime adds/removes of regions
    @Dynamic
    private List<EvictionRegionConfig> evictionRegionConfigs;
@@ -297,6 +300,29 @@ public class EvictionConfig extends ConfigurationComponent
       setWakeupInterval(wakeupIntervalSeconds, TimeUnit.SECONDS);
    }
 
+   /**
+    * @return the number of threads used to process eviction regions.
+    * @since 3.1
+    */
+   public int getThreadPoolSize()
+   {
+      return threadPoolSize;
+   }
+
+   /**
+    * Sets the number of threads used to process eviction regions.  With more than one thread, regions are processed in
+    * parallel, and a region that is still being processed when the eviction thread next wakes up is skipped.  Defaults
+    * to 1, which processes all regions one after another on the eviction thread.
+    *
+    * @param threadPoolSize number of threads
+    * @since 3.1
+    */
+   public void setThreadPoolSize(int threadPoolSize)
+   {
+      testImmutability("threadPoolSize");
+      this.threadPoolSize = threadPoolSize;
+   }
+
    public boolean equals(Object o)
    {
       if (this == o) return true;
@@ -306,6 +332,7 @@ public class EvictionConfig extends ConfigurationComponent
 
       if (defaultEventQueueSize != that.defaultEventQueueSize) return false;
       if (wakeupInterval != that.wakeupInterval) return false;
+      if (threadPoolSize != that.threadPoolSize) return false;
       if (defaultEvictionRegionConfig != null ? !defaultEvictionRegionConfig.equals(that.defaultEvictionRegionConfig) : that.defaultEvictionRegionConfig != null)
          return false;
       if (evictionRegionConfigs != null ? !evictionRegionConfigs.equals(that.evictionRegionConfigs) : that.evictionRegionConfigs != null)
@@ -319,6 +346,7 @@ public class EvictionConfig extends ConfigurationComponent
       int result;
       result = 31 + (int) (wakeupInterval ^ (wakeupInterval >>> 32));
       result = 31 * result + defaultEventQueueSize;
+      result = 31 * result + threadPoolSize;
       result = 31 * result + (evictionRegionConfigs != null ? evictionRegionConfigs.hashCode() : 0);
       return result;
    }
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.config;
+
+import net.jcip.annotations.Immutable;
+import org.jboss.cache.marshall.Externalizer;
+
+/**
+ * Registers an {@link Externalizer} for a type wrapped in {@link org.jboss.cache.marshall.MarshalledValue}s.
+ *
+ * @since 3.1
+ */
+@Immutable
+public class ExternalizerConfig extends ConfigurationComponent
+{
+   private static final long serialVersionUID = 4563419087213094758L;
+
+   private int id;
+   private String type;
+   private Externalizer externalizer;
+
+   /**
+    * @param id           identifies the externalizer in serialized values; between 1 and {@link Short#MAX_VALUE}, and
+    *                     the same on every cache in the cluster
+    * @param type         name of the class written by the externalizer.  Only instances of this exact class, not of
+    *                     its subclasses, are written by the externalizer.
+    * @param externalizer the externalizer
+    */
+   public ExternalizerConfig(int id, String type, Externalizer externalizer)
+   {
+      if (id < 1 || id > Short.MAX_VALUE)
+         throw new ConfigurationException("Externalizer id must be between 1 and " + Short.MAX_VALUE + ", was " + id);
+      if (type == null) throw new ConfigurationException("Externalizer type cannot be null");
+      if (externalizer == null) throw new ConfigurationException("Externalizer cannot be null");
+      this.id = id;
+      this.type = type;
+      this.externalizer = externalizer;
+   }
+
+   public ExternalizerConfig(int id, Class<?> type, Externalizer externalizer)
+   {
+      this(id, type.getName(), externalizer);
+   }
+
+   public int getId()
+   {
+      return id;
+   }
+
+   public String getType()
+   {
+      return type;
+   }
+
+   public Externalizer getExternalizer()
+   {
+      return externalizer;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ExternalizerConfig{" +
+            "id=" + id +
+            ", type='" + type + '\'' +
+            ", externalizer=" + externalizer +
+            '}';
+   }
+
+   @Override
+   public boolean equals(Object o)
+   {
+      if (this == o) return true;
+      if (!(o instanceof ExternalizerConfig)) return false;
+
+      ExternalizerConfig that = (ExternalizerConfig) o;
+
+      if (id != that.id) return false;
+      if (!type.equals(that.type)) return false;
+      return externalizer.equals(that.externalizer);
+   }
+
+   @Override
+   public int hashCode()
+   {
+      int result = id;
+      result = 31 * result + type.hashCode();
+      result = 31 * result + externalizer.hashCode();
+      return result;
+   }
+
+   @Override
+   public ExternalizerConfig clone() throws CloneNotSupportedException
+   {
+      return (ExternalizerConfig) super.clone();
+   }
+}
@@ -27,19 +27,23 @@ import org.jboss.cache.config.Configuration;
 import org.jboss.cache.config.Configuration.CacheMode;
 import org.jboss.cache.config.ConfigurationException;
 import org.jboss.cache.config.CustomInterceptorConfig;
+import org.jboss.cache.config.ExternalizerConfig;
 import org.jboss.cache.config.parsing.element.BuddyElementParser;
 import org.jboss.cache.config.parsing.element.CustomInterceptorsElementParser;
 import org.jboss.cache.config.parsing.element.EvictionElementParser;
 import org.jboss.cache.config.parsing.element.LoadersElementParser;
 import org.jboss.cache.config.parsing.JGroupsStackParser;
 import org.jboss.cache.lock.IsolationLevel;
+import org.jboss.cache.marshall.Externalizer;
 import org.jboss.cache.util.FileLookup;
+import org.jboss.cache.util.Util;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.ErrorHandler;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -220,6 +224,8 @@ public class XmlConfigurationParser extends XmlParserBase
       if (existsAttribute(tmp)) config.setStateRetrievalTimeout(getLong(tmp));
       tmp = getAttributeValue(element, "nonBlocking");
       if (existsAttribute(tmp)) config.setNonBlockingStateTransfer(getBoolean(tmp));      
+      tmp = getAttributeValue(element, "chunkSize");
+      if (existsAttribute(tmp)) config.setStateRetrievalChunkSize(getInt(tmp));
    }
 
    private void configureTransaction(Element element)
@@ -252,6 +258,32 @@ public class XmlConfigurationParser extends XmlParserBase
       String useRegionBasedMarshalling = getAttributeValue(element, "useRegionBasedMarshalling");
       if (existsAttribute(useRegionBasedMarshalling))
          config.setUseRegionBasedMarshalling(getBoolean(useRegionBasedMarshalling));
+
+      NodeList externalizerNodes = element.getElementsByTagName("externalizer");
+      if (externalizerNodes.getLength() > 0)
+      {
+         List<ExternalizerConfig> externalizers = new ArrayList<ExternalizerConfig>(externalizerNodes.getLength());
+         for (int i = 0; i < externalizerNodes.getLength(); i++)
+         {
+            Element externalizerElement = (Element) externalizerNodes.item(i);
+            String id = getAttributeValue(externalizerElement, "id");
+            String type = getAttributeValue(externalizerElement, "type");
+            String externalizerClass = getAttributeValue(externalizerElement, "class");
+            if (!existsAttribute(id) || !existsAttribute(type) || !existsAttribute(externalizerClass))
+               throw new ConfigurationException("Externalizers need an id, a type and a class");
+            Externalizer externalizer;
+            try
+            {
+               externalizer = (Externalizer) Util.loadClass(externalizerClass).newInstance();
+            }
+            catch (Exception e)
+            {
+               throw new ConfigurationException("Unable to instantiate externalizer " + externalizerClass, e);
+            }
+            externalizers.add(new ExternalizerConfig(getInt(id), type, externalizer));
+         }
+         config.setExternalizers(externalizers);
+      }
    }
 
    private void configureCustomInterceptors(Element element)
@@ -269,7 +301,13 @@ public class XmlConfigurationParser extends XmlParserBase
       if (existsAttribute(asyncPoolSizeStr)) config.setListenerAsyncPoolSize(getInt(asyncPoolSizeStr));
 
       String asyncQueueSizeStr = getAttributeValue(element, "asyncQueueSize");
-      if (existsAttribute(asyncQueueSizeStr)) config.setListenerAsyncQueueSize(getInt(asyncQueueSizeStr));      
+      if (existsAttribute(asyncQueueSizeStr)) config.setListenerAsyncQueueSize(getInt(asyncQueueSizeStr));
+
+      String asyncBatchingStr = getAttributeValue(element, "asyncBatching");
+      if (existsAttribute(asyncBatchingStr)) config.setListenerAsyncBatching(getBoolean(asyncBatchingStr));
+
+      String asyncOverflowPolicyStr = getAttributeValue(element, "asyncOverflowPolicy");
+      if (existsAttribute(asyncOverflowPolicyStr)) config.setListenerAsyncOverflowPolicy(asyncOverflowPolicyStr);
    }
 
    private void configureInvocationBatching(Element element)
@@ -384,6 +422,10 @@ public class XmlConfigurationParser extends XmlParserBase
       String replQueueMaxElements = getAttributeValue(element, "replQueueMaxElements");
 
       if (existsAttribute(replQueueMaxElements)) config.setReplQueueMaxElements(getInt(replQueueMaxElements));
+      String replQueueMaxBytes = getAttributeValue(element, "replQueueMaxBytes");
+      if (existsAttribute(replQueueMaxBytes)) config.setReplQueueMaxBytes(getLong(replQueueMaxBytes));
+      String replQueueCoalesceWrites = getAttributeValue(element, "replQueueCoalesceWrites");
+      if (existsAttribute(replQueueCoalesceWrites)) config.setReplQueueCoalesceWrites(getBoolean(replQueueCoalesceWrites));
       String serializationExecutorPoolSize = getAttributeValue(element, "serializationExecutorPoolSize");
       if (existsAttribute(serializationExecutorPoolSize))
          config.setSerializationExecutorPoolSize(getInt(serializationExecutorPoolSize));
@@ -407,6 +449,8 @@ public class XmlConfigurationParser extends XmlParserBase
       if (existsAttribute(tmp)) config.setWriteSkewCheck(getBoolean(tmp));
       tmp = getAttributeValue(element, "useLockStriping");
       if (existsAttribute(tmp)) config.setUseLockStriping(getBoolean(tmp));
+      tmp = getAttributeValue(element, "useFqnIndex");
+      if (existsAttribute(tmp)) config.setUseFqnIndex(getBoolean(tmp));
       tmp = getAttributeValue(element, "concurrencyLevel");
       if (existsAttribute(tmp)) config.setConcurrencyLevel(getInt(tmp));
    }
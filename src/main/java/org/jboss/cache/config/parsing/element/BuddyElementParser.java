@@ -103,5 +103,7 @@ public class BuddyElementParser extends XmlParserBase
       if (existsAttribute(removeOnFind)) brc.setDataGravitationRemoveOnFind(getBoolean(removeOnFind));
       String searchBackupTrees = getAttributeValue(element, "searchBackupTrees");
       if (existsAttribute(searchBackupTrees)) brc.setDataGravitationSearchBackupTrees(getBoolean(searchBackupTrees));
+      String buddiesFirst = getAttributeValue(element, "buddiesFirst");
+      if (existsAttribute(buddiesFirst)) brc.setDataGravitationBuddiesFirst(getBoolean(buddiesFirst));
    }
 }
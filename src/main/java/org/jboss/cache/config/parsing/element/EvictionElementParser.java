@@ -76,6 +76,12 @@ public class EvictionElementParser extends XmlParserBase
          throw new ConfigurationException("Missing mandatory attribute wakeUpInterval");
       }
 
+      String threadPoolSize = getAttributeValue(evictionElement, "threadPoolSize");
+      if (existsAttribute(threadPoolSize))
+      {
+         evictionConfig.setThreadPoolSize(getInt(threadPoolSize));
+      }
+
       List<EvictionRegionConfig> evictionRegionConfigs = new LinkedList<EvictionRegionConfig>();
       Element defaultRegion = getSingleElementInCoreNS("default", evictionElement);
 
@@ -64,6 +64,15 @@ public class LoadersElementParser extends XmlParserBase
       if (existsAttribute(shared)) cacheLoaderConfig.setShared(getBoolean(shared));
       String preload = getPreloadString(getSingleElementInCoreNS("preload", element));
       if (preload != null) cacheLoaderConfig.setPreload(preload);
+      parseNegativeLookupCache(getSingleElementInCoreNS("negativeLookupCache", element), cacheLoaderConfig);
+      Element bloomFilter = getSingleElementInCoreNS("bloomFilter", element);
+      if (bloomFilter != null)
+      {
+         String expectedNodes = getAttributeValue(bloomFilter, "expectedNodes");
+         if (!existsAttribute(expectedNodes))
+            throw new ConfigurationException("Missing 'expectedNodes' attribute in 'bloomFilter' element");
+         cacheLoaderConfig.setBloomFilterExpectedNodes(getLong(expectedNodes));
+      }
 
       NodeList cacheLoaderNodes = element.getElementsByTagName("loader");
       for (int i = 0; i < cacheLoaderNodes.getLength(); i++)
@@ -122,6 +131,28 @@ public class LoadersElementParser extends XmlParserBase
       return result.toString();
    }
 
+   private void parseNegativeLookupCache(Element element, CacheLoaderConfig cacheLoaderConfig)
+   {
+      if (element == null) return; //optional, misses are not remembered by default
+      String ttl = getAttributeValue(element, "ttl");
+      if (!existsAttribute(ttl))
+         throw new ConfigurationException("Missing 'ttl' attribute in 'negativeLookupCache' element");
+      cacheLoaderConfig.setNegativeLookupCacheTTL(getLong(ttl));
+      String maxEntries = getAttributeValue(element, "maxEntries");
+      if (existsAttribute(maxEntries)) cacheLoaderConfig.setNegativeLookupCacheMaxEntries(getInt(maxEntries));
+      NodeList regions = element.getElementsByTagName("region");
+      StringBuilder result = new StringBuilder();
+      for (int i = 0; i < regions.getLength(); i++)
+      {
+         String fqn = getAttributeValue((Element) regions.item(i), "fqn");
+         if (!existsAttribute(fqn))
+            throw new ConfigurationException("Missing 'fqn' attribute in 'negativeLookupCache' region element");
+         if (i > 0) result.append(",");
+         result.append(fqn);
+      }
+      if (regions.getLength() > 0) cacheLoaderConfig.setNegativeLookupCacheRegions(result.toString());
+   }
+
    public CacheLoaderConfig.IndividualCacheLoaderConfig.SingletonStoreConfig parseSingletonStoreConfig(Element element)
    {
       if (element == null) return null; //might happen, this config option is not mandatory
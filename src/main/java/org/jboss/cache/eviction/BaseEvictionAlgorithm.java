@@ -141,6 +141,8 @@ public abstract class BaseEvictionAlgorithm implements EvictionAlgorithm
    {
       if (trace) log.trace("process(): region: " + regionFqn);
       initialize();
+      // nothing has happened in the region and there is nothing that could expire, so don't bother
+      if (eventQueue.isEmpty() && evictionQueue.getNumberOfNodes() == 0 && recycleQueue.isEmpty()) return;
       this.processQueues(eventQueue);
       this.emptyRecycleQueue();
       this.prune();
@@ -438,12 +440,15 @@ public abstract class BaseEvictionAlgorithm implements EvictionAlgorithm
             log.debug("Visiting node that was not added to eviction queues. Assuming that it has 1 element.");
          }
          this.processAddedNodes(evictedEventNode, 1);
+         // a coalesced visit stands for several visits, only the first of which added the node
+         ne = evictedEventNode.getVisitCount() > 1 ? evictionQueue.getNodeEntry(fqn) : null;
+         if (ne != null) ne.setNumberOfNodeVisits(ne.getNumberOfNodeVisits() + evictedEventNode.getVisitCount() - 1);
          return;
       }
       // note this method will visit and modify the node statistics by reference!
       // if a collection is only guaranteed sort order by adding to the collection,
       // this implementation will not guarantee sort order.
-      ne.setNumberOfNodeVisits(ne.getNumberOfNodeVisits() + 1);
+      ne.setNumberOfNodeVisits(ne.getNumberOfNodeVisits() + evictedEventNode.getVisitCount());
       ne.setModifiedTimeStamp(evictedEventNode.getCreationTimestamp());
    }
 
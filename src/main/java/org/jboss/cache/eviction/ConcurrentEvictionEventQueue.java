@@ -0,0 +1,340 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.eviction;
+
+import org.jboss.cache.Fqn;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An unbounded, non-blocking queue of {@link EvictionEvent}s, written to by application threads and drained by the
+ * eviction thread.
+ * <p/>
+ * Structural events (adds, removes, element changes, in-use marks) are kept in insertion order in a lock-free queue.
+ * Node visits, which make up most of the events under a read-heavy load, are not queued individually.  Instead, each
+ * visit updates a per-Fqn access record in place, so any number of visits to the same node between two runs of the
+ * eviction thread cost a single entry.  The access records are handed out as
+ * {@link EvictionEvent.Type#VISIT_NODE_EVENT}s, each carrying the number of visits it stands for in
+ * {@link EvictionEvent#getVisitCount()}, and are merged with the structural events in the order in which the nodes were
+ * last visited.  Algorithms that order nodes by their last use therefore see the same order as if every event had been
+ * queued.
+ * <p/>
+ * Producers never block, so {@link #put(EvictionEvent)} and {@link #offer(EvictionEvent)} always succeed.  This queue
+ * supports any number of producers but only a single consumer.
+ *
+ * @since 3.1
+ */
+public class ConcurrentEvictionEventQueue extends AbstractQueue<EvictionEvent> implements BlockingQueue<EvictionEvent>
+{
+   private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private static final Comparator<EvictionEvent> BY_SEQUENCE = new Comparator<EvictionEvent>()
+   {
+      public int compare(EvictionEvent e1, EvictionEvent e2)
+      {
+         return e1.sequence < e2.sequence ? -1 : (e1.sequence == e2.sequence ? 0 : 1);
+      }
+   };
+
+   private final ConcurrentLinkedQueue<EvictionEvent> events = new ConcurrentLinkedQueue<EvictionEvent>();
+   // ConcurrentLinkedQueue.size() is O(n)
+   private final AtomicInteger eventCount = new AtomicInteger();
+   private final ConcurrentMap<Fqn, AccessRecord> accesses = new ConcurrentHashMap<Fqn, AccessRecord>();
+   // orders structural events and visits, since timestamps are too coarse
+   private final AtomicLong sequence = new AtomicLong();
+
+   // visits collected from the access records, only ever touched by the consumer
+   private EvictionEvent[] visits;
+   private int nextVisit;
+
+   public boolean offer(EvictionEvent event)
+   {
+      if (event == null) throw new NullPointerException();
+      long seq = sequence.incrementAndGet();
+      switch (event.getEventType())
+      {
+         case VISIT_NODE_EVENT:
+            recordVisit(event.getFqn(), seq, event.getCreationTimestamp(), event.getVisitCount());
+            return true;
+         case REMOVE_NODE_EVENT:
+            // a pending visit must not resurrect the removed node in the eviction queue
+            accesses.remove(event.getFqn());
+            break;
+      }
+      event.sequence = seq;
+      events.offer(event);
+      eventCount.incrementAndGet();
+      return true;
+   }
+
+   public void put(EvictionEvent event)
+   {
+      offer(event);
+   }
+
+   public boolean offer(EvictionEvent event, long timeout, TimeUnit unit)
+   {
+      return offer(event);
+   }
+
+   public EvictionEvent poll()
+   {
+      if (!hasCollectedVisits()) collectVisits();
+      EvictionEvent event = events.peek();
+      if (hasCollectedVisits() && (event == null || visits[nextVisit].sequence < event.sequence))
+      {
+         EvictionEvent visit = visits[nextVisit];
+         visits[nextVisit++] = null;
+         return visit;
+      }
+      // there is only one consumer, so this is the event we peeked at
+      event = events.poll();
+      if (event != null) eventCount.decrementAndGet();
+      return event;
+   }
+
+   public EvictionEvent poll(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      EvictionEvent event = poll();
+      if (event != null || timeout <= 0) return event;
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while ((event = poll()) == null)
+      {
+         long remaining = deadline - System.nanoTime();
+         if (remaining <= 0) return null;
+         LockSupport.parkNanos(Math.min(remaining, PARK_NANOS));
+         if (Thread.interrupted()) throw new InterruptedException();
+      }
+      return event;
+   }
+
+   public EvictionEvent take() throws InterruptedException
+   {
+      EvictionEvent event;
+      while ((event = poll()) == null)
+      {
+         LockSupport.parkNanos(PARK_NANOS);
+         if (Thread.interrupted()) throw new InterruptedException();
+      }
+      return event;
+   }
+
+   public EvictionEvent peek()
+   {
+      if (!hasCollectedVisits()) collectVisits();
+      EvictionEvent event = events.peek();
+      if (hasCollectedVisits() && (event == null || visits[nextVisit].sequence < event.sequence))
+         return visits[nextVisit];
+      return event;
+   }
+
+   public int size()
+   {
+      return eventCount.get() + accesses.size() + (hasCollectedVisits() ? visits.length - nextVisit : 0);
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      return events.isEmpty() && accesses.isEmpty() && !hasCollectedVisits();
+   }
+
+   public int remainingCapacity()
+   {
+      return Integer.MAX_VALUE;
+   }
+
+   @Override
+   public void clear()
+   {
+      while (events.poll() != null) eventCount.decrementAndGet();
+      accesses.clear();
+      visits = null;
+   }
+
+   public int drainTo(Collection<? super EvictionEvent> c)
+   {
+      return drainTo(c, Integer.MAX_VALUE);
+   }
+
+   public int drainTo(Collection<? super EvictionEvent> c, int maxElements)
+   {
+      if (c == this) throw new IllegalArgumentException();
+      int count = 0;
+      EvictionEvent event;
+      while (count < maxElements && (event = poll()) != null)
+      {
+         c.add(event);
+         count++;
+      }
+      return count;
+   }
+
+   /**
+    * Returns a weakly consistent snapshot of the events in this queue, with visits last.
+    */
+   public Iterator<EvictionEvent> iterator()
+   {
+      List<EvictionEvent> snapshot = new ArrayList<EvictionEvent>(events);
+      if (hasCollectedVisits()) snapshot.addAll(Arrays.asList(visits).subList(nextVisit, visits.length));
+      for (Map.Entry<Fqn, AccessRecord> entry : accesses.entrySet())
+      {
+         int count = entry.getValue().getVisits();
+         if (count > 0) snapshot.add(entry.getValue().toEvent(entry.getKey(), count));
+      }
+      final Iterator<EvictionEvent> it = snapshot.iterator();
+      return new Iterator<EvictionEvent>()
+      {
+         public boolean hasNext()
+         {
+            return it.hasNext();
+         }
+
+         public EvictionEvent next()
+         {
+            return it.next();
+         }
+
+         public void remove()
+         {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   private void recordVisit(Fqn fqn, long seq, long timestamp, int count)
+   {
+      while (true)
+      {
+         AccessRecord record = accesses.get(fqn);
+         if (record == null)
+         {
+            if (accesses.putIfAbsent(fqn, new AccessRecord(seq, timestamp, count)) == null) return;
+         }
+         else if (record.visit(seq, timestamp, count))
+         {
+            return;
+         }
+         else
+         {
+            // retired by the consumer; make way for a new one
+            accesses.remove(fqn, record);
+         }
+      }
+   }
+
+   private boolean hasCollectedVisits()
+   {
+      return visits != null && nextVisit < visits.length;
+   }
+
+   /**
+    * Retires all current access records and orders them by their last visit, ready to be merged with the structural
+    * events.
+    */
+   private boolean collectVisits()
+   {
+      visits = null;
+      if (accesses.isEmpty()) return false;
+      List<EvictionEvent> collected = new ArrayList<EvictionEvent>(accesses.size());
+      for (Iterator<Map.Entry<Fqn, AccessRecord>> it = accesses.entrySet().iterator(); it.hasNext();)
+      {
+         Map.Entry<Fqn, AccessRecord> entry = it.next();
+         it.remove();
+         AccessRecord record = entry.getValue();
+         int count = record.retire();
+         if (count > 0) collected.add(record.toEvent(entry.getKey(), count));
+      }
+      if (collected.isEmpty()) return false;
+      visits = collected.toArray(new EvictionEvent[collected.size()]);
+      Arrays.sort(visits, BY_SEQUENCE);
+      nextVisit = 0;
+      return true;
+   }
+
+   /**
+    * Visits to a single node since the access record was created.  Retired records have a negative visit count and
+    * can no longer be updated.
+    */
+   private static final class AccessRecord
+   {
+      private final AtomicInteger visits;
+      private volatile long lastSequence;
+      private volatile long lastVisit;
+
+      AccessRecord(long seq, long timestamp, int count)
+      {
+         lastSequence = seq;
+         lastVisit = timestamp;
+         visits = new AtomicInteger(count);
+      }
+
+      boolean visit(long seq, long timestamp, int count)
+      {
+         // written before the count, so a consumer that sees the count sees a visit at least this recent
+         if (seq > lastSequence) lastSequence = seq;
+         if (timestamp > lastVisit) lastVisit = timestamp;
+         int current;
+         do
+         {
+            current = visits.get();
+            if (current < 0) return false;
+         }
+         while (!visits.compareAndSet(current, current + count));
+         return true;
+      }
+
+      int getVisits()
+      {
+         return visits.get();
+      }
+
+      int retire()
+      {
+         return visits.getAndSet(-1);
+      }
+
+      EvictionEvent toEvent(Fqn fqn, int count)
+      {
+         EvictionEvent event = new EvictionEvent(fqn, EvictionEvent.Type.VISIT_NODE_EVENT, 0);
+         event.setCreationTimestamp(lastVisit);
+         event.setVisitCount(count);
+         event.sequence = lastSequence;
+         return event;
+      }
+   }
+}
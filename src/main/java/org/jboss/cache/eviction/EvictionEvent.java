@@ -38,6 +38,9 @@ public class EvictionEvent
 
    private long inUseTimeout;
    private long creationTimestamp;
+   private int visitCount = 1;
+   // position in the region's event queue, assigned by ConcurrentEvictionEventQueue
+   long sequence;
 
    public EvictionEvent()
    {
@@ -67,6 +70,11 @@ public class EvictionEvent
       return creationTimestamp;
    }
 
+   void setCreationTimestamp(long creationTimestamp)
+   {
+      this.creationTimestamp = creationTimestamp;
+   }
+
    public long getInUseTimeout()
    {
       return inUseTimeout;
@@ -87,6 +95,24 @@ public class EvictionEvent
       this.elementDifference = elementDifference;
    }
 
+   /**
+    * @return the number of node visits this event stands for.  Only meaningful for {@link Type#VISIT_NODE_EVENT}s,
+    *         which may be coalesced by the region's {@link ConcurrentEvictionEventQueue}.
+    * @since 3.1
+    */
+   public int getVisitCount()
+   {
+      return visitCount;
+   }
+
+   /**
+    * @since 3.1
+    */
+   public void setVisitCount(int visitCount)
+   {
+      this.visitCount = visitCount;
+   }
+
    public Fqn getFqn()
    {
       return fqn;
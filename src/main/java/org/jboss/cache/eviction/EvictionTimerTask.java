@@ -23,17 +23,35 @@ package org.jboss.cache.eviction;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.Fqn;
 import org.jboss.cache.Region;
 import org.jboss.cache.RegionRegistry;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Timer threads to do periodic node clean up by running the eviction policy.
+ * <p/>
+ * By default, every region is processed in turn on the timer thread.  If a thread pool size greater than 1 is
+ * configured, regions are instead processed in parallel on a pool of that size.  In this case a region that is still
+ * being processed when the timer next fires is skipped, so that a slow region does not hold up the others.
  *
  * @author Ben Wang 2-2004
  * @author Daniel Huang (dhuang@jboss.org)
@@ -46,20 +64,37 @@ public class EvictionTimerTask
    private RegionRegistry regionsRegistry;
    private static AtomicInteger tcount = new AtomicInteger();
    private long wakeupInterval;
+   private int threadPoolSize = 1;
    ScheduledExecutorService scheduledExecutor;
+   ExecutorService regionProcessor;
    private Task task;
 
+   private final ConcurrentMap<Fqn, RegionStatistics> regionStatistics = new ConcurrentHashMap<Fqn, RegionStatistics>();
+   private volatile long lastRunTime;
+   private final AtomicLong overruns = new AtomicLong();
+
    public EvictionTimerTask()
    {
       task = new Task();
    }
 
    public void init(long wakeupInterval, ThreadFactory evictionThreadFactory, RegionRegistry rr)
+   {
+      init(wakeupInterval, threadPoolSize, evictionThreadFactory, rr);
+   }
+
+   /**
+    * @param threadPoolSize number of threads to process regions with.  Regions are processed in parallel if greater
+    *                       than 1.
+    * @since 3.1
+    */
+   public void init(long wakeupInterval, int threadPoolSize, ThreadFactory evictionThreadFactory, RegionRegistry rr)
    {
       if (log.isTraceEnabled())
-         log.trace("Creating a new eviction listener with wakeupInterval millis set at " + wakeupInterval);
+         log.trace("Creating a new eviction listener with wakeupInterval millis set at " + wakeupInterval + " and " + threadPoolSize + " threads");
       this.regionsRegistry = rr;
       this.wakeupInterval = wakeupInterval;
+      this.threadPoolSize = threadPoolSize;
       start(evictionThreadFactory);
    }
 
@@ -72,6 +107,12 @@ public class EvictionTimerTask
          scheduledExecutor.shutdownNow();
       }
       scheduledExecutor = null;
+
+      if (regionProcessor != null)
+      {
+         regionProcessor.shutdownNow();
+      }
+      regionProcessor = null;
    }
 
    private void start(ThreadFactory tf)
@@ -93,6 +134,7 @@ public class EvictionTimerTask
          }
       };
 
+      if (threadPoolSize > 1) regionProcessor = Executors.newFixedThreadPool(threadPoolSize, tf);
       scheduledExecutor = Executors.newSingleThreadScheduledExecutor(tf);
       scheduledExecutor.scheduleWithFixedDelay(task, wakeupInterval / 2, wakeupInterval, TimeUnit.MILLISECONDS);
    }
@@ -101,15 +143,105 @@ public class EvictionTimerTask
    {
       if (log.isTraceEnabled()) log.trace("Processing eviction regions " + regionsRegistry.keySet());
 
-      for (Region region : regionsRegistry.values())
+      long start = System.nanoTime();
+      ExecutorService processor = regionProcessor;
+      if (processor == null)
+      {
+         for (Region region : regionsRegistry.values())
+         {
+            if (region.getEvictionRegionConfig() != null)
+               handleRegion(region);
+         }
+      }
+      else
+      {
+         processRegionsInParallel(processor);
+      }
+
+      // forget about regions that have gone away
+      regionStatistics.keySet().retainAll(regionsRegistry.keySet());
+
+      lastRunTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      if (wakeupInterval > 0 && lastRunTime > wakeupInterval)
+      {
+         overruns.incrementAndGet();
+         if (log.isDebugEnabled())
+            log.debug("Processing eviction regions took " + lastRunTime + " millis, longer than the wakeup interval of " + wakeupInterval + " millis");
+      }
+   }
+
+   private void processRegionsInParallel(ExecutorService processor)
+   {
+      List<Future<?>> submitted = new ArrayList<Future<?>>();
+      for (final Region region : regionsRegistry.values())
+      {
+         if (region.getEvictionRegionConfig() == null) continue;
+
+         final RegionStatistics statistics = getStatistics(region.getFqn());
+         if (!statistics.startProcessing())
+         {
+            if (log.isTraceEnabled()) log.trace("Region " + region.getFqn() + " is still being processed, skipping it");
+            statistics.skipped.incrementAndGet();
+            continue;
+         }
+
+         try
+         {
+            submitted.add(processor.submit(new Runnable()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     handleRegion(region);
+                  }
+                  finally
+                  {
+                     statistics.endProcessing();
+                  }
+               }
+            }));
+         }
+         catch (RejectedExecutionException e)
+         {
+            // we are being stopped
+            statistics.endProcessing();
+            return;
+         }
+      }
+
+      // wait for the regions to be processed, but for no longer than a wakeup interval.  Any regions still being
+      // processed after that are left to finish in the background, and are skipped by the next run.
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wakeupInterval);
+      for (Future<?> future : submitted)
       {
-         if (region.getEvictionRegionConfig() != null)
-            handleRegion(region);
+         try
+         {
+            if (wakeupInterval > 0)
+               future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            else
+               future.get();
+         }
+         catch (TimeoutException e)
+         {
+            if (log.isDebugEnabled()) log.debug("Not waiting for slow eviction regions to be processed");
+            return;
+         }
+         catch (ExecutionException e)
+         {
+            log.error("Unexpected error processing eviction region", e.getCause());
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            return;
+         }
       }
    }
 
    private void handleRegion(Region region)
    {
+      long start = System.nanoTime();
       try
       {
          region.processEvictionQueues();
@@ -121,6 +253,59 @@ public class EvictionTimerTask
          region.resetEvictionQueues();
          log.debug("trace", e);
       }
+      finally
+      {
+         getStatistics(region.getFqn()).recordRun(System.nanoTime() - start);
+      }
+   }
+
+   private RegionStatistics getStatistics(Fqn fqn)
+   {
+      RegionStatistics statistics = regionStatistics.get(fqn);
+      if (statistics == null)
+      {
+         statistics = new RegionStatistics();
+         RegionStatistics existing = regionStatistics.putIfAbsent(fqn, statistics);
+         if (existing != null) statistics = existing;
+      }
+      return statistics;
+   }
+
+   /**
+    * @return processing statistics of each eviction region, keyed on the region's Fqn.
+    * @since 3.1
+    */
+   public Map<Fqn, RegionStatistics> getRegionStatistics()
+   {
+      return Collections.unmodifiableMap(regionStatistics);
+   }
+
+   /**
+    * @return the time, in milliseconds, taken by the last run across all regions.
+    * @since 3.1
+    */
+   public long getLastRunTime()
+   {
+      return lastRunTime;
+   }
+
+   /**
+    * @return the number of runs that took longer than the wakeup interval.
+    * @since 3.1
+    */
+   public long getOverruns()
+   {
+      return overruns.get();
+   }
+
+   /**
+    * @since 3.1
+    */
+   public void resetStatistics()
+   {
+      for (RegionStatistics statistics : regionStatistics.values()) statistics.reset();
+      overruns.set(0);
+      lastRunTime = 0;
    }
 
    public class Task implements Runnable
@@ -133,6 +318,98 @@ public class EvictionTimerTask
          processRegions();
       }
    }
-}
 
+   /**
+    * Time spent processing a single eviction region.
+    *
+    * @since 3.1
+    */
+   public static class RegionStatistics
+   {
+      private final AtomicBoolean processing = new AtomicBoolean();
+      private final AtomicLong runs = new AtomicLong();
+      private final AtomicLong totalTime = new AtomicLong();
+      private final AtomicLong skipped = new AtomicLong();
+      private volatile long lastTime;
+      private volatile long maxTime;
+
+      boolean startProcessing()
+      {
+         return processing.compareAndSet(false, true);
+      }
+
+      void endProcessing()
+      {
+         processing.set(false);
+      }
+
+      void recordRun(long nanos)
+      {
+         runs.incrementAndGet();
+         totalTime.addAndGet(nanos);
+         lastTime = nanos;
+         // a region is only ever processed by one thread at a time
+         if (nanos > maxTime) maxTime = nanos;
+      }
 
+      void reset()
+      {
+         runs.set(0);
+         totalTime.set(0);
+         skipped.set(0);
+         lastTime = 0;
+         maxTime = 0;
+      }
+
+      /**
+       * @return number of times the region was processed
+       */
+      public long getRuns()
+      {
+         return runs.get();
+      }
+
+      /**
+       * @return number of times the region was skipped because it was still being processed
+       */
+      public long getSkipped()
+      {
+         return skipped.get();
+      }
+
+      /**
+       * @return time taken by the last run, in nanoseconds
+       */
+      public long getLastTime()
+      {
+         return lastTime;
+      }
+
+      /**
+       * @return time taken by the slowest run, in nanoseconds
+       */
+      public long getMaxTime()
+      {
+         return maxTime;
+      }
+
+      /**
+       * @return average time taken by a run, in nanoseconds
+       */
+      public long getAverageTime()
+      {
+         long r = runs.get();
+         return r == 0 ? 0 : totalTime.get() / r;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "runs=" + getRuns() +
+               "; skipped=" + getSkipped() +
+               "; lastTime=" + TimeUnit.NANOSECONDS.toMicros(getLastTime()) + "us" +
+               "; averageTime=" + TimeUnit.NANOSECONDS.toMicros(getAverageTime()) + "us" +
+               "; maxTime=" + TimeUnit.NANOSECONDS.toMicros(getMaxTime()) + "us";
+      }
+   }
+}
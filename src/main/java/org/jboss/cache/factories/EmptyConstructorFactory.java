@@ -29,13 +29,16 @@ import org.jboss.cache.config.ConfigurationException;
 import org.jboss.cache.factories.annotations.DefaultFactoryFor;
 import org.jboss.cache.invocation.CacheInvocationDelegate;
 import org.jboss.cache.invocation.InvocationContextContainer;
+import org.jboss.cache.loader.CacheLoaderLookupFilter;
 import org.jboss.cache.loader.CacheLoaderManager;
 import org.jboss.cache.lock.LockStrategyFactory;
+import org.jboss.cache.marshall.MarshalledValueSerializer;
 import org.jboss.cache.marshall.Marshaller;
 import org.jboss.cache.marshall.VersionAwareMarshaller;
 import org.jboss.cache.mvcc.MVCCNodeHelper;
 import org.jboss.cache.notifications.Notifier;
 import org.jboss.cache.remoting.jgroups.ChannelMessageListener;
+import org.jboss.cache.statetransfer.StateTransferProgress;
 import org.jboss.cache.transaction.TransactionTable;
 
 /**
@@ -47,7 +50,8 @@ import org.jboss.cache.transaction.TransactionTable;
 @DefaultFactoryFor(classes = {Notifier.class, MVCCNodeHelper.class, RegionRegistry.class,
       ChannelMessageListener.class, CacheLoaderManager.class, Marshaller.class, InvocationContextContainer.class,
       CacheInvocationDelegate.class, TransactionTable.class, DataContainer.class,
-      LockStrategyFactory.class, BuddyFqnTransformer.class, BatchContainer.class})
+      LockStrategyFactory.class, BuddyFqnTransformer.class, BatchContainer.class, StateTransferProgress.class, MarshalledValueSerializer.class,
+      CacheLoaderLookupFilter.class})
 public class EmptyConstructorFactory extends ComponentFactory
 {
    @Override
@@ -24,12 +24,14 @@ package org.jboss.cache.interceptors;
 import org.jboss.cache.Fqn;
 import org.jboss.cache.InternalNode;
 import org.jboss.cache.InvocationContext;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
 import org.jboss.cache.commands.read.GetKeysCommand;
 import org.jboss.cache.commands.read.GetNodeCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -118,6 +120,14 @@ public class ActivationInterceptor extends CacheLoaderInterceptor
       return returnValue;
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      Object returnValue = super.visitGetAllCommand(ctx, command);
+      for (Fqn fqn : command.getFqns()) removeNodeFromCacheLoader(ctx, fqn, true);
+      return returnValue;
+   }
+
    @Override
    public Object visitGetNodeCommand(InvocationContext ctx, GetNodeCommand command) throws Throwable
    {
@@ -156,6 +166,14 @@ public class ActivationInterceptor extends CacheLoaderInterceptor
       return returnValue;
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      Object returnValue = super.visitPutAllCommand(ctx, command);
+      for (Fqn fqn : command.getFqns()) removeNodeFromCacheLoader(ctx, fqn, true);
+      return returnValue;
+   }
+
    @Override
    public Object visitRemoveKeyCommand(InvocationContext ctx, RemoveKeyCommand command) throws Throwable
    {
@@ -27,6 +27,7 @@ import org.jboss.cache.Fqn;
 import org.jboss.cache.InternalNode;
 import org.jboss.cache.InvocationContext;
 import org.jboss.cache.NodeSPI;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -34,7 +35,9 @@ import org.jboss.cache.commands.read.GetKeysCommand;
 import org.jboss.cache.commands.read.GetNodeCommand;
 import org.jboss.cache.commands.tx.RollbackCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
+import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -48,21 +51,28 @@ import org.jboss.cache.interceptors.base.JmxStatsCommandInterceptor;
 import org.jboss.cache.jmx.annotations.ManagedAttribute;
 import org.jboss.cache.jmx.annotations.ManagedOperation;
 import org.jboss.cache.loader.CacheLoader;
+import org.jboss.cache.loader.CacheLoaderLookupFilter;
 import org.jboss.cache.loader.CacheLoaderManager;
 import org.jboss.cache.mvcc.MVCCNodeHelper;
 import org.jboss.cache.mvcc.NullMarkerNode;
 import org.jboss.cache.notifications.Notifier;
 import org.jboss.cache.transaction.TransactionTable;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Loads nodes that don't exist at the time of the call into memory from the CacheLoader
+ * Loads nodes that don't exist at the time of the call into memory from the CacheLoader.
+ * <p/>
+ * A node is loaded while holding its write lock, so concurrent callers missing the same node wait for the first
+ * caller's load rather than each loading the node: once they acquire the lock they find it in memory, and only go to
+ * the CacheLoader if it still needs loading.
  *
  * @author Bela Ban
  * @version $Id: CacheLoaderInterceptor.java 7610 2009-01-29 12:43:31Z manik.surtani@jboss.com $
@@ -71,7 +81,9 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
 {
    private long cacheLoads = 0;
    private long cacheMisses = 0;
+   private final AtomicLong coalescedLoads = new AtomicLong();
    private CacheLoaderManager clm;
+   private CacheLoaderLookupFilter lookupFilter;
 
    protected TransactionTable txTable = null;
    protected CacheLoader loader;
@@ -93,10 +105,12 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
 
    @Inject
    protected void injectDependencies(TransactionTable txTable, CacheLoaderManager clm, Configuration configuration,
-                                     DataContainer dataContainer, Notifier notifier, MVCCNodeHelper helper)
+                                     DataContainer dataContainer, Notifier notifier, MVCCNodeHelper helper,
+                                     CacheLoaderLookupFilter lookupFilter)
    {
       this.txTable = txTable;
       this.clm = clm;
+      this.lookupFilter = lookupFilter;
 //      CacheMode mode = configuration.getCacheMode();
 //      usingVersionedInvalidation = mode.isInvalidation();
       this.dataContainer = dataContainer;
@@ -127,6 +141,16 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      for (Fqn fqn : command.getFqns())
+      {
+         loadIfNeeded(ctx, fqn, null, true, true, false, false, false, false, true);
+      }
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
@@ -211,6 +235,16 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      for (Fqn fqn : command.getFqns())
+      {
+         loadIfNeeded(ctx, fqn, null, true, false, true, false, false, false, true);
+      }
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object visitRollbackCommand(InvocationContext ctx, RollbackCommand command) throws Throwable
    {
@@ -269,6 +303,14 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object visitInvalidateCommand(InvocationContext ctx, InvalidateCommand command) throws Throwable
+   {
+      // the node has been written elsewhere, possibly to a shared store
+      if (command.getFqn() != null) lookupFilter.forget(command.getFqn());
+      return invokeNextInterceptor(ctx, command);
+   }
+
    private void replace(InvocationContext ctx, Fqn fqn) throws InterruptedException
    {
       NodeSPI n = helper.wrapNodeForReading(ctx, fqn, true);
@@ -298,17 +340,35 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
          {
             boolean isNew = n == null;
             n = helper.wrapNodeForWriting(ctx, fqn, true, false, true, false, true); // won't create any nodes but will acquire locks.
-            if (isNew && n != null) n.setDataLoaded(false);
+            boolean lockedCopy = n != null;
+            // the node is looked up before waiting for its lock, so look again in case another caller loaded it meanwhile
+            if (isNew && n == null) n = helper.wrapNodeForWriting(ctx, fqn, true, false, true, false, false);
+            if (n != null && !mustLoad(fqn, n, key, allKeys || isMove, shouldLoadIfNodeIsNull))
+            {
+               if (trace) log.trace("Node " + fqn + " was loaded while acquiring its lock; not loading it again");
+               if (getStatisticsEnabled()) coalescedLoads.incrementAndGet();
+               mustLoad = false;
+            }
+            else if (isNew && lockedCopy)
+            {
+               n.setDataLoaded(false);
+            }
+            else if (isNew && n != null)
+            {
+               // created by another caller, e.g. as a dummy node when listing children, but not loaded.  As its lock was
+               // already held when it was looked up again it was not copied, so copy it before loading it.
+               n.markForUpdate(dataContainer, configuration.isWriteSkewCheck());
+            }
          }
 
          // This is really convoluted
-         if (n == null || !n.isDeleted())
+         if (mustLoad && (n == null || !n.isDeleted()))
          {
             boolean exists;
             Map nodeData = null;
             if (bypassLoadingData)
             {
-               exists = loader.exists(fqn);
+               exists = existsInLoader(fqn);
             }
             else
             {
@@ -373,7 +433,16 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
          {
             if (useCacheStore)
             {
-               node.removeChildren();
+               if (dataContainer.isFqnIndexed())
+               {
+                  List<InternalNode> children = new ArrayList<InternalNode>(node.getChildrenMap().values());
+                  node.removeChildren();
+                  for (InternalNode child : children) dataContainer.removeFromIndexRecursively(child);
+               }
+               else
+               {
+                  node.removeChildren();
+               }
             }
             node.setChildrenLoaded(true);
          }
@@ -490,10 +559,29 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
       }
    }
 
+   private boolean existsInLoader(Fqn fqn) throws Exception
+   {
+      if (!lookupFilter.mightExist(fqn)) return false;
+      long stamp = lookupFilter.getWriteStamp(fqn);
+      boolean exists = loader.exists(fqn);
+      lookupFilter.recordLoaderLookup(fqn, exists, stamp);
+      return exists;
+   }
+
    private Map loadData(InvocationContext ctx, Fqn fqn) throws Exception
    {
       if (trace) log.trace("Attempting to load data for " + fqn);
-      Map nodeData = loader.get(fqn);
+      Map nodeData;
+      if (lookupFilter.mightExist(fqn))
+      {
+         long stamp = lookupFilter.getWriteStamp(fqn);
+         nodeData = loader.get(fqn);
+         lookupFilter.recordLoaderLookup(fqn, nodeData != null, stamp);
+      }
+      else
+      {
+         nodeData = null;
+      }
       boolean nodeExists = (nodeData != null);
       if (trace) log.trace("Node " + fqn + " exists? " + nodeExists);
       if (nodeExists) recordNodeLoaded(ctx, fqn);
@@ -511,6 +599,12 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
       return nodeData;
    }
 
+   @ManagedAttribute(description = "number of loads avoided because the node was loaded by another caller while waiting for its lock")
+   public long getCacheLoaderCoalescedLoads()
+   {
+      return coalescedLoads.get();
+   }
+
    @ManagedAttribute(description = "number of cache loader node loads")
    public long getCacheLoaderLoads()
    {
@@ -529,6 +623,7 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
    {
       cacheLoads = 0;
       cacheMisses = 0;
+      coalescedLoads.set(0);
    }
 
    @ManagedOperation
@@ -538,6 +633,7 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor
       Map<String, Object> retval = new HashMap<String, Object>();
       retval.put("CacheLoaderLoads", cacheLoads);
       retval.put("CacheLoaderMisses", cacheMisses);
+      retval.put("CacheLoaderCoalescedLoads", coalescedLoads.get());
       return retval;
    }
 
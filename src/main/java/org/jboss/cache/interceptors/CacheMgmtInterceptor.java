@@ -25,6 +25,7 @@ import org.jboss.cache.DataContainer;
 import org.jboss.cache.InvocationContext;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
 import org.jboss.cache.commands.write.EvictCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -32,27 +33,39 @@ import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.interceptors.base.JmxStatsCommandInterceptor;
 import org.jboss.cache.jmx.annotations.ManagedAttribute;
 import org.jboss.cache.jmx.annotations.ManagedOperation;
+import org.jboss.cache.util.concurrent.LatencyHistogram;
+import org.jboss.cache.util.concurrent.StripedCounter;
 
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Captures cache management statistics
+ * <p/>
+ * Counters are striped, so that concurrent invocations neither contend on nor lose updates, and latencies are
+ * measured in nanoseconds and recorded in a {@link LatencyHistogram} per command type, from which percentiles are
+ * exposed.
  *
  * @author Jerry Gauthier
  * @version $Id: CacheMgmtInterceptor.java 7654 2009-02-05 13:00:20Z manik.surtani@jboss.com $
  */
 public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor
 {
-   private long hitTimes = 0;
-   private long missTimes = 0;
-   private long storeTimes = 0;
-   private long hits = 0;
-   private long misses = 0;
-   private long stores = 0;
-   private long evictions = 0;
+   private static final long NANOS_PER_MILLI = 1000000;
+
+   private final StripedCounter hitTimes = new StripedCounter();
+   private final StripedCounter missTimes = new StripedCounter();
+   private final StripedCounter storeTimes = new StripedCounter();
+   private final StripedCounter hits = new StripedCounter();
+   private final StripedCounter misses = new StripedCounter();
+   private final StripedCounter stores = new StripedCounter();
+   private final StripedCounter evictions = new StripedCounter();
+   private final LatencyHistogram readLatencies = new LatencyHistogram();
+   private final LatencyHistogram putLatencies = new LatencyHistogram();
+   private final LatencyHistogram putMapLatencies = new LatencyHistogram();
+   private final LatencyHistogram evictionLatencies = new LatencyHistogram();
    private long start = System.currentTimeMillis();
-   private long reset = start;
+   private volatile long reset = start;
 
    private DataContainer dataContainer;
 
@@ -65,47 +78,85 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor
    @Override
    public Object visitEvictFqnCommand(InvocationContext ctx, EvictCommand command) throws Throwable
    {
+      long t1 = System.nanoTime();
       Object returnValue = invokeNextInterceptor(ctx, command);
-      evictions++;
+      evictionLatencies.record(System.nanoTime() - t1);
+      evictions.increment();
       return returnValue;
    }
 
    @Override
    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable
    {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
-      if (retval == null)
+      long t2 = System.nanoTime();
+      recordRead(retval != null, t2 - t1);
+      return retval;
+   }
+
+   /**
+    * Records an attribute read.  Used by {@link #visitGetKeyValueCommand(org.jboss.cache.InvocationContext, org.jboss.cache.commands.read.GetKeyValueCommand)}
+    * as well as by reads that are served without passing through the interceptor chain.
+    *
+    * @param hit   true if a value was found
+    * @param nanos time taken for the read, in nanoseconds
+    * @since 3.1
+    */
+   public void recordRead(boolean hit, long nanos)
+   {
+      if (hit)
       {
-         missTimes = missTimes + (t2 - t1);
-         misses++;
+         hitTimes.add(nanos);
+         hits.increment();
       }
       else
       {
-         hitTimes = hitTimes + (t2 - t1);
-         hits++;
+         missTimes.add(nanos);
+         misses.increment();
       }
-      return retval;
+      readLatencies.record(nanos);
    }
 
    @Override
    public Object visitPutDataMapCommand(InvocationContext ctx, PutDataMapCommand command) throws Throwable
    {
       Map data = command.getData();
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
 
       if (data != null && data.size() > 0)
       {
-         storeTimes = storeTimes + (t2 - t1);
-         stores = stores + data.size();
+         storeTimes.add(t2 - t1);
+         stores.add(data.size());
+         putMapLatencies.record(t2 - t1);
       }
       return retval;
    }
 
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      long t1 = System.nanoTime();
+      Object retval = invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+
+      int count = 0;
+      for (Map data : command.getData().values())
+      {
+         if (data != null) count += data.size();
+      }
+      if (count > 0)
+      {
+         storeTimes.add(t2 - t1);
+         stores.add(count);
+         putMapLatencies.record(t2 - t1);
+      }
+      return retval;
+   }
+
    @Override
    public Object visitPutForExternalReadCommand(InvocationContext ctx, PutForExternalReadCommand command) throws Throwable
    {
@@ -115,42 +166,44 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor
    @Override
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
-      storeTimes = storeTimes + (t2 - t1);
-      stores++;
+      long t2 = System.nanoTime();
+      storeTimes.add(t2 - t1);
+      stores.increment();
+      putLatencies.record(t2 - t1);
       return retval;
    }
 
    @ManagedAttribute(description = "number of cache attribute hits")
    public long getHits()
    {
-      return hits;
+      return hits.get();
    }
 
    @ManagedAttribute(description = "number of cache attribute misses")
    public long getMisses()
    {
-      return misses;
+      return misses.get();
    }
 
    @ManagedAttribute(description = "number of cache attribute put operations")
    public long getStores()
    {
-      return stores;
+      return stores.get();
    }
 
    @ManagedAttribute(description = "number of cache eviction operations")
    public long getEvictions()
    {
-      return evictions;
+      return evictions.get();
    }
 
    @ManagedAttribute(description = "hit/miss ratio for the cache")
    public double getHitMissRatio()
    {
-      double total = hits + misses;
+      long hits = this.hits.get();
+      double total = hits + misses.get();
       if (total == 0)
       {
          return 0;
@@ -161,32 +214,106 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor
    @ManagedAttribute(description = "read/writes ratio for the cache")
    public double getReadWriteRatio()
    {
+      long stores = this.stores.get();
       if (stores == 0)
       {
          return 0;
       }
-      return (((double) (hits + misses) / (double) stores));
+      return (((double) (hits.get() + misses.get()) / (double) stores));
    }
 
    @ManagedAttribute(description = "average number of milliseconds for a read operation")
    public long getAverageReadTime()
    {
-      long total = hits + misses;
+      long total = hits.get() + misses.get();
       if (total == 0)
       {
          return 0;
       }
-      return (hitTimes + missTimes) / total;
+      return (hitTimes.get() + missTimes.get()) / total / NANOS_PER_MILLI;
    }
 
    @ManagedAttribute(description = "average number of milliseconds for a write operation")
    public long getAverageWriteTime()
    {
+      long stores = this.stores.get();
       if (stores == 0)
       {
          return 0;
       }
-      return (storeTimes) / stores;
+      return storeTimes.get() / stores / NANOS_PER_MILLI;
+   }
+
+   @ManagedAttribute(description = "median number of nanoseconds for a read operation")
+   public long getReadLatencyP50()
+   {
+      return readLatencies.getPercentile(0.5);
+   }
+
+   @ManagedAttribute(description = "99th percentile of nanoseconds for a read operation")
+   public long getReadLatencyP99()
+   {
+      return readLatencies.getPercentile(0.99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of nanoseconds for a read operation")
+   public long getReadLatencyP999()
+   {
+      return readLatencies.getPercentile(0.999);
+   }
+
+   @ManagedAttribute(description = "median number of nanoseconds for a put of a single attribute")
+   public long getPutLatencyP50()
+   {
+      return putLatencies.getPercentile(0.5);
+   }
+
+   @ManagedAttribute(description = "99th percentile of nanoseconds for a put of a single attribute")
+   public long getPutLatencyP99()
+   {
+      return putLatencies.getPercentile(0.99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of nanoseconds for a put of a single attribute")
+   public long getPutLatencyP999()
+   {
+      return putLatencies.getPercentile(0.999);
+   }
+
+   @ManagedAttribute(description = "median number of nanoseconds for a put of a map of attributes")
+   public long getPutMapLatencyP50()
+   {
+      return putMapLatencies.getPercentile(0.5);
+   }
+
+   @ManagedAttribute(description = "99th percentile of nanoseconds for a put of a map of attributes")
+   public long getPutMapLatencyP99()
+   {
+      return putMapLatencies.getPercentile(0.99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of nanoseconds for a put of a map of attributes")
+   public long getPutMapLatencyP999()
+   {
+      return putMapLatencies.getPercentile(0.999);
+   }
+
+   @ManagedAttribute(description = "median number of nanoseconds for an eviction")
+   public long getEvictionLatencyP50()
+   {
+      return evictionLatencies.getPercentile(0.5);
+   }
+
+   @ManagedAttribute(description = "99th percentile of nanoseconds for an eviction")
+   public long getEvictionLatencyP99()
+   {
+      return evictionLatencies.getPercentile(0.99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of nanoseconds for an eviction")
+   public long getEvictionLatencyP999()
+   {
+      return evictionLatencies.getPercentile(0.999);
    }
 
    @ManagedAttribute(description = "number of cache attributes")
@@ -217,10 +344,10 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor
    public Map<String, Object> dumpStatistics()
    {
       Map<String, Object> retval = new HashMap<String, Object>();
-      retval.put("Hits", hits);
-      retval.put("Misses", misses);
-      retval.put("Stores", stores);
-      retval.put("Evictions", evictions);
+      retval.put("Hits", getHits());
+      retval.put("Misses", getMisses());
+      retval.put("Stores", getStores());
+      retval.put("Evictions", getEvictions());
       retval.put("NumberOfAttributes", dataContainer.getNumberOfAttributes());
       retval.put("NumberOfNodes", dataContainer.getNumberOfNodes());
       retval.put("ElapsedTime", getElapsedTime());
@@ -229,20 +356,34 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor
       retval.put("AverageWriteTime", getAverageWriteTime());
       retval.put("HitMissRatio", getHitMissRatio());
       retval.put("ReadWriteRatio", getReadWriteRatio());
+      putPercentiles(retval, "ReadLatency", readLatencies);
+      putPercentiles(retval, "PutLatency", putLatencies);
+      putPercentiles(retval, "PutMapLatency", putMapLatencies);
+      putPercentiles(retval, "EvictionLatency", evictionLatencies);
       return retval;
    }
 
+   private void putPercentiles(Map<String, Object> statistics, String name, LatencyHistogram latencies)
+   {
+      statistics.put(name + "P50", latencies.getPercentile(0.5));
+      statistics.put(name + "P99", latencies.getPercentile(0.99));
+      statistics.put(name + "P999", latencies.getPercentile(0.999));
+   }
+
    @ManagedOperation
    public void resetStatistics()
    {
-      hits = 0;
-      misses = 0;
-      stores = 0;
-      evictions = 0;
-      hitTimes = 0;
-      missTimes = 0;
-      storeTimes = 0;
+      hits.reset();
+      misses.reset();
+      stores.reset();
+      evictions.reset();
+      hitTimes.reset();
+      missTimes.reset();
+      storeTimes.reset();
+      readLatencies.reset();
+      putLatencies.reset();
+      putMapLatencies.reset();
+      evictionLatencies.reset();
       reset = System.currentTimeMillis();
    }
 }
-
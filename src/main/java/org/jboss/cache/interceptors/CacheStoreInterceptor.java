@@ -35,6 +35,7 @@ import org.jboss.cache.commands.tx.PrepareCommand;
 import org.jboss.cache.commands.tx.RollbackCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -47,6 +48,7 @@ import org.jboss.cache.interceptors.base.SkipCheckChainedInterceptor;
 import org.jboss.cache.jmx.annotations.ManagedAttribute;
 import org.jboss.cache.jmx.annotations.ManagedOperation;
 import org.jboss.cache.loader.CacheLoader;
+import org.jboss.cache.loader.CacheLoaderLookupFilter;
 import org.jboss.cache.loader.CacheLoaderManager;
 import org.jboss.cache.transaction.GlobalTransaction;
 import org.jboss.cache.transaction.TransactionContext;
@@ -59,6 +61,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Writes modifications back to the store on the way out: stores modifications back
@@ -75,6 +78,11 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
    private long cacheStores = 0;
    CacheLoader loader;
    private CacheLoaderManager loaderManager;
+   private CacheLoaderLookupFilter lookupFilter;
+   /**
+    * Nodes recorded with the lookup filter when their transaction was prepared, to be recorded again once it commits.
+    */
+   private final Map<GlobalTransaction, List<Fqn>> preparedFqns = new ConcurrentHashMap<GlobalTransaction, List<Fqn>>();
    private boolean statsEnabled;
 
    public CacheStoreInterceptor()
@@ -84,10 +92,12 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
    }
 
    @Inject
-   protected void init(CacheLoaderManager loaderManager, TransactionManager txManager, CacheLoaderConfig clConfig)
+   protected void init(CacheLoaderManager loaderManager, TransactionManager txManager, CacheLoaderConfig clConfig,
+                       CacheLoaderLookupFilter lookupFilter)
    {
       // never inject a CacheLoader at this stage - only a CacheLoaderManager, since the CacheLoaderManager only creates a CacheLoader instance when it @Starts.
       this.loaderManager = loaderManager;
+      this.lookupFilter = lookupFilter;
       this.loaderConfig = clConfig;
       txMgr = txManager;
    }
@@ -133,6 +143,12 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
             }
             finally
             {
+               // a lookup between prepare and commit may have found the nodes absent from the loader
+               List<Fqn> persisted = preparedFqns.remove(gtx);
+               if (persisted != null)
+               {
+                  for (Fqn fqn : persisted) lookupFilter.recordPersisted(fqn);
+               }
                if (getStatisticsEnabled())
                {
                   Integer puts = (Integer) txStores.get(gtx);
@@ -171,6 +187,7 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
             {
                log.info("Problems rolling back transaction " + gtx + " on cache loader.  Perhaps the prepare phase hasn't been initiated on this loader?", e);
             }
+            preparedFqns.remove(gtx);
             if (getStatisticsEnabled()) txStores.remove(gtx);
          }
          else
@@ -267,11 +284,36 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
          loader.removeData(command.getFqn());
       }
       storeStateForPutDataMap(command.getFqn(), ctx);
+      lookupFilter.recordPersisted(command.getFqn());
       if (getStatisticsEnabled()) cacheStores++;
 
       return returnValue;
    }
 
+   /**
+    * Outside of a transaction, the nodes are written to the cache loader with a single call to
+    * {@link CacheLoader#put(java.util.List)}.
+    */
+   @Override
+   protected Object handlePutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      Object returnValue = invokeNextInterceptor(ctx, command);
+      if (inTransaction())
+      {
+         return returnValue;
+      }
+      List<Modification> modifications = new ArrayList<Modification>(command.getFqns().size());
+      for (Fqn fqn : command.getFqns())
+      {
+         modifications.add(new Modification(Modification.ModificationType.PUT_DATA, fqn, ctx.lookUpNode(fqn).getDelegationTarget().getData()));
+      }
+      loader.put(modifications);
+      for (Fqn fqn : command.getFqns()) lookupFilter.recordPersisted(fqn);
+      if (getStatisticsEnabled()) cacheStores += modifications.size();
+
+      return returnValue;
+   }
+
    protected void storeStateForPutDataMap(Fqn f, InvocationContext ctx) throws Exception
    {
       loader.put(f, ctx.lookUpNode(f).getDelegationTarget().getData());
@@ -286,6 +328,7 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
          return returnValue;
       }
       returnValue = loader.put(command.getFqn(), command.getKey(), command.getValue());
+      lookupFilter.recordPersisted(command.getFqn());
       if (getStatisticsEnabled()) cacheStores++;
 
       return returnValue;
@@ -305,6 +348,7 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
    private void recursiveMove(Fqn fqn, Fqn newFqn) throws Exception
    {
       loader.put(newFqn, loader.get(fqn));
+      lookupFilter.recordPersisted(newFqn);
       //recurse
       Set childrenNames = loader.getChildrenNames(fqn);
       if (childrenNames != null)
@@ -341,6 +385,11 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
       if (modsBuilder.modifications.size() > 0)
       {
          loader.prepare(gtx, modsBuilder.modifications, onePhase);
+         if (lookupFilter.isEnabled())
+         {
+            List<Fqn> persisted = recordPersisted(modsBuilder.modifications, onePhase);
+            if (!onePhase) preparedFqns.put(gtx, persisted);
+         }
 
          if (getStatisticsEnabled() && modsBuilder.putCount > 0 && !onePhase)
          {
@@ -350,6 +399,49 @@ public class CacheStoreInterceptor extends SkipCheckChainedInterceptor
       return modsBuilder;
    }
 
+   /**
+    * Records the nodes written by a transaction with the {@link CacheLoaderLookupFilter} as soon as they are prepared,
+    * since recording a node that ends up not being written merely costs a cache loader lookup.
+    *
+    * @return the nodes recorded
+    */
+   private List<Fqn> recordPersisted(List<Modification> modifications, boolean onePhase) throws Exception
+   {
+      List<Fqn> persisted = new ArrayList<Fqn>();
+      for (Modification m : modifications)
+      {
+         switch (m.getType())
+         {
+            case PUT_DATA:
+            case PUT_DATA_ERASE:
+            case PUT_KEY_VALUE:
+               lookupFilter.recordPersisted(m.getFqn());
+               persisted.add(m.getFqn());
+               break;
+            case MOVE:
+               Fqn to = Fqn.fromRelativeElements(m.getFqn2(), m.getFqn().getLastElement());
+               // unless already moved, the children to be moved are still under the original node
+               recordMoved(onePhase ? to : m.getFqn(), to, persisted);
+               break;
+         }
+      }
+      return persisted;
+   }
+
+   private void recordMoved(Fqn source, Fqn to, List<Fqn> persisted) throws Exception
+   {
+      lookupFilter.recordPersisted(to);
+      persisted.add(to);
+      Set childrenNames = loader.getChildrenNames(source);
+      if (childrenNames != null)
+      {
+         for (Object child : childrenNames)
+         {
+            recordMoved(Fqn.fromRelativeElements(source, child), Fqn.fromRelativeElements(to, child), persisted);
+         }
+      }
+   }
+
    public static class StoreModificationsBuilder extends AbstractVisitor
    {
 
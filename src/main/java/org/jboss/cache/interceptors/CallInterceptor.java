@@ -31,6 +31,7 @@ import org.jboss.cache.commands.tx.PrepareCommand;
 import org.jboss.cache.commands.tx.RollbackCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -125,6 +126,23 @@ public class CallInterceptor extends CommandInterceptor
       return handleAlterCacheMethod(ctx, command);
    }
 
+   /**
+    * Adds each node's {@link PutDataMapCommand} to the modification list, rather than the bulk command itself.
+    */
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      Object result = invokeCommand(ctx, command);
+      if (notOptimisticLocking && ctx.isValidTransaction() && ctx.getGlobalTransaction() != null)
+      {
+         for (PutDataMapCommand putDataMapCommand : command.getPutDataMapCommands())
+         {
+            ctx.getTransactionContext().addModification(putDataMapCommand);
+         }
+      }
+      return result;
+   }
+
    @Override
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
@@ -26,11 +26,13 @@ import org.jboss.cache.Fqn;
 import org.jboss.cache.InvocationContext;
 import org.jboss.cache.Region;
 import org.jboss.cache.RegionManager;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
 import org.jboss.cache.commands.read.GetNodeCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -41,6 +43,8 @@ import static org.jboss.cache.eviction.EvictionEvent.Type.*;
 import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.interceptors.base.CommandInterceptor;
 
+import java.util.Map;
+
 /**
  * Eviction Interceptor.
  * <p/>
@@ -139,6 +143,21 @@ public class EvictionInterceptor extends CommandInterceptor
       return retVal;
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      Object retVal = invokeNextInterceptor(ctx, command);
+      for (Map.Entry<Fqn, Map> e : command.getData().entrySet())
+      {
+         Region r;
+         if (e.getValue() != null && (r = getRegion(e.getKey())) != null)
+         {
+            registerEvictionEventToRegionManager(e.getKey(), ADD_NODE_EVENT, e.getValue().size(), r);
+         }
+      }
+      return retVal;
+   }
+
    @Override
    public Object visitRemoveKeyCommand(InvocationContext ctx, RemoveKeyCommand command) throws Throwable
    {
@@ -197,6 +216,15 @@ public class EvictionInterceptor extends CommandInterceptor
       return handleGetNodeOrDataCommands(retVal, command.getFqn());
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      Object retVal = invokeNextInterceptor(ctx, command);
+      // only nodes that exist are in the result
+      for (Object fqn : ((Map) retVal).keySet()) registerNodeVisit((Fqn) fqn);
+      return retVal;
+   }
+
    @Override
    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable
    {
@@ -217,6 +245,22 @@ public class EvictionInterceptor extends CommandInterceptor
       return retVal;
    }
 
+   /**
+    * Registers a visit to a node with its eviction region, for attribute reads that are served without passing through
+    * the interceptor chain.
+    *
+    * @param fqn Fqn of the node that was read
+    * @since 3.1
+    */
+   public void registerNodeVisit(Fqn fqn)
+   {
+      Region r;
+      if (fqn != null && (r = getRegion(fqn)) != null)
+      {
+         registerEvictionEventToRegionManager(fqn, VISIT_NODE_EVENT, 0, r);
+      }
+   }
+
    @Override
    public Object visitRemoveNodeCommand(InvocationContext ctx, RemoveNodeCommand command) throws Throwable
    {
@@ -31,6 +31,7 @@ import org.jboss.cache.factories.annotations.Start;
 import org.jboss.cache.interceptors.base.CommandInterceptor;
 import org.jboss.cache.invocation.InvocationContextContainer;
 import org.jboss.cache.jmx.annotations.MBean;
+import org.jboss.cache.jmx.annotations.ManagedAttribute;
 import org.jboss.cache.jmx.annotations.ManagedOperation;
 import org.jboss.cache.util.CachePrinter;
 
@@ -38,6 +39,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Knows how to build and manage an chain of interceptors. Also in charge with invoking methods on the chain.
@@ -59,6 +61,17 @@ public class InterceptorChain
     * used for invoking commands on the chain
     */
    private InvocationContextContainer invocationContextContainer;
+
+   /**
+    * incremented whenever the chain is modified
+    */
+   private volatile int modificationCount;
+
+   /**
+    * profiles invocations, if profiling is enabled
+    */
+   private volatile InterceptorProfiler profiler;
+   private int profilingSampleInterval = 100;
    private static final Log log = LogFactory.getLog(InterceptorChain.class);
 
    /**
@@ -88,6 +101,7 @@ public class InterceptorChain
     */
    public synchronized void addInterceptor(CommandInterceptor interceptor, int position)
    {
+      modificationCount++;
       if (position == 0)
       {
          interceptor.setNext(firstInChain);
@@ -117,6 +131,7 @@ public class InterceptorChain
     */
    public synchronized void removeInterceptor(int position)
    {
+      modificationCount++;
       if (firstInChain == null) return;
       if (position == 0)
       {
@@ -157,12 +172,26 @@ public class InterceptorChain
    @ManagedOperation(description = "Retrieves a list of the interceptors in the chain")
    public String getInterceptorDetails()
    {
+      InterceptorProfiler profiler = this.profiler;
       StringBuilder sb = new StringBuilder("Interceptor chain: \n");
+      if (profiler != null)
+      {
+         sb.append("(profiled ").append(profiler.getSampledInvocations()).append(" invocations, one in every ");
+         sb.append(profiler.getSampleInterval()).append(")\n");
+      }
       int count = 0;
       for (CommandInterceptor i : asList())
       {
          count++;
          sb.append("   ").append(count).append(". ").append(i).append("\n");
+         if (profiler != null && profiler.getStats(i) != null)
+         {
+            sb.append("      ").append(profiler.getStats(i)).append("\n");
+            for (Map.Entry<Class<?>, InterceptorProfiler.Stats> e : profiler.getStatsByCommand(i))
+            {
+               sb.append("         ").append(e.getKey().getSimpleName()).append(": ").append(e.getValue()).append("\n");
+            }
+         }
       }
       return sb.toString();
    }
@@ -173,6 +202,91 @@ public class InterceptorChain
       return CachePrinter.formatHtml(getInterceptorDetails());
    }
 
+   /**
+    * @return true if a sample of invocations is being profiled
+    * @since 3.1
+    */
+   @ManagedAttribute(description = "whether a sample of invocations is profiled, recording the time spent in each interceptor")
+   public boolean isProfilingEnabled()
+   {
+      return profiler != null;
+   }
+
+   /**
+    * Starts or stops profiling the interceptors.  Profiling records, for a sample of the invocations, the number of
+    * calls, the time spent in and after each interceptor and the time and memory allocated by the interceptor alone,
+    * per interceptor and command type.  Results are included in {@link #getInterceptorDetails()}.  Enabling profiling
+    * discards earlier results.
+    *
+    * @param enabled whether to profile
+    * @since 3.1
+    */
+   @ManagedAttribute(description = "whether a sample of invocations is profiled, recording the time spent in each interceptor")
+   public synchronized void setProfilingEnabled(boolean enabled)
+   {
+      if (enabled == (profiler != null)) return;
+      InterceptorProfiler p = enabled ? new InterceptorProfiler(profilingSampleInterval) : null;
+      for (CommandInterceptor i : asList()) i.setProfiler(p);
+      if (p != null) p.chainModificationCount = modificationCount;
+      profiler = p;
+   }
+
+   /**
+    * @return one in how many invocations of the chain is profiled
+    * @since 3.1
+    */
+   @ManagedAttribute(description = "one in how many invocations is profiled")
+   public int getProfilingSampleInterval()
+   {
+      return profilingSampleInterval;
+   }
+
+   /**
+    * @param profilingSampleInterval one in how many invocations of the chain is profiled, taking effect the next time
+    *                                profiling is enabled
+    * @since 3.1
+    */
+   @ManagedAttribute(description = "one in how many invocations is profiled")
+   public void setProfilingSampleInterval(int profilingSampleInterval)
+   {
+      this.profilingSampleInterval = profilingSampleInterval;
+   }
+
+   /**
+    * @return the profiler, or null if profiling is not enabled
+    * @since 3.1
+    */
+   public InterceptorProfiler getProfiler()
+   {
+      return profiler;
+   }
+
+   @ManagedOperation(description = "Discards the results of profiling so far")
+   public void resetProfiling()
+   {
+      InterceptorProfiler p = profiler;
+      if (p != null) p.reset();
+   }
+
+   /**
+    * Walks a command through the chain, letting the profiler sample it if profiling is enabled.
+    */
+   private Object invokeFirst(InvocationContext ctx, VisitableCommand command) throws Throwable
+   {
+      InterceptorProfiler p = profiler;
+      if (p == null) return command.acceptVisitor(ctx, firstInChain);
+      if (p.chainModificationCount != modificationCount)
+      {
+         // interceptors were added since profiling started
+         synchronized (this)
+         {
+            for (CommandInterceptor i : asList()) i.setProfiler(p);
+            p.chainModificationCount = modificationCount;
+         }
+      }
+      return p.invokeChain(ctx, command, firstInChain);
+   }
+
    /**
     * Returns an unmofiable list with all the interceptors in sequence.
     * If first in chain is null an empty list is returned.
@@ -198,6 +312,7 @@ public class InterceptorChain
     */
    public synchronized void removeInterceptor(Class<? extends CommandInterceptor> clazz)
    {
+      modificationCount++;
       if (firstInChain.getClass() == clazz)
       {
          firstInChain = firstInChain.getNext();
@@ -222,6 +337,7 @@ public class InterceptorChain
     */
    public synchronized boolean addAfterInterceptor(CommandInterceptor toAdd, Class<? extends CommandInterceptor> afterInterceptor)
    {
+      modificationCount++;
       CommandInterceptor it = firstInChain;
       while (it != null)
       {
@@ -243,6 +359,7 @@ public class InterceptorChain
     */
    public synchronized boolean addBeforeInterceptor(CommandInterceptor toAdd, Class<? extends CommandInterceptor> beforeInterceptor)
    {
+      modificationCount++;
       if (firstInChain.getClass().equals(beforeInterceptor))
       {
          toAdd.setNext(firstInChain);
@@ -268,6 +385,7 @@ public class InterceptorChain
     */
    public void appendIntereceptor(CommandInterceptor ci)
    {
+      modificationCount++;
       CommandInterceptor it = firstInChain;
       while (it.hasNext()) it = it.getNext();
       it.setNext(ci);
@@ -284,7 +402,7 @@ public class InterceptorChain
       ctx.setCommand(command);
       try
       {
-         return command.acceptVisitor(ctx, firstInChain);
+         return invokeFirst(ctx, command);
       }
       catch (InterruptedException ie)
       {
@@ -313,7 +431,7 @@ public class InterceptorChain
    {
       InvocationContext ctxt = invocationContextContainer.get();
       ctxt.setOriginLocal(false);
-      return cacheCommand.acceptVisitor(ctxt, firstInChain);
+      return invokeFirst(ctxt, cacheCommand);
    }
 
    /**
@@ -323,7 +441,7 @@ public class InterceptorChain
    public Object invoke(VisitableCommand cacheCommand) throws Throwable
    {
       InvocationContext ctxt = invocationContextContainer.get();
-      return cacheCommand.acceptVisitor(ctxt, firstInChain);
+      return invokeFirst(ctxt, cacheCommand);
    }
 
    /**
@@ -341,9 +459,22 @@ public class InterceptorChain
     */
    public void setFirstInChain(CommandInterceptor interceptor)
    {
+      modificationCount++;
       this.firstInChain = interceptor;
    }
 
+   /**
+    * Returns a counter that changes whenever interceptors are added to or removed from this chain, allowing components
+    * to cache information derived from the chain's composition.
+    *
+    * @return the current modification count
+    * @since 3.1
+    */
+   public int getModificationCount()
+   {
+      return modificationCount;
+   }
+
    public InvocationContext getInvocationContext()
    {
       return invocationContextContainer.get();
@@ -0,0 +1,351 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.interceptors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.InvocationContext;
+import org.jboss.cache.commands.VisitableCommand;
+import org.jboss.cache.interceptors.base.CommandInterceptor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Profiles a sample of the invocations passing through an {@link InterceptorChain}, recording for each interceptor and
+ * command type the number of calls, the time spent in the interceptor and everything after it (inclusive), the time
+ * spent in the interceptor alone (exclusive), and, where the JVM can measure the memory allocated by a thread, the
+ * bytes allocated by the interceptor alone.
+ * <p/>
+ * Only one in every {@link #getSampleInterval()} invocations of the chain, counted per thread, is timed.  Others pay
+ * for a thread local lookup per interceptor.  Allocations are measured through
+ * <tt>com.sun.management.ThreadMXBean</tt>, and corrected for what the measurement itself allocates, so are approximate.
+ * Inclusive times also include the cost of profiling the interceptors called, which exclusive times leave out.
+ *
+ * @see InterceptorChain#setProfilingEnabled(boolean)
+ * @since 3.1
+ */
+public class InterceptorProfiler
+{
+   private static final Log log = LogFactory.getLog(InterceptorProfiler.class);
+
+   private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+   private static final Method GET_THREAD_ALLOCATED_BYTES;
+
+   static
+   {
+      Method m = null;
+      try
+      {
+         Class<?> c = Class.forName("com.sun.management.ThreadMXBean");
+         if (c.isInstance(threads) && (Boolean) c.getMethod("isThreadAllocatedMemorySupported").invoke(threads))
+         {
+            c.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threads, true);
+            m = c.getMethod("getThreadAllocatedBytes", long.class);
+         }
+      }
+      catch (Exception e)
+      {
+         if (log.isDebugEnabled()) log.debug("Unable to measure allocations per thread", e);
+      }
+      GET_THREAD_ALLOCATED_BYTES = m;
+   }
+
+   private final int sampleInterval;
+   private final long measurementAllocation;
+   private final ThreadLocal<Sampling> sampling = new ThreadLocal<Sampling>()
+   {
+      @Override
+      protected Sampling initialValue()
+      {
+         return new Sampling();
+      }
+   };
+   private final ConcurrentMap<CommandInterceptor, ConcurrentMap<Class<?>, Stats>> stats = new ConcurrentHashMap<CommandInterceptor, ConcurrentMap<Class<?>, Stats>>();
+   private final AtomicLong sampled = new AtomicLong();
+   /**
+    * Modification count of the chain when the profiler was last handed to its interceptors
+    */
+   volatile int chainModificationCount = -1;
+
+   /**
+    * @param sampleInterval one in this many invocations is profiled; 1 profiles every invocation
+    */
+   public InterceptorProfiler(int sampleInterval)
+   {
+      this.sampleInterval = Math.max(1, sampleInterval);
+      this.measurementAllocation = calibrate();
+   }
+
+   public int getSampleInterval()
+   {
+      return sampleInterval;
+   }
+
+   /**
+    * @return true if allocations are being measured
+    */
+   public boolean isMeasuringAllocations()
+   {
+      return GET_THREAD_ALLOCATED_BYTES != null;
+   }
+
+   /**
+    * Invokes a command on the first interceptor of a chain, deciding whether the invocation is to be profiled.
+    */
+   public Object invokeChain(InvocationContext ctx, VisitableCommand command, CommandInterceptor first) throws Throwable
+   {
+      Sampling s = sampling.get();
+      // a cache invoked from within an interceptor is profiled as part of the outer invocation
+      if (s.active) return invoke(ctx, command, first);
+      if (++s.invocations % sampleInterval != 0) return command.acceptVisitor(ctx, first);
+
+      sampled.incrementAndGet();
+      s.active = true;
+      s.childNanos = 0;
+      s.childBytes = 0;
+      try
+      {
+         return invoke(ctx, command, first);
+      }
+      finally
+      {
+         s.active = false;
+      }
+   }
+
+   /**
+    * Invokes a command on an interceptor, profiling the call if the invocation is being sampled.
+    */
+   public Object invoke(InvocationContext ctx, VisitableCommand command, CommandInterceptor interceptor) throws Throwable
+   {
+      Sampling s;
+      if (interceptor == null || !(s = sampling.get()).active) return command.acceptVisitor(ctx, interceptor);
+
+      long parentNanos = s.childNanos;
+      long parentBytes = s.childBytes;
+      s.childNanos = 0;
+      s.childBytes = 0;
+      // the outer times include measuring allocations, which the caller must not be charged for
+      long outerStart = System.nanoTime();
+      long startBytes = allocatedBytes();
+      long start = System.nanoTime();
+      try
+      {
+         return command.acceptVisitor(ctx, interceptor);
+      }
+      finally
+      {
+         long inclusive = System.nanoTime() - start;
+         long bytes = allocatedBytes() - startBytes;
+         long outer = System.nanoTime() - outerStart;
+         statsFor(interceptor, command.getClass()).record(inclusive, inclusive - s.childNanos, Math.max(0, bytes - measurementAllocation - s.childBytes));
+         s.childNanos = parentNanos + outer;
+         s.childBytes = parentBytes + bytes + measurementAllocation;
+      }
+   }
+
+   private Stats statsFor(CommandInterceptor interceptor, Class<?> commandType)
+   {
+      ConcurrentMap<Class<?>, Stats> byCommand = stats.get(interceptor);
+      if (byCommand == null)
+      {
+         byCommand = new ConcurrentHashMap<Class<?>, Stats>();
+         ConcurrentMap<Class<?>, Stats> existing = stats.putIfAbsent(interceptor, byCommand);
+         if (existing != null) byCommand = existing;
+      }
+      Stats s = byCommand.get(commandType);
+      if (s == null)
+      {
+         s = new Stats();
+         Stats existing = byCommand.putIfAbsent(commandType, s);
+         if (existing != null) s = existing;
+      }
+      return s;
+   }
+
+   private static long allocatedBytes()
+   {
+      if (GET_THREAD_ALLOCATED_BYTES == null) return 0;
+      try
+      {
+         return (Long) GET_THREAD_ALLOCATED_BYTES.invoke(threads, Thread.currentThread().getId());
+      }
+      catch (Exception e)
+      {
+         return 0;
+      }
+   }
+
+   /**
+    * @return the smallest number of bytes a measurement of allocated bytes was seen to allocate
+    */
+   private static long calibrate()
+   {
+      if (GET_THREAD_ALLOCATED_BYTES == null) return 0;
+      long min = Long.MAX_VALUE;
+      for (int i = 0; i < 1000; i++)
+      {
+         long start = allocatedBytes();
+         min = Math.min(min, allocatedBytes() - start);
+      }
+      return min;
+   }
+
+   /**
+    * @return the number of invocations profiled
+    */
+   public long getSampledInvocations()
+   {
+      return sampled.get();
+   }
+
+   public void reset()
+   {
+      stats.clear();
+      sampled.set(0);
+   }
+
+   /**
+    * Totals for an interceptor over all command types.
+    *
+    * @param interceptor interceptor
+    * @return the totals, or null if the interceptor has not been profiled
+    */
+   public Stats getStats(CommandInterceptor interceptor)
+   {
+      Map<Class<?>, Stats> byCommand = stats.get(interceptor);
+      if (byCommand == null) return null;
+      Stats total = new Stats();
+      for (Stats s : byCommand.values()) total.add(s);
+      return total;
+   }
+
+   /**
+    * @param interceptor interceptor
+    * @return statistics for each command type the interceptor has been profiled for, slowest first
+    */
+   public List<Map.Entry<Class<?>, Stats>> getStatsByCommand(CommandInterceptor interceptor)
+   {
+      Map<Class<?>, Stats> byCommand = stats.get(interceptor);
+      if (byCommand == null) return Collections.emptyList();
+      List<Map.Entry<Class<?>, Stats>> entries = new ArrayList<Map.Entry<Class<?>, Stats>>(byCommand.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<Class<?>, Stats>>()
+      {
+         public int compare(Map.Entry<Class<?>, Stats> o1, Map.Entry<Class<?>, Stats> o2)
+         {
+            long t1 = o1.getValue().getExclusiveNanos(), t2 = o2.getValue().getExclusiveNanos();
+            return t1 < t2 ? 1 : (t1 == t2 ? 0 : -1);
+         }
+      });
+      return entries;
+   }
+
+   /**
+    * Per thread sampling state.
+    */
+   private static class Sampling
+   {
+      long invocations;
+      boolean active;
+      /**
+       * Time spent in interceptors called by the interceptor currently being profiled
+       */
+      long childNanos;
+      /**
+       * Bytes allocated by interceptors called by the interceptor currently being profiled, including what measuring them allocated
+       */
+      long childBytes;
+   }
+
+   /**
+    * Profiling statistics of an interceptor, for one or all command types.
+    */
+   public static class Stats
+   {
+      private final AtomicLong calls = new AtomicLong();
+      private final AtomicLong inclusiveNanos = new AtomicLong();
+      private final AtomicLong exclusiveNanos = new AtomicLong();
+      private final AtomicLong allocatedBytes = new AtomicLong();
+
+      void record(long inclusive, long exclusive, long bytes)
+      {
+         calls.incrementAndGet();
+         inclusiveNanos.addAndGet(inclusive);
+         exclusiveNanos.addAndGet(exclusive);
+         allocatedBytes.addAndGet(bytes);
+      }
+
+      void add(Stats other)
+      {
+         calls.addAndGet(other.getCalls());
+         inclusiveNanos.addAndGet(other.getInclusiveNanos());
+         exclusiveNanos.addAndGet(other.getExclusiveNanos());
+         allocatedBytes.addAndGet(other.getAllocatedBytes());
+      }
+
+      /**
+       * @return the number of profiled calls
+       */
+      public long getCalls()
+      {
+         return calls.get();
+      }
+
+      public long getInclusiveNanos()
+      {
+         return inclusiveNanos.get();
+      }
+
+      public long getExclusiveNanos()
+      {
+         return exclusiveNanos.get();
+      }
+
+      public long getAllocatedBytes()
+      {
+         return allocatedBytes.get();
+      }
+
+      @Override
+      public String toString()
+      {
+         long calls = getCalls();
+         if (calls == 0) return "calls=0";
+         StringBuilder sb = new StringBuilder();
+         sb.append("calls=").append(calls);
+         sb.append(", inclusive=").append(getInclusiveNanos() / calls).append("ns");
+         sb.append(", exclusive=").append(getExclusiveNanos() / calls).append("ns");
+         if (GET_THREAD_ALLOCATED_BYTES != null) sb.append(", allocated=").append(getAllocatedBytes() / calls).append("B");
+         return sb.toString();
+      }
+   }
+}
@@ -35,6 +35,7 @@ import org.jboss.cache.commands.tx.RollbackCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -105,6 +106,26 @@ public class InvalidationInterceptor extends BaseRpcInterceptor
       return handleWriteMethod(ctx, command.getFqn(), null, command);
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      Object retval = invokeNextInterceptor(ctx, command);
+      Transaction tx = ctx.getTransaction();
+      if (tx == null || !TransactionTable.isValid(tx))
+      {
+         boolean sync = isSynchronous(ctx.getOptionOverrides());
+         for (Fqn fqn : command.getFqns()) invalidateAcrossCluster(fqn, null, sync, ctx);
+      }
+      else if (isLocalModeForced(ctx))
+      {
+         for (WriteCommand putDataMapCommand : command.getPutDataMapCommands())
+         {
+            ctx.getTransactionContext().addLocalModification(putDataMapCommand);
+         }
+      }
+      return retval;
+   }
+
    @Override
    public Object visitPutForExternalReadCommand(InvocationContext ctx, PutForExternalReadCommand command) throws Throwable
    {
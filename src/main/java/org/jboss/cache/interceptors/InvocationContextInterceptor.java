@@ -30,6 +30,7 @@ import org.jboss.cache.commands.tx.OptimisticPrepareCommand;
 import org.jboss.cache.commands.tx.PrepareCommand;
 import org.jboss.cache.commands.tx.RollbackCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -64,6 +65,12 @@ public class InvocationContextInterceptor extends BaseTransactionalContextInterc
       return handleAll(ctx, command, command.getGlobalTransaction(), false);
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      return handleAll(ctx, command, command.getGlobalTransaction(), false);
+   }
+
    @Override
    public Object visitExistsNodeCommand(InvocationContext ctx, ExistsCommand command) throws Throwable
    {
@@ -55,6 +55,7 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -345,23 +346,52 @@ public class LegacyDataGravitatorInterceptor extends BaseRpcInterceptor
       replicateCall(null, cleanupCommand, false, false, false, true, -1);
    }
 
-   @SuppressWarnings("deprecation")
    private GravitateResult gravitateData(Fqn fqn) throws Exception
    {
       if (trace) log.trace("Requesting data gravitation for Fqn " + fqn);
 
-      List<Address> mbrs = rpcManager.getMembers();
       Boolean searchSubtrees = buddyManager.isDataGravitationSearchBackupTrees();
       GravitateDataCommand command = commandsFactory.buildGravitateDataCommand(fqn, searchSubtrees);
+      List<Address> mbrs = rpcManager.getMembers();
+
+      if (buddyManager.isDataGravitationBuddiesFirst())
+      {
+         List<Address> buddies = buddyManager.getBuddyGroupMembers();
+         buddies.retainAll(mbrs);
+         if (!buddies.isEmpty())
+         {
+            if (trace) log.trace("Asking buddy group members " + buddies + " first");
+            GravitateResult result = gravitateData(command, new Vector<Address>(buddies), buddies.size());
+            if (result.isDataFound()) return result;
+
+            Vector<Address> others = new Vector<Address>(mbrs);
+            others.remove(rpcManager.getLocalAddress());
+            others.removeAll(buddies);
+            return others.isEmpty() ? result : gravitateData(command, others, others.size());
+         }
+      }
+
+      return gravitateData(command, null, mbrs.size() - 1);
+   }
+
+   /**
+    * Sends a gravitation request, returning as soon as one of the recipients has found the data.
+    *
+    * @param recipients recipients, or null to send to all members
+    */
+   @SuppressWarnings("deprecation")
+   private GravitateResult gravitateData(GravitateDataCommand command, Vector<Address> recipients, int expectedResponses) throws Exception
+   {
       // doing a GET_ALL is crappy but necessary since JGroups' GET_FIRST could return null results from nodes that do
-      // not have either the primary OR backup, and stop polling other valid nodes.
-      List resps = rpcManager.callRemoteMethods(null, command, GroupRequest.GET_ALL, buddyManager.getBuddyCommunicationTimeout(), new ResponseValidityFilter(rpcManager.getMembers().size(), rpcManager.getLocalAddress()), false);
+      // not have either the primary OR backup, and stop polling other valid nodes.  The filter stops waiting once
+      // any node has found the data.
+      List resps = rpcManager.callRemoteMethods(recipients, command, GroupRequest.GET_ALL, buddyManager.getBuddyCommunicationTimeout(), new ResponseValidityFilter(expectedResponses), false);
 
       if (trace) log.trace("got responses " + resps);
 
       if (resps == null)
       {
-         if (mbrs.size() > 1) log.error("No replies to call " + command);
+         if (expectedResponses > 0) log.error("No replies to call " + command);
          return GravitateResult.noDataFound();
       }
 
@@ -457,29 +487,42 @@ public class LegacyDataGravitatorInterceptor extends BaseRpcInterceptor
       }
    }
 
+   /**
+    * Stops waiting for responses as soon as one contains gravitated data, or all expected responses have arrived.
+    */
    public static class ResponseValidityFilter implements RspFilter
    {
       private boolean validResponseFound;
-      int memberCount;
+      private int pendingResponses;
 
       public ResponseValidityFilter(int memberCount, Address localAddress)
       {
-         this.memberCount = memberCount;
+         this(memberCount - 1);
+      }
+
+      /**
+       * @param expectedResponses number of recipients of the request
+       * @since 3.1
+       */
+      public ResponseValidityFilter(int expectedResponses)
+      {
+         this.pendingResponses = expectedResponses;
       }
 
-      public boolean isAcceptable(Object object, Address address)
+      public synchronized boolean isAcceptable(Object object, Address address)
       {
-         if (object instanceof GravitateResult)
+         pendingResponses--;
+         if (object instanceof GravitateResult && ((GravitateResult) object).isDataFound())
          {
-            memberCount--;
+            validResponseFound = true;
          }
          // always return true to make sure a response is logged by the JGroups RpcDispatcher.
          return true;
       }
 
-      public boolean needMoreResponses()
+      public synchronized boolean needMoreResponses()
       {
-         return memberCount > 1;
+         return !validResponseFound && pendingResponses > 0;
       }
    }
 }
@@ -28,6 +28,7 @@ import org.jboss.cache.InvocationContext;
 import org.jboss.cache.NodeSPI;
 import org.jboss.cache.commands.VisitableCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -41,6 +42,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -95,6 +97,17 @@ public class MVCCLockingInterceptor extends PrePostProcessingCommandInterceptor
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object handlePutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      // the Fqns are sorted, so concurrent bulk writes always lock their nodes in the same order.
+      for (Fqn fqn : command.getFqns())
+      {
+         helper.wrapNodeForWriting(ctx, fqn, true, true, false, false, false);
+      }
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object handlePutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
@@ -218,6 +231,13 @@ public class MVCCLockingInterceptor extends PrePostProcessingCommandInterceptor
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object handleGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      helper.wrapNodesForReading(ctx, command.getFqns());
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object handleExistsNodeCommand(InvocationContext ctx, ExistsCommand command) throws Throwable
    {
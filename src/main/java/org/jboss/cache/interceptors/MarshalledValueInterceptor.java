@@ -21,21 +21,26 @@
  */
 package org.jboss.cache.interceptors;
 
+import org.jboss.cache.Fqn;
 import org.jboss.cache.InvocationContext;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
 import org.jboss.cache.commands.read.GetKeysCommand;
 import org.jboss.cache.commands.read.GetNodeCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
 import org.jboss.cache.commands.write.RemoveKeyCommand;
+import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.interceptors.base.CommandInterceptor;
 import org.jboss.cache.marshall.MarshalledValue;
 import org.jboss.cache.marshall.MarshalledValueHelper;
 import org.jboss.cache.marshall.MarshalledValueMap;
+import org.jboss.cache.marshall.MarshalledValueSerializer;
 
 import java.io.IOException;
 import java.io.NotSerializableException;
@@ -58,6 +63,13 @@ import java.util.Set;
  */
 public class MarshalledValueInterceptor extends CommandInterceptor
 {
+   private MarshalledValueSerializer serializer;
+
+   @Inject
+   public void injectSerializer(MarshalledValueSerializer serializer)
+   {
+      this.serializer = serializer;
+   }
 
    @Override
    public Object visitPutDataMapCommand(InvocationContext ctx, PutDataMapCommand command) throws Throwable
@@ -72,6 +84,35 @@ public class MarshalledValueInterceptor extends CommandInterceptor
       return ctx.isBypassUnmarshalling() ? retVal : compactAndProcessRetVal(marshalledValues, retVal);
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      Set<MarshalledValue> marshalledValues = new HashSet<MarshalledValue>();
+      Map<Fqn, Map> wrapped = new HashMap<Fqn, Map>();
+      for (Map.Entry<Fqn, Map> e : command.getData().entrySet())
+      {
+         wrapped.put(e.getKey(), wrapMap(e.getValue(), marshalledValues, ctx));
+      }
+      command.setData(wrapped);
+      Object retVal = invokeNextInterceptor(ctx, command);
+      return ctx.isBypassUnmarshalling() ? retVal : compactAndProcessRetVal(marshalledValues, retVal);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      Object retVal = invokeNextInterceptor(ctx, command);
+      if (!ctx.isBypassUnmarshalling())
+      {
+         for (Map.Entry<Fqn, Map> e : ((Map<Fqn, Map>) retVal).entrySet())
+         {
+            if (!e.getValue().isEmpty()) e.setValue(new MarshalledValueMap(e.getValue()));
+         }
+      }
+      return retVal;
+   }
+
    @Override
    public Object visitGetDataMapCommand(InvocationContext ctx, GetDataMapCommand command) throws Throwable
    {
@@ -205,7 +246,7 @@ public class MarshalledValueInterceptor extends CommandInterceptor
 
    protected MarshalledValue createAndAddMarshalledValue(Object toWrap, Set<MarshalledValue> marshalledValues, InvocationContext ctx) throws NotSerializableException
    {
-      MarshalledValue mv = new MarshalledValue(toWrap);
+      MarshalledValue mv = new MarshalledValue(toWrap, serializer);
       marshalledValues.add(mv);
       if (!ctx.isOriginLocal()) mv.setEqualityPreferenceForInstance(false);
       return mv;
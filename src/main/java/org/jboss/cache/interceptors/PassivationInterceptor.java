@@ -30,6 +30,7 @@ import org.jboss.cache.interceptors.base.JmxStatsCommandInterceptor;
 import org.jboss.cache.jmx.annotations.ManagedAttribute;
 import org.jboss.cache.jmx.annotations.ManagedOperation;
 import org.jboss.cache.loader.CacheLoader;
+import org.jboss.cache.loader.CacheLoaderLookupFilter;
 import org.jboss.cache.loader.CacheLoaderManager;
 import org.jboss.cache.notifications.Notifier;
 
@@ -52,12 +53,14 @@ public class PassivationInterceptor extends JmxStatsCommandInterceptor
 
    protected CacheLoader loader;
    private Notifier notifier;
+   private CacheLoaderLookupFilter lookupFilter;
 
    @Inject
-   public void setDependencies(Notifier notifier, CacheLoaderManager loaderManager)
+   public void setDependencies(Notifier notifier, CacheLoaderManager loaderManager, CacheLoaderLookupFilter lookupFilter)
    {
       this.notifier = notifier;
       this.loader = loaderManager.getCacheLoader();
+      this.lookupFilter = lookupFilter;
    }
 
    /**
@@ -91,6 +94,7 @@ public class PassivationInterceptor extends JmxStatsCommandInterceptor
          notifier.notifyNodePassivated(fqn, true, attributes, ctx);
          if (trace) log.trace("Passivating " + fqn);
          loader.put(fqn, attributes);
+         lookupFilter.recordPersisted(fqn);
          notifier.notifyNodePassivated(fqn, false, Collections.emptyMap(), ctx);
          if (getStatisticsEnabled()) passivations.getAndIncrement();
       }
@@ -29,6 +29,7 @@ import org.jboss.cache.commands.tx.PrepareCommand;
 import org.jboss.cache.commands.tx.RollbackCommand;
 import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -113,6 +114,12 @@ public class ReplicationInterceptor extends BaseRpcInterceptor
       return handleCrudMethod(ctx, command, false);
    }
 
+   @Override
+   public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      return handleCrudMethod(ctx, command, false);
+   }
+
    @Override
    public Object visitMoveCommand(InvocationContext ctx, MoveCommand command) throws Throwable
    {
@@ -161,11 +168,27 @@ public class ReplicationInterceptor extends BaseRpcInterceptor
       }
       else
       {
-         if (local) ctx.getTransactionContext().addLocalModification((WriteCommand) command);
+         if (local) addLocalModification(ctx, command);
       }
       return returnValue;
    }
 
+   private void addLocalModification(InvocationContext ctx, VisitableCommand command)
+   {
+      if (command instanceof PutAllCommand)
+      {
+         // the transaction holds the commands for each node rather than the bulk command
+         for (WriteCommand putDataMapCommand : ((PutAllCommand) command).getPutDataMapCommands())
+         {
+            ctx.getTransactionContext().addLocalModification(putDataMapCommand);
+         }
+      }
+      else
+      {
+         ctx.getTransactionContext().addLocalModification((WriteCommand) command);
+      }
+   }
+
    /**
     * Calls prepare(GlobalTransaction,List,org.jgroups.Address,boolean)) in all members except self.
     * Waits for all responses. If one of the members failed to prepare, its return value
@@ -28,6 +28,7 @@ import org.jboss.cache.commands.AbstractVisitor;
 import org.jboss.cache.commands.VisitableCommand;
 import org.jboss.cache.config.Configuration;
 import org.jboss.cache.factories.annotations.Inject;
+import org.jboss.cache.interceptors.InterceptorProfiler;
 
 /**
  * This is the base class for all interceptors to extend, and implements the {@link org.jboss.cache.commands.Visitor} interface
@@ -56,6 +57,8 @@ public class CommandInterceptor extends AbstractVisitor
 {
    private CommandInterceptor next;
 
+   private volatile InterceptorProfiler profiler;
+
    protected Log log;
    protected boolean trace;
 
@@ -113,9 +116,23 @@ public class CommandInterceptor extends AbstractVisitor
     */
    public Object invokeNextInterceptor(InvocationContext ctx, VisitableCommand command) throws Throwable
    {
+      InterceptorProfiler profiler = this.profiler;
+      if (profiler != null) return profiler.invoke(ctx, command, next);
       return command.acceptVisitor(ctx, next);
    }
 
+   /**
+    * Sets the profiler timing calls to the next interceptor.  Set by the {@link org.jboss.cache.interceptors.InterceptorChain}
+    * when profiling is enabled.
+    *
+    * @param profiler profiler, or null to stop profiling
+    * @since 3.1
+    */
+   public void setProfiler(InterceptorProfiler profiler)
+   {
+      this.profiler = profiler;
+   }
+
    /**
     * The default behaviour of the visitXXX methods, which is to ignore the call and pass the call up to the next
     * interceptor in the chain.
@@ -25,6 +25,7 @@ import org.jboss.cache.InvocationContext;
 import org.jboss.cache.commands.VisitableCommand;
 import org.jboss.cache.commands.legacy.write.CreateNodeCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -39,6 +40,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -80,6 +82,24 @@ public abstract class PrePostProcessingCommandInterceptor extends CommandInterce
       return handleDefault(ctx, command);
    }
 
+   @Override
+   public final Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      try
+      {
+         return doBeforeCall(ctx, command) ? handlePutAllCommand(ctx, command) : null;
+      }
+      finally
+      {
+         doAfterCall(ctx, command);
+      }
+   }
+
+   protected Object handlePutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      return handleDefault(ctx, command);
+   }
+
    @Override
    public final Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
@@ -249,6 +269,24 @@ public abstract class PrePostProcessingCommandInterceptor extends CommandInterce
       return handleDefault(ctx, command);
    }
 
+   @Override
+   public final Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      try
+      {
+         return doBeforeCall(ctx, command) ? handleGetAllCommand(ctx, command) : null;
+      }
+      finally
+      {
+         doAfterCall(ctx, command);
+      }
+   }
+
+   protected Object handleGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      return handleDefault(ctx, command);
+   }
+
    @Override
    public final Object visitExistsNodeCommand(InvocationContext ctx, ExistsCommand command) throws Throwable
    {
@@ -24,6 +24,7 @@ package org.jboss.cache.interceptors.base;
 import org.jboss.cache.InvocationContext;
 import org.jboss.cache.commands.VisitableCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -38,6 +39,7 @@ import org.jboss.cache.commands.write.ClearDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -75,6 +77,21 @@ public abstract class SkipCheckChainedInterceptor extends CommandInterceptor
       return handleAll(ctx, command);
    }
 
+   @Override
+   public final Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      if (skipInterception(ctx, command))
+      {
+         return invokeNextInterceptor(ctx, command);
+      }
+      return handlePutAllCommand(ctx, command);
+   }
+
+   protected Object handlePutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+   {
+      return handleAll(ctx, command);
+   }
+
    @Override
    public final Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
    {
@@ -195,6 +212,21 @@ public abstract class SkipCheckChainedInterceptor extends CommandInterceptor
       return handleAll(ctx, command);
    }
 
+   @Override
+   public final Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      if (skipInterception(ctx, command))
+      {
+         return invokeNextInterceptor(ctx, command);
+      }
+      return handleGetAllCommand(ctx, command);
+   }
+
+   protected Object handleGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+   {
+      return handleAll(ctx, command);
+   }
+
    @Override
    public final Object visitExistsNodeCommand(InvocationContext ctx, ExistsCommand command) throws Throwable
    {
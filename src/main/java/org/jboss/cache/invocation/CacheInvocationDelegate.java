@@ -29,6 +29,7 @@ import org.jboss.cache.buddyreplication.BuddyManager;
 import org.jboss.cache.buddyreplication.GravitateResult;
 import org.jboss.cache.commands.CommandsFactory;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -37,6 +38,7 @@ import org.jboss.cache.commands.read.GetNodeCommand;
 import org.jboss.cache.commands.read.GravitateDataCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.MoveCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.commands.write.PutDataMapCommand;
 import org.jboss.cache.commands.write.PutForExternalReadCommand;
 import org.jboss.cache.commands.write.PutKeyValueCommand;
@@ -50,8 +52,20 @@ import org.jboss.cache.factories.ComponentRegistry;
 import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.factories.annotations.NonVolatile;
 import org.jboss.cache.factories.annotations.Start;
+import org.jboss.cache.interceptors.BatchingInterceptor;
+import org.jboss.cache.interceptors.CacheMgmtInterceptor;
+import org.jboss.cache.interceptors.CallInterceptor;
+import org.jboss.cache.interceptors.EvictionInterceptor;
+import org.jboss.cache.interceptors.InterceptorChain;
+import org.jboss.cache.interceptors.InvalidationInterceptor;
+import org.jboss.cache.interceptors.InvocationContextInterceptor;
+import org.jboss.cache.interceptors.MVCCLockingInterceptor;
+import org.jboss.cache.interceptors.NotificationInterceptor;
+import org.jboss.cache.interceptors.ReplicationInterceptor;
+import org.jboss.cache.interceptors.TxInterceptor;
 import org.jboss.cache.interceptors.base.CommandInterceptor;
 import org.jboss.cache.loader.CacheLoaderManager;
+import org.jboss.cache.lock.IsolationLevel;
 import org.jboss.cache.marshall.Marshaller;
 import org.jboss.cache.mvcc.MVCCNodeHelper;
 import org.jboss.cache.notifications.Notifier;
@@ -61,9 +75,15 @@ import org.jboss.cache.transaction.TransactionTable;
 import org.jboss.cache.util.Immutables;
 import org.jgroups.Address;
 
+import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -81,6 +101,17 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
 {
    private static final Log log = LogFactory.getLog(CacheInvocationDelegate.class);
 
+   /**
+    * Interceptors that do nothing for a non-transactional get with no option overrides, other than record statistics and
+    * eviction events.  The fast read path is only used if the interceptor chain contains nothing else.
+    */
+   private static final Set<Class<? extends CommandInterceptor>> READ_TRANSPARENT_INTERCEPTORS = new HashSet<Class<? extends CommandInterceptor>>(Arrays.asList(
+         InvocationContextInterceptor.class, BatchingInterceptor.class, CacheMgmtInterceptor.class, TxInterceptor.class,
+         NotificationInterceptor.class, ReplicationInterceptor.class, InvalidationInterceptor.class,
+         MVCCLockingInterceptor.class, EvictionInterceptor.class, CallInterceptor.class));
+
+   private static final Option DEFAULT_OPTIONS = new Option();
+
    // this stuff is needed since the SPI has methods to retrieve these.
    private StateTransferManager stateTransferManager;
    private CacheLoaderManager cacheLoaderManager;
@@ -96,6 +127,8 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
    private MVCCNodeHelper mvccHelper;
    private boolean usingMvcc;
    private BatchContainer batchContainer;
+   private boolean fastReadsPossible;
+   private volatile FastReadPath fastReadPath;
 
    @Inject
    public void initialize(StateTransferManager stateTransferManager, CacheLoaderManager cacheLoaderManager, Notifier notifier,
@@ -122,11 +155,15 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
    void setNodeLockingScheme()
    {
       usingMvcc = configuration.getNodeLockingScheme() == NodeLockingScheme.MVCC;
+      fastReadsPossible = usingMvcc && configuration.getIsolationLevel() != IsolationLevel.REPEATABLE_READ;
+      fastReadPath = null;
    }
 
    private void reset()
    {
       this.usingMvcc = false;
+      this.fastReadsPossible = false;
+      this.fastReadPath = null;
       this.stateTransferManager = null;
       this.cacheLoaderManager = null;
       this.transactionManager = null;
@@ -440,6 +477,8 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
    {
       InvocationContext ctx = invocationContextContainer.get();
       cacheStatusCheck(ctx);
+      FastReadPath frp = getFastReadPath(ctx);
+      if (frp != null) return (V) frp.get(ctx, fqn, key);
       GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(fqn, key, true);
       return (V) invoker.invoke(ctx, command);
    }
@@ -524,6 +563,42 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
       put(Fqn.fromString(fqn), data);
    }
 
+   public void putAll(Map<Fqn, ? extends Map<? extends K, ? extends V>> data)
+   {
+      InvocationContext ctx = invocationContextContainer.get();
+      cacheStatusCheck(ctx);
+      if (data.isEmpty()) return;
+      if (usingMvcc)
+      {
+         Collection<List<Fqn>> regions = splitByMarshallingRegion(data.keySet());
+         if (regions.size() == 1)
+         {
+            PutAllCommand command = commandsFactory.buildPutAllCommand(null, data);
+            invoker.invoke(ctx, command);
+            return;
+         }
+         // a replicated command is unmarshalled with the class loader of a single region, so write each region apart
+         Option options = ctx.getOptionOverrides().copy();
+         for (List<Fqn> fqns : regions)
+         {
+            Map<Fqn, Map<? extends K, ? extends V>> regionData = new HashMap<Fqn, Map<? extends K, ? extends V>>();
+            for (Fqn fqn : fqns) regionData.put(fqn, data.get(fqn));
+            getInvocationContext().setOptionOverrides(options.copy());
+            invoker.invoke(ctx, commandsFactory.buildPutAllCommand(null, regionData));
+         }
+      }
+      else
+      {
+         // the legacy locking schemes only know how to lock one node per command
+         Option options = ctx.getOptionOverrides().copy();
+         for (Map.Entry<Fqn, ? extends Map<? extends K, ? extends V>> e : data.entrySet())
+         {
+            getInvocationContext().setOptionOverrides(options.copy());
+            put(e.getKey(), e.getValue());
+         }
+      }
+   }
+
    public void putForExternalRead(Fqn fqn, K key, V value)
    {
       InvocationContext ctx = invocationContextContainer.get();
@@ -570,6 +645,71 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
       return (Map<K, V>) invoker.invoke(ctx, command);
    }
 
+   @SuppressWarnings("unchecked")
+   public Map<Fqn, Map<K, V>> getAll(Collection<Fqn> fqns)
+   {
+      InvocationContext ctx = invocationContextContainer.get();
+      cacheStatusCheck(ctx);
+      if (fqns.isEmpty()) return new HashMap<Fqn, Map<K, V>>();
+      if (usingMvcc)
+      {
+         Collection<List<Fqn>> regions = splitByMarshallingRegion(fqns);
+         if (regions.size() == 1)
+         {
+            GetAllCommand command = commandsFactory.buildGetAllCommand(fqns);
+            return (Map<Fqn, Map<K, V>>) invoker.invoke(ctx, command);
+         }
+         // as in putAll(), read each marshalling region with a command of its own
+         Map<Fqn, Map<K, V>> result = new HashMap<Fqn, Map<K, V>>();
+         Option options = ctx.getOptionOverrides().copy();
+         for (List<Fqn> regionFqns : regions)
+         {
+            getInvocationContext().setOptionOverrides(options.copy());
+            GetAllCommand command = commandsFactory.buildGetAllCommand(regionFqns);
+            Map<Fqn, Map<K, V>> regionResult = (Map<Fqn, Map<K, V>>) invoker.invoke(ctx, command);
+            if (regionResult != null) result.putAll(regionResult);
+         }
+         return result;
+      }
+      else
+      {
+         Map<Fqn, Map<K, V>> result = new HashMap<Fqn, Map<K, V>>();
+         Option options = ctx.getOptionOverrides().copy();
+         for (Fqn fqn : fqns)
+         {
+            getInvocationContext().setOptionOverrides(options.copy());
+            Map<K, V> data = getData(fqn);
+            if (data != null) result.put(fqn, data);
+         }
+         return result;
+      }
+   }
+
+   /**
+    * Groups the Fqns of a bulk call by the marshalling region they fall into, as the marshaller reads a replicated
+    * command with the class loader of a single region.  Without region based marshalling all Fqns form one group.
+    */
+   private Collection<List<Fqn>> splitByMarshallingRegion(Collection<Fqn> fqns)
+   {
+      if (!configuration.isUseRegionBasedMarshalling())
+      {
+         return Collections.<List<Fqn>>singleton(new ArrayList<Fqn>(fqns));
+      }
+      Map<Region, List<Fqn>> byRegion = new HashMap<Region, List<Fqn>>();
+      for (Fqn fqn : fqns)
+      {
+         Region region = regionManager.getValidMarshallingRegion(fqn);
+         List<Fqn> regionFqns = byRegion.get(region);
+         if (regionFqns == null)
+         {
+            regionFqns = new ArrayList<Fqn>();
+            byRegion.put(region, regionFqns);
+         }
+         regionFqns.add(fqn);
+      }
+      return byRegion.values();
+   }
+
    public Set<K> getKeys(String fqn)
    {
       return getKeys(Fqn.fromString(fqn));
@@ -696,6 +836,51 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
       }
    }
 
+   /**
+    * Retrieves the fast read path if it may be used for the current invocation.  This is the case with MVCC and
+    * READ_COMMITTED, if there is no ongoing transaction or batch, no option overrides, and no interceptors that may
+    * affect reads.
+    *
+    * @param ctx current invocation context
+    * @return a fast read path, or null if the read needs to pass through the interceptor chain.
+    */
+   private FastReadPath getFastReadPath(InvocationContext ctx)
+   {
+      if (!fastReadsPossible) return null;
+      FastReadPath frp = fastReadPath;
+      if (frp == null || frp.chainModificationCount != invoker.getModificationCount())
+      {
+         fastReadPath = frp = new FastReadPath(invoker, dataContainer, notifier);
+         if (log.isTraceEnabled()) log.trace("Fast read path " + (frp.enabled ? "enabled" : "disabled") + " for interceptor chain " + invoker);
+      }
+      if (!frp.enabled) return null;
+      if (!ctx.isOptionsUninitialised() && !isDefault(ctx.getOptionOverrides())) return null;
+      if (batchContainer != null && batchContainer.getBatchTransaction() != null) return null;
+      if (transactionManager != null)
+      {
+         try
+         {
+            if (transactionManager.getTransaction() != null) return null;
+         }
+         catch (SystemException e)
+         {
+            return null;
+         }
+      }
+      return frp;
+   }
+
+   /**
+    * Option.equals() ignores some options, and nothing on the fast read path resets options after the read, so any
+    * option set must send the read through the interceptor chain.
+    */
+   private static boolean isDefault(Option options)
+   {
+      return DEFAULT_OPTIONS.equals(options) && options.isSkipCacheStatusCheck() == DEFAULT_OPTIONS.isSkipCacheStatusCheck()
+            && options.getSyncReplTimeout() == DEFAULT_OPTIONS.getSyncReplTimeout()
+            && options.getGroupRequestMode() == DEFAULT_OPTIONS.getGroupRequestMode();
+   }
+
    private void invokePut(Fqn fqn, Map<? extends K, ? extends V> data, boolean erase)
    {
       InvocationContext ctx = invocationContextContainer.get();
@@ -716,4 +901,63 @@ public class CacheInvocationDelegate<K, V> extends AbstractInvocationDelegate im
    {
       setData(Fqn.fromString(fqn), data);
    }
+
+   /**
+    * Serves non-transactional MVCC reads straight off the data container, without building a command, wrapping the node
+    * or passing through the interceptor chain.  Statistics, eviction events and node visited notifications are still
+    * recorded as the interceptor chain would.
+    */
+   private static final class FastReadPath
+   {
+      private final int chainModificationCount;
+      private final boolean enabled;
+      private final CacheMgmtInterceptor cacheMgmtInterceptor;
+      private final EvictionInterceptor evictionInterceptor;
+      private final DataContainer dataContainer;
+      private final Notifier notifier;
+
+      private FastReadPath(InterceptorChain chain, DataContainer dataContainer, Notifier notifier)
+      {
+         this.dataContainer = dataContainer;
+         this.notifier = notifier;
+         chainModificationCount = chain.getModificationCount();
+         CacheMgmtInterceptor cmi = null;
+         EvictionInterceptor ei = null;
+         boolean transparent = true;
+         for (CommandInterceptor ci = chain.getFirstInChain(); ci != null; ci = ci.getNext())
+         {
+            if (!READ_TRANSPARENT_INTERCEPTORS.contains(ci.getClass()))
+            {
+               transparent = false;
+               break;
+            }
+            if (ci instanceof CacheMgmtInterceptor) cmi = (CacheMgmtInterceptor) ci;
+            if (ci instanceof EvictionInterceptor) ei = (EvictionInterceptor) ci;
+         }
+         enabled = transparent;
+         cacheMgmtInterceptor = cmi;
+         evictionInterceptor = ei;
+      }
+
+      private Object get(InvocationContext ctx, Fqn fqn, Object key)
+      {
+         // as the InvocationContextInterceptor would for a non-transactional call
+         ctx.setTransaction(null);
+         ctx.setGlobalTransaction(null);
+         ctx.setTransactionContext(null);
+
+         long t1 = cacheMgmtInterceptor == null ? 0 : System.nanoTime();
+         Object result = null;
+         InternalNode n = dataContainer.peekInternalNode(fqn, false);
+         if (n != null && !n.isRemoved())
+         {
+            notifier.notifyNodeVisited(fqn, true, ctx);
+            result = n.get(key);
+            notifier.notifyNodeVisited(fqn, false, ctx);
+         }
+         if (evictionInterceptor != null && result != null && key != null) evictionInterceptor.registerNodeVisit(fqn);
+         if (cacheMgmtInterceptor != null) cacheMgmtInterceptor.recordRead(result != null, System.nanoTime() - t1);
+         return result;
+      }
+   }
 }
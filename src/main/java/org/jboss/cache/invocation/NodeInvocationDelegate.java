@@ -37,6 +37,8 @@ import org.jboss.cache.lock.NodeLock;
 import org.jboss.cache.optimistic.DataVersion;
 import org.jboss.cache.transaction.GlobalTransaction;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
@@ -56,6 +58,7 @@ public class NodeInvocationDelegate<K, V> extends AbstractInvocationDelegate imp
 
    protected volatile InternalNode<K, V> node;
    private CacheSPI<K, V> spi;
+   private DataContainer dataContainer;
 
    public NodeInvocationDelegate(InternalNode<K, V> node)
    {
@@ -67,9 +70,10 @@ public class NodeInvocationDelegate<K, V> extends AbstractInvocationDelegate imp
       return node;
    }
 
-   public void injectDependencies(CacheSPI<K, V> spi)
+   public void injectDependencies(CacheSPI<K, V> spi, DataContainer dataContainer)
    {
       this.spi = spi;
+      this.dataContainer = dataContainer;
    }
 
    public boolean isChildrenLoaded()
@@ -163,9 +167,17 @@ public class NodeInvocationDelegate<K, V> extends AbstractInvocationDelegate imp
       return node.getChildrenDirect();
    }
 
+   // nodes detached directly are not marked as invalid, so their subtrees are purged from the data container's Fqn index.
    public void removeChildrenDirect()
    {
+      if (!isIndexed())
+      {
+         node.removeChildren();
+         return;
+      }
+      Collection<InternalNode<K, V>> children = new ArrayList<InternalNode<K, V>>(node.getChildrenMap().values());
       node.removeChildren();
+      for (InternalNode<K, V> child : children) dataContainer.removeFromIndexRecursively(child);
    }
 
    public Set<NodeSPI<K, V>> getChildrenDirect(boolean includeMarkedAsDeleted)
@@ -205,12 +217,30 @@ public class NodeInvocationDelegate<K, V> extends AbstractInvocationDelegate imp
 
    public boolean removeChildDirect(Fqn fqn)
    {
-      return node.removeChild(fqn);
+      InternalNode<K, V> child = isIndexed() ? peekChild(fqn) : null;
+      boolean removed = node.removeChild(fqn);
+      if (removed && child != null) dataContainer.removeFromIndexRecursively(child);
+      return removed;
    }
 
    public boolean removeChildDirect(Object childName)
    {
-      return node.removeChild(childName);
+      InternalNode<K, V> child = isIndexed() ? node.getChild(childName) : null;
+      boolean removed = node.removeChild(childName);
+      if (removed && child != null) dataContainer.removeFromIndexRecursively(child);
+      return removed;
+   }
+
+   private boolean isIndexed()
+   {
+      return dataContainer != null && dataContainer.isFqnIndexed();
+   }
+
+   private InternalNode<K, V> peekChild(Fqn relativeFqn)
+   {
+      InternalNode<K, V> child = node;
+      for (int i = 0; child != null && i < relativeFqn.size(); i++) child = child.getChild(relativeFqn.get(i));
+      return child;
    }
 
    public V removeDirect(K key)
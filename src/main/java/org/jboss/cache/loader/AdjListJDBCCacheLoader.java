@@ -605,12 +605,7 @@ the start method is called, since that's when its registered in its lifecycle */
          con = cf.getConnection();
          ps = prepareAndLogStatement(con, config.getUpdateNodeSql());
 
-         if (node == null) node = EMPTY_HASHMAP;
-
-         ByteBuffer byteBuffer = marshall(node);
-         ps.setBinaryStream(1, byteBuffer.getStream(), byteBuffer.getLength());
-
-         ps.setString(2, name.toString());
+         populatePreparedStatementForUpdate(name, node, ps);
 
          /*int rows = */
          ps.executeUpdate();
@@ -626,6 +621,20 @@ the start method is called, since that's when its registered in its lifecycle */
       }
    }
 
+   /**
+    * Expects a PreparedStatement binded to {@link org.jboss.cache.loader.AdjListJDBCCacheLoaderConfig#getUpdateNodeSql()}
+    */
+   protected void populatePreparedStatementForUpdate(Fqn name, Map<Object, Object> node, PreparedStatement ps)
+         throws Exception
+   {
+      if (node == null) node = EMPTY_HASHMAP;
+
+      ByteBuffer byteBuffer = marshall(node);
+      ps.setBinaryStream(1, byteBuffer.getStream(), byteBuffer.getLength());
+
+      ps.setString(2, name.toString());
+   }
+
    protected String getDriverName(Connection con)
    {
       if (con == null) return null;
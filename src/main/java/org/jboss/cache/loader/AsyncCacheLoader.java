@@ -31,11 +31,18 @@ import org.jboss.cache.util.Immutables;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -43,6 +50,9 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * The AsyncCacheLoader is a delegating cache loader that extends
@@ -94,6 +104,18 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <dt>cache.async.threadPoolSize</dt>
  * <dd>The size of the async processor thread pool.  Defaults to <tt>1</tt>.  This
  * property is new in JBoss Cache 3.0.</dd>
+ * <dt>cache.async.coalesce</dt>
+ * <dd>If <code>true</code>, modifications are not queued.  Instead, the latest
+ * pending changes to each node are kept, and repeated writes to a node between
+ * two flushes are written to the underlying cache loader once.  Moves are
+ * written synchronously, after all pending changes.  A single thread writes the
+ * changes, so <code>cache.async.threadPoolSize</code> and
+ * <code>cache.async.queueSize</code> are ignored.  Default is false.  This
+ * property is new in JBoss Cache 3.1.</dd>
+ * <dt>cache.async.coalesceInterval</dt>
+ * <dd>How often pending changes are written when <code>cache.async.coalesce</code>
+ * is true, in milliseconds.  Default is 100.  This property is new in JBoss
+ * Cache 3.1.</dd>
  * </dl>
  * For increased performance for many smaller transactions, use higher values
  * for <code>cache.async.batchSize</code> and
@@ -121,6 +143,13 @@ public class AsyncCacheLoader extends AbstractDelegatingCacheLoader
    private BlockingQueue<Modification> queue = new ArrayBlockingQueue<Modification>(DEFAULT_QUEUE_SIZE);
    private List<Future> processorFutures;
 
+   // pending changes per node, used instead of the queue when coalescing
+   private volatile ConcurrentMap<Fqn, NodeChanges> changes = new ConcurrentHashMap<Fqn, NodeChanges>();
+   // writers share this, and the changes are swapped out under the write lock so that they are flushed atomically
+   private final ReadWriteLock changesLock = new ReentrantReadWriteLock();
+   // keeps flushes, and moves written in between, in order
+   private final ReentrantLock flushLock = new ReentrantLock();
+
    public AsyncCacheLoader()
    {
       super(null);
@@ -263,6 +292,11 @@ public class AsyncCacheLoader extends AbstractDelegatingCacheLoader
    {
       if (config.getUseAsyncPut())
       {
+         if (config.getCoalesce())
+         {
+            coalesce(modifications);
+            return;
+         }
          for (Modification modification : modifications)
          {
             enqueue(modification);
@@ -303,7 +337,7 @@ public class AsyncCacheLoader extends AbstractDelegatingCacheLoader
       if (log.isInfoEnabled()) log.info("Async cache loader starting: " + this);
       stopped.set(false);
       super.start();
-      executor = Executors.newFixedThreadPool(config.getThreadPoolSize(), new ThreadFactory()
+      executor = Executors.newFixedThreadPool(config.getCoalesce() ? 1 : config.getThreadPoolSize(), new ThreadFactory()
       {
          public Thread newThread(Runnable r)
          {
@@ -312,8 +346,16 @@ public class AsyncCacheLoader extends AbstractDelegatingCacheLoader
             return t;
          }
       });
-      processorFutures = new ArrayList<Future>(config.getThreadPoolSize());
-      for (int i = 0; i < config.getThreadPoolSize(); i++) processorFutures.add(executor.submit(new AsyncProcessor()));
+      if (config.getCoalesce())
+      {
+         processorFutures = new ArrayList<Future>(1);
+         processorFutures.add(executor.submit(new CoalescingProcessor()));
+      }
+      else
+      {
+         processorFutures = new ArrayList<Future>(config.getThreadPoolSize());
+         for (int i = 0; i < config.getThreadPoolSize(); i++) processorFutures.add(executor.submit(new AsyncProcessor()));
+      }
    }
 
    @Override
@@ -338,20 +380,150 @@ public class AsyncCacheLoader extends AbstractDelegatingCacheLoader
          }
       }
       executor = null;
+      // in case the processor was cancelled before it got to run
+      if (config.getCoalesce()) flushChanges();
       super.stop();
    }
 
-   private void enqueue(final Modification mod)
-         throws CacheException, InterruptedException
+   private void enqueue(final Modification mod) throws Exception
    {
       if (stopped.get())
       {
          throw new CacheException("AsyncCacheLoader stopped; no longer accepting more entries.");
       }
+      if (config.getCoalesce())
+      {
+         coalesce(Collections.singletonList(mod));
+         return;
+      }
       if (trace) log.trace("Enqueuing modification " + mod);
       queue.put(mod);
    }
 
+   /**
+    * Merges modifications into the pending changes of the nodes they affect.  Moves are barriers: all changes pending
+    * before a move are written, then the move itself, before any later change.
+    */
+   private void coalesce(List<Modification> modifications) throws Exception
+   {
+      if (stopped.get())
+      {
+         throw new CacheException("AsyncCacheLoader stopped; no longer accepting more entries.");
+      }
+      int start = 0;
+      for (int i = 0; i < modifications.size(); i++)
+      {
+         if (modifications.get(i).getType() == Modification.ModificationType.MOVE)
+         {
+            addChanges(modifications.subList(start, i));
+            flushLock.lock();
+            try
+            {
+               flushChanges();
+               AsyncCacheLoader.super.put(modifications.subList(i, i + 1));
+            }
+            finally
+            {
+               flushLock.unlock();
+            }
+            start = i + 1;
+         }
+      }
+      addChanges(modifications.subList(start, modifications.size()));
+   }
+
+   private void addChanges(List<Modification> modifications)
+   {
+      if (modifications.isEmpty()) return;
+      // a list of modifications, such as a transaction's, is flushed as a whole
+      changesLock.readLock().lock();
+      try
+      {
+         for (Modification mod : modifications)
+         {
+            if (trace) log.trace("Coalescing modification " + mod);
+            Fqn fqn = mod.getFqn();
+            if (mod.getType() == Modification.ModificationType.REMOVE_NODE)
+            {
+               // changes pending in the subtree are made moot by its removal
+               for (Iterator<Fqn> it = changes.keySet().iterator(); it.hasNext();)
+               {
+                  if (it.next().isChildOf(fqn)) it.remove();
+               }
+            }
+            NodeChanges nodeChanges = changes.get(fqn);
+            if (nodeChanges == null)
+            {
+               nodeChanges = new NodeChanges();
+               NodeChanges existing = changes.putIfAbsent(fqn, nodeChanges);
+               if (existing != null) nodeChanges = existing;
+            }
+            synchronized (nodeChanges)
+            {
+               nodeChanges.apply(mod);
+            }
+         }
+      }
+      finally
+      {
+         changesLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Writes all pending changes to the underlying cache loader.
+    */
+   private void flushChanges()
+   {
+      flushLock.lock();
+      try
+      {
+         Map<Fqn, NodeChanges> toFlush;
+         changesLock.writeLock().lock();
+         try
+         {
+            if (changes.isEmpty()) return;
+            toFlush = changes;
+            changes = new ConcurrentHashMap<Fqn, NodeChanges>();
+         }
+         finally
+         {
+            changesLock.writeLock().unlock();
+         }
+
+         // any pending change to a node below a removed one was made after the removal, so shallower nodes go first
+         List<Map.Entry<Fqn, NodeChanges>> entries = new ArrayList<Map.Entry<Fqn, NodeChanges>>(toFlush.entrySet());
+         Collections.sort(entries, new Comparator<Map.Entry<Fqn, NodeChanges>>()
+         {
+            public int compare(Map.Entry<Fqn, NodeChanges> e1, Map.Entry<Fqn, NodeChanges> e2)
+            {
+               return e1.getKey().size() - e2.getKey().size();
+            }
+         });
+         List<Modification> mods = new ArrayList<Modification>(entries.size());
+         for (Map.Entry<Fqn, NodeChanges> entry : entries) entry.getValue().addModifications(entry.getKey(), mods);
+
+         if (trace) log.trace("Writing " + mods.size() + " modifications coalesced from changes to " + entries.size() + " nodes");
+         for (int i = 0; i < mods.size(); i += config.getBatchSize())
+         {
+            List<Modification> batch = mods.subList(i, Math.min(mods.size(), i + config.getBatchSize()));
+            try
+            {
+               AsyncCacheLoader.super.put(batch);
+            }
+            catch (Exception e)
+            {
+               if (log.isWarnEnabled()) log.warn("Failed to process async modifications: " + e);
+               if (log.isDebugEnabled()) log.debug("Exception: ", e);
+            }
+         }
+      }
+      finally
+      {
+         flushLock.unlock();
+      }
+   }
+
    /**
     * Processes (by batch if possible) a queue of {@link Modification}s.
     *
@@ -424,6 +596,123 @@ public class AsyncCacheLoader extends AbstractDelegatingCacheLoader
       }
    }
 
+   /**
+    * Periodically writes the pending changes when coalescing modifications.
+    */
+   private class CoalescingProcessor implements Runnable
+   {
+      public void run()
+      {
+         try
+         {
+            while (!Thread.interrupted())
+            {
+               Thread.sleep(config.getCoalesceInterval());
+               flushChanges();
+            }
+         }
+         catch (InterruptedException e)
+         {
+            log.trace("coalescing processor interrupted");
+         }
+         if (trace) log.trace("process remaining changes to " + changes.size() + " nodes");
+         flushChanges();
+      }
+   }
+
+   /**
+    * The net effect of the modifications to a single node since the last flush.  Applying its modifications, as
+    * returned by {@link #addModifications(Fqn, List)}, has the same effect as applying all the modifications it was
+    * built from.
+    */
+   private static class NodeChanges
+   {
+      // the node, and its subtree, was removed before the other changes
+      private boolean removeNode;
+      // the node's data was cleared before the other changes
+      private boolean removeData;
+      // the puts hold all of the node's data, as they would after a put(Fqn, Map) or after clearing the data
+      private boolean definitive;
+      // the node was written to, so has to exist afterwards
+      private boolean created;
+      private final Map<Object, Object> puts = new HashMap<Object, Object>();
+      // removed after the puts
+      private final Set<Object> removedKeys = new HashSet<Object>();
+
+      void apply(Modification mod)
+      {
+         switch (mod.getType())
+         {
+            case REMOVE_NODE:
+               removeNode = definitive = true;
+               removeData = created = false;
+               puts.clear();
+               removedKeys.clear();
+               break;
+            case REMOVE_DATA:
+               removeData = definitive = true;
+               puts.clear();
+               removedKeys.clear();
+               break;
+            case PUT_DATA_ERASE:
+               removeData = true;
+               puts.clear();
+               removedKeys.clear();
+               putAll(mod.getData());
+               break;
+            case PUT_DATA:
+               putAll(mod.getData());
+               break;
+            case PUT_KEY_VALUE:
+               created = true;
+               puts.put(mod.getKey(), mod.getValue());
+               removedKeys.remove(mod.getKey());
+               break;
+            case REMOVE_KEY_VALUE:
+               // otherwise the put is kept, so that the node is created, and the key removed after it
+               if (definitive) puts.remove(mod.getKey());
+               // nothing to remove from the underlying cache loader if the data has been cleared
+               if (!removeNode && !removeData) removedKeys.add(mod.getKey());
+               break;
+            default:
+               throw new CacheException("Unknown modification " + mod.getType());
+         }
+      }
+
+      private void putAll(Map data)
+      {
+         created = definitive = true;
+         if (data == null) return;
+         for (Object o : data.entrySet())
+         {
+            Map.Entry entry = (Map.Entry) o;
+            puts.put(entry.getKey(), entry.getValue());
+            removedKeys.remove(entry.getKey());
+         }
+      }
+
+      void addModifications(Fqn fqn, List<Modification> mods)
+      {
+         if (removeNode) mods.add(new Modification(Modification.ModificationType.REMOVE_NODE, fqn));
+         if (definitive && created)
+         {
+            Modification.ModificationType type = removeData ? Modification.ModificationType.PUT_DATA_ERASE : Modification.ModificationType.PUT_DATA;
+            mods.add(new Modification(type, fqn, new HashMap<Object, Object>(puts)));
+         }
+         else if (removeData)
+         {
+            mods.add(new Modification(Modification.ModificationType.REMOVE_DATA, fqn));
+         }
+         else
+         {
+            // only part of the node's data is known, so must be merged key by key
+            for (Map.Entry<Object, Object> entry : puts.entrySet())
+               mods.add(new Modification(Modification.ModificationType.PUT_KEY_VALUE, fqn, entry.getKey(), entry.getValue()));
+         }
+         for (Object key : removedKeys) mods.add(new Modification(Modification.ModificationType.REMOVE_KEY_VALUE, fqn, key));
+      }
+   }
+
    @Override
    public String toString()
    {
@@ -434,6 +723,7 @@ public class AsyncCacheLoader extends AbstractDelegatingCacheLoader
             " returnOld=" + config.getReturnOld() +
             " asyncPut=" + config.getUseAsyncPut() +
             " threadPoolSize=" + config.getThreadPoolSize() +
+            " coalesce=" + config.getCoalesce() +
             " queue.remainingCapacity()=" + queue.remainingCapacity() +
             " queue.peek()=" + queue.peek();
    }
@@ -37,6 +37,8 @@ public class AsyncCacheLoaderConfig extends IndividualCacheLoaderConfig
    private int queueSize = 0;
    private boolean useAsyncPut = true;
    private int threadPoolSize = 1;
+   private boolean coalesce = false;
+   private long coalesceInterval = 100;
 
    /**
     * Default constructor.
@@ -68,6 +70,45 @@ public class AsyncCacheLoaderConfig extends IndividualCacheLoaderConfig
       this.threadPoolSize = threadPoolSize;
    }
 
+   /**
+    * @return true if modifications are coalesced per node rather than queued.
+    * @since 3.1
+    */
+   public boolean getCoalesce()
+   {
+      return coalesce;
+   }
+
+   /**
+    * If set to <tt>true</tt>, the {@link AsyncCacheLoader} keeps the latest pending changes to each node rather than
+    * queueing every modification, and periodically writes them to the underlying cache loader.
+    *
+    * @since 3.1
+    */
+   public void setCoalesce(boolean coalesce)
+   {
+      testImmutability("coalesce");
+      this.coalesce = coalesce;
+   }
+
+   /**
+    * @return how long, in milliseconds, pending changes are coalesced before they are written.
+    * @since 3.1
+    */
+   public long getCoalesceInterval()
+   {
+      return coalesceInterval;
+   }
+
+   /**
+    * @since 3.1
+    */
+   public void setCoalesceInterval(long coalesceInterval)
+   {
+      testImmutability("coalesceInterval");
+      this.coalesceInterval = coalesceInterval;
+   }
+
    public int getBatchSize()
    {
       return batchSize;
@@ -136,6 +177,13 @@ public class AsyncCacheLoaderConfig extends IndividualCacheLoaderConfig
       s = props.getProperty("cache.async.put");
       if (s != null) useAsyncPut = Boolean.valueOf(s);
 
+      s = props.getProperty("cache.async.coalesce");
+      if (s != null) coalesce = Boolean.valueOf(s);
+
+      s = props.getProperty("cache.async.coalesceInterval");
+      if (s != null) coalesceInterval = Long.parseLong(s);
+      if (coalesceInterval <= 0) throw new IllegalArgumentException("Invalid coalesce interval: " + coalesceInterval);
+
 
    }
 
@@ -148,7 +196,9 @@ public class AsyncCacheLoaderConfig extends IndividualCacheLoaderConfig
          return (batchSize == other.batchSize)
                && (queueSize == other.queueSize)
                && (returnOld == other.returnOld)
-               && (useAsyncPut == other.useAsyncPut);
+               && (useAsyncPut == other.useAsyncPut)
+               && (coalesce == other.coalesce)
+               && (coalesceInterval == other.coalesceInterval);
       }
       return false;
    }
@@ -161,6 +211,8 @@ public class AsyncCacheLoaderConfig extends IndividualCacheLoaderConfig
       result = 31 * result + queueSize;
       result = 31 * result + (returnOld ? 0 : 1);
       result = 31 * result + (useAsyncPut ? 0 : 1);
+      result = 31 * result + (coalesce ? 0 : 1);
+      result = 31 * result + (int) (coalesceInterval ^ (coalesceInterval >>> 32));
       return result;
    }
 
@@ -0,0 +1,796 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.loader;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.CacheException;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.Modification;
+import org.jboss.cache.config.CacheLoaderConfig.IndividualCacheLoaderConfig;
+import org.jboss.cache.io.ByteBuffer;
+import org.jboss.cache.marshall.NodeData;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A <tt>JDBCCacheLoader</tt> storing each attribute of a node in a row of its own, rather than all of a node's
+ * attributes serialized into the node's row.  Putting or removing a single attribute then reads and writes that
+ * attribute's row only, where <tt>JDBCCacheLoader</tt> reads and rewrites the whole attribute map, which pays off for
+ * nodes with many or large attributes.
+ * <p/>
+ * Nodes are kept in the table configured as for <tt>JDBCCacheLoader</tt>, with a null node column, and attributes
+ * in a second table, with a primary key of the node's fqn and the attribute's key.  Additional configuration info:
+ * <br>
+ * <ul>
+ * <li>
+ * cache.jdbc.attribute.table: the name of the attribute table.  Defaults to the node table's name suffixed with
+ * <tt>_attr</tt>.  It is created and dropped along with the node table, as per cache.jdbc.table.create and
+ * cache.jdbc.table.drop.
+ * </li>
+ * <li>
+ * cache.jdbc.attribute.key.column and cache.jdbc.attribute.key.type: the name and type of the key column.  Default
+ * to 'attr_key' and 'VARCHAR(255)'.  Keys are stored as strings, see {@link #encodeKey(Object)}.
+ * </li>
+ * <li>
+ * cache.jdbc.attribute.value.column: the name of the value column.  Defaults to 'attr_value'.  Its type is that of
+ * the node column, cache.jdbc.node.type.
+ * </li>
+ * </ul>
+ * The two schemas are not compatible: data stored by <tt>JDBCCacheLoader</tt> is not visible to this cache loader,
+ * and vice versa.
+ *
+ * @since 3.1
+ */
+@ThreadSafe
+public class AttributeRowJDBCCacheLoader extends JDBCCacheLoader
+{
+   private static final Log log = LogFactory.getLog(AttributeRowJDBCCacheLoader.class);
+
+   private static final char STRING_KEY = 's';
+   private static final char MARSHALLED_KEY = 'm';
+   private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+   /**
+    * Returned by {@link #loadAttribute(Fqn, String)} if there is no row for the attribute.
+    */
+   private static final Object NO_ATTRIBUTE = new Object();
+
+   private AttributeRowJDBCCacheLoaderConfig config;
+
+   /**
+    * Builds an AttributeRowJDBCCacheLoaderConfig based on the supplied base config.
+    */
+   @Override
+   protected AdjListJDBCCacheLoaderConfig processConfig(IndividualCacheLoaderConfig base)
+   {
+      if (base instanceof AttributeRowJDBCCacheLoaderConfig)
+      {
+         config = (AttributeRowJDBCCacheLoaderConfig) base;
+      }
+      else
+      {
+         config = new AttributeRowJDBCCacheLoaderConfig(base);
+      }
+      return super.processConfig(config);
+   }
+
+   /**
+    * As per interface's contract.
+    * Performance Note: O(1) db calls if the attribute exists, otherwise O(nodeDepth) db calls if the node does not.
+    */
+   @Override
+   public Object put(Fqn name, Object key, Object value) throws Exception
+   {
+      lock.acquireLock(name, true);
+      try
+      {
+         String encodedKey = encodeKey(key);
+         Object oldValue = loadAttribute(name, encodedKey);
+         if (oldValue == NO_ATTRIBUTE)
+         {
+            if (!exists(name)) addNewSubtree(name, null);
+            Map<String, Object> attribute = new HashMap<String, Object>(1);
+            attribute.put(encodedKey, value);
+            insertAttributes(name, attribute);
+            return null;
+         }
+
+         Connection con = null;
+         PreparedStatement ps = null;
+         try
+         {
+            con = cf.getConnection();
+            ps = prepareAndLogStatement(con, config.getUpdateAttributeSql());
+            setValue(ps, 1, value);
+            ps.setString(2, name.toString());
+            ps.setString(3, encodedKey);
+            ps.executeUpdate();
+         }
+         catch (SQLException e)
+         {
+            reportAndRethrowError("Failed to update attribute " + key + " of node " + name, e);
+         }
+         finally
+         {
+            safeClose(ps);
+            cf.close(con);
+         }
+         return oldValue;
+      }
+      finally
+      {
+         lock.releaseLock(name);
+      }
+   }
+
+   /**
+    * As per interface's contract.
+    * Performance Note: O(nodeDepth) db calls, with the attributes inserted in a single batch if batching is enabled.
+    */
+   @Override
+   public void put(Fqn name, Map attributes) throws Exception
+   {
+      lock.acquireLock(name, true);
+      try
+      {
+         if (exists(name))
+         {
+            deleteAttributes(name, config.getDeleteAttributesSql(), name.toString());
+         }
+         else
+         {
+            addNewSubtree(name, null);
+         }
+         if (attributes != null && !attributes.isEmpty())
+         {
+            Map<String, Object> encoded = new HashMap<String, Object>(attributes.size());
+            for (Object o : attributes.entrySet())
+            {
+               Map.Entry entry = (Map.Entry) o;
+               encoded.put(encodeKey(entry.getKey()), entry.getValue());
+            }
+            insertAttributes(name, encoded);
+         }
+      }
+      finally
+      {
+         lock.releaseLock(name);
+      }
+   }
+
+   /**
+    * As per interface's contract.
+    * Performance Note: O(1) db calls.
+    */
+   @Override
+   public Object remove(Fqn name, Object key) throws Exception
+   {
+      lock.acquireLock(name, true);
+      try
+      {
+         String encodedKey = encodeKey(key);
+         Object oldValue = loadAttribute(name, encodedKey);
+         if (oldValue == NO_ATTRIBUTE) return null;
+         deleteAttributes(name, config.getDeleteAttributeSql(), name.toString(), encodedKey);
+         return oldValue;
+      }
+      finally
+      {
+         lock.releaseLock(name);
+      }
+   }
+
+   /**
+    * As per interface's contract.
+    * Performance Note: O(1) db calls.
+    */
+   @Override
+   public void removeData(Fqn name) throws Exception
+   {
+      lock.acquireLock(name, true);
+      try
+      {
+         deleteAttributes(name, config.getDeleteAttributesSql(), name.toString());
+      }
+      finally
+      {
+         lock.releaseLock(name);
+      }
+   }
+
+   /**
+    * As per interface's contract.
+    * Performance Note: O(2) db calls.
+    */
+   @Override
+   public void remove(Fqn fqn) throws Exception
+   {
+      lock.acquireLock(fqn, true);
+      try
+      {
+         String fqnString = fqn.toString();
+         deleteAttributes(fqn, config.getDeleteSubtreeAttributesSql(), fqnString, getFqnWildcardString(fqnString, fqn));
+         super.remove(fqn);
+      }
+      finally
+      {
+         lock.releaseLock(fqn);
+      }
+   }
+
+   /**
+    * Applies changes to the data of nodes, with the same semantics as the individual put and remove methods.  Every
+    * attribute put is written as a delete and an insert of its row, so that the existing attributes need not be read,
+    * and all deletes and inserts are batched.
+    */
+   @Override
+   protected void storeDataChanges(Map<Fqn, List<Modification>> dataChanges) throws Exception
+   {
+      if (dataChanges.isEmpty()) return;
+
+      List<Fqn> fqns = new ArrayList<Fqn>(dataChanges.keySet());
+      lock.acquireAllLocks(fqns, true);
+      Connection con = null;
+      PreparedStatement ps = null;
+      try
+      {
+         Set<Fqn> cleared = new LinkedHashSet<Fqn>();
+         Map<Fqn, Set<String>> deletes = new LinkedHashMap<Fqn, Set<String>>();
+         Map<Fqn, Map<String, Object>> inserts = new LinkedHashMap<Fqn, Map<String, Object>>();
+         Set<Fqn> created = new LinkedHashSet<Fqn>();
+         for (Map.Entry<Fqn, List<Modification>> entry : dataChanges.entrySet())
+         {
+            Fqn fqn = entry.getKey();
+            boolean clear = false;
+            Set<String> removed = new HashSet<String>();
+            Map<String, Object> stored = new HashMap<String, Object>();
+            for (Modification m : entry.getValue())
+            {
+               switch (m.getType())
+               {
+                  case PUT_KEY_VALUE:
+                     stored.put(encodeKey(m.getKey()), m.getValue());
+                     created.add(fqn);
+                     break;
+                  case PUT_DATA:
+                  case PUT_DATA_ERASE:
+                     // the attribute map is definitive, see put(Fqn, Map)
+                     clear = true;
+                     removed.clear();
+                     stored.clear();
+                     if (m.getData() != null)
+                     {
+                        for (Object o : m.getData().entrySet())
+                        {
+                           Map.Entry attribute = (Map.Entry) o;
+                           stored.put(encodeKey(attribute.getKey()), attribute.getValue());
+                        }
+                     }
+                     created.add(fqn);
+                     break;
+                  case REMOVE_DATA:
+                     clear = true;
+                     removed.clear();
+                     stored.clear();
+                     break;
+                  case REMOVE_KEY_VALUE:
+                     String key = encodeKey(m.getKey());
+                     stored.remove(key);
+                     removed.add(key);
+                     break;
+                  default:
+                     throw new CacheException("Unknown modification " + m.getType());
+               }
+            }
+            if (clear)
+            {
+               cleared.add(fqn);
+            }
+            else
+            {
+               removed.addAll(stored.keySet());
+               if (!removed.isEmpty()) deletes.put(fqn, removed);
+            }
+            if (!stored.isEmpty()) inserts.put(fqn, stored);
+         }
+
+         // new nodes need their missing ancestors inserted too, see addNewSubtree()
+         Set<Fqn> newNodes = new LinkedHashSet<Fqn>();
+         for (Fqn fqn : created)
+         {
+            Fqn node = fqn;
+            while (!newNodes.contains(node) && !exists(node))
+            {
+               newNodes.add(node);
+               if (node.isRoot()) break;
+               node = node.getParent();
+            }
+         }
+
+         con = cf.getConnection();
+         if (!cleared.isEmpty())
+         {
+            ps = prepareAndLogStatement(con, config.getDeleteAttributesSql());
+            int batchCount = 0;
+            for (Fqn fqn : cleared)
+            {
+               ps.setString(1, fqn.toString());
+               batchCount = addToBatch(ps, batchCount);
+            }
+            flushBatch(ps, batchCount);
+            safeClose(ps);
+            ps = null;
+         }
+         if (!deletes.isEmpty())
+         {
+            ps = prepareAndLogStatement(con, config.getDeleteAttributeSql());
+            int batchCount = 0;
+            for (Map.Entry<Fqn, Set<String>> delete : deletes.entrySet())
+            {
+               for (String key : delete.getValue())
+               {
+                  ps.setString(1, delete.getKey().toString());
+                  ps.setString(2, key);
+                  batchCount = addToBatch(ps, batchCount);
+               }
+            }
+            flushBatch(ps, batchCount);
+            safeClose(ps);
+            ps = null;
+         }
+         if (!newNodes.isEmpty())
+         {
+            ps = prepareAndLogStatement(con, config.getInsertNodeSql());
+            int batchCount = 0;
+            for (Fqn fqn : newNodes)
+            {
+               populatePreparedStatementForInsert(fqn, null, ps);
+               batchCount = addToBatch(ps, batchCount);
+            }
+            flushBatch(ps, batchCount);
+            safeClose(ps);
+            ps = null;
+         }
+         if (!inserts.isEmpty())
+         {
+            ps = prepareAndLogStatement(con, config.getInsertAttributeSql());
+            int batchCount = 0;
+            for (Map.Entry<Fqn, Map<String, Object>> insert : inserts.entrySet())
+            {
+               batchCount = addAttributesToBatch(ps, insert.getKey(), insert.getValue(), batchCount);
+            }
+            flushBatch(ps, batchCount);
+         }
+      }
+      catch (SQLException e)
+      {
+         reportAndRethrowError("Failed to store modifications to " + fqns, e);
+      }
+      finally
+      {
+         safeClose(ps);
+         cf.close(con);
+         lock.releaseAllLocks(fqns);
+      }
+   }
+
+   @Override
+   protected void storeStateHelper(Fqn subtree, List nodeData, boolean moveToBuddy) throws Exception
+   {
+      lock.acquireLock(subtree, true);
+      Connection con = null;
+      PreparedStatement nodes = null;
+      PreparedStatement attributes = null;
+      try
+      {
+         con = cf.getConnection();
+         nodes = prepareAndLogStatement(con, config.getInsertNodeSql());
+         attributes = prepareAndLogStatement(con, config.getInsertAttributeSql());
+         int nodeCount = 0;
+         int attributeCount = 0;
+         for (Object aNodeData : nodeData)
+         {
+            NodeData nd = (NodeData) aNodeData;
+            if (nd.isMarker()) break;
+            Fqn fqn = moveToBuddy ? buddyFqnTransformer.getBackupFqn(subtree, nd.getFqn()) : nd.getFqn();
+
+            populatePreparedStatementForInsert(fqn, null, nodes);
+            nodeCount = addToBatch(nodes, nodeCount);
+            Map<Object, Object> data = nd.getAttributes();
+            if (data != null && !data.isEmpty())
+            {
+               Map<String, Object> encoded = new HashMap<String, Object>(data.size());
+               for (Map.Entry<Object, Object> attribute : data.entrySet())
+               {
+                  encoded.put(encodeKey(attribute.getKey()), attribute.getValue());
+               }
+               attributeCount = addAttributesToBatch(attributes, fqn, encoded, attributeCount);
+            }
+         }
+         // nodes first, so that attribute rows never refer to a missing node
+         flushBatch(nodes, nodeCount);
+         flushBatch(attributes, attributeCount);
+      }
+      finally
+      {
+         lock.releaseLock(subtree);
+         safeClose(nodes);
+         safeClose(attributes);
+         cf.close(con);
+      }
+   }
+
+   /**
+    * Subscribes to contract.
+    * Performance Note: O(2) db calls.
+    */
+   @Override
+   protected void getNodeDataList(Fqn fqn, List<NodeData> list) throws Exception
+   {
+      if (!exists(fqn)) return;
+
+      Connection con = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try
+      {
+         con = cf.getConnection();
+         String fqnString = fqn.toString();
+         ps = prepareAndLogStatement(con, config.getRecursiveAttributesSql(), fqnString, getFqnWildcardString(fqnString, fqn));
+         rs = ps.executeQuery();
+
+         // rows are ordered by fqn, so all the attributes of a node are read one after the other
+         String path = null;
+         Map<Object, Object> attributes = null;
+         while (rs.next())
+         {
+            String rowPath = rs.getString(1);
+            if (!rowPath.equals(path))
+            {
+               addNodeData(list, path, attributes);
+               path = rowPath;
+               attributes = new HashMap<Object, Object>();
+            }
+            String key = rs.getString(2);
+            if (key != null) attributes.put(decodeKey(key), readValue(rs, 3));
+         }
+         addNodeData(list, path, attributes);
+      }
+      catch (SQLException e)
+      {
+         log.error("Failed to load state for node(" + fqn + ") :" + e.getMessage(), e);
+         throw new IllegalStateException("Failed to load state for node(" + fqn + ") :" + e.getMessage());
+      }
+      finally
+      {
+         safeClose(rs);
+         safeClose(ps);
+         cf.close(con);
+      }
+   }
+
+   private void addNodeData(List<NodeData> list, String path, Map<Object, Object> attributes)
+   {
+      if (path == null) return;
+      Fqn fqn = Fqn.fromString(path);
+      list.add(attributes.isEmpty() ? new NodeData(fqn) : new NodeData(fqn, attributes, true));
+   }
+
+   /**
+    * Loads a node from the database, reading its attributes row by row.
+    *
+    * @param name the fqn
+    * @return non-null Map representing the node,
+    *         null if there is no row with the fqn in the node table,
+    *         NULL_NODE_IN_ROW if the node exists but has no attributes.
+    */
+   @Override
+   protected Map<Object, Object> loadNode(Fqn name)
+   {
+      Map<Object, Object> node = null;
+      Connection con = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try
+      {
+         con = cf.getConnection();
+         ps = prepareAndLogStatement(con, config.getSelectAttributesSql(), name.toString());
+         rs = ps.executeQuery();
+         while (rs.next())
+         {
+            if (node == null) node = new HashMap<Object, Object>();
+            // the node's row, joined with no attribute
+            String key = rs.getString(1);
+            if (key != null) node.put(decodeKey(key), readValue(rs, 2));
+         }
+      }
+      catch (Exception e)
+      {
+         reportAndRethrowError("Failed to load node for fqn " + name, e);
+      }
+      finally
+      {
+         safeClose(rs);
+         safeClose(ps);
+         cf.close(con);
+      }
+
+      return node != null && node.isEmpty() ? NULL_NODE_IN_ROW : node;
+   }
+
+   /**
+    * Returns the value of an attribute, or {@link #NO_ATTRIBUTE} if the node has no such attribute.
+    */
+   private Object loadAttribute(Fqn name, String encodedKey) throws Exception
+   {
+      Connection con = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try
+      {
+         con = cf.getConnection();
+         ps = prepareAndLogStatement(con, config.getSelectAttributeSql(), name.toString(), encodedKey);
+         rs = ps.executeQuery();
+         return rs.next() ? readValue(rs, 1) : NO_ATTRIBUTE;
+      }
+      catch (SQLException e)
+      {
+         reportAndRethrowError("Failed to load attribute " + encodedKey + " of node " + name, e);
+         return null;
+      }
+      finally
+      {
+         safeClose(rs);
+         safeClose(ps);
+         cf.close(con);
+      }
+   }
+
+   private void insertAttributes(Fqn name, Map<String, Object> attributes) throws Exception
+   {
+      Connection con = null;
+      PreparedStatement ps = null;
+      try
+      {
+         con = cf.getConnection();
+         ps = prepareAndLogStatement(con, config.getInsertAttributeSql());
+         flushBatch(ps, addAttributesToBatch(ps, name, attributes, 0));
+      }
+      catch (SQLException e)
+      {
+         reportAndRethrowError("Failed to insert attributes of node " + name, e);
+      }
+      finally
+      {
+         safeClose(ps);
+         cf.close(con);
+      }
+   }
+
+   private void deleteAttributes(Fqn name, String sql, String... params) throws Exception
+   {
+      Connection con = null;
+      PreparedStatement ps = null;
+      try
+      {
+         con = cf.getConnection();
+         ps = prepareAndLogStatement(con, sql, params);
+         ps.executeUpdate();
+      }
+      catch (SQLException e)
+      {
+         reportAndRethrowError("Failed to remove attributes of node " + name, e);
+      }
+      finally
+      {
+         safeClose(ps);
+         cf.close(con);
+      }
+   }
+
+   /**
+    * Expects a PreparedStatement binded to {@link AttributeRowJDBCCacheLoaderConfig#getInsertAttributeSql()}
+    */
+   private int addAttributesToBatch(PreparedStatement ps, Fqn name, Map<String, Object> attributes, int batchCount)
+         throws Exception
+   {
+      String fqnString = name.toString();
+      for (Map.Entry<String, Object> attribute : attributes.entrySet())
+      {
+         ps.setString(1, fqnString);
+         ps.setString(2, attribute.getKey());
+         setValue(ps, 3, attribute.getValue());
+         batchCount = addToBatch(ps, batchCount);
+      }
+      return batchCount;
+   }
+
+   /**
+    * Adds the statement's current parameters to its batch, executing the batch once it holds as many statements as
+    * configured, or executes the statement right away if batching is disabled.
+    *
+    * @return the number of statements in the batch
+    */
+   private int addToBatch(PreparedStatement ps, int batchCount) throws SQLException
+   {
+      if (!config.isBatchEnabled())
+      {
+         ps.executeUpdate();
+         return 0;
+      }
+      ps.addBatch();
+      if (++batchCount < config.getBatchSize()) return batchCount;
+      flushBatch(ps, batchCount);
+      return 0;
+   }
+
+   private void flushBatch(PreparedStatement ps, int batchCount) throws SQLException
+   {
+      if (batchCount == 0) return;
+      for (int result : ps.executeBatch())
+      {
+         if (result == Statement.EXECUTE_FAILED)
+         {
+            throw new SQLException("Failure executing batch of " + batchCount + " statements");
+         }
+      }
+   }
+
+   private void setValue(PreparedStatement ps, int index, Object value) throws Exception
+   {
+      ByteBuffer byteBuffer = marshall(value);
+      ps.setBinaryStream(index, byteBuffer.getStream(), byteBuffer.getLength());
+   }
+
+   private Object readValue(ResultSet rs, int index) throws Exception
+   {
+      InputStream is = rs.getBinaryStream(index);
+      if (is == null || rs.wasNull()) return null;
+      try
+      {
+         return unmarshall(is);
+      }
+      finally
+      {
+         safeClose(is);
+      }
+   }
+
+   /**
+    * Encodes an attribute key for the key column.  String keys are stored as they are, and other keys as the
+    * hexadecimal form of their marshalled bytes, so these must marshall to the same bytes whenever they are equal, as
+    * primitive wrappers and enums do.  The encoded key must fit the key column's type.
+    *
+    * @param key the attribute key
+    * @return the key as stored in the key column
+    */
+   protected String encodeKey(Object key) throws Exception
+   {
+      if (key instanceof String) return STRING_KEY + (String) key;
+
+      ByteBuffer bytes = marshall(key);
+      byte[] buf = bytes.getBuf();
+      StringBuilder sb = new StringBuilder(1 + 2 * bytes.getLength()).append(MARSHALLED_KEY);
+      for (int i = bytes.getOffset(); i < bytes.getOffset() + bytes.getLength(); i++)
+      {
+         sb.append(HEX_DIGITS[(buf[i] >> 4) & 0xF]).append(HEX_DIGITS[buf[i] & 0xF]);
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Reverses {@link #encodeKey(Object)}.
+    */
+   protected Object decodeKey(String encodedKey) throws Exception
+   {
+      switch (encodedKey.charAt(0))
+      {
+         case STRING_KEY:
+            return encodedKey.substring(1);
+         case MARSHALLED_KEY:
+            byte[] bytes = new byte[(encodedKey.length() - 1) / 2];
+            for (int i = 0; i < bytes.length; i++)
+            {
+               bytes[i] = (byte) Integer.parseInt(encodedKey.substring(1 + 2 * i, 3 + 2 * i), 16);
+            }
+            return unmarshall(new ByteArrayInputStream(bytes));
+         default:
+            throw new CacheException("Unknown attribute key " + encodedKey);
+      }
+   }
+
+   /**
+    * Creates the attribute table along with the node table, see {@link AdjListJDBCCacheLoader#start()}.
+    */
+   @Override
+   public void start() throws Exception
+   {
+      // creating the root node in super.start() only touches the node table
+      super.start();
+
+      Connection con = null;
+      Statement st = null;
+      try
+      {
+         con = cf.getConnection();
+         if (config.getCreateTable() && !tableExists(config.getAttributeTable(), con))
+         {
+            if (log.isDebugEnabled()) log.debug("executing ddl: " + config.getCreateAttributeTableDDL());
+            st = con.createStatement();
+            st.executeUpdate(config.getCreateAttributeTableDDL());
+         }
+      }
+      finally
+      {
+         safeClose(st);
+         cf.close(con);
+      }
+   }
+
+   @Override
+   public void stop()
+   {
+      if (config.getDropTable())
+      {
+         Connection con = null;
+         Statement st = null;
+         try
+         {
+            if (log.isDebugEnabled()) log.debug("executing ddl: " + config.getDropAttributeTableDDL());
+            con = cf.getConnection();
+            st = con.createStatement();
+            st.executeUpdate(config.getDropAttributeTableDDL());
+         }
+         catch (SQLException e)
+         {
+            log.error("Failed to drop table: " + e.getMessage(), e);
+         }
+         finally
+         {
+            safeClose(st);
+            cf.close(con);
+         }
+      }
+      super.stop();
+   }
+
+   @Override
+   protected Log getLogger()
+   {
+      return log;
+   }
+}
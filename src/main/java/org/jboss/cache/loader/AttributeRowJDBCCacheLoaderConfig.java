@@ -0,0 +1,224 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.loader;
+
+import org.jboss.cache.config.CacheLoaderConfig.IndividualCacheLoaderConfig;
+import org.jboss.cache.util.Util;
+
+import java.util.Properties;
+
+/**
+ * Builds the SQLs needed by <tt>AttributeRowJDBCCacheLoader</tt>.  Nodes are kept in the table configured as for
+ * {@link JDBCCacheLoaderConfig}, and their attributes in a second table holding one row per attribute.
+ *
+ * @since 3.1
+ */
+public class AttributeRowJDBCCacheLoaderConfig extends JDBCCacheLoaderConfig
+{
+   private static final long serialVersionUID = 2651093498157202310L;
+
+   private static final String ATTRIBUTE_TABLE_SUFFIX = "_attr";
+   private static final String KEY_COLUMN_DEFAULT = "attr_key";
+   private static final String KEY_TYPE_DEFAULT = "VARCHAR(255)";
+   private static final String VALUE_COLUMN_DEFAULT = "attr_value";
+
+   // no initializers, as these are set by setProperties() while the superclass is being constructed
+   private String attributeTable;
+   private String keyColumn;
+   private String keyType;
+   private String valueColumn;
+
+   public AttributeRowJDBCCacheLoaderConfig(IndividualCacheLoaderConfig base)
+   {
+      super(base);
+      setClassName(AttributeRowJDBCCacheLoader.class.getName());
+   }
+
+   public AttributeRowJDBCCacheLoaderConfig()
+   {
+      setClassName(AttributeRowJDBCCacheLoader.class.getName());
+   }
+
+   @Override
+   public void setProperties(Properties props)
+   {
+      super.setProperties(props);
+      attributeTable = props.getProperty("cache.jdbc.attribute.table");
+      keyColumn = props.getProperty("cache.jdbc.attribute.key.column");
+      keyType = props.getProperty("cache.jdbc.attribute.key.type");
+      valueColumn = props.getProperty("cache.jdbc.attribute.value.column");
+   }
+
+   /**
+    * Returns the name of the table holding the attributes, by default the node table's name suffixed with
+    * <tt>_attr</tt>.
+    */
+   public String getAttributeTable()
+   {
+      return attributeTable == null ? table + ATTRIBUTE_TABLE_SUFFIX : attributeTable;
+   }
+
+   public void setAttributeTable(String attributeTable)
+   {
+      testImmutability("attributeTable");
+      this.attributeTable = attributeTable;
+   }
+
+   public String getKeyColumn()
+   {
+      return keyColumn == null ? KEY_COLUMN_DEFAULT : keyColumn;
+   }
+
+   public void setKeyColumn(String keyColumn)
+   {
+      testImmutability("keyColumn");
+      this.keyColumn = keyColumn;
+   }
+
+   /**
+    * Returns the SQL type of the key column.  Keys are stored as strings, see
+    * {@link AttributeRowJDBCCacheLoader#encodeKey(Object)}.
+    */
+   public String getKeyType()
+   {
+      return keyType == null ? KEY_TYPE_DEFAULT : keyType;
+   }
+
+   public void setKeyType(String keyType)
+   {
+      testImmutability("keyType");
+      this.keyType = keyType;
+   }
+
+   public String getValueColumn()
+   {
+      return valueColumn == null ? VALUE_COLUMN_DEFAULT : valueColumn;
+   }
+
+   public void setValueColumn(String valueColumn)
+   {
+      testImmutability("valueColumn");
+      this.valueColumn = valueColumn;
+   }
+
+   public String getCreateAttributeTableDDL()
+   {
+      return "CREATE TABLE " + getAttributeTable() + "(" + fqnColumn + " " + fqnType + " NOT NULL, " + getKeyColumn()
+            + " " + getKeyType() + " NOT NULL, " + getValueColumn() + " " + nodeType + ", PRIMARY KEY (" + fqnColumn
+            + ", " + getKeyColumn() + "))";
+   }
+
+   public String getDropAttributeTableDDL()
+   {
+      return "DROP TABLE " + getAttributeTable();
+   }
+
+   /**
+    * Returns an sql that will return a row with the key and value of each attribute of a node, or a single row with
+    * null key and value if the node has no attributes, or no row at all if the node does not exist.
+    */
+   public String getSelectAttributesSql()
+   {
+      return "SELECT a." + getKeyColumn() + ", a." + getValueColumn() + " FROM " + table + " n LEFT OUTER JOIN "
+            + getAttributeTable() + " a ON n." + fqnColumn + " = a." + fqnColumn + " WHERE n." + fqnColumn + " = ?";
+   }
+
+   /**
+    * As {@link #getSelectAttributesSql()}, for a node and all its children, ordered by fqn.
+    */
+   public String getRecursiveAttributesSql()
+   {
+      return "SELECT n." + fqnColumn + ", a." + getKeyColumn() + ", a." + getValueColumn() + " FROM " + table
+            + " n LEFT OUTER JOIN " + getAttributeTable() + " a ON n." + fqnColumn + " = a." + fqnColumn + " WHERE n."
+            + fqnColumn + " = ? OR n." + fqnColumn + " LIKE ? ORDER BY n." + fqnColumn;
+   }
+
+   public String getSelectAttributeSql()
+   {
+      return "SELECT " + getValueColumn() + " FROM " + getAttributeTable() + " WHERE " + fqnColumn + " = ? AND "
+            + getKeyColumn() + " = ?";
+   }
+
+   public String getInsertAttributeSql()
+   {
+      return "INSERT INTO " + getAttributeTable() + " (" + fqnColumn + ", " + getKeyColumn() + ", " + getValueColumn()
+            + ") VALUES (?, ?, ?)";
+   }
+
+   public String getUpdateAttributeSql()
+   {
+      return "UPDATE " + getAttributeTable() + " SET " + getValueColumn() + " = ? WHERE " + fqnColumn + " = ? AND "
+            + getKeyColumn() + " = ?";
+   }
+
+   public String getDeleteAttributeSql()
+   {
+      return "DELETE FROM " + getAttributeTable() + " WHERE " + fqnColumn + " = ? AND " + getKeyColumn() + " = ?";
+   }
+
+   /**
+    * Returns the sql string for removing all the attributes of a node.
+    */
+   public String getDeleteAttributesSql()
+   {
+      return "DELETE FROM " + getAttributeTable() + " WHERE " + fqnColumn + " = ?";
+   }
+
+   /**
+    * Returns the sql string for removing the attributes of a node and all its children.
+    */
+   public String getDeleteSubtreeAttributesSql()
+   {
+      return "DELETE FROM " + getAttributeTable() + " WHERE " + fqnColumn + " = ? OR " + fqnColumn + " LIKE ?";
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (obj instanceof AttributeRowJDBCCacheLoaderConfig && super.equals(obj))
+      {
+         AttributeRowJDBCCacheLoaderConfig other = (AttributeRowJDBCCacheLoaderConfig) obj;
+         return Util.safeEquals(getAttributeTable(), other.getAttributeTable())
+               && Util.safeEquals(getKeyColumn(), other.getKeyColumn())
+               && Util.safeEquals(getKeyType(), other.getKeyType())
+               && Util.safeEquals(getValueColumn(), other.getValueColumn());
+      }
+      return false;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      int result = super.hashCode();
+      result = 31 * result + getAttributeTable().hashCode();
+      result = 31 * result + getKeyColumn().hashCode();
+      result = 31 * result + getKeyType().hashCode();
+      result = 31 * result + getValueColumn().hashCode();
+      return result;
+   }
+
+   @Override
+   public AttributeRowJDBCCacheLoaderConfig clone() throws CloneNotSupportedException
+   {
+      return (AttributeRowJDBCCacheLoaderConfig) super.clone();
+   }
+}
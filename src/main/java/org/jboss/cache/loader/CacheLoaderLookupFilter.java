@@ -0,0 +1,516 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.loader;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.config.CacheLoaderConfig;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.factories.annotations.Inject;
+import org.jboss.cache.factories.annotations.Start;
+import org.jboss.cache.factories.annotations.Stop;
+import org.jboss.cache.jmx.annotations.MBean;
+import org.jboss.cache.jmx.annotations.ManagedAttribute;
+import org.jboss.cache.jmx.annotations.ManagedOperation;
+import org.jboss.cache.util.BloomFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps lookups of nodes known to be absent from reaching the {@link CacheLoader}.
+ * <p/>
+ * Two mechanisms are used, each optional and configured in the {@link CacheLoaderConfig}:
+ * <ul>
+ * <li>a negative lookup cache, which remembers the Fqns the cache loader reported as absent for a configurable time,
+ * optionally only within a set of regions, and</li>
+ * <li>a {@link BloomFilter} of the Fqns that have been persisted, built by walking the cache loader with
+ * {@link CacheLoader#getChildrenNames(org.jboss.cache.Fqn)} on startup and after persistent state is integrated, and kept
+ * up to date as nodes are stored.</li>
+ * </ul>
+ * The Bloom filter is only used if this cache is the only writer to its cache loader, i.e. the loader is not shared,
+ * chained or delegating to a remote store, since nodes written by anyone else would not be in the filter.  Entries
+ * in the negative lookup cache are forgotten whenever the node is stored or invalidated.
+ *
+ * @since 3.1
+ */
+@ThreadSafe
+@MBean(objectName = "CacheLoaderLookupFilter", description = "Filters lookups of nodes known to be absent from the cache loader")
+public class CacheLoaderLookupFilter
+{
+   private static final Log log = LogFactory.getLog(CacheLoaderLookupFilter.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   /**
+    * False positive rate the Bloom filter is sized for, at its expected number of nodes.
+    */
+   private static final double BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.01;
+   private static final int WRITE_STAMP_STRIPES = 64;
+
+   private Configuration configuration;
+   private CacheLoaderManager clm;
+
+   private long ttl;
+   private int maxEntries;
+   /**
+    * Regions of the negative lookup cache, deepest first.
+    */
+   private List<NegativeRegion> regions = Collections.emptyList();
+   private long bloomFilterExpectedNodes;
+   private volatile BloomFilter bloomFilter;
+   private volatile BloomFilter rebuilding;
+   /**
+    * Bumped whenever a node is stored or forgotten, so that a miss reported by the loader concurrently is not
+    * remembered.
+    */
+   private final AtomicLongArray writeStamps = new AtomicLongArray(WRITE_STAMP_STRIPES);
+
+   private final AtomicLong lookups = new AtomicLong();
+   private final AtomicLong negativeCacheHits = new AtomicLong();
+   private final AtomicLong bloomFilterRejections = new AtomicLong();
+   private final AtomicLong bloomFilterFalsePositives = new AtomicLong();
+   private final AtomicLong loaderLookups = new AtomicLong();
+   private final AtomicLong loaderMisses = new AtomicLong();
+
+   @Inject
+   void injectDependencies(Configuration configuration, CacheLoaderManager clm)
+   {
+      this.configuration = configuration;
+      this.clm = clm;
+   }
+
+   /**
+    * Runs after the cache loader is started, and before it is used to preload the cache.
+    */
+   @Start(priority = 20)
+   void start()
+   {
+      CacheLoaderConfig config = configuration.getCacheLoaderConfig();
+      if (config == null || clm.getCacheLoader() == null) return;
+
+      ttl = config.getNegativeLookupCacheTTL();
+      maxEntries = config.getNegativeLookupCacheMaxEntries();
+      if (ttl > 0)
+      {
+         List<NegativeRegion> r = new ArrayList<NegativeRegion>();
+         String configured = config.getNegativeLookupCacheRegions();
+         if (configured == null || configured.trim().length() == 0)
+         {
+            r.add(new NegativeRegion(Fqn.ROOT));
+         }
+         else
+         {
+            for (String fqn : configured.split(","))
+            {
+               r.add(new NegativeRegion(Fqn.fromString(fqn.trim())));
+            }
+            Collections.sort(r, new Comparator<NegativeRegion>()
+            {
+               public int compare(NegativeRegion r1, NegativeRegion r2)
+               {
+                  return r2.root.size() - r1.root.size();
+               }
+            });
+         }
+         regions = r;
+      }
+
+      bloomFilterExpectedNodes = 0;
+      if (config.getBloomFilterExpectedNodes() > 0)
+      {
+         if (isSoleWriter(config))
+         {
+            bloomFilterExpectedNodes = config.getBloomFilterExpectedNodes();
+         }
+         else
+         {
+            log.info("Cache loader is shared, chained or delegates to another store; not maintaining a Bloom filter of persisted nodes");
+         }
+      }
+      rebuild();
+   }
+
+   @Stop
+   void stop()
+   {
+      bloomFilter = null;
+      rebuilding = null;
+      regions = Collections.emptyList();
+   }
+
+   private boolean isSoleWriter(CacheLoaderConfig config)
+   {
+      if (config.isShared() || config.useChainingCacheLoader()) return false;
+      CacheLoader loader = clm.getCacheLoader();
+      while (loader instanceof AbstractDelegatingCacheLoader)
+      {
+         loader = ((AbstractDelegatingCacheLoader) loader).getCacheLoader();
+      }
+      return !(loader instanceof ClusteredCacheLoader || loader instanceof TcpDelegatingCacheLoader
+            || loader instanceof LocalDelegatingCacheLoader || loader instanceof ChainingCacheLoader);
+   }
+
+   /**
+    * @return true if the negative lookup cache or the Bloom filter is in use.
+    */
+   public boolean isEnabled()
+   {
+      return !regions.isEmpty() || bloomFilterExpectedNodes > 0;
+   }
+
+   /**
+    * Tests whether a node might be in the cache loader.
+    *
+    * @param fqn node to look up
+    * @return false if the node is known to be absent from the cache loader, so that it needn't be consulted
+    */
+   public boolean mightExist(Fqn fqn)
+   {
+      if (fqn.isRoot() || !isEnabled()) return true;
+      lookups.incrementAndGet();
+      BloomFilter bf = bloomFilter;
+      if (bf != null && !bf.mightContain(hash(fqn)))
+      {
+         bloomFilterRejections.incrementAndGet();
+         if (trace) log.trace("Bloom filter rejects lookup of " + fqn);
+         return false;
+      }
+      NegativeRegion region = regionFor(fqn);
+      if (region != null && region.isAbsent(fqn))
+      {
+         negativeCacheHits.incrementAndGet();
+         if (bf != null) bloomFilterFalsePositives.incrementAndGet();
+         if (trace) log.trace("Negative lookup cache rejects lookup of " + fqn);
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * @param fqn node about to be looked up in the cache loader
+    * @return a stamp to pass to {@link #recordLoaderLookup(org.jboss.cache.Fqn, boolean, long)} once the lookup completes
+    */
+   public long getWriteStamp(Fqn fqn)
+   {
+      return writeStamps.get(stripe(fqn));
+   }
+
+   /**
+    * Records the outcome of looking a node up in the cache loader, remembering it as absent if it wasn't found and
+    * hasn't been stored since the lookup started.
+    *
+    * @param fqn   node looked up
+    * @param found whether the cache loader had the node
+    * @param stamp value of {@link #getWriteStamp(org.jboss.cache.Fqn)} before the lookup
+    */
+   public void recordLoaderLookup(Fqn fqn, boolean found, long stamp)
+   {
+      if (!isEnabled()) return;
+      loaderLookups.incrementAndGet();
+      if (found) return;
+      loaderMisses.incrementAndGet();
+      if (bloomFilter != null && !fqn.isRoot()) bloomFilterFalsePositives.incrementAndGet();
+      NegativeRegion region = regionFor(fqn);
+      if (region != null)
+      {
+         region.add(fqn);
+         // a store racing with the lookup may have forgotten the node before it was added
+         if (writeStamps.get(stripe(fqn)) != stamp) region.entries.remove(fqn);
+      }
+   }
+
+   /**
+    * Records that a node has been written to the cache loader.  The node and its parents are added to the Bloom
+    * filter, and forgotten by the negative lookup cache.
+    *
+    * @param fqn node stored
+    */
+   public void recordPersisted(Fqn fqn)
+   {
+      if (!isEnabled()) return;
+      BloomFilter bf = bloomFilter;
+      BloomFilter rb = rebuilding;
+      for (Fqn f = fqn; ; f = f.getParent())
+      {
+         if (bf != null || rb != null)
+         {
+            long hash = hash(f);
+            // parents already in the filter were added along with an earlier child
+            boolean added = bf != null && bf.add(hash);
+            if (rb != null) added = rb.add(hash) || added;
+            if (!added && rb == null && regions.isEmpty()) break;
+         }
+         forgetOne(f);
+         if (f.isRoot()) break;
+      }
+   }
+
+   /**
+    * Forgets that a node is absent, e.g. because it has been invalidated by a write elsewhere.
+    *
+    * @param fqn node to forget
+    */
+   public void forget(Fqn fqn)
+   {
+      if (!regions.isEmpty()) forgetOne(fqn);
+   }
+
+   private void forgetOne(Fqn fqn)
+   {
+      writeStamps.incrementAndGet(stripe(fqn));
+      NegativeRegion region = regionFor(fqn);
+      if (region != null) region.entries.remove(fqn);
+   }
+
+   /**
+    * Forgets all nodes remembered as absent and rebuilds the Bloom filter from the contents of the cache loader.  Called
+    * when the contents of the cache loader have been replaced, e.g. by integrating persistent state.  If the Bloom
+    * filter cannot be rebuilt, it is not used until the next successful rebuild.
+    */
+   public void rebuild()
+   {
+      for (NegativeRegion region : regions) region.clear();
+      if (bloomFilterExpectedNodes <= 0) return;
+
+      BloomFilter bf = new BloomFilter(bloomFilterExpectedNodes, BLOOM_FILTER_FALSE_POSITIVE_RATE);
+      rebuilding = bf;
+      try
+      {
+         int count = addPersistedNodes(bf, clm.getCacheLoader(), Fqn.ROOT);
+         bloomFilter = bf;
+         if (log.isDebugEnabled()) log.debug("Built Bloom filter of " + count + " persisted nodes: " + bf);
+      }
+      catch (Exception e)
+      {
+         bloomFilter = null;
+         log.warn("Unable to build Bloom filter of persisted nodes; cache loader lookups won't be filtered by it", e);
+      }
+      finally
+      {
+         rebuilding = null;
+      }
+   }
+
+   /**
+    * Adds the nodes under a node to the Bloom filter.  Only the names of children are read from the cache loader, so
+    * that building the filter doesn't load any attributes, however large the store.
+    *
+    * @return the number of nodes added
+    */
+   private int addPersistedNodes(BloomFilter bf, CacheLoader loader, Fqn fqn) throws Exception
+   {
+      Set<?> childrenNames = loader.getChildrenNames(fqn);
+      if (childrenNames == null) return 0;
+      int count = 0;
+      for (Object childName : childrenNames)
+      {
+         Fqn child = Fqn.fromRelativeElements(fqn, childName);
+         bf.add(hash(child));
+         count += 1 + addPersistedNodes(bf, loader, child);
+      }
+      return count;
+   }
+
+   private NegativeRegion regionFor(Fqn fqn)
+   {
+      for (NegativeRegion region : regions)
+      {
+         if (fqn.isChildOrEquals(region.root)) return region;
+      }
+      return null;
+   }
+
+   private static int stripe(Fqn fqn)
+   {
+      return fqn.hashCode() & (WRITE_STAMP_STRIPES - 1);
+   }
+
+   /**
+    * A well mixed 64-bit hash of an Fqn, as needed by the {@link BloomFilter}.
+    */
+   static long hash(Fqn fqn)
+   {
+      long h = fqn.size();
+      for (Object element : fqn.peekElements())
+      {
+         h = h * 0x9E3779B97F4A7C15L + (element == null ? 0 : element.hashCode());
+      }
+      // finalizer of MurmurHash3's 64-bit variant
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+   }
+
+   @ManagedAttribute(description = "number of lookups of nodes not in memory checked by the filter")
+   public long getLookups()
+   {
+      return lookups.get();
+   }
+
+   @ManagedAttribute(description = "number of lookups rejected by the negative lookup cache")
+   public long getNegativeCacheHits()
+   {
+      return negativeCacheHits.get();
+   }
+
+   @ManagedAttribute(description = "number of lookups rejected by the Bloom filter of persisted nodes")
+   public long getBloomFilterRejections()
+   {
+      return bloomFilterRejections.get();
+   }
+
+   @ManagedAttribute(description = "number of lookups that reached the cache loader")
+   public long getLoaderLookups()
+   {
+      return loaderLookups.get();
+   }
+
+   @ManagedAttribute(description = "number of lookups that reached the cache loader and did not find the node")
+   public long getLoaderMisses()
+   {
+      return loaderMisses.get();
+   }
+
+   @ManagedAttribute(description = "fraction of lookups reaching the cache loader that did not find the node")
+   public double getMissRate()
+   {
+      long l = loaderLookups.get();
+      return l == 0 ? 0 : (double) loaderMisses.get() / l;
+   }
+
+   @ManagedAttribute(description = "fraction of lookups of absent nodes the Bloom filter did not reject")
+   public double getFalsePositiveRate()
+   {
+      long falsePositives = bloomFilterFalsePositives.get();
+      long absent = falsePositives + bloomFilterRejections.get();
+      return absent == 0 ? 0 : (double) falsePositives / absent;
+   }
+
+   @ManagedAttribute(description = "false positive rate expected of the Bloom filter given the nodes added to it")
+   public double getExpectedFalsePositiveRate()
+   {
+      BloomFilter bf = bloomFilter;
+      return bf == null ? 0 : bf.getExpectedFalsePositiveRate();
+   }
+
+   @ManagedAttribute(description = "number of nodes remembered as absent")
+   public int getNegativeCacheSize()
+   {
+      int size = 0;
+      for (NegativeRegion region : regions) size += region.entries.size();
+      return size;
+   }
+
+   @ManagedOperation
+   public void resetStatistics()
+   {
+      lookups.set(0);
+      negativeCacheHits.set(0);
+      bloomFilterRejections.set(0);
+      bloomFilterFalsePositives.set(0);
+      loaderLookups.set(0);
+      loaderMisses.set(0);
+   }
+
+   /**
+    * Nodes under a region root remembered as absent, mapped to when they are to be forgotten.
+    */
+   private class NegativeRegion
+   {
+      final Fqn root;
+      final ConcurrentMap<Fqn, Long> entries = new ConcurrentHashMap<Fqn, Long>();
+      /**
+       * Entries in the order they were added, which with a fixed TTL is the order they expire in.  Holds stale items
+       * for entries removed or re-added meanwhile until they expire.  Guarded by itself.
+       */
+      private final Queue<Expiry> expiries = new LinkedList<Expiry>();
+
+      NegativeRegion(Fqn root)
+      {
+         this.root = root;
+      }
+
+      boolean isAbsent(Fqn fqn)
+      {
+         Long expiry = entries.get(fqn);
+         if (expiry == null) return false;
+         if (expiry > System.currentTimeMillis()) return true;
+         entries.remove(fqn, expiry);
+         return false;
+      }
+
+      void add(Fqn fqn)
+      {
+         long now = System.currentTimeMillis();
+         synchronized (expiries)
+         {
+            // expired entries are purged from the head of the queue, each of them once
+            Expiry oldest;
+            while ((oldest = expiries.peek()) != null && oldest.expiry <= now)
+            {
+               expiries.poll();
+               entries.remove(oldest.fqn, oldest.expiry);
+            }
+            // full of live entries; leave them be rather than evict ones that may be hotter
+            if (entries.size() >= maxEntries) return;
+            long expiry = now + ttl;
+            entries.put(fqn, expiry);
+            expiries.add(new Expiry(fqn, expiry));
+         }
+      }
+
+      void clear()
+      {
+         synchronized (expiries)
+         {
+            entries.clear();
+            expiries.clear();
+         }
+      }
+   }
+
+   private static class Expiry
+   {
+      final Fqn fqn;
+      final Long expiry;
+
+      Expiry(Fqn fqn, Long expiry)
+      {
+         this.fqn = fqn;
+         this.expiry = expiry;
+      }
+   }
+}
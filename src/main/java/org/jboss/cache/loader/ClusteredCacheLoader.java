@@ -48,10 +48,10 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Vector;
 
 /**
  * A cache loader that consults other members in the cluster for values.  Does
@@ -125,29 +125,57 @@ public class ClusteredCacheLoader extends AbstractCacheLoader
       }
    }
 
-   @SuppressWarnings("deprecation")
    private Object callRemote(DataCommand dataCommand) throws Exception
    {
       if (trace) log.trace("cache=" + cache.getLocalAddress() + "; calling with " + dataCommand);
       ClusteredGetCommand clusteredGet = commandsFactory.buildClusteredGetCommand(false, dataCommand);
-      List resps;
+      List found;
+
+      List<Address> preferred = getPreferredMembers(dataCommand.getFqn());
+      if (preferred.isEmpty())
+      {
+         found = callRemote(clusteredGet, null, cache.getMembers());
+      }
+      else
+      {
+         if (trace) log.trace("Asking preferred members " + preferred + " first");
+         found = callRemote(clusteredGet, new Vector<Address>(preferred), preferred);
+         if (found == null)
+         {
+            Vector<Address> others = new Vector<Address>(cache.getMembers());
+            others.remove(cache.getLocalAddress());
+            others.removeAll(preferred);
+            if (!others.isEmpty()) found = callRemote(clusteredGet, others, others);
+         }
+      }
+      return found == null ? null : found.get(1);
+   }
+
+   /**
+    * Sends a clustered get, returning as soon as one of the recipients has found the node.
+    *
+    * @param recipients recipients, or null to send to all members
+    * @param expected   members expected to respond
+    * @return the first response that found the node, or null if none did
+    */
+   @SuppressWarnings("deprecation")
+   private List callRemote(ClusteredGetCommand clusteredGet, Vector<Address> recipients, List<Address> expected) throws Exception
+   {
       // JBCACHE-1186
-      resps = cache.getRPCManager().callRemoteMethods(null, clusteredGet, GroupRequest.GET_ALL, config.getTimeout(), new ResponseValidityFilter(cache.getMembers(), cache.getLocalAddress()), false);
+      List resps = cache.getRPCManager().callRemoteMethods(recipients, clusteredGet, GroupRequest.GET_ALL, config.getTimeout(), new ResponseValidityFilter(expected, cache.getLocalAddress()), false);
 
       if (resps == null)
       {
          if (log.isInfoEnabled())
-            log.info("No replies to call " + dataCommand + ".  Perhaps we're alone in the cluster?");
-         throw new ReplicationException("No replies to call " + dataCommand + ".  Perhaps we're alone in the cluster?");
+            log.info("No replies to call " + clusteredGet + ".  Perhaps we're alone in the cluster?");
+         throw new ReplicationException("No replies to call " + clusteredGet + ".  Perhaps we're alone in the cluster?");
       }
       else
       {
+         if (trace) log.trace("got responses " + resps);
          // test for and remove exceptions
-         Iterator i = resps.iterator();
-         Object result = null;
-         while (i.hasNext())
+         for (Object o : resps)
          {
-            Object o = i.next();
             if (o instanceof Exception)
             {
                if (log.isDebugEnabled())
@@ -158,11 +186,7 @@ public class ClusteredCacheLoader extends AbstractCacheLoader
                // keep looping till we find a FOUND answer.
                List<Boolean> clusteredGetResp = (List<Boolean>) o;
                // found?
-               if (clusteredGetResp.get(0))
-               {
-                  result = clusteredGetResp.get(1);
-                  break;
-               }
+               if (clusteredGetResp.get(0)) return clusteredGetResp;
             }
             else if (!cache.getConfiguration().isUseRegionBasedMarshalling())
             {
@@ -171,12 +195,32 @@ public class ClusteredCacheLoader extends AbstractCacheLoader
             // else region was inactive on peer;
             // keep looping to see if anyone else responded
          }
-
-         if (trace) log.trace("got responses " + resps);
-         return result;
+         return null;
       }
    }
 
+   /**
+    * Chooses the members asked for a node before the rest of the cluster, by hashing its Fqn over the current view.
+    * Since all members see the same view, requests for the same Fqn go to the same members.
+    *
+    * @return preferred members, or an empty list if all members should be asked at once.
+    */
+   List<Address> getPreferredMembers(Fqn fqn)
+   {
+      int count = config.getPreferredMembers();
+      if (count <= 0) return Collections.emptyList();
+
+      List<Address> members = new ArrayList<Address>(cache.getMembers());
+      members.remove(cache.getLocalAddress());
+      // no point asking the same members twice
+      if (members.size() <= count) return Collections.emptyList();
+
+      int first = (fqn.hashCode() & Integer.MAX_VALUE) % members.size();
+      List<Address> preferred = new ArrayList<Address>(count);
+      for (int i = 0; i < count; i++) preferred.add(members.get((first + i) % members.size()));
+      return preferred;
+   }
+
    public Map get(Fqn name) throws Exception
    {
       return get0(name);
@@ -356,6 +400,9 @@ public class ClusteredCacheLoader extends AbstractCacheLoader
    {
    }
 
+   /**
+    * Stops waiting for responses as soon as one has found the requested node, or all expected members have responded.
+    */
    public static class ResponseValidityFilter implements RspFilter
    {
       private int numValidResponses = 0;
@@ -368,7 +415,7 @@ public class ClusteredCacheLoader extends AbstractCacheLoader
          this.pendingResponders.remove(localAddress);
       }
 
-      public boolean isAcceptable(Object object, Address address)
+      public synchronized boolean isAcceptable(Object object, Address address)
       {
          pendingResponders.remove(address);
 
@@ -382,7 +429,7 @@ public class ClusteredCacheLoader extends AbstractCacheLoader
          return true;
       }
 
-      public boolean needMoreResponses()
+      public synchronized boolean needMoreResponses()
       {
          return numValidResponses < 1 && pendingResponders.size() > 0;
       }
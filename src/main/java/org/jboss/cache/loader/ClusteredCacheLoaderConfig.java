@@ -35,6 +35,7 @@ public class ClusteredCacheLoaderConfig extends IndividualCacheLoaderConfig
 
    @Dynamic
    private long timeout = 10000;
+   private int preferredMembers = 0;
 
    public ClusteredCacheLoaderConfig()
    {
@@ -63,6 +64,22 @@ public class ClusteredCacheLoaderConfig extends IndividualCacheLoaderConfig
       this.timeout = timeout;
    }
 
+   /**
+    * @return the number of members, chosen by hashing the Fqn over the current view, that are asked for a node before
+    *         the rest of the cluster is asked.  0 means every member is asked at once.
+    * @since 3.1
+    */
+   public int getPreferredMembers()
+   {
+      return preferredMembers;
+   }
+
+   public void setPreferredMembers(int preferredMembers)
+   {
+      testImmutability("preferredMembers");
+      this.preferredMembers = preferredMembers;
+   }
+
    @Override
    public void setProperties(Properties props)
    {
@@ -75,6 +92,8 @@ public class ClusteredCacheLoaderConfig extends IndividualCacheLoaderConfig
       {
          log.info("Using default value for config property 'timeout' - " + timeout);
       }
+      String preferred = props.getProperty("preferredMembers");
+      if (preferred != null) preferredMembers = Integer.parseInt(preferred.trim());
    }
 
    @Override
@@ -83,7 +102,7 @@ public class ClusteredCacheLoaderConfig extends IndividualCacheLoaderConfig
       if (obj instanceof ClusteredCacheLoaderConfig && equalsExcludingProperties(obj))
       {
          ClusteredCacheLoaderConfig other = (ClusteredCacheLoaderConfig) obj;
-         return (this.timeout == other.timeout);
+         return (this.timeout == other.timeout) && (this.preferredMembers == other.preferredMembers);
       }
       return false;
    }
@@ -91,7 +110,7 @@ public class ClusteredCacheLoaderConfig extends IndividualCacheLoaderConfig
    @Override
    public int hashCode()
    {
-      return 31 * hashCodeExcludingProperties() + (int) timeout;
+      return 31 * (31 * hashCodeExcludingProperties() + (int) timeout) + preferredMembers;
    }
 
    @Override
@@ -24,7 +24,9 @@ package org.jboss.cache.loader;
 import net.jcip.annotations.ThreadSafe;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.CacheException;
 import org.jboss.cache.Fqn;
+import org.jboss.cache.Modification;
 import org.jboss.cache.config.CacheLoaderConfig;
 import org.jboss.cache.config.CacheLoaderConfig.IndividualCacheLoaderConfig;
 import org.jboss.cache.marshall.NodeData;
@@ -36,7 +38,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -51,7 +56,8 @@ import java.util.Map;
  * Additional configuration info: <br>
  * <ul>
  * <li>
- * cache.jdbc.batch.enable: whether or not to use batching on repetitive operations (e.g. inserts during state transfer).
+ * cache.jdbc.batch.enable: whether or not to use batching on repetitive operations (e.g. inserts during state transfer,
+ * or storing a list of modifications such as those of a transaction or those written by an {@link AsyncCacheLoader}).
  * Enabling batching should give an important performance boost. It might be required to disable this if the JDBC driver
  * does not support batching. Default set to 'true'
  * </li>
@@ -155,6 +161,164 @@ public class JDBCCacheLoader extends AdjListJDBCCacheLoader
       }
    }
 
+   /**
+    * As per interface's contract.
+    * Performance Note: if batching is enabled, the changes to each node's data are merged in memory, so that every node
+    * touched is read once and written in a single batch of updates and a single batch of inserts.  Node removals and
+    * moves are applied in order between such batches.
+    */
+   @Override
+   public void put(List<Modification> modifications) throws Exception
+   {
+      if (!config.isBatchEnabled())
+      {
+         super.put(modifications);
+         return;
+      }
+
+      Map<Fqn, List<Modification>> dataChanges = new LinkedHashMap<Fqn, List<Modification>>();
+      for (Modification m : modifications)
+      {
+         switch (m.getType())
+         {
+            case REMOVE_NODE:
+            case MOVE:
+               // these affect whole subtrees, so apply everything before them first
+               storeDataChanges(dataChanges);
+               dataChanges.clear();
+               super.put(Collections.singletonList(m));
+               break;
+            default:
+               List<Modification> forNode = dataChanges.get(m.getFqn());
+               if (forNode == null)
+               {
+                  forNode = new ArrayList<Modification>();
+                  dataChanges.put(m.getFqn(), forNode);
+               }
+               forNode.add(m);
+         }
+      }
+      storeDataChanges(dataChanges);
+   }
+
+   /**
+    * Applies changes to the data of nodes, with the same semantics as the individual put and remove methods.
+    */
+   protected void storeDataChanges(Map<Fqn, List<Modification>> dataChanges) throws Exception
+   {
+      if (dataChanges.isEmpty()) return;
+
+      List<Fqn> fqns = new ArrayList<Fqn>(dataChanges.keySet());
+      lock.acquireAllLocks(fqns, true);
+      Connection con = null;
+      PreparedStatement ps = null;
+      try
+      {
+         Map<Fqn, Map<Object, Object>> updates = new LinkedHashMap<Fqn, Map<Object, Object>>();
+         Map<Fqn, Map<Object, Object>> inserts = new LinkedHashMap<Fqn, Map<Object, Object>>();
+         for (Map.Entry<Fqn, List<Modification>> entry : dataChanges.entrySet())
+         {
+            Fqn fqn = entry.getKey();
+            Map<Object, Object> existing = loadNode(fqn);
+            boolean exists = existing != null;
+            Map<Object, Object> data = existing == NULL_NODE_IN_ROW ? null : existing;
+            boolean changed = false;
+            for (Modification m : entry.getValue())
+            {
+               switch (m.getType())
+               {
+                  case PUT_KEY_VALUE:
+                     if (data == null) data = new HashMap<Object, Object>();
+                     data.put(m.getKey(), m.getValue());
+                     exists = changed = true;
+                     break;
+                  case PUT_DATA:
+                  case PUT_DATA_ERASE:
+                     // the attribute map is definitive, see put(Fqn, Map)
+                     data = m.getData() == null ? null : new HashMap<Object, Object>(m.getData());
+                     exists = changed = true;
+                     break;
+                  case REMOVE_DATA:
+                     if (exists)
+                     {
+                        data = new HashMap<Object, Object>();
+                        changed = true;
+                     }
+                     break;
+                  case REMOVE_KEY_VALUE:
+                     if (data != null)
+                     {
+                        data.remove(m.getKey());
+                        changed = true;
+                     }
+                     break;
+                  default:
+                     throw new CacheException("Unknown modification " + m.getType());
+               }
+            }
+            if (!changed) continue;
+            if (existing != null)
+            {
+               updates.put(fqn, data);
+            }
+            else
+            {
+               inserts.put(fqn, data);
+            }
+         }
+
+         // new nodes need their missing ancestors inserted too, see addNewSubtree()
+         for (Fqn fqn : new ArrayList<Fqn>(inserts.keySet()))
+         {
+            Fqn ancestor = fqn;
+            while (!ancestor.isRoot())
+            {
+               ancestor = ancestor.getParent();
+               if (inserts.containsKey(ancestor) || updates.containsKey(ancestor) || exists(ancestor)) break;
+               inserts.put(ancestor, null);
+            }
+         }
+
+         con = cf.getConnection();
+         if (!updates.isEmpty())
+         {
+            ps = prepareAndLogStatement(con, config.getUpdateNodeSql());
+            int batchCount = 0;
+            for (Map.Entry<Fqn, Map<Object, Object>> update : updates.entrySet())
+            {
+               populatePreparedStatementForUpdate(update.getKey(), update.getValue(), ps);
+               ps.addBatch();
+               if (++batchCount % config.getBatchSize() == 0) ps.executeBatch();
+            }
+            if (batchCount % config.getBatchSize() != 0) ps.executeBatch();
+            safeClose(ps);
+            ps = null;
+         }
+         if (!inserts.isEmpty())
+         {
+            ps = prepareAndLogStatement(con, config.getInsertNodeSql());
+            int batchCount = 0;
+            for (Map.Entry<Fqn, Map<Object, Object>> insert : inserts.entrySet())
+            {
+               populatePreparedStatementForInsert(insert.getKey(), insert.getValue(), ps);
+               ps.addBatch();
+               if (++batchCount % config.getBatchSize() == 0) ps.executeBatch();
+            }
+            if (batchCount % config.getBatchSize() != 0) ps.executeBatch();
+         }
+      }
+      catch (SQLException e)
+      {
+         reportAndRethrowError("Failed to store modifications to " + fqns, e);
+      }
+      finally
+      {
+         safeClose(ps);
+         cf.close(con);
+         lock.releaseAllLocks(fqns);
+      }
+   }
+
    @Override
    protected void storeStateHelper(Fqn subtree, List nodeData, boolean moveToBuddy) throws Exception
    {
@@ -309,7 +473,7 @@ public class JDBCCacheLoader extends AdjListJDBCCacheLoader
       }
    }
 
-   private String getFqnWildcardString(String fqnString, Fqn fqn)
+   protected String getFqnWildcardString(String fqnString, Fqn fqn)
    {
       return fqnString + (fqn.isRoot() ? "" : Fqn.SEPARATOR) + '%';
    }
@@ -338,7 +502,7 @@ public class JDBCCacheLoader extends AdjListJDBCCacheLoader
       return result;
    }
 
-   private void addNewSubtree(Fqn name, Map attributes) throws Exception
+   protected void addNewSubtree(Fqn name, Map attributes) throws Exception
    {
       Fqn currentNode = name;
       do
@@ -27,6 +27,7 @@ import org.jboss.cache.CacheException;
 import org.jboss.cache.Fqn;
 import org.jboss.cache.Modification;
 import org.jboss.cache.config.CacheLoaderConfig.IndividualCacheLoaderConfig;
+import org.jboss.cache.loader.tcp.PipelinedConnection;
 import org.jboss.cache.loader.tcp.TcpCacheOperations;
 import org.jboss.cache.util.concurrent.SynchronizedRestarter;
 
@@ -43,6 +44,7 @@ import java.net.Socket;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DelegatingCacheLoader implementation which delegates to a remote (not in the same VM)
@@ -54,6 +56,8 @@ import java.util.Set;
  * port=2099
  * </attribute>
  * </pre>
+ * With <tt>pipelined=true</tt>, the cache loader instead keeps a pool of <tt>connections</tt> to the server using the
+ * multiplexed protocol, over which any number of threads may have requests outstanding at the same time.
  *
  * @author Bela Ban
  * @version $Id: TcpDelegatingCacheLoader.java 7465 2009-01-14 15:05:13Z manik.surtani@jboss.com $
@@ -64,6 +68,8 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
    private TcpDelegatingCacheLoaderConfig config;
    volatile ObjectInputStream in;
    volatile ObjectOutputStream out;
+   volatile PipelinedConnection[] pool;
+   private final AtomicInteger nextConnection = new AtomicInteger();
    private static final Log log = LogFactory.getLog(TcpDelegatingCacheLoader.class);
    private static final boolean trace = log.isTraceEnabled();
    private final SynchronizedRestarter restarter = new SynchronizedRestarter();
@@ -144,7 +150,7 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
                   // sleep 250 ms
                   if (log.isDebugEnabled()) log.debug("Caught IOException.  Retrying.", e);
                   Thread.sleep(config.getReconnectWaitTime());
-                  restarter.restartComponent(this);
+                  if (isBroken()) restarter.restartComponent(this);
                }
                catch (InterruptedException e1)
                {
@@ -220,18 +226,25 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
    protected Set<?> _getChildrenNames(Fqn fqn) throws Exception
    {
       Set cn;
-      synchronized (this)
+      if (config.isPipelined())
       {
-         out.reset();
-         out.writeByte(TcpCacheOperations.GET_CHILDREN_NAMES);
-         out.writeObject(fqn);
-         out.flush();
-         Object retval = in.readObject();
-         if (retval instanceof Exception)
+         cn = (Set) invokePipelined(TcpCacheOperations.GET_CHILDREN_NAMES, fqn);
+      }
+      else
+      {
+         synchronized (this)
          {
-            throw (Exception) retval;
+            out.reset();
+            out.writeByte(TcpCacheOperations.GET_CHILDREN_NAMES);
+            out.writeObject(fqn);
+            out.flush();
+            Object retval = in.readObject();
+            if (retval instanceof Exception)
+            {
+               throw (Exception) retval;
+            }
+            cn = (Set) retval;
          }
-         cn = (Set) retval;
       }
 
       // the cache loader contract is a bit different from the cache when it comes to dealing with childrenNames
@@ -242,6 +255,7 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
    @SuppressWarnings("unchecked")
    protected Map<Object, Object> _get(Fqn name) throws Exception
    {
+      if (config.isPipelined()) return (Map) invokePipelined(TcpCacheOperations.GET, name);
       synchronized (this)
       {
          out.reset();
@@ -260,6 +274,7 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
 
    protected boolean _exists(Fqn name) throws Exception
    {
+      if (config.isPipelined()) return (Boolean) invokePipelined(TcpCacheOperations.EXISTS, name);
       synchronized (this)
       {
          out.reset();
@@ -278,6 +293,7 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
 
    protected Object _put(Fqn name, Object key, Object value) throws Exception
    {
+      if (config.isPipelined()) return invokePipelined(TcpCacheOperations.PUT_KEY_VAL, name, key, value);
       synchronized (this)
       {
          out.reset();
@@ -298,6 +314,11 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
 
    protected void _put(Fqn name, Map<Object, Object> attributes) throws Exception
    {
+      if (config.isPipelined())
+      {
+         invokePipelined(TcpCacheOperations.PUT, name, attributes);
+         return;
+      }
       synchronized (this)
       {
          out.reset();
@@ -316,6 +337,11 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
 
    protected void _put(List<Modification> modifications) throws Exception
    {
+      if (config.isPipelined())
+      {
+         invokePipelined(TcpCacheOperations.PUT_LIST, modifications);
+         return;
+      }
       synchronized (this)
       {
          out.reset();
@@ -338,6 +364,7 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
 
    protected Object _remove(Fqn fqn, Object key) throws Exception
    {
+      if (config.isPipelined()) return invokePipelined(TcpCacheOperations.REMOVE_KEY, fqn, key);
       synchronized (this)
       {
          out.reset();
@@ -357,6 +384,11 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
 
    protected void _remove(Fqn fqn) throws Exception
    {
+      if (config.isPipelined())
+      {
+         invokePipelined(TcpCacheOperations.REMOVE, fqn);
+         return;
+      }
       synchronized (this)
       {
          out.reset();
@@ -374,6 +406,11 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
 
    protected void _removeData(Fqn fqn) throws Exception
    {
+      if (config.isPipelined())
+      {
+         invokePipelined(TcpCacheOperations.REMOVE_DATA, fqn);
+         return;
+      }
       synchronized (this)
       {
          out.reset();
@@ -389,6 +426,33 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
       }
    }
 
+   /**
+    * Whether the connection needs to be re-established before retrying.  A pipelined request that times out only fails
+    * that request, leaving the pool usable, so the pool is only replaced once one of its connections has failed.
+    */
+   private boolean isBroken()
+   {
+      if (!config.isPipelined()) return true;
+      PipelinedConnection[] pool = this.pool;
+      if (pool == null) return true;
+      for (PipelinedConnection connection : pool)
+      {
+         if (!connection.isOpen()) return true;
+      }
+      return false;
+   }
+
+   /**
+    * Invokes an operation on the next connection of the pool, without waiting for other requests to complete.
+    */
+   private Object invokePipelined(int op, Object... args) throws Exception
+   {
+      PipelinedConnection[] pool = this.pool;
+      if (pool == null) throw new IOException("Not connected to TcpCacheServer");
+      PipelinedConnection connection = pool[(nextConnection.getAndIncrement() & Integer.MAX_VALUE) % pool.length];
+      return connection.invoke(op, config.getReadTimeout(), args);
+   }
+
    // ----------------- Lifecycle and no-op methods
 
 
@@ -398,6 +462,24 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
       try
       {
          InetSocketAddress address = new InetSocketAddress(config.getHost(), config.getPort());
+         if (config.isPipelined())
+         {
+            PipelinedConnection[] connections = new PipelinedConnection[Math.max(1, config.getConnections())];
+            try
+            {
+               for (int i = 0; i < connections.length; i++)
+               {
+                  connections[i] = new PipelinedConnection(address, config.getReadTimeout(), getMarshaller());
+               }
+            }
+            catch (IOException e)
+            {
+               close(connections);
+               throw e;
+            }
+            pool = connections;
+            return;
+         }
          sock = new Socket();
          sock.setSoTimeout(config.getReadTimeout());
          sock.connect(address, config.getReadTimeout());
@@ -415,6 +497,8 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
    @Override
    public void stop()
    {
+      // left in place, so that callers fail with an IOException and retry until the pool is replaced
+      close(pool);
       try
       {
          if (in != null) in.close();
@@ -441,6 +525,15 @@ public class TcpDelegatingCacheLoader extends AbstractCacheLoader
       }
    }
 
+   private void close(PipelinedConnection[] connections)
+   {
+      if (connections == null) return;
+      for (PipelinedConnection connection : connections)
+      {
+         if (connection != null) connection.close();
+      }
+   }
+
    @Override
    public void loadEntireState(ObjectOutputStream os) throws Exception
    {
@@ -38,6 +38,8 @@ public class TcpDelegatingCacheLoaderConfig extends IndividualCacheLoaderConfig
    private int timeout = 5000;
    private int reconnectWaitTime = 500;
    private int readTimeout = 0;
+   private boolean pipelined = false;
+   private int connections = 2;
 
    public TcpDelegatingCacheLoaderConfig()
    {
@@ -125,6 +127,36 @@ public class TcpDelegatingCacheLoaderConfig extends IndividualCacheLoaderConfig
       this.readTimeout = readTimeout;
    }
 
+   /**
+    * @return true if the multiplexed protocol is used, allowing many requests to be outstanding on a connection
+    * @since 3.1
+    */
+   public boolean isPipelined()
+   {
+      return pipelined;
+   }
+
+   public void setPipelined(boolean pipelined)
+   {
+      testImmutability("pipelined");
+      this.pipelined = pipelined;
+   }
+
+   /**
+    * @return the number of connections to the server when {@link #isPipelined() pipelined}
+    * @since 3.1
+    */
+   public int getConnections()
+   {
+      return connections;
+   }
+
+   public void setConnections(int connections)
+   {
+      testImmutability("connections");
+      this.connections = connections;
+   }
+
    @Override
    public void setProperties(Properties props)
    {
@@ -157,6 +189,18 @@ public class TcpDelegatingCacheLoaderConfig extends IndividualCacheLoaderConfig
       {
          this.readTimeout = Integer.parseInt(s);
       }
+
+      s = props.getProperty("pipelined");
+      if (s != null && s.length() > 0)
+      {
+         this.pipelined = Boolean.valueOf(s);
+      }
+
+      s = props.getProperty("connections");
+      if (s != null && s.length() > 0)
+      {
+         this.connections = Integer.parseInt(s);
+      }
    }
 
    @Override
@@ -169,7 +213,9 @@ public class TcpDelegatingCacheLoaderConfig extends IndividualCacheLoaderConfig
          return Util.safeEquals(host, other.host)
                && (port == other.port) && (timeout == other.timeout)
                && (reconnectWaitTime == other.reconnectWaitTime)
-               && (readTimeout == other.readTimeout);
+               && (readTimeout == other.readTimeout)
+               && (pipelined == other.pipelined)
+               && (connections == other.connections);
       }
       return false;
    }
@@ -183,6 +229,8 @@ public class TcpDelegatingCacheLoaderConfig extends IndividualCacheLoaderConfig
       result = 31 * result + timeout;
       result = 31 * result + reconnectWaitTime;
       result = 31 * result + readTimeout;
+      result = 31 * result + (pipelined ? 1 : 0);
+      result = 31 * result + connections;
 
       return result;
    }
@@ -0,0 +1,753 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.loader.log;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.Modification;
+import org.jboss.cache.config.CacheLoaderConfig.IndividualCacheLoaderConfig;
+import org.jboss.cache.loader.AbstractCacheLoader;
+import org.jboss.cache.lock.StripedLock;
+import org.jboss.cache.util.concurrent.ConcurrentHashSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A file-based CacheLoader that appends every change to a log, rather than keeping a file per node like the
+ * {@link org.jboss.cache.loader.FileCacheLoader}.
+ * <p/>
+ * The log is split into segment files in the configured <tt>location</tt>.  Writes are appended to the newest segment
+ * until it reaches <tt>segment.size</tt> bytes, at which point it is sealed and a new segment started.  Sealed
+ * segments never change and are read through memory mappings.  Each write records the complete data of one node, or the
+ * removal of a subtree, so the latest record for a node is all that is needed to read it.  An in-memory index maps
+ * each node to its latest record and to the names of its children, so neither {@link #get(Fqn)} nor
+ * {@link #getChildrenNames(Fqn)} touch the file system beyond reading a single record.
+ * <p/>
+ * Records that have been superseded stay in their segments until they are compacted.  Once stale records take up more
+ * than <tt>compaction.threshold</tt> of the sealed segments, a background thread copies the records still in use to the
+ * end of the log and deletes the sealed segments.
+ * <p/>
+ * On startup the index is rebuilt by replaying all segments in order.  Every record carries a checksum, and a partially
+ * written record at the end of the log, as left by a crash, is discarded.  Writes are not forced to disk unless
+ * <tt>sync</tt> is set to true.
+ * <p/>
+ * The index holds every Fqn in memory, so the number of nodes this cache loader can hold is limited by the heap rather
+ * than by the number of files the file system allows.  Like other file-based cache loaders, it should not be shared
+ * between caches or processes.
+ *
+ * @since 3.1
+ */
+@ThreadSafe
+public class LogCacheLoader extends AbstractCacheLoader
+{
+   private static final Log log = LogFactory.getLog(LogCacheLoader.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private static final byte PUT = 1;
+   private static final byte REMOVE = 2;
+   /**
+    * Each record starts with the length of the rest of the record and its checksum.  The rest is a type, the length
+    * of the marshalled Fqn, the marshalled Fqn and, for puts, the marshalled data.
+    */
+   private static final int RECORD_HEADER_LENGTH = 8;
+   private static final int RECORD_PREFIX_LENGTH = RECORD_HEADER_LENGTH + 5;
+
+   private LogCacheLoaderConfig config;
+   private File dir;
+
+   private final ConcurrentMap<Fqn, IndexEntry> index = new ConcurrentHashMap<Fqn, IndexEntry>();
+   /**
+    * Operations on single nodes hold the read lock, removals of entire subtrees the write lock.
+    */
+   private final ReadWriteLock structureLock = new ReentrantReadWriteLock();
+   protected final StripedLock lock = new StripedLock();
+
+   /**
+    * Oldest first.  The last one is the active segment.
+    */
+   private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+   private final Object appendLock = new Object();
+   private Segment active;
+   private final ThreadLocal<Boolean> deferSync = new ThreadLocal<Boolean>();
+
+   private ExecutorService compactor;
+   private final AtomicBoolean compacting = new AtomicBoolean();
+   private volatile boolean stopping;
+
+   public void setConfig(IndividualCacheLoaderConfig base)
+   {
+      if (base instanceof LogCacheLoaderConfig)
+      {
+         this.config = (LogCacheLoaderConfig) base;
+      }
+      else if (base != null)
+      {
+         this.config = new LogCacheLoaderConfig(base);
+      }
+   }
+
+   public IndividualCacheLoaderConfig getConfig()
+   {
+      return config;
+   }
+
+   @Override
+   public void create() throws Exception
+   {
+      String location = config != null ? config.getLocation() : null;
+      if (location == null || location.length() == 0) location = System.getProperty("java.io.tmpdir", "C:\\tmp");
+      dir = new File(location);
+      if (!dir.exists())
+      {
+         if (trace) log.trace("Creating cache loader location " + dir);
+         if (!dir.mkdirs()) throw new IOException("Unable to create cache loader location " + dir);
+      }
+      if (!dir.isDirectory()) throw new IOException("Cache loader location [" + dir + "] is not a directory!");
+   }
+
+   @Override
+   public void start() throws Exception
+   {
+      stopping = false;
+      recover();
+      compactor = Executors.newSingleThreadExecutor(new ThreadFactory()
+      {
+         public Thread newThread(Runnable r)
+         {
+            Thread t = new Thread(r, "LogCacheLoader-compactor," + dir);
+            t.setDaemon(true);
+            return t;
+         }
+      });
+      scheduleCompaction();
+   }
+
+   @Override
+   public void stop()
+   {
+      stopping = true;
+      if (compactor != null)
+      {
+         compactor.shutdown();
+         try
+         {
+            // compaction stops after the record being copied
+            compactor.awaitTermination(60, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+         compactor = null;
+      }
+      synchronized (appendLock)
+      {
+         for (Segment s : segments) s.close();
+         segments.clear();
+         active = null;
+      }
+      index.clear();
+   }
+
+   public Set<?> getChildrenNames(Fqn fqn) throws Exception
+   {
+      structureLock.readLock().lock();
+      try
+      {
+         IndexEntry entry = index.get(fqn);
+         Set<Object> children = entry == null ? null : entry.children;
+         if (children == null || children.isEmpty()) return null;
+         return new HashSet<Object>(children);
+      }
+      finally
+      {
+         structureLock.readLock().unlock();
+      }
+   }
+
+   public Map<Object, Object> get(Fqn fqn) throws Exception
+   {
+      structureLock.readLock().lock();
+      try
+      {
+         lock.acquireLock(fqn, false);
+         try
+         {
+            IndexEntry entry = index.get(fqn);
+            return entry == null ? null : load(fqn, entry);
+         }
+         finally
+         {
+            lock.releaseLock(fqn);
+         }
+      }
+      finally
+      {
+         structureLock.readLock().unlock();
+      }
+   }
+
+   public boolean exists(Fqn fqn) throws Exception
+   {
+      return index.containsKey(fqn);
+   }
+
+   public Object put(Fqn fqn, Object key, Object value) throws Exception
+   {
+      structureLock.readLock().lock();
+      try
+      {
+         lock.acquireLock(fqn, true);
+         try
+         {
+            IndexEntry entry = index.get(fqn);
+            Map<Object, Object> data = entry == null ? new HashMap<Object, Object>() : load(fqn, entry);
+            Object retval = data.put(key, value);
+            store(fqn, data);
+            return retval;
+         }
+         finally
+         {
+            lock.releaseLock(fqn);
+         }
+      }
+      finally
+      {
+         structureLock.readLock().unlock();
+      }
+   }
+
+   public void put(Fqn fqn, Map<Object, Object> attributes) throws Exception
+   {
+      put(fqn, attributes, true);
+   }
+
+   @Override
+   public void put(Fqn fqn, Map<Object, Object> attributes, boolean erase) throws Exception
+   {
+      structureLock.readLock().lock();
+      try
+      {
+         lock.acquireLock(fqn, true);
+         try
+         {
+            IndexEntry entry = index.get(fqn);
+            Map<Object, Object> data = erase || entry == null ? new HashMap<Object, Object>() : load(fqn, entry);
+            if (attributes != null) data.putAll(attributes);
+            store(fqn, data);
+         }
+         finally
+         {
+            lock.releaseLock(fqn);
+         }
+      }
+      finally
+      {
+         structureLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Applies a list of modifications, only forcing them to disk once all have been written if <tt>sync</tt> is set.
+    */
+   @Override
+   public void put(List<Modification> modifications) throws Exception
+   {
+      if (!config.isSync())
+      {
+         super.put(modifications);
+         return;
+      }
+      deferSync.set(Boolean.TRUE);
+      try
+      {
+         super.put(modifications);
+      }
+      finally
+      {
+         deferSync.remove();
+      }
+      synchronized (appendLock)
+      {
+         // records written to segments sealed since were forced when sealing them
+         active.force();
+      }
+   }
+
+   public Object remove(Fqn fqn, Object key) throws Exception
+   {
+      structureLock.readLock().lock();
+      try
+      {
+         lock.acquireLock(fqn, true);
+         try
+         {
+            IndexEntry entry = index.get(fqn);
+            if (entry == null) return null;
+            Map<Object, Object> data = load(fqn, entry);
+            if (!data.containsKey(key)) return null;
+            Object retval = data.remove(key);
+            store(fqn, data);
+            return retval;
+         }
+         finally
+         {
+            lock.releaseLock(fqn);
+         }
+      }
+      finally
+      {
+         structureLock.readLock().unlock();
+      }
+   }
+
+   public void removeData(Fqn fqn) throws Exception
+   {
+      structureLock.readLock().lock();
+      try
+      {
+         lock.acquireLock(fqn, true);
+         try
+         {
+            IndexEntry entry = index.get(fqn);
+            if (entry != null && entry.location != null) store(fqn, new HashMap<Object, Object>(0));
+         }
+         finally
+         {
+            lock.releaseLock(fqn);
+         }
+      }
+      finally
+      {
+         structureLock.readLock().unlock();
+      }
+   }
+
+   public void remove(Fqn fqn) throws Exception
+   {
+      structureLock.writeLock().lock();
+      try
+      {
+         if (!index.containsKey(fqn)) return;
+         append(fqn, REMOVE, null);
+         removeSubtree(fqn);
+      }
+      finally
+      {
+         structureLock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Copies the records still in use from all sealed segments to the end of the log, and deletes the sealed segments.
+    * Normally done in the background once enough of the log is taken up by stale records.
+    */
+   public void compact() throws Exception
+   {
+      if (!compacting.compareAndSet(false, true)) return;
+      try
+      {
+         List<Segment> sealed = new ArrayList<Segment>();
+         synchronized (appendLock)
+         {
+            for (Segment s : segments) if (s != active) sealed.add(s);
+         }
+         if (sealed.isEmpty()) return;
+         if (trace) log.trace("Compacting " + sealed);
+
+         Set<Segment> compacted = new HashSet<Segment>(sealed);
+         for (Map.Entry<Fqn, IndexEntry> e : index.entrySet())
+         {
+            if (stopping) return;
+            Location location = e.getValue().location;
+            if (location != null && compacted.contains(location.segment)) relocate(e.getKey(), e.getValue(), location);
+         }
+         synchronized (appendLock)
+         {
+            // the copies have to be on disk before the originals are deleted
+            active.force();
+         }
+
+         // the sealed segments are always the oldest ones, so deleting them cannot lose the removal of a node
+         // that is still in an older segment
+         for (Segment s : sealed)
+         {
+            segments.remove(s);
+            if (!s.delete()) log.warn("Unable to delete compacted segment " + s.file);
+         }
+      }
+      finally
+      {
+         compacting.set(false);
+      }
+   }
+
+   /* ----------------------- Private methods ------------------------ */
+
+   private Map<Object, Object> load(Fqn fqn, IndexEntry entry) throws Exception
+   {
+      Location location = entry.location;
+      if (location == null) return new HashMap<Object, Object>(0);
+      byte[] bytes = location.segment.read(location.offset + location.dataOffset, location.dataLength);
+      return (Map<Object, Object>) regionAwareUnmarshall(fqn, bytes);
+   }
+
+   @Override
+   protected Object doUnmarshall(Fqn fqn, Object toUnmarshall) throws Exception
+   {
+      byte[] bytes = (byte[]) toUnmarshall;
+      return getMarshaller().objectFromByteBuffer(bytes, 0, bytes.length);
+   }
+
+   private void store(Fqn fqn, Map<Object, Object> data) throws Exception
+   {
+      Location location = append(fqn, PUT, data);
+      setLocation(ensureEntry(fqn), location);
+   }
+
+   private Location append(Fqn fqn, byte type, Map<Object, Object> data) throws Exception
+   {
+      org.jboss.cache.io.ByteBuffer fqnBytes = getMarshaller().objectToBuffer(fqn);
+      // only unmarshalling needs the region's class loader
+      org.jboss.cache.io.ByteBuffer dataBytes = data == null ? null : getMarshaller().objectToBuffer(data);
+      int dataLength = dataBytes == null ? 0 : dataBytes.getLength();
+      int length = 5 + fqnBytes.getLength() + dataLength;
+
+      ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + length);
+      record.position(RECORD_HEADER_LENGTH);
+      record.put(type).putInt(fqnBytes.getLength()).put(fqnBytes.getBuf(), fqnBytes.getOffset(), fqnBytes.getLength());
+      if (dataBytes != null) record.put(dataBytes.getBuf(), dataBytes.getOffset(), dataLength);
+      CRC32 crc = new CRC32();
+      crc.update(record.array(), RECORD_HEADER_LENGTH, length);
+      record.putInt(0, length).putInt(4, (int) crc.getValue());
+      record.flip();
+      return append(record, RECORD_PREFIX_LENGTH + fqnBytes.getLength(), dataLength);
+   }
+
+   private Location append(ByteBuffer record, int dataOffset, int dataLength) throws IOException
+   {
+      int length = record.remaining();
+      synchronized (appendLock)
+      {
+         if (active.size() + length > config.getSegmentSize() && active.size() > Segment.HEADER_LENGTH) roll();
+         int offset = active.append(record);
+         if (config.isSync() && deferSync.get() == null) active.force();
+         return new Location(active, offset, length, dataOffset, dataLength);
+      }
+   }
+
+   /**
+    * Seals the active segment and starts a new one.  Must be called holding the append lock.
+    */
+   private void roll() throws IOException
+   {
+      active.seal();
+      Segment next = Segment.create(dir, active.id + 1);
+      segments.add(next);
+      if (trace) log.trace("Sealed " + active + ", now writing to " + next);
+      active = next;
+      scheduleCompaction();
+   }
+
+   private void scheduleCompaction()
+   {
+      ExecutorService executor = compactor;
+      if (executor == null || compacting.get() || staleRatio() < config.getCompactionThreshold()) return;
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               compact();
+            }
+            catch (Exception e)
+            {
+               log.error("Failed compacting segments in " + dir, e);
+            }
+         }
+      });
+   }
+
+   /**
+    * @return the fraction of the sealed segments taken up by stale records
+    */
+   private double staleRatio()
+   {
+      long total = 0, live = 0;
+      for (Segment s : segments)
+      {
+         if (s == active) continue;
+         total += s.size() - Segment.HEADER_LENGTH;
+         live += s.liveBytes.get();
+      }
+      return total == 0 ? 0 : (double) (total - live) / total;
+   }
+
+   private void relocate(Fqn fqn, IndexEntry entry, Location location) throws IOException
+   {
+      structureLock.readLock().lock();
+      try
+      {
+         lock.acquireLock(fqn, true);
+         try
+         {
+            // skip nodes written to or removed since
+            if (index.get(fqn) != entry || entry.location != location) return;
+            ByteBuffer record = ByteBuffer.wrap(location.segment.read(location.offset, location.length));
+            setLocation(entry, append(record, location.dataOffset, location.dataLength));
+         }
+         finally
+         {
+            lock.releaseLock(fqn);
+         }
+      }
+      finally
+      {
+         structureLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * @return the index entry for a node, creating it and any missing parents
+    */
+   private IndexEntry ensureEntry(Fqn fqn)
+   {
+      IndexEntry entry = index.get(fqn);
+      if (entry != null) return entry;
+      IndexEntry parent = ensureEntry(fqn.getParent());
+      IndexEntry created = new IndexEntry();
+      entry = index.putIfAbsent(fqn, created);
+      if (entry == null) entry = created;
+      parent.addChild(fqn.getLastElement());
+      return entry;
+   }
+
+   private void setLocation(IndexEntry entry, Location location)
+   {
+      Location previous = entry.location;
+      entry.location = location;
+      location.segment.liveBytes.addAndGet(location.length);
+      if (previous != null) previous.segment.liveBytes.addAndGet(-previous.length);
+   }
+
+   /**
+    * Removes a node and its children from the index.  The root is emptied, but kept.
+    */
+   private void removeSubtree(Fqn fqn)
+   {
+      IndexEntry entry = index.get(fqn);
+      if (entry == null) return;
+      Set<Object> children = entry.children;
+      if (children != null)
+      {
+         for (Object child : children.toArray()) removeSubtree(Fqn.fromRelativeElements(fqn, child));
+      }
+      Location location = entry.location;
+      if (location != null) location.segment.liveBytes.addAndGet(-location.length);
+      entry.location = null;
+      if (fqn.isRoot()) return;
+      index.remove(fqn);
+      IndexEntry parent = index.get(fqn.getParent());
+      if (parent != null && parent.children != null) parent.children.remove(fqn.getLastElement());
+   }
+
+   /**
+    * Rebuilds the index from the segments in the cache loader location.
+    */
+   private void recover() throws Exception
+   {
+      index.clear();
+      index.put(Fqn.ROOT, new IndexEntry());
+
+      List<Long> ids = new ArrayList<Long>();
+      String[] names = dir.list();
+      if (names != null)
+      {
+         for (String name : names)
+         {
+            long id = Segment.parseId(name);
+            if (id >= 0) ids.add(id);
+         }
+      }
+      Long[] sorted = ids.toArray(new Long[ids.size()]);
+      Arrays.sort(sorted);
+
+      for (int i = 0; i < sorted.length; i++)
+      {
+         File file = new File(dir, Segment.fileName(sorted[i]));
+         Segment s = Segment.open(file, sorted[i]);
+         if (s == null)
+         {
+            log.warn("Ignoring " + file + ", which is not a valid segment");
+            continue;
+         }
+         boolean last = i == sorted.length - 1;
+         if (!last) s.seal();
+         segments.add(s);
+         replay(s, last);
+      }
+
+      synchronized (appendLock)
+      {
+         active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+         if (active == null)
+         {
+            active = Segment.create(dir, sorted.length == 0 ? 0 : sorted[sorted.length - 1] + 1);
+            segments.add(active);
+         }
+         else if (active.isSealed() || active.size() >= config.getSegmentSize())
+         {
+            // the last valid segment may not have been the last file
+            roll();
+         }
+      }
+      if (log.isDebugEnabled())
+         log.debug("Recovered " + index.size() + " nodes from " + segments.size() + " segments in " + dir);
+   }
+
+   private void replay(Segment s, boolean last) throws Exception
+   {
+      ByteBuffer contents = s.contents();
+      CRC32 crc = new CRC32();
+      int position = Segment.HEADER_LENGTH;
+      while (position < contents.limit())
+      {
+         int length = replayRecord(s, contents, position, crc);
+         if (length < 0)
+         {
+            if (last)
+            {
+               log.warn("Discarding partially written record at " + position + " in " + s.file);
+               s.truncate(position);
+            }
+            else
+            {
+               log.warn("Ignoring corrupt record at " + position + " and the rest of " + s.file);
+            }
+            return;
+         }
+         position += length;
+      }
+   }
+
+   /**
+    * @return the length of the record, or -1 if the record is incomplete or corrupt
+    */
+   private int replayRecord(Segment s, ByteBuffer contents, int position, CRC32 crc) throws Exception
+   {
+      if (contents.limit() - position < RECORD_HEADER_LENGTH) return -1;
+      int length = contents.getInt(position);
+      int checksum = contents.getInt(position + 4);
+      if (length < 5 || length > contents.limit() - position - RECORD_HEADER_LENGTH) return -1;
+
+      byte[] body = new byte[length];
+      ByteBuffer view = contents.duplicate();
+      view.position(position + RECORD_HEADER_LENGTH);
+      view.get(body);
+      crc.reset();
+      crc.update(body, 0, length);
+      if ((int) crc.getValue() != checksum) return -1;
+
+      int fqnLength = ByteBuffer.wrap(body).getInt(1);
+      if (fqnLength < 0 || fqnLength > length - 5) return -1;
+      Fqn fqn = (Fqn) getMarshaller().objectFromByteBuffer(body, 5, fqnLength);
+      switch (body[0])
+      {
+         case PUT:
+            int dataOffset = RECORD_PREFIX_LENGTH + fqnLength;
+            setLocation(ensureEntry(fqn), new Location(s, position, RECORD_HEADER_LENGTH + length, dataOffset, length - 5 - fqnLength));
+            break;
+         case REMOVE:
+            removeSubtree(fqn);
+            break;
+         default:
+            return -1;
+      }
+      return RECORD_HEADER_LENGTH + length;
+   }
+
+   /**
+    * Where a node's latest data is, and the names of its children.
+    */
+   private static final class IndexEntry
+   {
+      /**
+       * Null if the node has never had any data written to it.
+       */
+      volatile Location location;
+      volatile Set<Object> children;
+
+      synchronized void addChild(Object name)
+      {
+         // most nodes are leaves, so only create a set once needed
+         if (children == null) children = new ConcurrentHashSet<Object>(4, 0.75f, 1);
+         children.add(name);
+      }
+   }
+
+   /**
+    * The position of a record in a segment.
+    */
+   private static final class Location
+   {
+      final Segment segment;
+      final int offset;
+      final int length;
+      /**
+       * Relative to the start of the record.
+       */
+      final int dataOffset;
+      final int dataLength;
+
+      Location(Segment segment, int offset, int length, int dataOffset, int dataLength)
+      {
+         this.segment = segment;
+         this.offset = offset;
+         this.length = length;
+         this.dataOffset = dataOffset;
+         this.dataLength = dataLength;
+      }
+   }
+}
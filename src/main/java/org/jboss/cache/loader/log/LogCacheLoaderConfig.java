@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.loader.log;
+
+import org.jboss.cache.config.CacheLoaderConfig.IndividualCacheLoaderConfig;
+import org.jboss.cache.util.Util;
+
+import java.util.Properties;
+
+/**
+ * Configuration for the {@link LogCacheLoader}.
+ *
+ * @since 3.1
+ */
+public class LogCacheLoaderConfig extends IndividualCacheLoaderConfig
+{
+   private static final long serialVersionUID = -1617584542418757324L;
+
+   private String location;
+   private int segmentSize = 64 * 1024 * 1024;
+   private double compactionThreshold = 0.5;
+   private boolean sync;
+
+   public LogCacheLoaderConfig()
+   {
+      setClassName(LogCacheLoader.class.getName());
+   }
+
+   /**
+    * For use by {@link LogCacheLoader}.
+    *
+    * @param base generic config object created by XML parsing.
+    */
+   LogCacheLoaderConfig(IndividualCacheLoaderConfig base)
+   {
+      setClassName(LogCacheLoader.class.getName());
+      populateFromBaseConfig(base);
+   }
+
+   /**
+    * @return the directory holding the segment files
+    */
+   public String getLocation()
+   {
+      return location;
+   }
+
+   public void setLocation(String location)
+   {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   /**
+    * @return the size in bytes at which a segment is sealed, and a new one started.  Defaults to 64MB.
+    */
+   public int getSegmentSize()
+   {
+      return segmentSize;
+   }
+
+   public void setSegmentSize(int segmentSize)
+   {
+      testImmutability("segmentSize");
+      this.segmentSize = segmentSize;
+   }
+
+   /**
+    * @return the fraction of the sealed segments taken up by stale records at which the segments are compacted.
+    *         Defaults to 0.5.
+    */
+   public double getCompactionThreshold()
+   {
+      return compactionThreshold;
+   }
+
+   public void setCompactionThreshold(double compactionThreshold)
+   {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   /**
+    * @return true if every write is forced to disk before returning.  Defaults to false.
+    */
+   public boolean isSync()
+   {
+      return sync;
+   }
+
+   public void setSync(boolean sync)
+   {
+      testImmutability("sync");
+      this.sync = sync;
+   }
+
+   @Override
+   public void setProperties(Properties props)
+   {
+      super.setProperties(props);
+
+      if (props != null)
+      {
+         setLocation(props.getProperty("location"));
+         String s = props.getProperty("segment.size");
+         if (s != null)
+         {
+            int size = Integer.parseInt(s.trim());
+            if (size <= 0) throw new IllegalArgumentException("segment.size must be positive");
+            setSegmentSize(size);
+         }
+         s = props.getProperty("compaction.threshold");
+         if (s != null)
+         {
+            double threshold = Double.parseDouble(s.trim());
+            if (threshold <= 0 || threshold > 1)
+               throw new IllegalArgumentException("compaction.threshold must be greater than 0 and no greater than 1");
+            setCompactionThreshold(threshold);
+         }
+         s = props.getProperty("sync");
+         if (s != null) setSync(Boolean.valueOf(s.trim()));
+      }
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (obj instanceof LogCacheLoaderConfig && equalsExcludingProperties(obj))
+      {
+         LogCacheLoaderConfig other = (LogCacheLoaderConfig) obj;
+         return Util.safeEquals(location, other.location) && segmentSize == other.segmentSize
+               && compactionThreshold == other.compactionThreshold && sync == other.sync;
+      }
+      return false;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      int result = hashCodeExcludingProperties();
+      result = 31 * result + (location == null ? 0 : location.hashCode());
+      result = 31 * result + segmentSize;
+      long bits = Double.doubleToLongBits(compactionThreshold);
+      result = 31 * result + (int) (bits ^ (bits >>> 32));
+      result = 31 * result + (sync ? 1 : 0);
+      return result;
+   }
+
+   @Override
+   public LogCacheLoaderConfig clone() throws CloneNotSupportedException
+   {
+      return (LogCacheLoaderConfig) super.clone();
+   }
+}
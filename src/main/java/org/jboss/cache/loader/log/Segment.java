@@ -0,0 +1,240 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.loader.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single append-only file of a {@link LogCacheLoader}.  Records are only ever appended to the active segment, by
+ * one thread at a time.  Once a segment is sealed it never changes again, and is read through a read-only memory
+ * mapping.
+ *
+ * @since 3.1
+ */
+class Segment
+{
+   static final String PREFIX = "segment-";
+   static final String SUFFIX = ".log";
+
+   private static final int MAGIC = 0x4A42434C;
+   private static final byte VERSION = 1;
+   /**
+    * Length of the segment header: a magic number and a format version.
+    */
+   static final int HEADER_LENGTH = 5;
+
+   final long id;
+   final File file;
+   private final RandomAccessFile raf;
+   private final FileChannel channel;
+   private volatile long size;
+   private volatile MappedByteBuffer mapped;
+   /**
+    * Bytes taken up by records that the index still points to.
+    */
+   final AtomicLong liveBytes = new AtomicLong();
+
+   private Segment(long id, File file) throws IOException
+   {
+      this.id = id;
+      this.file = file;
+      raf = new RandomAccessFile(file, "rw");
+      channel = raf.getChannel();
+      size = channel.size();
+   }
+
+   /**
+    * Creates a new, empty segment file.
+    */
+   static Segment create(File dir, long id) throws IOException
+   {
+      Segment s = new Segment(id, new File(dir, fileName(id)));
+      s.channel.truncate(0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      header.putInt(MAGIC).put(VERSION).flip();
+      s.append(header);
+      return s;
+   }
+
+   /**
+    * Opens an existing segment file, checking its header.
+    *
+    * @return the segment, or null if the file does not start with a valid header
+    */
+   static Segment open(File file, long id) throws IOException
+   {
+      Segment s = new Segment(id, file);
+      if (s.size < HEADER_LENGTH)
+      {
+         s.close();
+         return null;
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      s.read(0, header);
+      header.flip();
+      if (header.getInt() != MAGIC || header.get() != VERSION)
+      {
+         s.close();
+         return null;
+      }
+      return s;
+   }
+
+   static String fileName(long id)
+   {
+      return PREFIX + String.format("%010d", id) + SUFFIX;
+   }
+
+   /**
+    * @return the id of the segment in a file name, or -1 if the name is not that of a segment
+    */
+   static long parseId(String fileName)
+   {
+      if (!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) return -1;
+      try
+      {
+         return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+      }
+      catch (NumberFormatException e)
+      {
+         return -1;
+      }
+   }
+
+   long size()
+   {
+      return size;
+   }
+
+   boolean isSealed()
+   {
+      return mapped != null;
+   }
+
+   /**
+    * Appends a buffer to the end of this segment.  Callers must make sure that only one thread appends at a time.
+    *
+    * @return the offset the buffer was written at
+    */
+   int append(ByteBuffer buffer) throws IOException
+   {
+      long offset = size;
+      long position = offset;
+      while (buffer.hasRemaining()) position += channel.write(buffer, position);
+      size = position;
+      return (int) offset;
+   }
+
+   /**
+    * Fills a buffer with the bytes starting at an offset.
+    */
+   void read(long offset, ByteBuffer buffer) throws IOException
+   {
+      MappedByteBuffer m = mapped;
+      if (m != null)
+      {
+         ByteBuffer source = m.duplicate();
+         source.position((int) offset).limit((int) offset + buffer.remaining());
+         buffer.put(source);
+      }
+      else
+      {
+         long position = offset;
+         while (buffer.hasRemaining())
+         {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of segment " + file);
+            position += read;
+         }
+      }
+   }
+
+   byte[] read(long offset, int length) throws IOException
+   {
+      byte[] bytes = new byte[length];
+      read(offset, ByteBuffer.wrap(bytes));
+      return bytes;
+   }
+
+   /**
+    * @return a read-only view of the whole segment, for replaying it
+    */
+   ByteBuffer contents() throws IOException
+   {
+      MappedByteBuffer m = mapped;
+      return m != null ? m.duplicate() : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+   }
+
+   /**
+    * Discards everything from an offset onwards, after a partially written record was found.
+    */
+   void truncate(long offset) throws IOException
+   {
+      channel.truncate(offset);
+      size = offset;
+   }
+
+   void force() throws IOException
+   {
+      channel.force(false);
+   }
+
+   /**
+    * Marks this segment as complete.  From now on it is only read, through a memory mapping.
+    */
+   void seal() throws IOException
+   {
+      channel.force(false);
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+   }
+
+   void close()
+   {
+      mapped = null;
+      try
+      {
+         raf.close();
+      }
+      catch (IOException e)
+      {
+         // nothing to do
+      }
+   }
+
+   boolean delete()
+   {
+      close();
+      return file.delete();
+   }
+
+   @Override
+   public String toString()
+   {
+      return file.getName() + " (" + size + " bytes, " + liveBytes.get() + " live)";
+   }
+}
@@ -0,0 +1,245 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.loader.tcp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.io.ByteBuffer;
+import org.jboss.cache.marshall.Marshaller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A client connection to a {@link TcpCacheServer} using the multiplexed protocol.  Any number of threads may invoke
+ * operations concurrently; each request is tagged with a correlation id and written as soon as it is marshalled,
+ * and a reader thread hands each response to the thread waiting for it, in whatever order the server sends them.
+ * <p/>
+ * Once the connection fails, all outstanding and subsequent invocations throw the {@link IOException} that caused
+ * the failure, and a new connection has to be opened.  A request that is not answered in time only fails that
+ * request: the connection stays open, and a late response is discarded.
+ *
+ * @since 3.1
+ */
+public class PipelinedConnection
+{
+   private static final Log log = LogFactory.getLog(PipelinedConnection.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final Socket sock;
+   private final DataOutputStream out;
+   private final DataInputStream in;
+   private final Marshaller marshaller;
+   private final ConcurrentMap<Integer, Response> outstanding = new ConcurrentHashMap<Integer, Response>();
+   private final AtomicInteger nextId = new AtomicInteger();
+   private final Thread reader;
+   private volatile IOException failure;
+
+   /**
+    * Connects to a server.
+    *
+    * @param address        address of the server
+    * @param connectTimeout how long to wait for the connection to be established, 0 to wait indefinitely
+    * @param marshaller     marshaller for requests and responses
+    * @throws IOException if the connection cannot be established
+    */
+   public PipelinedConnection(InetSocketAddress address, int connectTimeout, Marshaller marshaller) throws IOException
+   {
+      this.marshaller = marshaller;
+      sock = new Socket();
+      sock.setTcpNoDelay(true);
+      sock.connect(address, connectTimeout);
+      out = new DataOutputStream(new BufferedOutputStream(sock.getOutputStream()));
+      in = new DataInputStream(new BufferedInputStream(sock.getInputStream()));
+      out.writeInt(TcpCacheOperations.MULTIPLEXED_PROTOCOL_MAGIC);
+      out.flush();
+
+      reader = new Thread("PipelinedConnection(" + sock.getLocalPort() + ")")
+      {
+         @Override
+         public void run()
+         {
+            readResponses();
+         }
+      };
+      reader.setDaemon(true);
+      reader.start();
+   }
+
+   /**
+    * Invokes an operation on the server, and waits for its result.
+    *
+    * @param op      one of the {@link TcpCacheOperations}
+    * @param timeout how long to wait for the response in millis, 0 to wait indefinitely
+    * @param args    arguments of the operation
+    * @return the return value of the operation
+    * @throws IOException if the connection has failed, or no response was received in time, in which case it is a
+    *                     {@link SocketTimeoutException} and the connection remains usable
+    * @throws Exception   if the server returned an exception
+    */
+   public Object invoke(int op, long timeout, Object... args) throws Exception
+   {
+      List<Object> arguments = new ArrayList<Object>(args.length);
+      for (Object arg : args) arguments.add(arg);
+      ByteBuffer payload = marshaller.objectToBuffer(arguments);
+
+      int id = nextId.getAndIncrement();
+      Response response = new Response();
+      outstanding.put(id, response);
+      try
+      {
+         // re-checked after registering, as the reader fails whatever is outstanding when it dies
+         if (failure != null) throw failure;
+
+         synchronized (out)
+         {
+            out.writeInt(5 + payload.getLength());
+            out.writeInt(id);
+            out.writeByte(op);
+            out.write(payload.getBuf(), payload.getOffset(), payload.getLength());
+            out.flush();
+         }
+      }
+      catch (IOException e)
+      {
+         outstanding.remove(id);
+         fail(e);
+         throw e;
+      }
+
+      if (timeout > 0)
+      {
+         if (!response.done.await(timeout, TimeUnit.MILLISECONDS))
+         {
+            outstanding.remove(id);
+            throw new SocketTimeoutException("No response to request " + id + " after " + timeout + " millis");
+         }
+      }
+      else
+      {
+         response.done.await();
+      }
+
+      if (response.failure != null) throw response.failure;
+      Object retval = marshaller.objectFromByteBuffer(response.bytes);
+      if (retval instanceof Exception) throw (Exception) retval;
+      return retval;
+   }
+
+   private void readResponses()
+   {
+      try
+      {
+         while (true)
+         {
+            int length = in.readInt();
+            int id = in.readInt();
+            byte[] bytes = new byte[length - 4];
+            in.readFully(bytes);
+            Response response = outstanding.remove(id);
+            if (response == null)
+            {
+               if (trace) log.trace("Discarding the response to request " + id + ", which has timed out");
+            }
+            else
+            {
+               response.bytes = bytes;
+               response.done.countDown();
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         if (failure == null && log.isDebugEnabled()) log.debug("Connection to " + sock.getRemoteSocketAddress() + " failed", e);
+         fail(e);
+      }
+   }
+
+   private void fail(IOException e)
+   {
+      if (failure == null) failure = e;
+      for (Integer id : outstanding.keySet())
+      {
+         Response response = outstanding.remove(id);
+         if (response != null)
+         {
+            response.failure = failure;
+            response.done.countDown();
+         }
+      }
+   }
+
+   /**
+    * @return the number of requests waiting for a response
+    */
+   public int getOutstandingRequests()
+   {
+      return outstanding.size();
+   }
+
+   /**
+    * @return true unless the connection has failed or been closed
+    */
+   public boolean isOpen()
+   {
+      return failure == null;
+   }
+
+   public void close()
+   {
+      fail(new IOException("Connection closed"));
+      try
+      {
+         sock.close();
+      }
+      catch (IOException e)
+      {
+         if (trace) log.trace("Unable to close resource", e);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PipelinedConnection{" + sock.getRemoteSocketAddress() + ", outstanding=" + outstanding.size() + "}";
+   }
+
+   private static class Response
+   {
+      final CountDownLatch done = new CountDownLatch(1);
+      volatile byte[] bytes;
+      volatile IOException failure;
+   }
+}
@@ -41,4 +41,13 @@ public interface TcpCacheOperations
    int LOAD_ENTIRE_STATE = 10;
    int STORE_ENTIRE_STATE = 11;
    int PUT_LIST = 12;
+
+   /**
+    * Written by a client as the first four bytes of a connection to select the multiplexed protocol, in which every
+    * request and response is a length-prefixed frame carrying a correlation id.  A connection starting with anything
+    * else is served using the original object stream protocol.
+    *
+    * @since 3.1
+    */
+   int MULTIPLEXED_PROTOCOL_MAGIC = 0x4A424331;
 }
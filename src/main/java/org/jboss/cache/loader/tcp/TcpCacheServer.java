@@ -32,28 +32,54 @@ import org.jboss.cache.Modification;
 import org.jboss.cache.Node;
 import org.jboss.cache.NodeSPI;
 import org.jboss.cache.jmx.CacheJmxWrapperMBean;
+import org.jboss.cache.marshall.Marshaller;
 import org.jboss.cache.util.concurrent.ConcurrentHashSet;
 import org.jboss.cache.util.concurrent.SynchronizedRestarter;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.SequenceInputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TCP-IP based CacheServer, setCache TcpDelegatingCacheLoader with host and port of this server
+ * <p/>
+ * All connections are served by a single selector thread, which reads requests and hands them to a small pool of
+ * worker threads.  Clients that open a connection with {@link TcpCacheOperations#MULTIPLEXED_PROTOCOL_MAGIC} use the
+ * multiplexed protocol, where each request is a frame made up of an int length, an int correlation id, an operation
+ * byte and the arguments marshalled as a list by the cache's {@link Marshaller}.  Responses carry the length, the
+ * correlation id of the request and the marshalled return value, and may be sent in any order, so a client can have
+ * many requests outstanding on one connection.  Connections that start with anything else are handed to a thread
+ * of their own and served with the original object stream protocol.
  *
  * @author Bela Ban
  * @author Brian Stansberry
@@ -61,14 +87,29 @@ import java.util.Set;
  */
 public class TcpCacheServer implements TcpCacheServerMBean
 {
-   private ServerSocket srv_sock;
+   private static final int READ_BUFFER_SIZE = 8192;
+   /**
+    * Requests a client may have pending with the workers before the server stops reading from its connection.
+    */
+   private static final int MAX_PENDING_REQUESTS = 64;
+
+   private ServerSocketChannel srv_channel;
+   private Selector selector;
+   private ExecutorService workers;
+   private Marshaller marshaller;
    private InetAddress bind_addr = null;
    private int port = 7500;
+   private int workerThreads = 8;
+   private int maxFrameSize = 64 * 1024 * 1024;
    private CacheSPI cache;
    private CacheJmxWrapperMBean wrapper;
    private String config;
-   private boolean running = true;
+   private volatile boolean running = true;
    private final Set<Connection> conns = new ConcurrentHashSet<Connection>();
+   /**
+    * Work that has to be done by the selector thread, such as changing interest ops on behalf of the workers.
+    */
+   private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<Runnable>();
    private final SynchronizedRestarter restarter = new SynchronizedRestarter();
    /**
     * whether or not to start the server thread as a daemon.  Should be false if started from the command line, true if started as an MBean.
@@ -101,6 +142,26 @@ public class TcpCacheServer implements TcpCacheServerMBean
       this.port = port;
    }
 
+   public int getWorkerThreads()
+   {
+      return workerThreads;
+   }
+
+   public void setWorkerThreads(int workerThreads)
+   {
+      this.workerThreads = workerThreads;
+   }
+
+   public int getMaxFrameSize()
+   {
+      return maxFrameSize;
+   }
+
+   public void setMaxFrameSize(int maxFrameSize)
+   {
+      this.maxFrameSize = maxFrameSize;
+   }
+
    public String getConfig()
    {
       return config;
@@ -153,12 +214,31 @@ public class TcpCacheServer implements TcpCacheServerMBean
          throw new CacheException("cache reference is not set");
       }
 
+      marshaller = cache.getMarshaller();
 
-      srv_sock = new ServerSocket(port, 10, bind_addr);
-      log.info("TcpCacheServer listening on : " + srv_sock.getInetAddress() + ":" + srv_sock.getLocalPort());
+      selector = Selector.open();
+      srv_channel = ServerSocketChannel.open();
+      srv_channel.socket().setReuseAddress(true);
+      srv_channel.socket().bind(new InetSocketAddress(bind_addr, port), 10);
+      srv_channel.configureBlocking(false);
+      srv_channel.register(selector, SelectionKey.OP_ACCEPT);
+      log.info("TcpCacheServer listening on : " + srv_channel.socket().getInetAddress() + ":" + srv_channel.socket().getLocalPort());
+
+      final AtomicInteger threadId = new AtomicInteger();
+      workers = Executors.newFixedThreadPool(workerThreads, new ThreadFactory()
+      {
+         public Thread newThread(Runnable r)
+         {
+            Thread t = new Thread(r, "TcpCacheServer.Worker-" + threadId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+         }
+      });
 
       running = true;
 
+      final Selector selector = this.selector;
+      final ExecutorService workers = this.workers;
       Thread serverThread = new Thread("TcpCacheServer")
       {
          @Override
@@ -167,35 +247,31 @@ public class TcpCacheServer implements TcpCacheServerMBean
             boolean attemptRestart = false;
             try
             {
-               while (running)
-               {
-                  Socket client_sock = srv_sock.accept();
-                  Connection conn = new Connection(client_sock, cache);
-                  conns.add(conn);
-                  conn.start();
-               }
+               select(selector, workers);
             }
-            catch (SocketException se)
+            catch (ClosedSelectorException cse)
             {
-               if (!running)
-               {
-                  // this is because of the stop() lifecycle method being called.
-                  // ignore.
-                  log.info("Shutting down TcpCacheServer");
-               }
-               else
+               if (running)
                {
-                  log.error("Caught exception! Attempting a server restart", se);
+                  log.error("Caught exception! Attempting a server restart", cse);
                   attemptRestart = true;
                }
             }
             catch (IOException e)
             {
-               log.error("Caught exception! Attempting a server restart", e);
-               attemptRestart = true;
+               if (running)
+               {
+                  log.error("Caught exception! Attempting a server restart", e);
+                  attemptRestart = true;
+               }
             }
 
-            if (attemptRestart)
+            if (!attemptRestart)
+            {
+               // this is because of the stop() lifecycle method being called.
+               log.info("Shutting down TcpCacheServer");
+            }
+            else
             {
                try
                {
@@ -213,6 +289,72 @@ public class TcpCacheServer implements TcpCacheServerMBean
 
    }
 
+   /**
+    * The selector loop: accepts connections, reads requests and finishes writes the workers could not complete.
+    */
+   private void select(Selector selector, ExecutorService workers) throws IOException
+   {
+      List<HandOff> handOffs = new ArrayList<HandOff>();
+      while (running)
+      {
+         selector.select();
+         if (!running) break;
+
+         Runnable task;
+         while ((task = selectorTasks.poll()) != null) task.run();
+
+         for (Iterator<SelectionKey> i = selector.selectedKeys().iterator(); i.hasNext();)
+         {
+            SelectionKey key = i.next();
+            i.remove();
+            if (!key.isValid()) continue;
+
+            if (key.isAcceptable())
+            {
+               accept(selector, workers, (ServerSocketChannel) key.channel());
+               continue;
+            }
+
+            MultiplexedConnection conn = (MultiplexedConnection) key.attachment();
+            try
+            {
+               if (key.isReadable())
+               {
+                  HandOff handOff = conn.read();
+                  if (handOff != null) handOffs.add(handOff);
+               }
+               if (key.isValid() && key.isWritable()) conn.write();
+            }
+            catch (IOException e)
+            {
+               if (log.isDebugEnabled()) log.debug("Closing connection " + conn, e);
+               conn.close();
+            }
+         }
+
+         if (!handOffs.isEmpty())
+         {
+            // cancelled keys are only deregistered by the next selection, and a channel has to be
+            // deregistered before it can be switched back to blocking mode
+            selector.selectNow();
+            for (HandOff handOff : handOffs) handOff.start();
+            handOffs.clear();
+         }
+      }
+   }
+
+   private void accept(Selector selector, ExecutorService workers, ServerSocketChannel srv_channel) throws IOException
+   {
+      SocketChannel channel = srv_channel.accept();
+      if (channel == null) return;
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      MultiplexedConnection conn = new MultiplexedConnection(channel, selector, workers);
+      conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+      conns.add(conn);
+      if (trace) log.trace("Accepted connection from " + conn);
+   }
+
    public void stop()
    {
       running = false;
@@ -225,17 +367,36 @@ public class TcpCacheServer implements TcpCacheServerMBean
          conns.clear();
       }
 
-      if (srv_sock != null)
+      if (srv_channel != null)
+      {
+         try
+         {
+            srv_channel.close();
+         }
+         catch (IOException e)
+         {
+            // nada
+         }
+         srv_channel = null;
+      }
+
+      if (selector != null)
       {
          try
          {
-            srv_sock.close();
+            selector.close();
          }
          catch (IOException e)
          {
             // nada
          }
-         srv_sock = null;
+         selector = null;
+      }
+
+      if (workers != null)
+      {
+         workers.shutdownNow();
+         workers = null;
       }
    }
 
@@ -263,25 +424,528 @@ public class TcpCacheServer implements TcpCacheServerMBean
    {
    }
 
+   /**
+    * Performs an operation on the cache.  Used by both protocols.
+    *
+    * @param op   one of the {@link TcpCacheOperations}
+    * @param args the operation's arguments
+    * @return the return value to send back to the client
+    */
+   private Object execute(int op, List<Object> args) throws Exception
+   {
+      Fqn fqn = args.get(0) instanceof Fqn ? (Fqn) args.get(0) : null;
+      Node node;
+      switch (op)
+      {
+         case TcpCacheOperations.GET_CHILDREN_NAMES:
+            node = cache.getRoot().getChild(fqn);
+            return node == null ? Collections.emptySet() : new HashSet(node.getChildrenNames());
+         case TcpCacheOperations.GET_KEY:
+            return cache.get(fqn, args.get(1));
+         case TcpCacheOperations.GET:
+            NodeSPI n = cache.getNode(fqn);
+            if (n == null)
+            {
+               // node doesn't exist - return null
+               return null;
+            }
+            Map map = n.getData();
+            if (map == null)
+            {
+               map = Collections.emptyMap();
+            }
+            return map;
+         case TcpCacheOperations.EXISTS:
+            return cache.getRoot().hasChild(fqn);
+         case TcpCacheOperations.PUT_KEY_VAL:
+            return cache.put(fqn, args.get(1), args.get(2));
+         case TcpCacheOperations.PUT:
+            cache.put(fqn, (Map) args.get(1));
+            return Boolean.TRUE;
+         case TcpCacheOperations.PUT_LIST:
+            List<Modification> mods = (List<Modification>) args.get(0);
+            if (!mods.isEmpty())
+            {
+               try
+               {
+                  handleModifications(mods);
+               }
+               catch (Exception ex)
+               {
+                  return ex;
+               }
+            }
+            return Boolean.TRUE;
+         case TcpCacheOperations.REMOVE_KEY:
+            return cache.remove(fqn, args.get(1));
+         case TcpCacheOperations.REMOVE:
+            cache.removeNode(fqn);
+            return Boolean.TRUE;
+         case TcpCacheOperations.REMOVE_DATA:
+            node = cache.getRoot().getChild(fqn);
+            if (node != null)
+            {
+               node.clearData();
+               return true;
+            }
+            return false;
+         case TcpCacheOperations.LOAD_ENTIRE_STATE:
+            if (cache.getCacheLoaderManager() != null)
+            {
+               cache.getCacheLoaderManager().getCacheLoader().loadEntireState((ObjectOutputStream) args.get(0));
+            }
+            return Boolean.TRUE;
+         case TcpCacheOperations.STORE_ENTIRE_STATE:
+            if (cache.getCacheLoaderManager() != null)
+            {
+               cache.getCacheLoaderManager().getCacheLoader().storeEntireState((ObjectInputStream) args.get(0));
+            }
+            return Boolean.TRUE;
+         default:
+            throw new CacheException("Operation " + op + " unknown");
+      }
+   }
+
+   private void handleModifications(List<Modification> modifications) throws CacheException
+   {
+
+      for (Modification m : modifications)
+      {
+         switch (m.getType())
+         {
+            case PUT_DATA:
+               cache.put(m.getFqn(), m.getData());
+               break;
+            case PUT_DATA_ERASE:
+               cache.put(m.getFqn(), m.getData());
+               break;
+            case PUT_KEY_VALUE:
+               cache.put(m.getFqn(), m.getKey(), m.getValue());
+               break;
+            case REMOVE_DATA:
+               Node n = cache.getRoot().getChild(m.getFqn());
+               if (n != null) n.clearData();
+               break;
+            case REMOVE_KEY_VALUE:
+               cache.remove(m.getFqn(), m.getKey());
+               break;
+            case REMOVE_NODE:
+               cache.removeNode(m.getFqn());
+               break;
+            case MOVE:
+               cache.move(m.getFqn(), m.getFqn2());
+               break;
+            default:
+               log.error("modification type " + m.getType() + " not known");
+               break;
+         }
+      }
+   }
+
 
-   private class Connection implements Runnable
+   private interface Connection
+   {
+      void close();
+   }
+
+   /**
+    * A connection that has not sent the multiplexed protocol header, to be served by a {@link BlockingConnection}
+    * once its channel has been deregistered from the selector.
+    */
+   private class HandOff
+   {
+      private final SocketChannel channel;
+      private final byte[] header;
+
+      HandOff(SocketChannel channel, byte[] header)
+      {
+         this.channel = channel;
+         this.header = header;
+      }
+
+      void start()
+      {
+         try
+         {
+            channel.configureBlocking(true);
+            BlockingConnection conn = new BlockingConnection(channel.socket(), header);
+            conns.add(conn);
+            conn.start();
+         }
+         catch (IOException e)
+         {
+            log.debug("Unable to hand off connection", e);
+            try
+            {
+               channel.close();
+            }
+            catch (IOException e1)
+            {
+               if (trace) log.trace("Unable to close resource", e1);
+            }
+         }
+      }
+   }
+
+   /**
+    * A connection using the multiplexed protocol.  Only the selector thread reads from the channel; responses are
+    * written by the workers where the socket allows, and by the selector thread otherwise.
+    */
+   private class MultiplexedConnection implements Connection
+   {
+      private final SocketChannel channel;
+      private final Selector selector;
+      private final ExecutorService workers;
+      private SelectionKey key;
+      private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+      private boolean headerRead;
+      /**
+       * Responses not yet written, guarded by itself.
+       */
+      private final Queue<ByteBuffer> writeQueue = new LinkedList<ByteBuffer>();
+      private volatile boolean closed;
+      /**
+       * Requests dispatched to the workers whose responses have not been written yet, and the bytes they hold: the
+       * payload while a request is executed, then the response while it waits in the write queue.
+       */
+      private final AtomicInteger pendingRequests = new AtomicInteger();
+      private final AtomicLong pendingBytes = new AtomicLong();
+      /**
+       * Whether reading from the connection is suspended until the workers catch up.
+       */
+      private volatile boolean readSuspended;
+
+      MultiplexedConnection(SocketChannel channel, Selector selector, ExecutorService workers)
+      {
+         this.channel = channel;
+         this.selector = selector;
+         this.workers = workers;
+      }
+
+      /**
+       * Reads what is available and dispatches every complete request to the workers.
+       *
+       * @return a hand off if the client turned out to use the object stream protocol, or null
+       */
+      HandOff read() throws IOException
+      {
+         if (channel.read(readBuffer) < 0)
+         {
+            log.debug("Client closed socket");
+            close();
+            return null;
+         }
+
+         if (!headerRead)
+         {
+            if (readBuffer.position() < 4) return null;
+            readBuffer.flip();
+            if (readBuffer.getInt(0) != TcpCacheOperations.MULTIPLEXED_PROTOCOL_MAGIC)
+            {
+               byte[] header = new byte[readBuffer.remaining()];
+               readBuffer.get(header);
+               conns.remove(this);
+               key.cancel();
+               return new HandOff(channel, header);
+            }
+            readBuffer.getInt();
+            readBuffer.compact();
+            headerRead = true;
+         }
+         dispatch();
+         return null;
+      }
+
+      /**
+       * Dispatches every complete request read so far to the workers.  Once too many are pending, reading from the
+       * connection is suspended until the workers catch up, so that a pipelining client is slowed down rather than
+       * having its requests pile up in memory.
+       *
+       * @throws IOException if the client sent a frame that is too short or too long
+       */
+      private void dispatch() throws IOException
+      {
+         readBuffer.flip();
+         int required = 0;
+         try
+         {
+            while (readBuffer.remaining() >= 4)
+            {
+               if (mustWait())
+               {
+                  // suspend first, so that a worker finishing meanwhile sees it and resumes reading
+                  readSuspended = true;
+                  if (mustWait())
+                  {
+                     key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                     break;
+                  }
+                  readSuspended = false;
+               }
+
+               int length = readBuffer.getInt(readBuffer.position());
+               if (length < 5 || length > maxFrameSize || length > Integer.MAX_VALUE - 4)
+                  throw new IOException("Invalid frame length " + length);
+               if (readBuffer.remaining() < length + 4)
+               {
+                  required = length + 4;
+                  break;
+               }
+               readBuffer.getInt();
+               int id = readBuffer.getInt();
+               byte op = readBuffer.get();
+               byte[] payload = new byte[length - 5];
+               readBuffer.get(payload);
+               pendingRequests.incrementAndGet();
+               pendingBytes.addAndGet(payload.length);
+               try
+               {
+                  workers.execute(new Request(this, id, op, payload));
+               }
+               catch (RejectedExecutionException e)
+               {
+                  // shutting down
+                  close();
+                  return;
+               }
+            }
+         }
+         finally
+         {
+            readBuffer.compact();
+         }
+
+         if (required > readBuffer.capacity())
+         {
+            ByteBuffer larger = ByteBuffer.allocate(required);
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+         }
+      }
+
+      /**
+       * Whether the requests pending are enough to stop dispatching more: either too many of them, or as many bytes as
+       * the largest frame accepted.  Responses count until written, so that a client that stops reading is not
+       * answered into an ever growing write queue.
+       */
+      private boolean mustWait()
+      {
+         return pendingRequests.get() >= MAX_PENDING_REQUESTS || pendingBytes.get() >= maxFrameSize;
+      }
+
+      /**
+       * Called once the response to a request has been written, resuming reading if it had been suspended.
+       */
+      private void responseWritten(int size)
+      {
+         pendingBytes.addAndGet(-size);
+         pendingRequests.decrementAndGet();
+         if (!readSuspended || closed) return;
+         selectorTasks.add(new Runnable()
+         {
+            public void run()
+            {
+               if (!readSuspended || !key.isValid()) return;
+               readSuspended = false;
+               try
+               {
+                  // requests already read may be waiting in the buffer, with nothing more to come from the socket
+                  dispatch();
+               }
+               catch (IOException e)
+               {
+                  if (log.isDebugEnabled()) log.debug("Closing connection " + MultiplexedConnection.this, e);
+                  close();
+                  return;
+               }
+               if (!readSuspended && key.isValid()) key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+         });
+         selector.wakeup();
+      }
+
+      /**
+       * Queues a response, writing it straight away unless earlier responses are still waiting for the socket.
+       *
+       * @param response    response to the request
+       * @param requestSize size of the payload of the request, no longer held once the response is queued
+       */
+      void send(ByteBuffer response, int requestSize)
+      {
+         pendingBytes.addAndGet(response.remaining() - requestSize);
+         synchronized (writeQueue)
+         {
+            if (closed) return;
+            boolean idle = writeQueue.isEmpty();
+            writeQueue.add(response);
+            // otherwise the selector thread is already waiting to finish off the queue
+            if (!idle) return;
+            try
+            {
+               if (flush()) return;
+            }
+            catch (IOException e)
+            {
+               if (log.isDebugEnabled()) log.debug("Closing connection " + this, e);
+               close();
+               return;
+            }
+         }
+
+         // the socket buffer is full, so let the selector thread finish the write once it drains
+         selectorTasks.add(new Runnable()
+         {
+            public void run()
+            {
+               if (key.isValid()) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+         });
+         selector.wakeup();
+      }
+
+      /**
+       * Called by the selector thread once the socket can take more data.
+       */
+      void write() throws IOException
+      {
+         synchronized (writeQueue)
+         {
+            if (flush()) key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+         }
+      }
+
+      /**
+       * Writes as much of the queue as the socket takes.  Callers must hold the lock on the queue.
+       *
+       * @return true if the queue is empty
+       */
+      private boolean flush() throws IOException
+      {
+         ByteBuffer next;
+         while ((next = writeQueue.peek()) != null)
+         {
+            channel.write(next);
+            if (next.hasRemaining()) return false;
+            writeQueue.poll();
+            responseWritten(next.limit());
+         }
+         return true;
+      }
+
+      public void close()
+      {
+         synchronized (writeQueue)
+         {
+            closed = true;
+            writeQueue.clear();
+         }
+         if (key != null) key.cancel();
+         try
+         {
+            channel.close();
+         }
+         catch (Throwable th)
+         {
+            if (trace) log.trace("Unable to close resource", th);
+         }
+
+         // remove self from connections list
+         conns.remove(this);
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.valueOf(channel.socket().getRemoteSocketAddress());
+      }
+   }
+
+   /**
+    * A request read off a {@link MultiplexedConnection}, executed by a worker.
+    */
+   private class Request implements Runnable
+   {
+      private final MultiplexedConnection conn;
+      private final int id;
+      private final byte op;
+      private final byte[] payload;
+
+      Request(MultiplexedConnection conn, int id, byte op, byte[] payload)
+      {
+         this.conn = conn;
+         this.id = id;
+         this.op = op;
+         this.payload = payload;
+      }
+
+      public void run()
+      {
+         Object retval;
+         try
+         {
+            if (trace) log.trace("Executing operation " + op + " for request " + id);
+            retval = execute(op, (List<Object>) marshaller.objectFromByteBuffer(payload));
+         }
+         catch (Exception e)
+         {
+            log.debug(e, e);
+            retval = e;
+         }
+         catch (Error e)
+         {
+            log.error(e, e);
+            retval = new CacheException(e);
+         }
+
+         org.jboss.cache.io.ByteBuffer marshalled;
+         try
+         {
+            marshalled = marshaller.objectToBuffer(retval);
+         }
+         catch (Exception e)
+         {
+            log.debug("Unable to marshall the response to request " + id, e);
+            try
+            {
+               marshalled = marshaller.objectToBuffer(new CacheException("Unable to marshall the response: " + e));
+            }
+            catch (Exception e1)
+            {
+               log.error(e1, e1);
+               conn.close();
+               return;
+            }
+         }
+
+         ByteBuffer response = ByteBuffer.allocate(8 + marshalled.getLength());
+         response.putInt(4 + marshalled.getLength());
+         response.putInt(id);
+         response.put(marshalled.getBuf(), marshalled.getOffset(), marshalled.getLength());
+         response.flip();
+         conn.send(response, payload.length);
+      }
+   }
+
+   /**
+    * A connection using the original object stream protocol, with a thread of its own.
+    */
+   private class BlockingConnection implements Connection, Runnable
    {
       private Socket sock = null;
+      private byte[] header;
       private ObjectInputStream input = null;
       private ObjectOutputStream output = null;
-      private CacheSPI c;
       private Thread t = null;
 
-      public Connection(Socket sock, CacheSPI cache) throws IOException
+      /**
+       * @param sock   socket in blocking mode
+       * @param header bytes read off the socket while working out which protocol the client uses
+       */
+      public BlockingConnection(Socket sock, byte[] header)
       {
          this.sock = sock;
-
-         output = new ObjectOutputStream(new BufferedOutputStream(sock.getOutputStream()));
-         output.flush();
-
-         input = new ObjectInputStream(new BufferedInputStream(sock.getInputStream()));
-
-         c = cache;
+         this.header = header;
       }
 
 
@@ -327,10 +991,22 @@ public class TcpCacheServer implements TcpCacheServerMBean
       public void run()
       {
          int op;
-         Fqn fqn;
-         Object key, val, retval;
-         NodeSPI n;
-         boolean flag;
+         List<Object> args;
+
+         try
+         {
+            output = new ObjectOutputStream(new BufferedOutputStream(sock.getOutputStream()));
+            output.flush();
+
+            input = new ObjectInputStream(new BufferedInputStream(new SequenceInputStream(new ByteArrayInputStream(header), sock.getInputStream())));
+            header = null;
+         }
+         catch (IOException e)
+         {
+            log.debug("Unable to open streams", e);
+            close();
+            return;
+         }
 
          while (t != null && t.equals(Thread.currentThread()) && t.isAlive())
          {
@@ -350,124 +1026,14 @@ public class TcpCacheServer implements TcpCacheServerMBean
             {
                if (trace) log.trace("Resetting output");
                output.reset();
-               switch (op)
+               args = readArguments(op);
+               if (args == null)
                {
-                  case TcpCacheOperations.GET_CHILDREN_NAMES:
-                     fqn = (Fqn) input.readObject();
-                     Node node = c.getRoot().getChild(fqn);
-                     Set<Object> children = node == null ? Collections.emptySet() : new HashSet(node.getChildrenNames());
-                     output.writeObject(children);
-                     break;
-                  case TcpCacheOperations.GET_KEY:
-                     fqn = (Fqn) input.readObject();
-                     key = input.readObject();
-                     retval = c.get(fqn, key);
-                     output.writeObject(retval);
-                     break;
-                  case TcpCacheOperations.GET:
-                     fqn = (Fqn) input.readObject();
-                     n = c.getNode(fqn);
-                     if (n == null)
-                     {
-                        // node doesn't exist - return null
-                        output.writeObject(null);
-                        break;
-                     }
-                     Map map = n.getData();
-                     if (map == null)
-                     {
-                        map = Collections.emptyMap();
-                     }
-                     output.writeObject(map);
-                     break;
-                  case TcpCacheOperations.EXISTS:
-                     fqn = (Fqn) input.readObject();
-                     flag = c.getRoot().hasChild(fqn);
-                     output.writeObject(flag);
-                     break;
-                  case TcpCacheOperations.PUT_KEY_VAL:
-                     fqn = (Fqn) input.readObject();
-                     key = input.readObject();
-                     val = input.readObject();
-                     retval = c.put(fqn, key, val);
-                     output.writeObject(retval);
-                     break;
-                  case TcpCacheOperations.PUT:
-                     fqn = (Fqn) input.readObject();
-                     map = (Map) input.readObject();
-                     c.put(fqn, map);
-                     output.writeObject(Boolean.TRUE);
-                     break;
-
-                  case TcpCacheOperations.PUT_LIST:
-                     int length = input.readInt();
-                     retval = Boolean.TRUE;
-                     if (length > 0)
-                     {
-                        Modification mod;
-                        List<Modification> mods = new ArrayList<Modification>(length);
-                        for (int i = 0; i < length; i++)
-                        {
-                           mod = new Modification();
-                           mod.readExternal(input);
-                           mods.add(mod);
-                        }
-                        try
-                        {
-                           handleModifications(mods);
-                        }
-                        catch (Exception ex)
-                        {
-                           retval = ex;
-                        }
-                     }
-                     output.writeObject(retval);
-                     break;
-                  case TcpCacheOperations.REMOVE_KEY:
-                     fqn = (Fqn) input.readObject();
-                     key = input.readObject();
-                     retval = c.remove(fqn, key);
-                     output.writeObject(retval);
-                     break;
-                  case TcpCacheOperations.REMOVE:
-                     fqn = (Fqn) input.readObject();
-                     c.removeNode(fqn);
-                     output.writeObject(Boolean.TRUE);
-                     break;
-                  case TcpCacheOperations.REMOVE_DATA:
-                     fqn = (Fqn) input.readObject();
-                     node = c.getRoot().getChild(fqn);
-                     if (node != null)
-                     {
-                        node.clearData();
-                        output.writeObject(true);
-                     }
-                     else
-                     {
-                        output.writeObject(false);
-                     }
-
-                     break;
-                  case TcpCacheOperations.LOAD_ENTIRE_STATE:
-                     ObjectOutputStream os = (ObjectOutputStream) input.readObject();
-
-                     if (c.getCacheLoaderManager() != null)
-                     {
-                        c.getCacheLoaderManager().getCacheLoader().loadEntireState(os);
-                     }
-                     output.writeObject(Boolean.TRUE);
-                     break;
-                  case TcpCacheOperations.STORE_ENTIRE_STATE:
-                     ObjectInputStream is = (ObjectInputStream) input.readObject();
-                     if (c.getCacheLoaderManager() != null)
-                     {
-                        c.getCacheLoaderManager().getCacheLoader().storeEntireState(is);
-                     }
-                     output.writeObject(Boolean.TRUE);
-                     break;
-                  default:
-                     log.error("Operation " + op + " unknown");
-                     break;
+                  log.error("Operation " + op + " unknown");
+               }
+               else
+               {
+                  output.writeObject(execute(op, args));
                }
                if (trace) log.trace("Flushing stream");
                output.flush();
@@ -488,6 +1054,51 @@ public class TcpCacheServer implements TcpCacheServerMBean
          }
       }
 
+      /**
+       * @return the arguments of the operation, or null if the operation is not known
+       */
+      private List<Object> readArguments(int op) throws Exception
+      {
+         List<Object> args = new ArrayList<Object>(3);
+         switch (op)
+         {
+            case TcpCacheOperations.GET_CHILDREN_NAMES:
+            case TcpCacheOperations.GET:
+            case TcpCacheOperations.EXISTS:
+            case TcpCacheOperations.REMOVE:
+            case TcpCacheOperations.REMOVE_DATA:
+            case TcpCacheOperations.LOAD_ENTIRE_STATE:
+            case TcpCacheOperations.STORE_ENTIRE_STATE:
+               args.add(input.readObject());
+               break;
+            case TcpCacheOperations.GET_KEY:
+            case TcpCacheOperations.PUT:
+            case TcpCacheOperations.REMOVE_KEY:
+               args.add(input.readObject());
+               args.add(input.readObject());
+               break;
+            case TcpCacheOperations.PUT_KEY_VAL:
+               args.add(input.readObject());
+               args.add(input.readObject());
+               args.add(input.readObject());
+               break;
+            case TcpCacheOperations.PUT_LIST:
+               int length = input.readInt();
+               List<Modification> mods = new ArrayList<Modification>(length);
+               for (int i = 0; i < length; i++)
+               {
+                  Modification mod = new Modification();
+                  mod.readExternal(input);
+                  mods.add(mod);
+               }
+               args.add(mods);
+               break;
+            default:
+               return null;
+         }
+         return args;
+      }
+
 
       @Override
       public String toString()
@@ -499,44 +1110,6 @@ public class TcpCacheServer implements TcpCacheServerMBean
          }
          return sb.toString();
       }
-
-      protected void handleModifications(List<Modification> modifications) throws CacheException
-      {
-
-         for (Modification m : modifications)
-         {
-            switch (m.getType())
-            {
-               case PUT_DATA:
-                  c.put(m.getFqn(), m.getData());
-                  break;
-               case PUT_DATA_ERASE:
-                  c.put(m.getFqn(), m.getData());
-                  break;
-               case PUT_KEY_VALUE:
-                  c.put(m.getFqn(), m.getKey(), m.getValue());
-                  break;
-               case REMOVE_DATA:
-                  Node n = c.getRoot().getChild(m.getFqn());
-                  if (n != null) n.clearData();
-                  break;
-               case REMOVE_KEY_VALUE:
-                  c.remove(m.getFqn(), m.getKey());
-                  break;
-               case REMOVE_NODE:
-                  c.removeNode(m.getFqn());
-                  break;
-               case MOVE:
-                  c.move(m.getFqn(), m.getFqn2());
-                  break;
-               default:
-                  log.error("modification type " + m.getType() + " not known");
-                  break;
-            }
-         }
-      }
-
-
    }
 
 
@@ -544,6 +1117,8 @@ public class TcpCacheServer implements TcpCacheServerMBean
    {
       String bind_addr = null;
       int port = 7500;
+      int workers = 8;
+      int maxFrameSize = 64 * 1024 * 1024;
       TcpCacheServer server;
       String config = null;
 
@@ -559,6 +1134,16 @@ public class TcpCacheServer implements TcpCacheServerMBean
             port = Integer.parseInt(args[++i]);
             continue;
          }
+         if (args[i].equals("-workers"))
+         {
+            workers = Integer.parseInt(args[++i]);
+            continue;
+         }
+         if (args[i].equals("-max_frame_size"))
+         {
+            maxFrameSize = Integer.parseInt(args[++i]);
+            continue;
+         }
          if (args[i].equals("-config"))
          {
             config = args[++i];
@@ -571,6 +1156,8 @@ public class TcpCacheServer implements TcpCacheServerMBean
       server.daemon = false;
       server.setBindAddress(bind_addr);
       server.setPort(port);
+      server.setWorkerThreads(workers);
+      server.setMaxFrameSize(maxFrameSize);
       server.setConfig(config);
       server.create();
       server.start();
@@ -579,6 +1166,6 @@ public class TcpCacheServer implements TcpCacheServerMBean
 
    private static void help()
    {
-      System.out.println("TcpCacheServer [-bind_addr <address>] [-port <port>] [-config <config file>] [-help]");
+      System.out.println("TcpCacheServer [-bind_addr <address>] [-port <port>] [-workers <threads>] [-max_frame_size <bytes>] [-config <config file>] [-help]");
    }
 }
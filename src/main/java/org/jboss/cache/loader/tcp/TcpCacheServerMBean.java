@@ -44,6 +44,26 @@ public interface TcpCacheServerMBean extends Lifecycle
 
    void setPort(int port);
 
+   int getWorkerThreads();
+
+   /**
+    * Sets the number of threads executing requests from clients using the multiplexed protocol.  Takes effect the
+    * next time the server is started.
+    *
+    * @since 3.1
+    */
+   void setWorkerThreads(int workerThreads);
+
+   int getMaxFrameSize();
+
+   /**
+    * Sets the size in bytes of the largest request a client using the multiplexed protocol may send.  The connection of
+    * a client sending a larger one is closed.
+    *
+    * @since 3.1
+    */
+   void setMaxFrameSize(int maxFrameSize);
+
    String getConfig();
 
    void setConfig(String config);
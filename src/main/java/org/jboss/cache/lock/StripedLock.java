@@ -24,6 +24,9 @@ package org.jboss.cache.lock;
 import net.jcip.annotations.ThreadSafe;
 import org.jboss.cache.Fqn;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -160,7 +163,9 @@ public class StripedLock
    }
 
    /**
-    * Acquires locks on all fqns passed in.  Makes multiple calls to {@link #acquireLock(org.jboss.cache.Fqn,boolean)}
+    * Acquires locks on all fqns passed in.  Makes multiple calls to {@link #acquireLock(org.jboss.cache.Fqn,boolean)}.
+    * Locks are acquired in the order of the shared locks they map to, so that threads locking several fqns at once
+    * cannot deadlock each other.
     *
     * @param fqns      list of fqns
     * @param exclusive whether locks are exclusive.
@@ -168,6 +173,14 @@ public class StripedLock
     */
    public void acquireAllLocks(List<Fqn> fqns, boolean exclusive)
    {
-      for (Fqn f : fqns) acquireLock(f, exclusive);
+      List<Fqn> ordered = new ArrayList<Fqn>(fqns);
+      Collections.sort(ordered, new Comparator<Fqn>()
+      {
+         public int compare(Fqn f1, Fqn f2)
+         {
+            return hashToIndex(f1) - hashToIndex(f2);
+         }
+      });
+      for (Fqn f : ordered) acquireLock(f, exclusive);
    }
 }
@@ -29,6 +29,7 @@ import org.jboss.cache.commands.DataCommand;
 import org.jboss.cache.commands.ReplicableCommand;
 import org.jboss.cache.commands.WriteCommand;
 import org.jboss.cache.commands.read.ExistsCommand;
+import org.jboss.cache.commands.read.GetAllCommand;
 import org.jboss.cache.commands.read.GetChildrenNamesCommand;
 import org.jboss.cache.commands.read.GetDataMapCommand;
 import org.jboss.cache.commands.read.GetKeyValueCommand;
@@ -48,6 +49,7 @@ import org.jboss.cache.commands.tx.PrepareCommand;
 import org.jboss.cache.commands.tx.RollbackCommand;
 import org.jboss.cache.commands.write.EvictCommand;
 import org.jboss.cache.commands.write.InvalidateCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
 import org.jboss.cache.config.Configuration;
 import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.factories.annotations.Start;
@@ -183,6 +185,15 @@ public abstract class AbstractMarshaller implements Marshaller
             fqn = ((DataCommand) cmd).getFqn();
             break;
 
+         case PutAllCommand.METHOD_ID:
+            // CacheInvocationDelegate splits bulk calls per marshalling region, so the first node is representative.
+            fqn = ((PutAllCommand) cmd).getFqns().iterator().next();
+            break;
+
+         case GetAllCommand.METHOD_ID:
+            fqn = ((GetAllCommand) cmd).getFqns().iterator().next();
+            break;
+
          case DataGravitationCleanupCommand.METHOD_ID:
             fqn = ((DataGravitationCleanupCommand) cmd).getFqn();
             break;
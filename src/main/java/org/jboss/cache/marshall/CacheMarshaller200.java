@@ -33,6 +33,8 @@ import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.optimistic.DefaultDataVersion;
 import org.jboss.cache.transaction.GlobalTransaction;
 import org.jboss.cache.transaction.TransactionLog.LogEntry;
+import org.jboss.cache.util.CompactArrayMap;
+import org.jboss.cache.util.DeltaMap;
 import org.jboss.cache.util.FastCopyHashMap;
 import org.jboss.cache.util.Immutables;
 import org.jgroups.Address;
@@ -100,6 +102,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
    }
 
    protected CommandsFactory commandsFactory;
+   protected MarshalledValueSerializer marshalledValueSerializer;
 
    @Inject
    public void injectCommandsFactory(CommandsFactory commandsFactory)
@@ -107,6 +110,12 @@ public class CacheMarshaller200 extends AbstractMarshaller
       this.commandsFactory = commandsFactory;
    }
 
+   @Inject
+   public void injectMarshalledValueSerializer(MarshalledValueSerializer marshalledValueSerializer)
+   {
+      this.marshalledValueSerializer = marshalledValueSerializer;
+   }
+
    // -------- AbstractMarshaller interface
 
    public void objectToObjectStream(Object o, ObjectOutputStream out) throws Exception
@@ -157,7 +166,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
       }
       else
       {
-         UnmarshalledReferences refMap = useRefs ? new UnmarshalledReferences() : null;
+         UnmarshalledReferences refMap = createUnmarshalledReferences();
          Object retValue = unmarshallObject(in, defaultClassLoader, refMap, false);
          if (trace) log.trace("Unmarshalled object " + retValue);
          return retValue;
@@ -167,7 +176,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
    public void objectToObjectStream(Object o, ObjectOutputStream out, Fqn region) throws Exception
    {
       if (trace) log.trace("Marshalling object " + o);
-      Map<Object, Integer> refMap = useRefs ? new IdentityHashMap<Object, Integer>() : null;
+      Map<Object, Integer> refMap = createReferenceMap();
       ClassLoader toUse = defaultClassLoader;
       Thread current = Thread.currentThread();
       ClassLoader old = current.getContextClassLoader();
@@ -209,7 +218,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
     */
    protected Object[] objectFromObjectStreamRegionBased(ObjectInputStream in) throws Exception
    {
-      UnmarshalledReferences refMap = useRefs ? new UnmarshalledReferences() : null;
+      UnmarshalledReferences refMap = createUnmarshalledReferences();
       Object o = unmarshallObject(in, refMap);
       Fqn regionFqn = null;
       if (o == null)
@@ -246,6 +255,26 @@ public class CacheMarshaller200 extends AbstractMarshaller
       return retValue;
    }
 
+   /**
+    * Creates the map used to track objects already written to a stream, or null if references are not used.
+    *
+    * @return a reference map, shared by all objects written in a single call to objectToObjectStream()
+    */
+   protected Map<Object, Integer> createReferenceMap()
+   {
+      return useRefs ? new IdentityHashMap<Object, Integer>() : null;
+   }
+
+   /**
+    * Creates the counterpart of {@link #createReferenceMap()} used when reading a stream.
+    *
+    * @return references, or null if references are not used.
+    */
+   protected UnmarshalledReferences createUnmarshalledReferences()
+   {
+      return useRefs ? new UnmarshalledReferences() : null;
+   }
+
    private Region findRegion(Fqn fqn) throws InactiveRegionException
    {
       Region region = regionManager.getValidMarshallingRegion(fqn);
@@ -374,7 +403,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
          out.writeByte(MAGICNUMBER_TREE_MAP);
          marshallMap((Map) o, out, refMap);
       }
-      else if (o.getClass().equals(FastCopyHashMap.class))
+      else if (o.getClass().equals(FastCopyHashMap.class) || o.getClass().equals(CompactArrayMap.class) || o.getClass().equals(DeltaMap.class))
       {
          out.writeByte(MAGICNUMBER_FASTCOPY_HASHMAP);
          marshallMap((Map) o, out, refMap);
@@ -451,13 +480,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
       }
       else if (o instanceof Serializable)
       {
-         if (trace)
-         {
-            log.trace("Not optimum: using object serialization for " + o.getClass());
-         }
-         out.writeByte(MAGICNUMBER_SERIALIZABLE);
-         if (useRefs) writeReference(out, createReference(o, refMap));
-         out.writeObject(o);
+         marshallSerializable(o, out, refMap);
       }
       else
       {
@@ -465,6 +488,20 @@ public class CacheMarshaller200 extends AbstractMarshaller
       }
    }
 
+   /**
+    * Marshalls an object that is not one of the types known to this marshaller, using object serialization.
+    */
+   protected void marshallSerializable(Object o, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   {
+      if (trace)
+      {
+         log.trace("Not optimum: using object serialization for " + o.getClass());
+      }
+      out.writeByte(MAGICNUMBER_SERIALIZABLE);
+      if (useRefs) writeReference(out, createReference(o, refMap));
+      out.writeObject(o);
+   }
+
    private void marshallExtendedResponse(ExtendedResponse response, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
    {
       out.writeBoolean(response.isReplayIgnoredRequests());
@@ -507,7 +544,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
       out.writeObject(s);
    }
 
-   private void marshallCommand(ReplicableCommand command, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   protected void marshallCommand(ReplicableCommand command, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
    {
       out.writeShort(command.getCommandId());
       Object[] args = command.getParameters();
@@ -520,7 +557,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
       }
    }
 
-   private void marshallGlobalTransaction(GlobalTransaction globalTransaction, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   protected void marshallGlobalTransaction(GlobalTransaction globalTransaction, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
    {
       out.writeLong(globalTransaction.getId());
       marshallObject(globalTransaction.getAddress(), out, refMap);
@@ -619,6 +656,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
          case MAGICNUMBER_MARSHALLEDVALUE:
             MarshalledValue mv = new MarshalledValue();
             mv.readExternal(in);
+            mv.setSerializer(marshalledValueSerializer);
             return mv;
          case MAGICNUMBER_METHODCALL:
             retVal = unmarshallCommand(in, refMap);
@@ -691,11 +729,19 @@ public class CacheMarshaller200 extends AbstractMarshaller
          case MAGICNUMBER_EXTENDED_RESPONSE:
             return unmarshallExtendedResponse(in, refMap);
          default:
-            if (log.isErrorEnabled())
-            {
-               log.error("Unknown Magic Number " + magicNumber);
-            }
-            throw new Exception("Unknown magic number " + magicNumber);
+            return unmarshallUnknownType(magicNumber, in, refMap);
+      }
+      throw new Exception("Unknown magic number " + magicNumber);
+   }
+
+   /**
+    * Invoked for magic numbers not known to this marshaller.  Later versions that add types override this.
+    */
+   protected Object unmarshallUnknownType(byte magicNumber, ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   {
+      if (log.isErrorEnabled())
+      {
+         log.error("Unknown Magic Number " + magicNumber);
       }
       throw new Exception("Unknown magic number " + magicNumber);
    }
@@ -724,8 +770,9 @@ public class CacheMarshaller200 extends AbstractMarshaller
 
    private FastCopyHashMap unmarshallFastCopyHashMap(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
    {
-      FastCopyHashMap map = new FastCopyHashMap();
-      populateFromStream(in, refMap, map);
+      int size = readUnsignedInt(in);
+      FastCopyHashMap map = new FastCopyHashMap(size);
+      populateFromStream(in, refMap, map, size);
       return map;
    }
 
@@ -750,7 +797,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
       return (String) in.readObject();
    }
 
-   private ReplicableCommand unmarshallCommand(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   protected ReplicableCommand unmarshallCommand(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
    {
       short methodId = in.readShort();
       byte numArgs = in.readByte();
@@ -765,7 +812,7 @@ public class CacheMarshaller200 extends AbstractMarshaller
       return commandsFactory.fromStream(methodId, args);
    }
 
-   private GlobalTransaction unmarshallGlobalTransaction(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   protected GlobalTransaction unmarshallGlobalTransaction(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
    {
       GlobalTransaction gtx = new GlobalTransaction();
       long id = in.readLong();
@@ -821,8 +868,10 @@ public class CacheMarshaller200 extends AbstractMarshaller
 
    private Map unmarshallHashMap(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
    {
-      Map map = new HashMap();
-      populateFromStream(in, refMap, map);
+      int size = readUnsignedInt(in);
+      // sized so that the map is not resized while being populated
+      Map map = new HashMap(Math.max(16, (int) (size / .75f) + 1));
+      populateFromStream(in, refMap, map, size);
       return map;
    }
 
@@ -855,10 +904,14 @@ public class CacheMarshaller200 extends AbstractMarshaller
       return set;
    }
 
-   @SuppressWarnings("unchecked")
    private void populateFromStream(ObjectInputStream in, UnmarshalledReferences refMap, Map mapToPopulate) throws Exception
    {
-      int size = readUnsignedInt(in);
+      populateFromStream(in, refMap, mapToPopulate, readUnsignedInt(in));
+   }
+
+   @SuppressWarnings("unchecked")
+   private void populateFromStream(ObjectInputStream in, UnmarshalledReferences refMap, Map mapToPopulate, int size) throws Exception
+   {
       for (int i = 0; i < size; i++) mapToPopulate.put(unmarshallObject(in, refMap), unmarshallObject(in, refMap));
    }
 
@@ -0,0 +1,391 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.marshall;
+
+import org.jboss.cache.CacheException;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.commands.ReplicableCommand;
+import org.jboss.cache.transaction.GlobalTransaction;
+import org.jboss.cache.util.Immutables;
+import org.jboss.cache.util.Util;
+import org.jgroups.Address;
+
+import java.io.Externalizable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Adds a dictionary of strings and class names to the wire format of {@link org.jboss.cache.marshall.CacheMarshaller300}.
+ * <p/>
+ * The first time a string (such as an Fqn element) or the class of an {@link Externalizable} object is written to a
+ * stream it is written in full and assigned the next id in the dictionary.  Each subsequent occurrence in the same
+ * stream is written as a variable-length id.  Externalizable objects are written using their own
+ * {@link Externalizable#writeExternal(java.io.ObjectOutput)} rather than object serialization, so no class descriptors
+ * are written for them.
+ * <p/>
+ * Ints and longs with a small absolute value, Fqn sizes, command ids and transaction ids are written as variable-length
+ * numbers, booleans are written as a single byte, and empty and singleton immutable maps are written without a size.
+ * <p/>
+ * The dictionary is scoped to a single call to objectToObjectStream() - i.e., a single replicated command, batch of
+ * commands or chunk of state - since messages may be received in any order, or by members that did not see earlier
+ * messages.
+ * <p/>
+ * Released 3.1.0 builds read version id 31 with CacheMarshaller300, so this format has a version id of its own and is
+ * only used when the replication version is set to 3.1.1.
+ *
+ * @since 3.1
+ */
+public class CacheMarshaller311 extends CacheMarshaller300
+{
+   protected static final int MAGICNUMBER_STRING_DEFINITION = 30;
+   protected static final int MAGICNUMBER_STRING_REFERENCE = 31;
+   protected static final int MAGICNUMBER_EXTERNALIZABLE = 32;
+   protected static final int MAGICNUMBER_VARINT = 33;
+   protected static final int MAGICNUMBER_VARLONG = 34;
+   protected static final int MAGICNUMBER_BOOLEAN_TRUE = 35;
+   protected static final int MAGICNUMBER_BOOLEAN_FALSE = 36;
+   protected static final int MAGICNUMBER_EMPTY_MAP = 37;
+   protected static final int MAGICNUMBER_SINGLETON_MAP = 38;
+
+   private static final Class EMPTY_MAP_TYPE = Collections.emptyMap().getClass();
+   private static final Class SINGLETON_MAP_TYPE = Collections.singletonMap(null, null).getClass();
+
+   /**
+    * Longer strings are unlikely to repeat, and are written without being added to the dictionary.
+    */
+   static final int MAX_DICTIONARY_STRING_LENGTH = 1024;
+
+   /**
+    * Whether a given Externalizable class can be written without object serialization.  Held weakly, so classes
+    * from undeployed regions are not retained.
+    */
+   private final Map<Class, Boolean> externalizableTypes = Collections.synchronizedMap(new WeakHashMap<Class, Boolean>());
+
+   @Override
+   protected Map<Object, Integer> createReferenceMap()
+   {
+      return new HashMap<Object, Integer>();
+   }
+
+   @Override
+   protected UnmarshalledReferences createUnmarshalledReferences()
+   {
+      return new UnmarshalledReferences();
+   }
+
+   @Override
+   protected void marshallObject(Object o, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   {
+      if (o instanceof Integer && isShortVarint(zigZag((Integer) o)))
+      {
+         out.writeByte(MAGICNUMBER_VARINT);
+         writeUnsignedInt(out, zigZag((Integer) o));
+      }
+      else if (o instanceof Long && isShortVarlong(zigZag((Long) o)))
+      {
+         out.writeByte(MAGICNUMBER_VARLONG);
+         writeUnsignedLong(out, zigZag((Long) o));
+      }
+      else if (o instanceof Boolean)
+      {
+         out.writeByte((Boolean) o ? MAGICNUMBER_BOOLEAN_TRUE : MAGICNUMBER_BOOLEAN_FALSE);
+      }
+      else if (o instanceof Map && isImmutableMapOfAtMostOneEntry(o))
+      {
+         Map<?, ?> map = (Map) o;
+         if (map.isEmpty())
+         {
+            out.writeByte(MAGICNUMBER_EMPTY_MAP);
+         }
+         else
+         {
+            out.writeByte(MAGICNUMBER_SINGLETON_MAP);
+            Map.Entry<?, ?> entry = map.entrySet().iterator().next();
+            marshallObject(entry.getKey(), out, refMap);
+            marshallObject(entry.getValue(), out, refMap);
+         }
+      }
+      else if (o instanceof String && ((String) o).length() <= MAX_DICTIONARY_STRING_LENGTH)
+      {
+         Integer id = refMap.get(o);
+         if (id == null)
+         {
+            out.writeByte(MAGICNUMBER_STRING_DEFINITION);
+            out.writeUTF((String) o);
+            refMap.put(o, refMap.size());
+         }
+         else
+         {
+            out.writeByte(MAGICNUMBER_STRING_REFERENCE);
+            writeUnsignedInt(out, id);
+         }
+      }
+      else
+      {
+         super.marshallObject(o, out, refMap);
+      }
+   }
+
+   @Override
+   protected void marshallSerializable(Object o, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   {
+      if (o instanceof Externalizable && isExternalizable(o.getClass()))
+      {
+         out.writeByte(MAGICNUMBER_EXTERNALIZABLE);
+         writeClass(o.getClass(), out, refMap);
+         ((Externalizable) o).writeExternal(out);
+      }
+      else
+      {
+         super.marshallSerializable(o, out, refMap);
+      }
+   }
+
+   @Override
+   protected Object unmarshallUnknownType(byte magicNumber, ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   {
+      switch (magicNumber)
+      {
+         case MAGICNUMBER_STRING_DEFINITION:
+            String s = in.readUTF();
+            refMap.putReferencedObject(refMap.size(), s);
+            return s;
+         case MAGICNUMBER_STRING_REFERENCE:
+            return refMap.getReferencedObject(readUnsignedInt(in));
+         case MAGICNUMBER_EXTERNALIZABLE:
+            Class c = readClass(in, refMap);
+            // never instantiate a class the stream names before making sure it is one this marshaller would have written
+            if (!Externalizable.class.isAssignableFrom(c) || !isExternalizable(c))
+               throw new CacheException("Class " + c.getName() + " cannot be read as an Externalizable");
+            Externalizable e = (Externalizable) c.newInstance();
+            e.readExternal(in);
+            return e;
+         case MAGICNUMBER_VARINT:
+            return unZigZag(readUnsignedInt(in));
+         case MAGICNUMBER_VARLONG:
+            return unZigZag(readUnsignedLong(in));
+         case MAGICNUMBER_BOOLEAN_TRUE:
+            return Boolean.TRUE;
+         case MAGICNUMBER_BOOLEAN_FALSE:
+            return Boolean.FALSE;
+         case MAGICNUMBER_EMPTY_MAP:
+            return Collections.emptyMap();
+         case MAGICNUMBER_SINGLETON_MAP:
+            Object key = unmarshallObject(in, refMap);
+            return Collections.singletonMap(key, unmarshallObject(in, refMap));
+         default:
+            return super.unmarshallUnknownType(magicNumber, in, refMap);
+      }
+   }
+
+   /**
+    * Writes the number of elements, where 0 denotes the root, followed by the elements.
+    */
+   @Override
+   protected void marshallFqn(Fqn fqn, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   {
+      writeUnsignedInt(out, fqn.size());
+      for (Object o : fqn.peekElements()) marshallObject(o, out, refMap);
+   }
+
+   @Override
+   protected Fqn unmarshallFqn(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   {
+      int numElements = readUnsignedInt(in);
+      if (numElements == 0) return Fqn.ROOT;
+      List<Object> elements = new ArrayList<Object>(numElements);
+      for (int i = 0; i < numElements; i++) elements.add(unmarshallObject(in, refMap));
+      return Fqn.fromList(elements, true);
+   }
+
+   @Override
+   protected void marshallCommand(ReplicableCommand command, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   {
+      writeUnsignedInt(out, command.getCommandId());
+      Object[] args = command.getParameters();
+      byte numArgs = (byte) (args == null ? 0 : args.length);
+      out.writeByte(numArgs);
+      for (int i = 0; i < numArgs; i++) marshallObject(args[i], out, refMap);
+   }
+
+   @Override
+   protected ReplicableCommand unmarshallCommand(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   {
+      int commandId = readUnsignedInt(in);
+      byte numArgs = in.readByte();
+      Object[] args = null;
+      if (numArgs > 0)
+      {
+         args = new Object[numArgs];
+         for (int i = 0; i < numArgs; i++) args[i] = unmarshallObject(in, refMap);
+      }
+      return commandsFactory.fromStream(commandId, args);
+   }
+
+   @Override
+   protected void marshallGlobalTransaction(GlobalTransaction globalTransaction, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   {
+      writeUnsignedLong(out, zigZag(globalTransaction.getId()));
+      marshallObject(globalTransaction.getAddress(), out, refMap);
+   }
+
+   @Override
+   protected GlobalTransaction unmarshallGlobalTransaction(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   {
+      GlobalTransaction gtx = new GlobalTransaction();
+      gtx.setId(unZigZag(readUnsignedLong(in)));
+      gtx.setAddress((Address) unmarshallObject(in, refMap));
+      return gtx;
+   }
+
+   /**
+    * Immutable maps are read back as {@link Collections#emptyMap()} or {@link Collections#singletonMap(Object, Object)},
+    * which are immutable too.  Mutable maps keep their own encoding, so they are read back as the same type.
+    */
+   private boolean isImmutableMapOfAtMostOneEntry(Object o)
+   {
+      Class type = o.getClass();
+      if (type == EMPTY_MAP_TYPE || type == SINGLETON_MAP_TYPE) return true;
+      return Immutables.isImmutable(o) && ((Map) o).size() <= 1;
+   }
+
+   /**
+    * Maps signed ints to unsigned ints so that numbers with a small absolute value have a small variable-length
+    * encoding: 0, -1, 1, -2, 2 ... become 0, 1, 2, 3, 4 ...
+    */
+   static int zigZag(int i)
+   {
+      return (i << 1) ^ (i >> 31);
+   }
+
+   static int unZigZag(int i)
+   {
+      return (i >>> 1) ^ -(i & 1);
+   }
+
+   static long zigZag(long l)
+   {
+      return (l << 1) ^ (l >> 63);
+   }
+
+   static long unZigZag(long l)
+   {
+      return (l >>> 1) ^ -(l & 1);
+   }
+
+   /**
+    * @return true if the variable-length encoding of an unsigned int is no longer than the 4 bytes of writeInt()
+    */
+   private static boolean isShortVarint(int i)
+   {
+      return (i >>> 28) == 0;
+   }
+
+   /**
+    * @return true if the variable-length encoding of an unsigned long is no longer than the 8 bytes of writeLong()
+    */
+   private static boolean isShortVarlong(long l)
+   {
+      return (l >>> 56) == 0;
+   }
+
+   /**
+    * Writes a class as either 0 followed by its name, the first time it is seen, or its id in the dictionary plus one.
+    */
+   protected void writeClass(Class c, ObjectOutputStream out, Map<Object, Integer> refMap) throws Exception
+   {
+      Integer id = refMap.get(c);
+      if (id == null)
+      {
+         writeUnsignedInt(out, 0);
+         out.writeUTF(c.getName());
+         refMap.put(c, refMap.size());
+      }
+      else
+      {
+         writeUnsignedInt(out, id + 1);
+      }
+   }
+
+   protected Class readClass(ObjectInputStream in, UnmarshalledReferences refMap) throws Exception
+   {
+      int id = readUnsignedInt(in);
+      if (id == 0)
+      {
+         // the context class loader has been set to the region's class loader, if there is one.
+         Class c = Util.loadClass(in.readUTF());
+         refMap.putReferencedObject(refMap.size(), c);
+         return c;
+      }
+      return (Class) refMap.getReferencedObject(id - 1);
+   }
+
+   /**
+    * Object serialization creates Externalizable instances using their public no-arg constructor, and honours
+    * writeReplace() and readResolve().  Only classes that do not rely on the latter, and that can be instantiated
+    * the same way, are written using writeExternal() directly.
+    */
+   boolean isExternalizable(Class c)
+   {
+      Boolean externalizable = externalizableTypes.get(c);
+      if (externalizable == null)
+      {
+         externalizable = Modifier.isPublic(c.getModifiers()) && hasPublicNoArgConstructor(c)
+               && !declares(c, "writeReplace") && !declares(c, "readResolve");
+         externalizableTypes.put(c, externalizable);
+      }
+      return externalizable;
+   }
+
+   private boolean hasPublicNoArgConstructor(Class c)
+   {
+      try
+      {
+         c.getConstructor();
+         return true;
+      }
+      catch (NoSuchMethodException e)
+      {
+         return false;
+      }
+   }
+
+   private boolean declares(Class c, String methodName)
+   {
+      for (Class current = c; current != null; current = current.getSuperclass())
+      {
+         for (Method m : current.getDeclaredMethods())
+         {
+            if (m.getName().equals(methodName) && m.getParameterTypes().length == 0) return true;
+         }
+      }
+      return false;
+   }
+}
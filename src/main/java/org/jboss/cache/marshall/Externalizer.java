@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.marshall;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Writes and reads instances of a type in a compact form of its own, in place of Java serialization, when they are
+ * wrapped in {@link MarshalledValue}s.  Externalizers are registered against exact types, each with an id that is
+ * written in place of the type's class name, using {@link org.jboss.cache.config.Configuration#setExternalizers(java.util.List)}.
+ * Every cache in a cluster needs to register the same externalizers under the same ids.
+ * <p/>
+ * Other objects referenced by the instance can be written using {@link ObjectOutput#writeObject(Object)}, and are in
+ * turn written by their own externalizer if one is registered, or using Java serialization otherwise.
+ * <p/>
+ * Implementations must be thread safe, and must have a public no-arg constructor if configured in XML.
+ *
+ * @param <T> the type written and read by this externalizer
+ * @since 3.1
+ */
+public interface Externalizer<T>
+{
+   /**
+    * Writes the state of an object.
+    *
+    * @param output stream to write to
+    * @param object object to write, never null
+    */
+   void writeObject(ObjectOutput output, T object) throws IOException;
+
+   /**
+    * Reads an object written by {@link #writeObject(java.io.ObjectOutput, Object)}.
+    *
+    * @param input stream to read from
+    * @return the object read
+    */
+   T readObject(ObjectInput input) throws IOException, ClassNotFoundException;
+}
@@ -22,17 +22,12 @@
 package org.jboss.cache.marshall;
 
 import org.jboss.cache.CacheException;
-import org.jboss.util.stream.MarshalledValueInputStream;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectInput;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 
@@ -42,6 +37,9 @@ import java.util.Arrays;
  * The {@link org.jboss.cache.interceptors.MarshalledValueInterceptor} handles transparent
  * wrapping/unwrapping of cached data.
  * <p/>
+ * The wrapped instance is serialized by a {@link MarshalledValueSerializer}, which uses any {@link Externalizer}s
+ * registered with the cache.
+ * <p/>
  *
  * @author Manik Surtani (<a href="mailto:manik AT jboss DOT org">manik AT jboss DOT org</a>)
  * @see org.jboss.cache.interceptors.MarshalledValueInterceptor
@@ -54,12 +52,24 @@ public class MarshalledValue implements Externalizable
    private int cachedHashCode = 0;
    // by default equals() will test on the istance rather than the byte array if conversion is required.
    private transient boolean equalityPreferenceForInstance = true;
+   private transient MarshalledValueSerializer serializer;
 
    public MarshalledValue(Object instance) throws NotSerializableException
+   {
+      this(instance, null);
+   }
+
+   /**
+    * @param instance   instance to wrap
+    * @param serializer serializer to use, or null to use Java serialization only
+    * @since 3.1
+    */
+   public MarshalledValue(Object instance, MarshalledValueSerializer serializer) throws NotSerializableException
    {
       if (instance == null) throw new NullPointerException("Null values cannot be wrapped as MarshalledValues!");
 
-      if (instance instanceof Serializable)
+      this.serializer = serializer;
+      if (instance instanceof Serializable || (serializer != null && serializer.isExternalized(instance.getClass())))
          this.instance = instance;
       else
          throw new NotSerializableException("Marshalled values can only wrap Objects that are serializable!  Instance of " + instance.getClass() + " won't Serialize.");
@@ -75,21 +85,26 @@ public class MarshalledValue implements Externalizable
       this.equalityPreferenceForInstance = equalityPreferenceForInstance;
    }
 
+   void setSerializer(MarshalledValueSerializer serializer)
+   {
+      this.serializer = serializer;
+   }
+
+   private MarshalledValueSerializer getSerializer()
+   {
+      return serializer == null ? MarshalledValueSerializer.DEFAULT : serializer;
+   }
+
    public synchronized void serialize()
    {
       if (raw == null)
       {
          try
          {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(baos);
-            oos.writeObject(instance);
-            oos.close();
-            baos.close();
             // Do NOT set instance to null over here, since it may be used elsewhere (e.g., in a cache listener).
             // this will be compacted by the MarshalledValueInterceptor when the call returns.
 //            instance = null;
-            raw = baos.toByteArray();
+            raw = getSerializer().serialize(instance);
          }
          catch (Exception e)
          {
@@ -104,12 +119,7 @@ public class MarshalledValue implements Externalizable
       {
          try
          {
-            ByteArrayInputStream bais = new ByteArrayInputStream(raw);
-            // use a MarshalledValueInputStream since it needs to be aware of any context class loaders on the current thread.
-            ObjectInputStream ois = new MarshalledValueInputStream(bais);
-            instance = ois.readObject();
-            ois.close();
-            bais.close();
+            instance = getSerializer().deserialize(raw);
 //            raw = null;
          }
          catch (Exception e)
@@ -0,0 +1,270 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.marshall;
+
+import net.jcip.annotations.ThreadSafe;
+import org.jboss.cache.CacheException;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.ConfigurationException;
+import org.jboss.cache.config.ExternalizerConfig;
+import org.jboss.cache.factories.annotations.Inject;
+import org.jboss.cache.factories.annotations.Start;
+import org.jboss.cache.io.ExposedByteArrayOutputStream;
+import org.jboss.util.stream.MarshalledValueInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts the instances wrapped in {@link MarshalledValue}s to and from their serialized form.
+ * <p/>
+ * Instances of types with a registered {@link Externalizer} are written by the externalizer, prefixed by its id.
+ * Anything else is written using Java serialization, exactly as before externalizers were introduced, so values
+ * serialized by older versions can still be read.  The two forms are told apart by their first byte, since a Java
+ * serialization stream always starts with {@link java.io.ObjectStreamConstants#STREAM_MAGIC}.
+ * <p/>
+ * Each thread serializes into a buffer of its own that is reused from one value to the next, so that the buffer
+ * doesn't have to be grown from scratch for every value.
+ *
+ * @since 3.1
+ */
+@ThreadSafe
+public class MarshalledValueSerializer
+{
+   /**
+    * Serializes using Java serialization only, for values created outside a cache.
+    */
+   static final MarshalledValueSerializer DEFAULT = new MarshalledValueSerializer();
+
+   private static final byte EXTERNALIZED_FORMAT = 1;
+
+   // tags of the objects written by externalizers
+   private static final byte NULL = 0;
+   private static final byte EXTERNALIZED = 1;
+   private static final byte SERIALIZED = 2;
+
+   private static final int INITIAL_BUFFER_SIZE = 512;
+   // buffers grown past this are not kept for the next value
+   private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+   private final ThreadLocal<ExposedByteArrayOutputStream> buffers = new ThreadLocal<ExposedByteArrayOutputStream>();
+
+   private Configuration configuration;
+   private volatile Map<String, Registration> byType = Collections.emptyMap();
+   private volatile Map<Short, Registration> byId = Collections.emptyMap();
+
+   @Inject
+   void injectDependencies(Configuration configuration)
+   {
+      this.configuration = configuration;
+   }
+
+   @Start
+   void start()
+   {
+      Map<String, Registration> byType = new HashMap<String, Registration>();
+      Map<Short, Registration> byId = new HashMap<Short, Registration>();
+      for (ExternalizerConfig config : configuration.getExternalizers())
+      {
+         Registration registration = new Registration((short) config.getId(), config.getExternalizer());
+         if (byId.put(registration.id, registration) != null)
+            throw new ConfigurationException("More than one externalizer registered with id " + config.getId());
+         if (byType.put(config.getType(), registration) != null)
+            throw new ConfigurationException("More than one externalizer registered for " + config.getType());
+      }
+      this.byType = byType;
+      this.byId = byId;
+   }
+
+   /**
+    * @return true if instances of the given type are written by an externalizer
+    */
+   public boolean isExternalized(Class<?> type)
+   {
+      return byType.containsKey(type.getName());
+   }
+
+   public byte[] serialize(Object instance) throws IOException
+   {
+      ExposedByteArrayOutputStream buffer = buffers.get();
+      if (buffer == null)
+      {
+         buffer = new ExposedByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+      }
+      else
+      {
+         // an externalizer may serialize another value while writing this one
+         buffers.set(null);
+      }
+
+      try
+      {
+         Registration registration = byType.get(instance.getClass().getName());
+         if (registration == null)
+         {
+            ObjectOutputStream oos = new ObjectOutputStream(buffer);
+            oos.writeObject(instance);
+            oos.close();
+         }
+         else
+         {
+            ValueOutput out = new ValueOutput(buffer);
+            out.writeByte(EXTERNALIZED_FORMAT);
+            writeExternalized(out, registration, instance);
+            out.flush();
+         }
+         return buffer.toByteArray();
+      }
+      finally
+      {
+         if (buffer.getRawBuffer().length <= MAX_RETAINED_BUFFER_SIZE)
+         {
+            buffer.reset();
+            buffers.set(buffer);
+         }
+      }
+   }
+
+   public Object deserialize(byte[] raw) throws IOException, ClassNotFoundException
+   {
+      if (raw.length > 0 && raw[0] == EXTERNALIZED_FORMAT)
+      {
+         return readExternalized(new ValueInput(new ByteArrayInputStream(raw, 1, raw.length - 1)));
+      }
+      // use a MarshalledValueInputStream since it needs to be aware of any context class loaders on the current thread.
+      ObjectInputStream ois = new MarshalledValueInputStream(new ByteArrayInputStream(raw));
+      Object instance = ois.readObject();
+      ois.close();
+      return instance;
+   }
+
+   @SuppressWarnings("unchecked")
+   private void writeExternalized(ValueOutput out, Registration registration, Object object) throws IOException
+   {
+      out.writeShort(registration.id);
+      registration.externalizer.writeObject(out, object);
+   }
+
+   private void writeValue(ValueOutput out, Object object) throws IOException
+   {
+      if (object == null)
+      {
+         out.writeByte(NULL);
+         return;
+      }
+
+      Registration registration = byType.get(object.getClass().getName());
+      if (registration != null)
+      {
+         out.writeByte(EXTERNALIZED);
+         writeExternalized(out, registration, object);
+      }
+      else
+      {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+         ObjectOutputStream oos = new ObjectOutputStream(bytes);
+         oos.writeObject(object);
+         oos.close();
+         out.writeByte(SERIALIZED);
+         out.writeInt(bytes.size());
+         bytes.writeTo(out);
+      }
+   }
+
+   private Object readValue(ValueInput in) throws IOException, ClassNotFoundException
+   {
+      switch (in.readByte())
+      {
+         case NULL:
+            return null;
+         case EXTERNALIZED:
+            return readExternalized(in);
+         case SERIALIZED:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            ObjectInputStream ois = new MarshalledValueInputStream(new ByteArrayInputStream(bytes));
+            Object object = ois.readObject();
+            ois.close();
+            return object;
+         default:
+            throw new StreamCorruptedException("Unknown object tag in externalized value");
+      }
+   }
+
+   private Object readExternalized(ValueInput in) throws IOException, ClassNotFoundException
+   {
+      short id = in.readShort();
+      Registration registration = byId.get(id);
+      if (registration == null)
+         throw new CacheException("No externalizer registered with id " + id + ".  Externalizers have to be registered with the same ids on every cache in the cluster.");
+      return registration.externalizer.readObject(in);
+   }
+
+   private static final class Registration
+   {
+      final short id;
+      final Externalizer externalizer;
+
+      Registration(short id, Externalizer externalizer)
+      {
+         this.id = id;
+         this.externalizer = externalizer;
+      }
+   }
+
+   private class ValueOutput extends DataOutputStream implements ObjectOutput
+   {
+      ValueOutput(ExposedByteArrayOutputStream out)
+      {
+         super(out);
+      }
+
+      public void writeObject(Object object) throws IOException
+      {
+         writeValue(this, object);
+      }
+   }
+
+   private class ValueInput extends DataInputStream implements ObjectInput
+   {
+      ValueInput(ByteArrayInputStream in)
+      {
+         super(in);
+      }
+
+      public Object readObject() throws IOException, ClassNotFoundException
+      {
+         return readValue(this);
+      }
+   }
+}
@@ -70,4 +70,13 @@ public class UnmarshalledReferences
       }
       referencedObjects.add(o);
    }
+
+   /**
+    * @return the number of references held, which is also the next free reference id.
+    * @since 3.1
+    */
+   public int size()
+   {
+      return referencedObjects.size();
+   }
 }
@@ -57,6 +57,11 @@ public class VersionAwareMarshaller extends AbstractMarshaller
    private static final int VERSION_220 = 22;
    private static final int VERSION_300 = 30;
    private static final int VERSION_310 = 31;
+   /**
+    * The id of the {@link CacheMarshaller311} format.  Released builds write 31 for 3.1.x and read it with
+    * {@link CacheMarshaller300}, so the new format needs an id that no released build writes.
+    */
+   private static final int VERSION_311 = 311;
    private static final int CUSTOM_MARSHALLER = 999;
 
    private ComponentRegistry componentRegistry;
@@ -123,6 +128,8 @@ public class VersionAwareMarshaller extends AbstractMarshaller
 
    protected int getCustomMarshallerVersionInt()
    {
+      if (defaultMarshaller.getClass().equals(CacheMarshaller311.class)) return VERSION_311;
+      if (defaultMarshaller.getClass().equals(CacheMarshaller300.class)) return VERSION_300;
       if (defaultMarshaller.getClass().equals(CacheMarshaller210.class)) return VERSION_210;
       if (defaultMarshaller.getClass().equals(CacheMarshaller200.class)) return VERSION_200;
       return CUSTOM_MARSHALLER;
@@ -138,6 +145,8 @@ public class VersionAwareMarshaller extends AbstractMarshaller
     * 1.5.x = "15"
     * 2.0.x = "20"
     * 2.1.x = "21"
+    * 3.1.0 = "31"
+    * 3.1.1 and later 3.1.x = "311"
     * <p/>
     * etc.
     *
@@ -161,6 +170,12 @@ public class VersionAwareMarshaller extends AbstractMarshaller
          int major = Integer.parseInt(versionComponents[0]);
          int minor = Integer.parseInt(versionComponents[1]);
 
+         // the 3.1.1 format is only used when asked for, as 3.1.0 peers expect the 3.0 format
+         if (major == 3 && minor == 1 && versionComponents[2] != null && Integer.parseInt(versionComponents[2]) > 0)
+         {
+            return VERSION_311;
+         }
+
          return (major > 1 || minor > 3) ? (10 * major) + minor : 1;
       }
       catch (Exception e)
@@ -311,6 +326,17 @@ public class VersionAwareMarshaller extends AbstractMarshaller
                marshallers.put(VERSION_210, marshaller);
             }
             break;
+         case VERSION_311:
+            marshaller = marshallers.get(VERSION_311);
+            if (marshaller == null)
+            {
+               am = new CacheMarshaller311();
+               marshaller = am;
+               componentRegistry.wireDependencies(am);
+               am.init();
+               marshallers.put(VERSION_311, marshaller);
+            }
+            break;
          case VERSION_310:
          case VERSION_300:
             knownVersion = true;
@@ -109,7 +109,7 @@ public class MVCCNodeFactory<K, V> extends AbstractNodeFactory<K, V>
       }
 
       rcn.initialize(configuration, invocationContextContainer, componentRegistry, interceptorChain);
-      rcn.injectDependencies(cache);
+      rcn.injectDependencies(cache, dataContainer);
       return rcn;
    }
 
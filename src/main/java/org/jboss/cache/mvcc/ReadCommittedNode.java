@@ -144,6 +144,7 @@ public class ReadCommittedNode extends NodeInvocationDelegate
                InternalNode parent = lookupParent(fqn, ctx, container);
                parent.removeChild(fqn.getLastElement());
                setValid(false, false);
+               container.removeFromIndex(fqn);
                updateNode(fqn, ctx, container);
             }
             else
@@ -0,0 +1,330 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.notifications;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.cache.config.Configuration.ListenerAsyncOverflowPolicy;
+import org.jboss.cache.notifications.event.Event;
+import org.jboss.cache.notifications.event.NodeEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queues the events for a single asynchronous listener, and delivers them in batches.  A drain task is only handed to
+ * the executor when the queue goes from empty to non-empty, and it keeps delivering until the queue is empty again,
+ * so events reach the listener in the order they were queued, from at most one thread at a time.
+ * <p/>
+ * The queue is bounded, and a {@link ListenerAsyncOverflowPolicy} decides what happens to events generated when it
+ * is full.
+ * <p/>
+ * When its listener is removed the queue is {@link #retire() retired}: it stays registered until the events already
+ * queued have been delivered, so that a new queue for the same listener, if it is added again, only starts delivering
+ * once this one has finished.
+ *
+ * @since 3.1
+ */
+@ThreadSafe
+class AsyncListenerQueue implements Runnable
+{
+   private static final Log log = LogFactory.getLog(AsyncListenerQueue.class);
+
+   private final Executor executor;
+   private final int capacity;
+   private final ListenerAsyncOverflowPolicy overflowPolicy;
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition notFull = lock.newCondition();
+   private final LinkedList<PendingEvent> pending = new LinkedList<PendingEvent>();
+   private final Stats stats;
+   private final ConcurrentMap<Object, AsyncListenerQueue> queues;
+   private final Object listener;
+   private boolean draining;
+   private boolean stopped;
+   private boolean retired;
+   private boolean detached;
+
+   /**
+    * @param queues   the queues of all asynchronous listeners, in which this queue is registered under the listener
+    * @param listener the listener this queue delivers events to
+    */
+   AsyncListenerQueue(Executor executor, int capacity, ListenerAsyncOverflowPolicy overflowPolicy, Stats stats,
+                      ConcurrentMap<Object, AsyncListenerQueue> queues, Object listener)
+   {
+      this.executor = executor;
+      this.capacity = Math.max(1, capacity);
+      this.overflowPolicy = overflowPolicy;
+      this.stats = stats;
+      this.queues = queues;
+      this.listener = listener;
+   }
+
+   /**
+    * Queues an event for the given listener method, and schedules delivery if none is pending.
+    *
+    * @return false if the queue was retired and is no longer registered, in which case the event should be offered to
+    *         the listener's current queue instead
+    */
+   boolean offer(NotifierImpl.ListenerInvocation invocation, Event event)
+   {
+      boolean schedule = false;
+      lock.lock();
+      try
+      {
+         if (detached) return false;
+         if (stopped) return true;
+         if (pending.size() >= capacity) makeRoom(invocation, event);
+         pending.add(new PendingEvent(invocation, event, System.nanoTime()));
+         if (!draining) draining = schedule = true;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+
+      if (schedule)
+      {
+         try
+         {
+            executor.execute(this);
+         }
+         catch (RuntimeException re)
+         {
+            lock.lock();
+            try
+            {
+               draining = false;
+               if (retired) detach();
+            }
+            finally
+            {
+               lock.unlock();
+            }
+            throw re;
+         }
+      }
+      return true;
+   }
+
+   private void makeRoom(NotifierImpl.ListenerInvocation invocation, Event event)
+   {
+      switch (overflowPolicy)
+      {
+         case DROP_OLDEST:
+            pending.removeFirst();
+            stats.dropped.incrementAndGet();
+            return;
+         case COALESCE:
+            if (event instanceof NodeEvent)
+            {
+               NodeEvent nodeEvent = (NodeEvent) event;
+               for (Iterator<PendingEvent> i = pending.iterator(); i.hasNext();)
+               {
+                  PendingEvent pe = i.next();
+                  if (pe.invocation == invocation && pe.event.getType() == event.getType() && pe.event.isPre() == event.isPre()
+                        && nodeEvent.getFqn().equals(((NodeEvent) pe.event).getFqn()))
+                  {
+                     i.remove();
+                     stats.coalesced.incrementAndGet();
+                     return;
+                  }
+               }
+            }
+            // nothing to coalesce with, so wait for room
+         case BLOCK:
+            while (pending.size() >= capacity && !stopped)
+            {
+               try
+               {
+                  notFull.await();
+               }
+               catch (InterruptedException e)
+               {
+                  // queue the event anyway, rather than lose it
+                  Thread.currentThread().interrupt();
+                  return;
+               }
+            }
+      }
+   }
+
+   /**
+    * Delivers queued events until there are none left.
+    */
+   public void run()
+   {
+      while (true)
+      {
+         List<PendingEvent> batch;
+         lock.lock();
+         try
+         {
+            if (pending.isEmpty() || stopped)
+            {
+               draining = false;
+               if (retired) detach();
+               return;
+            }
+            batch = new ArrayList<PendingEvent>(pending);
+            pending.clear();
+            notFull.signalAll();
+         }
+         finally
+         {
+            lock.unlock();
+         }
+
+         for (PendingEvent pe : batch)
+         {
+            try
+            {
+               pe.invocation.invokeMethod(pe.event);
+            }
+            catch (RuntimeException re)
+            {
+               log.warn("Caught exception delivering an asynchronous event", re);
+            }
+         }
+         stats.delivered.addAndGet(batch.size());
+         stats.batches.incrementAndGet();
+      }
+   }
+
+   /**
+    * @return the number of events waiting to be delivered
+    */
+   int size()
+   {
+      lock.lock();
+      try
+      {
+         return pending.size();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return the time the oldest waiting event was queued, as per {@link System#nanoTime()}, or -1 if none are waiting
+    */
+   long oldestQueuedAt()
+   {
+      lock.lock();
+      try
+      {
+         return pending.isEmpty() ? -1 : pending.getFirst().queuedAt;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Marks the queue as belonging to a removed listener.  It is unregistered as soon as it has no events to deliver,
+    * which may be straight away.
+    */
+   void retire()
+   {
+      lock.lock();
+      try
+      {
+         retired = true;
+         if (!draining) detach();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Unregisters the queue, so that events for its listener go to a new queue.  Called with the lock held, while no
+    * drain task is running, so the new queue cannot deliver events before those delivered by this one.
+    */
+   private void detach()
+   {
+      detached = true;
+      queues.remove(listener, this);
+   }
+
+   /**
+    * Discards waiting events, and releases any threads waiting for room.  Events offered afterwards are ignored.
+    */
+   void stop()
+   {
+      lock.lock();
+      try
+      {
+         stopped = true;
+         pending.clear();
+         notFull.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Counters shared by the queues of all listeners of a cache.
+    */
+   static class Stats
+   {
+      final AtomicLong delivered = new AtomicLong();
+      final AtomicLong batches = new AtomicLong();
+      final AtomicLong dropped = new AtomicLong();
+      final AtomicLong coalesced = new AtomicLong();
+
+      void reset()
+      {
+         delivered.set(0);
+         batches.set(0);
+         dropped.set(0);
+         coalesced.set(0);
+      }
+   }
+
+   private static class PendingEvent
+   {
+      final NotifierImpl.ListenerInvocation invocation;
+      final Event event;
+      final long queuedAt;
+
+      PendingEvent(NotifierImpl.ListenerInvocation invocation, Event event, long queuedAt)
+      {
+         this.invocation = invocation;
+         this.event = event;
+         this.queuedAt = queuedAt;
+      }
+   }
+}
@@ -31,6 +31,10 @@ import org.jboss.cache.InvocationContext;
 import org.jboss.cache.buddyreplication.BuddyGroup;
 import org.jboss.cache.config.Configuration;
 import org.jboss.cache.factories.annotations.Destroy;
+import org.jboss.cache.factories.context.ContextFactory;
+import org.jboss.cache.jmx.annotations.MBean;
+import org.jboss.cache.jmx.annotations.ManagedAttribute;
+import org.jboss.cache.jmx.annotations.ManagedOperation;
 import org.jboss.cache.factories.annotations.Inject;
 import org.jboss.cache.factories.annotations.NonVolatile;
 import org.jboss.cache.factories.annotations.Start;
@@ -49,15 +53,19 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -67,6 +75,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author <a href="mailto:galder.zamarreno@jboss.com">Galder Zamarreno</a>
  */
 @NonVolatile
+@MBean(objectName = "Notifier", description = "Notifies registered cache listeners of events")
 public class NotifierImpl implements Notifier
 {
    private static final Log log = LogFactory.getLog(NotifierImpl.class);
@@ -88,33 +97,47 @@ public class NotifierImpl implements Notifier
          };
 
    final Map<Class<? extends Annotation>, List<ListenerInvocation>> listenersMap = new HashMap<Class<? extends Annotation>, List<ListenerInvocation>>(32);
-   final List<ListenerInvocation> cacheStartedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> cacheStoppedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> cacheBlockedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> cacheUnblockedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeCreatedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeRemovedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeVisitedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeModifiedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeMovedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeActivatedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodePassivatedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeLoadedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeInvalidatedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> nodeEvictedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> transactionRegisteredListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> transactionCompletedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> viewChangedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
-   final List<ListenerInvocation> buddyGroupChangedListeners = new CopyOnWriteArrayList<ListenerInvocation>();
+   final ListenerList cacheStartedListeners = new ListenerList();
+   final ListenerList cacheStoppedListeners = new ListenerList();
+   final ListenerList cacheBlockedListeners = new ListenerList();
+   final ListenerList cacheUnblockedListeners = new ListenerList();
+   final ListenerList nodeCreatedListeners = new ListenerList();
+   final ListenerList nodeRemovedListeners = new ListenerList();
+   final ListenerList nodeVisitedListeners = new ListenerList();
+   final ListenerList nodeModifiedListeners = new ListenerList();
+   final ListenerList nodeMovedListeners = new ListenerList();
+   final ListenerList nodeActivatedListeners = new ListenerList();
+   final ListenerList nodePassivatedListeners = new ListenerList();
+   final ListenerList nodeLoadedListeners = new ListenerList();
+   final ListenerList nodeInvalidatedListeners = new ListenerList();
+   final ListenerList nodeEvictedListeners = new ListenerList();
+   final ListenerList transactionRegisteredListeners = new ListenerList();
+   final ListenerList transactionCompletedListeners = new ListenerList();
+   final ListenerList viewChangedListeners = new ListenerList();
+   final ListenerList buddyGroupChangedListeners = new ListenerList();
 
    //   final Map<Class, List<ListenerInvocation>> listenerInvocations = new ConcurrentHashMap<Class, List<ListenerInvocation>>();
    private Cache cache;
    private boolean useMarshalledValueMaps;
    private Configuration config;
+   private ContextFactory contextFactory;
    // two separate executor services, one for sync and one for async listeners
    private ExecutorService syncProcessor;
    private ExecutorService asyncProcessor;
    private static final AtomicInteger asyncNotifierThreadNumber = new AtomicInteger(0);
+   // when batching, events for each async listener are queued and delivered by a single task at a time
+   private volatile boolean batchAsyncListeners;
+   private final ConcurrentMap<Object, AsyncListenerQueue> asyncListenerQueues = new ConcurrentHashMap<Object, AsyncListenerQueue>();
+   private final AsyncListenerQueue.Stats asyncStats = new AsyncListenerQueue.Stats();
+   // events handed out to listener lists that allow reuse, one per thread
+   private final ThreadLocal<PooledEvent> pooledEvents = new ThreadLocal<PooledEvent>()
+   {
+      @Override
+      protected PooledEvent initialValue()
+      {
+         return new PooledEvent();
+      }
+   };
 
    public NotifierImpl()
    {
@@ -145,9 +168,18 @@ public class NotifierImpl implements Notifier
       this.config = config;
    }
 
+   @Inject
+   void injectContextFactory(ContextFactory contextFactory)
+   {
+      this.contextFactory = contextFactory;
+   }
+
    @Stop
    void stop()
    {
+      batchAsyncListeners = false;
+      for (AsyncListenerQueue queue : asyncListenerQueues.values()) queue.stop();
+      asyncListenerQueues.clear();
       if (syncProcessor != null) syncProcessor.shutdownNow();
       if (asyncProcessor != null) asyncProcessor.shutdownNow();
    }
@@ -184,11 +216,12 @@ public class NotifierImpl implements Notifier
             asyncProcessor = syncProcessor;
          }
       }
+      batchAsyncListeners = config.isListenerAsyncBatching() && asyncProcessor != syncProcessor;
    }
 
    /**
     * Loops through all valid methods on the object passed in, and caches the relevant methods as {@link NotifierImpl.ListenerInvocation}
-    * for invocation by reflection.
+    * for invocation by reflection.  Access checks are suppressed on each method once, here, rather than on every callback.
     *
     * @param listener object to be considered as a listener.
     */
@@ -196,6 +229,7 @@ public class NotifierImpl implements Notifier
    private void validateAndAddListenerInvocation(Object listener)
    {
       boolean sync = testListenerClassValidity(listener.getClass());
+      boolean reuseEvents = listener.getClass().getAnnotation(CacheListener.class).reuseEvents();
 
       boolean foundMethods = false;
       // now try all methods on the listener for anything that we like.  Note that only PUBLIC methods are scanned.
@@ -207,7 +241,7 @@ public class NotifierImpl implements Notifier
             if (m.isAnnotationPresent(allowedMethodAnnotations[i]))
             {
                testListenerMethodValidity(m, parameterTypes[i], allowedMethodAnnotations[i].getName());
-               addListenerInvocation(allowedMethodAnnotations[i], new ListenerInvocation(listener, m, sync));
+               addListenerInvocation(allowedMethodAnnotations[i], new ListenerInvocation(listener, m, sync, reuseEvents));
                foundMethods = true;
             }
          }
@@ -257,6 +291,12 @@ public class NotifierImpl implements Notifier
    public void removeCacheListener(Object listener)
    {
       for (Class annotation : allowedMethodAnnotations) removeListenerInvocation(annotation, listener);
+      // events already queued are still delivered, before any queued for the listener if it is added again
+      if (listener != null)
+      {
+         AsyncListenerQueue queue = asyncListenerQueues.get(listener);
+         if (queue != null) queue.retire();
+      }
    }
 
    private void removeListenerInvocation(Class annotation, Object listener)
@@ -294,6 +334,7 @@ public class NotifierImpl implements Notifier
       transactionCompletedListeners.clear();
       viewChangedListeners.clear();
       buddyGroupChangedListeners.clear();
+      for (AsyncListenerQueue queue : asyncListenerQueues.values()) queue.retire();
    }
 
    public Set<Object> getCacheListeners()
@@ -313,14 +354,14 @@ public class NotifierImpl implements Notifier
          boolean originLocal = ctx.isOriginLocal();
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeCreatedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
          e.setFqn(fqn);
          e.setTransaction(tx);
          e.setType(NODE_CREATED);
-         for (ListenerInvocation listener : nodeCreatedListeners) listener.invoke(e);
+         invokeListeners(nodeCreatedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -333,7 +374,7 @@ public class NotifierImpl implements Notifier
          Map dataCopy = copy(data, useMarshalledValueMaps);
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeModifiedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
@@ -342,7 +383,7 @@ public class NotifierImpl implements Notifier
          e.setModificationType(modificationType);
          e.setData(dataCopy);
          e.setType(NODE_MODIFIED);
-         for (ListenerInvocation listener : nodeModifiedListeners) listener.invoke(e);
+         invokeListeners(nodeModifiedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -360,7 +401,7 @@ public class NotifierImpl implements Notifier
          Map dataCopy = copy(data, useMarshalledValueMaps);
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeRemovedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
@@ -368,7 +409,7 @@ public class NotifierImpl implements Notifier
          e.setTransaction(tx);
          e.setData(dataCopy);
          e.setType(NODE_REMOVED);
-         for (ListenerInvocation listener : nodeRemovedListeners) listener.invoke(e);
+         invokeListeners(nodeRemovedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -379,13 +420,13 @@ public class NotifierImpl implements Notifier
       {
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeVisitedListeners);
          e.setCache(cache);
          e.setPre(pre);
          e.setFqn(fqn);
          e.setTransaction(tx);
          e.setType(NODE_VISITED);
-         for (ListenerInvocation listener : nodeVisitedListeners) listener.invoke(e);
+         invokeListeners(nodeVisitedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -397,7 +438,7 @@ public class NotifierImpl implements Notifier
          boolean originLocal = ctx.isOriginLocal();
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeMovedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
@@ -405,7 +446,7 @@ public class NotifierImpl implements Notifier
          e.setTargetFqn(newFqn);
          e.setTransaction(tx);
          e.setType(NODE_MOVED);
-         for (ListenerInvocation listener : nodeMovedListeners) listener.invoke(e);
+         invokeListeners(nodeMovedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -417,14 +458,14 @@ public class NotifierImpl implements Notifier
          final boolean originLocal = ctx.isOriginLocal();
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeEvictedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
          e.setFqn(fqn);
          e.setTransaction(tx);
          e.setType(NODE_EVICTED);
-         for (ListenerInvocation listener : nodeEvictedListeners) listener.invoke(e);
+         invokeListeners(nodeEvictedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -436,14 +477,14 @@ public class NotifierImpl implements Notifier
          final boolean originLocal = ctx.isOriginLocal();
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeInvalidatedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
          e.setFqn(fqn);
          e.setTransaction(tx);
          e.setType(NODE_INVALIDATED);
-         for (ListenerInvocation listener : nodeInvalidatedListeners) listener.invoke(e);
+         invokeListeners(nodeInvalidatedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -456,7 +497,7 @@ public class NotifierImpl implements Notifier
          Map dataCopy = copy(data, useMarshalledValueMaps);
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeLoadedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
@@ -464,7 +505,7 @@ public class NotifierImpl implements Notifier
          e.setTransaction(tx);
          e.setData(dataCopy);
          e.setType(NODE_LOADED);
-         for (ListenerInvocation listener : nodeLoadedListeners) listener.invoke(e);
+         invokeListeners(nodeLoadedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -477,7 +518,7 @@ public class NotifierImpl implements Notifier
          Map dataCopy = copy(data, useMarshalledValueMaps);
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodeActivatedListeners);
          e.setCache(cache);
          e.setOriginLocal(originLocal);
          e.setPre(pre);
@@ -485,7 +526,7 @@ public class NotifierImpl implements Notifier
          e.setTransaction(tx);
          e.setData(dataCopy);
          e.setType(NODE_ACTIVATED);
-         for (ListenerInvocation listener : nodeActivatedListeners) listener.invoke(e);
+         invokeListeners(nodeActivatedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -497,14 +538,14 @@ public class NotifierImpl implements Notifier
          Map dataCopy = copy(data, useMarshalledValueMaps);
          Transaction tx = ctx.getTransaction();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(nodePassivatedListeners);
          e.setCache(cache);
          e.setPre(pre);
          e.setFqn(fqn);
          e.setTransaction(tx);
          e.setData(dataCopy);
          e.setType(NODE_PASSIVATED);
-         for (ListenerInvocation listener : nodePassivatedListeners) listener.invoke(e);
+         invokeListeners(nodePassivatedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -517,10 +558,10 @@ public class NotifierImpl implements Notifier
    {
       if (!cacheStartedListeners.isEmpty())
       {
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(cacheStartedListeners);
          e.setCache(cache);
          e.setType(CACHE_STARTED);
-         for (ListenerInvocation listener : cacheStartedListeners) listener.invoke(e);
+         invokeListeners(cacheStartedListeners, e);
       }
    }
 
@@ -532,10 +573,10 @@ public class NotifierImpl implements Notifier
    {
       if (!cacheStoppedListeners.isEmpty())
       {
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(cacheStoppedListeners);
          e.setCache(cache);
          e.setType(CACHE_STOPPED);
-         for (ListenerInvocation listener : cacheStoppedListeners) listener.invoke(e);
+         invokeListeners(cacheStoppedListeners, e);
       }
    }
 
@@ -544,11 +585,11 @@ public class NotifierImpl implements Notifier
       if (!viewChangedListeners.isEmpty())
       {
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(viewChangedListeners);
          e.setCache(cache);
          e.setNewView(newView);
          e.setType(VIEW_CHANGED);
-         for (ListenerInvocation listener : viewChangedListeners) listener.invoke(e);
+         invokeListeners(viewChangedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -557,12 +598,12 @@ public class NotifierImpl implements Notifier
    {
       if (!buddyGroupChangedListeners.isEmpty())
       {
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(buddyGroupChangedListeners);
          e.setCache(cache);
          e.setBuddyGroup(buddyGroup);
          e.setPre(pre);
          e.setType(BUDDY_GROUP_CHANGED);
-         for (ListenerInvocation listener : buddyGroupChangedListeners) listener.invoke(e);
+         invokeListeners(buddyGroupChangedListeners, e);
       }
    }
 
@@ -572,13 +613,13 @@ public class NotifierImpl implements Notifier
       {
          boolean isOriginLocal = ctx.isOriginLocal();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(transactionCompletedListeners);
          e.setCache(cache);
          e.setOriginLocal(isOriginLocal);
          e.setTransaction(transaction);
          e.setSuccessful(successful);
          e.setType(TRANSACTION_COMPLETED);
-         for (ListenerInvocation listener : transactionCompletedListeners) listener.invoke(e);
+         invokeListeners(transactionCompletedListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -589,12 +630,12 @@ public class NotifierImpl implements Notifier
       {
          boolean isOriginLocal = ctx.isOriginLocal();
          InvocationContext backup = resetInvocationContext(ctx);
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(transactionRegisteredListeners);
          e.setCache(cache);
          e.setOriginLocal(isOriginLocal);
          e.setTransaction(transaction);
          e.setType(TRANSACTION_REGISTERED);
-         for (ListenerInvocation listener : transactionRegisteredListeners) listener.invoke(e);
+         invokeListeners(transactionRegisteredListeners, e);
          restoreInvocationContext(backup);
       }
    }
@@ -603,11 +644,11 @@ public class NotifierImpl implements Notifier
    {
       if (!cacheBlockedListeners.isEmpty())
       {
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(cacheBlockedListeners);
          e.setCache(this.cache);
          e.setPre(pre);
          e.setType(CACHE_BLOCKED);
-         for (ListenerInvocation listener : cacheBlockedListeners) listener.invoke(e);
+         invokeListeners(cacheBlockedListeners, e);
       }
    }
 
@@ -615,11 +656,54 @@ public class NotifierImpl implements Notifier
    {
       if (!cacheUnblockedListeners.isEmpty())
       {
-         EventImpl e = new EventImpl();
+         EventImpl e = acquireEvent(cacheUnblockedListeners);
          e.setCache(this.cache);
          e.setPre(pre);
          e.setType(CACHE_UNBLOCKED);
-         for (ListenerInvocation listener : cacheUnblockedListeners) listener.invoke(e);
+         invokeListeners(cacheUnblockedListeners, e);
+      }
+   }
+
+   /**
+    * Returns an event to populate for a notification to the given listeners.  The calling thread's pooled event is
+    * used if every listener allows events to be reused and the pooled event is not already being passed to listeners
+    * further up the stack, e.g. when a listener itself modifies the cache.  The pooled event is then only passed to
+    * the listeners registered at this point, so that one registered meanwhile that does not allow reuse never sees it.
+    */
+   private EventImpl acquireEvent(ListenerList listeners)
+   {
+      ListenerInvocation[] reusable = listeners.reusable;
+      if (reusable != null)
+      {
+         PooledEvent pooled = pooledEvents.get();
+         if (!pooled.inUse)
+         {
+            pooled.inUse = true;
+            pooled.listeners = reusable;
+            return pooled.event;
+         }
+      }
+      return new EventImpl();
+   }
+
+   private void invokeListeners(ListenerList listeners, EventImpl e)
+   {
+      PooledEvent pooled = pooledEvents.get();
+      if (pooled.event != e)
+      {
+         for (ListenerInvocation listener : listeners) listener.invoke(e);
+         return;
+      }
+
+      try
+      {
+         for (ListenerInvocation listener : pooled.listeners) listener.invoke(e);
+      }
+      finally
+      {
+         e.reset();
+         pooled.listeners = null;
+         pooled.inUse = false;
       }
    }
 
@@ -648,10 +732,20 @@ public class NotifierImpl implements Notifier
     */
    private InvocationContext resetInvocationContext(InvocationContext ctx)
    {
-      // wipe current context.
-      cache.setInvocationContext(null);
-      // get a new Invocation Context
-      InvocationContext newContext = cache.getInvocationContext();
+      InvocationContext newContext;
+      if (contextFactory == null)
+      {
+         // wipe current context.
+         cache.setInvocationContext(null);
+         // get a new Invocation Context
+         newContext = cache.getInvocationContext();
+      }
+      else
+      {
+         // replacing the thread's context is cheaper than removing it and having a new one created on the next lookup
+         newContext = contextFactory.createInvocationContext();
+         cache.setInvocationContext(newContext);
+      }
       newContext.putLookedUpNodes(ctx.getLookedUpNodes());
       return ctx;
    }
@@ -675,55 +769,194 @@ public class NotifierImpl implements Notifier
 
    /**
     * Class that encapsulates a valid invocation for a given registered listener - containing a reference to the
-    * method to be invoked as well as the target object.
+    * method to be invoked as well as the target object.  Synchronous invocations are made directly in the caller's
+    * thread, without wrapping them in a task.
     */
    class ListenerInvocation
    {
       private final Object target;
       private final Method method;
       private final boolean sync;
+      private final boolean reuseEvents;
 
-      public ListenerInvocation(Object target, Method method, boolean sync)
+      public ListenerInvocation(Object target, Method method, boolean sync, boolean reuseEvents)
       {
          this.target = target;
          this.method = method;
          this.sync = sync;
+         // only an event reused for synchronous callbacks is guaranteed to be untouched while a listener sees it
+         this.reuseEvents = sync && reuseEvents;
+         try
+         {
+            method.setAccessible(true);
+         }
+         catch (SecurityException se)
+         {
+            if (log.isDebugEnabled()) log.debug("Unable to suppress access checks on " + method + ", invoking it with checks", se);
+         }
       }
 
       public void invoke(final Event e)
       {
-         Runnable r = new Runnable()
+         if (sync)
          {
-
-            public void run()
+            invokeMethod(e);
+         }
+         else if (batchAsyncListeners)
+         {
+            AsyncListenerQueue queue = getAsyncListenerQueue(target);
+            // a retired queue refuses events once it is unregistered, so look the queue up again
+            while (!queue.offer(this, e)) queue = getAsyncListenerQueue(target);
+         }
+         else
+         {
+            asyncProcessor.execute(new Runnable()
             {
-               try
-               {
-                  method.invoke(target, e);
-               }
-               catch (InvocationTargetException exception)
+               public void run()
                {
-                  Throwable cause = exception.getCause();
-                  if (cause != null)
-                     throw new CacheException("Caught exception invoking method " + method + " on listener instance " + target, cause);
-                  else
-                     throw new CacheException("Caught exception invoking method " + method + " on listener instance " + target, exception);
+                  invokeMethod(e);
                }
-               catch (IllegalAccessException exception)
-               {
-                  log.warn("Unable to invoke method " + method + " on Object instance " + target + " - removing this target object from list of listeners!", exception);
-                  removeCacheListener(target);
-               }
-            }
-         };
+            });
+         }
+      }
 
-         if (sync)
-            syncProcessor.execute(r);
-         else
-            asyncProcessor.execute(r);
+      void invokeMethod(Event e)
+      {
+         try
+         {
+            method.invoke(target, e);
+         }
+         catch (InvocationTargetException exception)
+         {
+            Throwable cause = exception.getCause();
+            if (cause != null)
+               throw new CacheException("Caught exception invoking method " + method + " on listener instance " + target, cause);
+            else
+               throw new CacheException("Caught exception invoking method " + method + " on listener instance " + target, exception);
+         }
+         catch (IllegalAccessException exception)
+         {
+            log.warn("Unable to invoke method " + method + " on Object instance " + target + " - removing this target object from list of listeners!", exception);
+            removeCacheListener(target);
+         }
+      }
+   }
 
+   /**
+    * The listeners registered for a single type of event, which tracks whether all of them allow events to be reused.
+    */
+   static class ListenerList extends CopyOnWriteArrayList<ListenerInvocation>
+   {
+      private static final long serialVersionUID = -5542410436453213557L;
+
+      /**
+       * The listeners registered, if all of them allow events to be reused, or null.
+       */
+      volatile ListenerInvocation[] reusable;
+
+      @Override
+      public synchronized boolean add(ListenerInvocation li)
+      {
+         boolean added = super.add(li);
+         updateEventsReusable();
+         return added;
       }
 
+      @Override
+      public synchronized boolean removeAll(Collection<?> c)
+      {
+         boolean removed = super.removeAll(c);
+         updateEventsReusable();
+         return removed;
+      }
+
+      @Override
+      public synchronized void clear()
+      {
+         super.clear();
+         updateEventsReusable();
+      }
+
+      private void updateEventsReusable()
+      {
+         ListenerInvocation[] listeners = toArray(new ListenerInvocation[size()]);
+         boolean eventsReusable = listeners.length > 0;
+         for (ListenerInvocation li : listeners) eventsReusable &= li.reuseEvents;
+         reusable = eventsReusable ? listeners : null;
+      }
+   }
+
+   private static class PooledEvent
+   {
+      final EventImpl event = new EventImpl();
+      boolean inUse;
+      /**
+       * The listeners the event is being passed to while in use, those whose reuse of events it was acquired for.
+       */
+      ListenerInvocation[] listeners;
+   }
+
+   private AsyncListenerQueue getAsyncListenerQueue(Object listener)
+   {
+      AsyncListenerQueue queue = asyncListenerQueues.get(listener);
+      if (queue == null)
+      {
+         queue = new AsyncListenerQueue(asyncProcessor, config.getListenerAsyncQueueSize(), config.getListenerAsyncOverflowPolicy(),
+               asyncStats, asyncListenerQueues, listener);
+         AsyncListenerQueue existing = asyncListenerQueues.putIfAbsent(listener, queue);
+         if (existing != null) queue = existing;
+      }
+      return queue;
+   }
+
+   @ManagedAttribute(name = "asyncQueueDepth", description = "Number of events waiting to be delivered to asynchronous listeners, when batching")
+   public int getAsyncQueueDepth()
+   {
+      int depth = 0;
+      for (AsyncListenerQueue queue : asyncListenerQueues.values()) depth += queue.size();
+      return depth;
+   }
+
+   @ManagedAttribute(name = "asyncLag", description = "Milliseconds the oldest event waiting for an asynchronous listener has been queued, when batching")
+   public long getAsyncLag()
+   {
+      long oldest = -1;
+      for (AsyncListenerQueue queue : asyncListenerQueues.values())
+      {
+         long queuedAt = queue.oldestQueuedAt();
+         if (queuedAt != -1 && (oldest == -1 || queuedAt - oldest < 0)) oldest = queuedAt;
+      }
+      return oldest == -1 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+   }
+
+   @ManagedAttribute(name = "asyncEventsDelivered", description = "Number of events delivered to asynchronous listeners in batches")
+   public long getAsyncEventsDelivered()
+   {
+      return asyncStats.delivered.get();
+   }
+
+   @ManagedAttribute(name = "asyncBatchesDelivered", description = "Number of batches of events delivered to asynchronous listeners")
+   public long getAsyncBatchesDelivered()
+   {
+      return asyncStats.batches.get();
+   }
+
+   @ManagedAttribute(name = "asyncEventsDropped", description = "Number of events for asynchronous listeners dropped because a queue was full")
+   public long getAsyncEventsDropped()
+   {
+      return asyncStats.dropped.get();
+   }
+
+   @ManagedAttribute(name = "asyncEventsCoalesced", description = "Number of events for asynchronous listeners superseded by a later event for the same node because a queue was full")
+   public long getAsyncEventsCoalesced()
+   {
+      return asyncStats.coalesced.get();
+   }
+
+   @ManagedOperation(description = "Resets the asynchronous listener delivery counters")
+   public void resetAsyncStatistics()
+   {
+      asyncStats.reset();
    }
 
    private List<ListenerInvocation> getListenerCollectionForAnnotation(Class<? extends Annotation> annotation)
@@ -330,4 +330,15 @@ public @interface CacheListener
     * @since 3.0
     */
    boolean sync() default true;
+
+   /**
+    * Specifies whether the listener may be passed the same event instance for successive notifications.  A listener
+    * that sets this to <tt>true</tt> promises not to hold on to events, or anything read from them lazily, after a
+    * callback returns.  Events are only ever reused when every listener registered for a type of event is synchronous
+    * and has set this.  Defaults to <tt>false</tt>.
+    *
+    * @return true if event instances may be reused across callbacks to this listener.
+    * @since 3.1
+    */
+   boolean reuseEvents() default false;
 }
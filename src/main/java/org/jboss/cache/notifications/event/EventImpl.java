@@ -190,6 +190,27 @@ public class EventImpl implements CacheBlockedEvent, CacheUnblockedEvent, CacheS
       this.buddyGroup = buddyGroup;
    }
 
+   /**
+    * Restores this event to the state of a newly constructed one, so that it can be reused for another notification.
+    *
+    * @since 3.1
+    */
+   public void reset()
+   {
+      pre = false;
+      cache = null;
+      modificationType = null;
+      data = null;
+      fqn = null;
+      transaction = null;
+      originLocal = true;
+      targetFqn = null;
+      successful = false;
+      newView = null;
+      type = null;
+      buddyGroup = null;
+   }
+
    @Override
    public boolean equals(Object o)
    {
@@ -31,6 +31,7 @@ import org.jboss.cache.factories.annotations.NonVolatile;
 import org.jboss.cache.io.ExposedByteArrayOutputStream;
 import org.jboss.cache.statetransfer.DefaultStateTransferManager;
 import org.jboss.cache.statetransfer.StateTransferManager;
+import org.jboss.cache.statetransfer.StateTransferProgress;
 import org.jboss.util.stream.MarshalledValueInputStream;
 import org.jboss.util.stream.MarshalledValueOutputStream;
 import org.jgroups.ExtendedMessageListener;
@@ -60,6 +61,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
    private static final boolean trace = log.isTraceEnabled();
    private StateTransferManager stateTransferManager;
    private Configuration configuration;
+   private StateTransferProgress progress;
    /**
     * True if state was initialized during start-up.
     */
@@ -67,10 +69,11 @@ public class ChannelMessageListener implements ExtendedMessageListener
 
 
    @Inject
-   void injectDependencies(StateTransferManager stateTransferManager, Configuration configuration)
+   void injectDependencies(StateTransferManager stateTransferManager, Configuration configuration, StateTransferProgress progress)
    {
       this.stateTransferManager = stateTransferManager;
       this.configuration = configuration;
+      this.progress = progress;
    }
 
    public boolean isStateSet()
@@ -158,7 +161,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(16 * 1024);
       try
       {
-         out = new MarshalledValueOutputStream(baos);
+         out = new MarshalledValueOutputStream(progress.providing(baos));
 
          stateTransferManager.getState(out, Fqn.ROOT, configuration.getStateRetrievalTimeout(), true, true);
       }
@@ -170,6 +173,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       {
          result = baos.getRawBuffer();
          Util.close(out);
+         progress.finished();
       }
       return result;
    }
@@ -186,7 +190,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       MarshalledValueInputStream in = null;
       try
       {
-         in = new MarshalledValueInputStream(bais);
+         in = new MarshalledValueInputStream(progress.receiving(bais));
          stateTransferManager.setState(in, Fqn.ROOT);
          stateReceivedSuccess();
       }
@@ -197,6 +201,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       finally
       {
          Util.close(in);
+         progress.finished();
          synchronized (stateLock)
          {
             // Notify wait that state has been set.
@@ -221,7 +226,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(16 * 1024);
       try
       {
-         out = new MarshalledValueOutputStream(baos);
+         out = new MarshalledValueOutputStream(progress.providing(baos));
 
          stateTransferManager.getState(out, Fqn.fromString(sourceRoot),
                configuration.getStateRetrievalTimeout(), true, true);
@@ -234,6 +239,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       {
          result = baos.getRawBuffer();
          Util.close(out);
+         progress.finished();
       }
       return result;
    }
@@ -243,7 +249,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       MarshalledValueOutputStream out = null;
       try
       {
-         out = new MarshalledValueOutputStream(ostream);
+         out = new MarshalledValueOutputStream(progress.providing(ostream));
          stateTransferManager.getState(out, Fqn.ROOT, configuration.getStateRetrievalTimeout(), true, true);
       }
       catch (Throwable t)
@@ -253,6 +259,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       finally
       {
          Util.close(out);
+         progress.finished();
       }
    }
 
@@ -268,7 +275,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       }
       try
       {
-         out = new MarshalledValueOutputStream(ostream);
+         out = new MarshalledValueOutputStream(progress.providing(ostream));
          stateTransferManager.getState(out, Fqn.fromString(sourceRoot), configuration.getStateRetrievalTimeout(), true, true);
       }
       catch (Throwable t)
@@ -278,6 +285,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       finally
       {
          Util.close(out);
+         progress.finished();
       }
    }
 
@@ -292,7 +300,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       MarshalledValueInputStream in = null;
       try
       {
-         in = new MarshalledValueInputStream(istream);
+         in = new MarshalledValueInputStream(progress.receiving(istream));
          stateTransferManager.setState(in, Fqn.ROOT);
          stateReceivedSuccess();
       }
@@ -303,6 +311,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       finally
       {
          Util.close(in);
+         progress.finished();
          synchronized (stateLock)
          {
             // Notify wait that state has been set.
@@ -339,7 +348,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
 //               cl = region.getClassLoader();
 //            }
          ByteArrayInputStream bais = new ByteArrayInputStream(state);
-         in = new MarshalledValueInputStream(bais);
+         in = new MarshalledValueInputStream(progress.receiving(bais));
          //getStateTransferManager().setState(in, subroot, cl);
          stateTransferManager.setState(in, subroot);
          stateReceivedSuccess();
@@ -351,6 +360,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       finally
       {
          Util.close(in);
+         progress.finished();
          synchronized (stateLock)
          {
             // Notify wait that state has been set.
@@ -378,7 +388,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       try
       {
          log.debug("Setting received partial state for subroot " + stateId);
-         in = new MarshalledValueInputStream(istream);
+         in = new MarshalledValueInputStream(progress.receiving(istream));
          Fqn subroot = Fqn.fromString(targetRoot);
 //            Region region = regionManager.getRegion(subroot, false);
 //            ClassLoader cl = null;
@@ -399,6 +409,7 @@ public class ChannelMessageListener implements ExtendedMessageListener
       finally
       {
          Util.close(in);
+         progress.finished();
          synchronized (stateLock)
          {
             // Notify wait that state has been set.
@@ -39,6 +39,7 @@ import org.jboss.cache.marshall.NodeDataExceptionMarker;
 import org.jboss.cache.transaction.TransactionLog;
 
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,16 @@ public class DefaultStateTransferGenerator implements StateTransferGenerator
 
    public static final short STATE_TRANSFER_VERSION = Version.getVersionShort("2.0.0.GA");
 
+   /**
+    * Version of the state stream in which in-memory state is written as a count of the nodes to expect, followed by
+    * lists of at most {@link Configuration#getStateRetrievalChunkSize()} nodes each.  Released builds always write
+    * {@link #STATE_TRANSFER_VERSION}, and read any stream as a single list whatever its version, so this must not be a
+    * version any released build writes, and chunking must only be enabled once all members can read it.
+    *
+    * @since 3.1
+    */
+   public static final short CHUNKED_STATE_TRANSFER_VERSION = Version.getVersionShort("3.1.1");
+
    private static final Log log = LogFactory.getLog(DefaultStateTransferGenerator.class);
    private static final boolean trace = log.isTraceEnabled();
 
@@ -61,13 +72,16 @@ public class DefaultStateTransferGenerator implements StateTransferGenerator
    private long flushTimeout;
    private int maxNonProgressingLogWrites = 5;
    private TransactionLog txLog;
-
-
+   private Configuration configuration;
+   private StateTransferProgress progress;
 
    @Inject
-   public void inject(CacheSPI cache, RPCManager rpcManager, Configuration configuration, TransactionLog txLog)
+   public void inject(CacheSPI cache, RPCManager rpcManager, Configuration configuration, TransactionLog txLog,
+                      StateTransferProgress progress)
    {
       this.cache = cache;
+      this.configuration = configuration;
+      this.progress = progress;
       this.nonBlocking = true;
 
       this.flushTimeout = configuration.getStateRetrievalTimeout();
@@ -89,9 +103,11 @@ public class DefaultStateTransferGenerator implements StateTransferGenerator
       boolean activated = false;
       CacheLoader cacheLoader = cache.getCacheLoaderManager() == null ? null : cache.getCacheLoaderManager().getCacheLoader();
       boolean needToGeneratePersistentState = generatePersistent && cacheLoader != null;
+      // may be changed at runtime
+      int chunkSize = configuration.getStateRetrievalChunkSize();
       try
       {
-         cache.getMarshaller().objectToObjectStream(STATE_TRANSFER_VERSION, out);
+         cache.getMarshaller().objectToObjectStream(chunkSize > 0 ? CHUNKED_STATE_TRANSFER_VERSION : STATE_TRANSFER_VERSION, out);
 
          // activate the tx log only if we need to generate either transient or persistent state
          if (nonBlocking && (generateTransient || needToGeneratePersistentState))
@@ -105,7 +121,10 @@ public class DefaultStateTransferGenerator implements StateTransferGenerator
          {
             //transient + marker
             if (trace) log.trace("writing transient state for " + fqn);
-            marshallTransientState((InternalNode) rootNode, out);
+            if (chunkSize > 0)
+               marshallTransientStateInChunks((InternalNode) rootNode, out, chunkSize);
+            else
+               marshallTransientState((InternalNode) rootNode, out);
 
             if (trace) log.trace("transient state succesfully written");
 
@@ -236,7 +255,57 @@ public class DefaultStateTransferGenerator implements StateTransferGenerator
    {
       List<NodeData> nodeData = new LinkedList<NodeData>();
       generateNodeDataList(node, nodeData);
+      progress.setExpectedNodes(nodeData.size());
       cache.getMarshaller().objectToObjectStream(nodeData, out, node.getFqn());
+      progress.addNodes(nodeData.size());
+   }
+
+   /**
+    * Writes the number of nodes to expect, followed by the nodes in preorder in lists of at most chunkSize nodes, and
+    * a marker.  Only a single chunk is held in memory at a time, and the stream's handle table is reset after each
+    * chunk so that the recipient doesn't hold on to every node read so far either.
+    *
+    * @since 3.1
+    */
+   protected void marshallTransientStateInChunks(InternalNode node, ObjectOutputStream out, int chunkSize) throws Exception
+   {
+      // an estimate, since the tree may change while it is being written
+      int expected = countNodes(node);
+      progress.setExpectedNodes(expected);
+      cache.getMarshaller().objectToObjectStream(expected, out);
+
+      List<NodeData> chunk = new ArrayList<NodeData>(Math.min(chunkSize, expected + 1));
+      generateNodeDataChunks(node, chunk, chunkSize, out, node.getFqn());
+      if (!chunk.isEmpty()) writeChunk(chunk, out, node.getFqn());
+      delimitStream(out);
+   }
+
+   private void generateNodeDataChunks(InternalNode<?, ?> node, List<NodeData> chunk, int chunkSize, ObjectOutputStream out, Fqn region) throws Exception
+   {
+      if (internalFqns.contains(node.getFqn())) return;
+
+      Map attrs = node.getInternalState(false);
+      chunk.add(attrs.size() == 0 ? new NodeData(node.getFqn()) : new NodeData(node.getFqn(), attrs, true));
+      if (chunk.size() >= chunkSize) writeChunk(chunk, out, region);
+
+      for (InternalNode child : node.getChildren()) generateNodeDataChunks(child, chunk, chunkSize, out, region);
+   }
+
+   private void writeChunk(List<NodeData> chunk, ObjectOutputStream out, Fqn region) throws Exception
+   {
+      if (trace) log.trace("writing a chunk of " + chunk.size() + " nodes");
+      cache.getMarshaller().objectToObjectStream(chunk, out, region);
+      out.reset();
+      progress.addNodes(chunk.size());
+      chunk.clear();
+   }
+
+   private int countNodes(InternalNode<?, ?> node)
+   {
+      if (internalFqns.contains(node.getFqn())) return 0;
+      int count = 1;
+      for (InternalNode child : node.getChildren()) count += countNodes(child);
+      return count;
    }
 
    protected void generateNodeDataList(InternalNode<?, ?> node, List<NodeData> list) throws Exception
@@ -43,6 +43,7 @@ import org.jboss.cache.factories.annotations.Start;
 import org.jboss.cache.interceptors.InterceptorChain;
 import org.jboss.cache.invocation.InvocationContextContainer;
 import org.jboss.cache.loader.CacheLoader;
+import org.jboss.cache.loader.CacheLoaderLookupFilter;
 import org.jboss.cache.loader.CacheLoaderManager;
 import org.jboss.cache.marshall.NodeData;
 import org.jboss.cache.marshall.NodeDataExceptionMarker;
@@ -59,6 +60,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Vector;
 
@@ -80,12 +82,16 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
    private InterceptorChain chain;
    private ComponentRegistry registry;
    private CommandsFactory commandsFactory;
+   private StateTransferProgress progress;
+   private CacheLoaderLookupFilter lookupFilter;
 
    @Inject
    public void inject(CacheSPI<?, ?> cache, Configuration cfg, RPCManager rpcManager, TransactionLog txLog,
                       InvocationContextContainer container, InterceptorChain chain, ComponentRegistry registry,
-                      CommandsFactory commandsFactory)
+                      CommandsFactory commandsFactory, StateTransferProgress progress, CacheLoaderLookupFilter lookupFilter)
    {
+      this.progress = progress;
+      this.lookupFilter = lookupFilter;
       this.cache = cache;
       this.cfg = cfg;
       this.rpcManager = rpcManager;
@@ -110,7 +116,7 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
       // pop version from the stream first!
       short version = (Short) cache.getMarshaller().objectFromObjectStream(ois);
       log.info("Using version " + version);
-      integrateTransientState(ois, (InternalNode) target);
+      integrateTransientState(ois, (InternalNode) target, version == DefaultStateTransferGenerator.CHUNKED_STATE_TRANSFER_VERSION);
       if (trace) log.trace("Reading marker for nonexistent associated state");
       cache.getMarshaller().objectFromObjectStream(ois);
       if (integratePersistentState)
@@ -221,7 +227,7 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
       }
    }
 
-   protected void integrateTransientState(ObjectInputStream in, InternalNode target) throws Exception
+   protected void integrateTransientState(ObjectInputStream in, InternalNode target, boolean chunked) throws Exception
    {
       boolean transientSet = false;
       try
@@ -231,7 +237,7 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
             log.trace("integrating transient state for " + target);
          }
 
-         integrateTransientState(target.getFqn(), in);
+         integrateTransientState(target.getFqn(), in, chunked);
 
          transientSet = true;
 
@@ -255,6 +261,8 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
          if (!transientSet)
          {
             target.clear();
+            // invalidate discarded children so that anyone holding a direct reference to them is aware of this.
+            for (Object child : target.getChildrenMap().values()) ((InternalNode) child).setValid(false, true);
             target.removeChildren();
          }
       }
@@ -312,6 +320,8 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
                   log.trace("persistent state integrated successfully");
                }
             }
+            // the contents of the loader have been replaced wholesale
+            lookupFilter.rebuild();
          }
       }
    }
@@ -345,7 +355,7 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
       cache.getInvocationContext().getOptionOverrides().setSuppressPersistence(!needToPersistState);
    }
 
-   private void integrateTransientState(Fqn target, ObjectInputStream in) throws Exception
+   private void integrateTransientState(Fqn target, ObjectInputStream in, boolean chunked) throws Exception
    {
       prepareContextOptions();
       NodeSPI targetNode = cache.getNode(target);
@@ -359,11 +369,10 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
       targetNode.setDataLoaded(false);
       targetNode.setChildrenLoaded(false);
 
-      List<NodeData> list = readNodesAsList(in);
-      if (list != null)
+      Iterator<NodeData> nodeDataIterator = chunked ? readNodesInChunks(in) : readNodes(in);
+      if (nodeDataIterator != null)
       {
-         // if the list was null we read an EOF marker!!  So don't bother popping it off the stack later.
-         Iterator<NodeData> nodeDataIterator = list.iterator();
+         // if the iterator was null we read an EOF marker!!  So don't bother popping it off the stack later.
 
          // Read the first NodeData and integrate into our target
          if (nodeDataIterator.hasNext())
@@ -394,26 +403,107 @@ public class DefaultStateTransferIntegrator implements StateTransferIntegrator
             }
          }
 
-         // read marker off stack
-//         cache.getMarshaller().objectFromObjectStream(in);
+         // read any chunks left unused off the stream, up to and including the marker
+         while (nodeDataIterator.hasNext()) nodeDataIterator.next();
       }
    }
 
+   private Iterator<NodeData> readNodes(ObjectInputStream in) throws Exception
+   {
+      List<NodeData> list = readNodesAsList(in);
+      if (list == null) return null;
+      progress.setExpectedNodes(list.size());
+      progress.addNodes(list.size());
+      return list.iterator();
+   }
+
+   /**
+    * Reads the number of nodes to expect, and returns an iterator that reads the chunks of nodes following it off the
+    * stream as they are needed, or null if the stream holds no in-memory state.
+    */
+   private Iterator<NodeData> readNodesInChunks(ObjectInputStream in) throws Exception
+   {
+      Object obj = cache.getMarshaller().objectFromObjectStream(in);
+      if (obj instanceof NodeDataExceptionMarker) throw exceptionFor((NodeDataExceptionMarker) obj);
+      if (obj instanceof NodeDataMarker) return null;
+      progress.setExpectedNodes((Integer) obj);
+      return new NodeDataChunkIterator(in);
+   }
+
    @SuppressWarnings("unchecked")
    private List<NodeData> readNodesAsList(ObjectInputStream in) throws Exception
    {
       Object obj = cache.getMarshaller().objectFromObjectStream(in);
-      if (obj instanceof NodeDataExceptionMarker)
+      if (obj instanceof NodeDataExceptionMarker) throw exceptionFor((NodeDataExceptionMarker) obj);
+      if (obj instanceof NodeDataMarker) return null;
+
+      return (List<NodeData>) obj;
+   }
+
+   private Exception exceptionFor(NodeDataExceptionMarker marker)
+   {
+      Throwable cause = marker.getCause();
+      if (cause instanceof Exception) return (Exception) cause;
+      return new CacheException(cause);
+   }
+
+   /**
+    * Iterates over chunked in-memory state, reading the next chunk off the stream once the current one is used up,
+    * until the marker ending the in-memory state is read.
+    */
+   private class NodeDataChunkIterator implements Iterator<NodeData>
+   {
+      private final ObjectInputStream in;
+      private Iterator<NodeData> chunk = Collections.<NodeData>emptyList().iterator();
+      private boolean done;
+
+      NodeDataChunkIterator(ObjectInputStream in)
       {
-         Throwable cause = ((NodeDataExceptionMarker)obj).getCause();
-         if (cause instanceof Exception)
-            throw (Exception) cause;
+         this.in = in;
+      }
+
+      public boolean hasNext()
+      {
+         while (!chunk.hasNext() && !done)
+         {
+            List<NodeData> next;
+            try
+            {
+               next = readNodesAsList(in);
+            }
+            catch (CacheException e)
+            {
+               throw e;
+            }
+            catch (Exception e)
+            {
+               throw new CacheException(e);
+            }
 
-         throw new CacheException(cause);
+            if (next == null)
+            {
+               done = true;
+            }
+            else
+            {
+               if (trace) log.trace("read a chunk of " + next.size() + " nodes");
+               progress.addNodes(next.size());
+               chunk = next.iterator();
+            }
+         }
+         return chunk.hasNext();
       }
-      if (obj instanceof NodeDataMarker) return null;
 
-      return (List<NodeData>) obj;
+      public NodeData next()
+      {
+         if (!hasNext()) throw new NoSuchElementException();
+         return chunk.next();
+      }
+
+      public void remove()
+      {
+         throw new UnsupportedOperationException();
+      }
    }
 
    private NodeData integrateStateTransferChildren(Fqn parentFqn, int offset, Iterator<NodeData> nodeDataIterator)
@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.statetransfer;
+
+import net.jcip.annotations.ThreadSafe;
+import org.jboss.cache.factories.annotations.NonVolatile;
+import org.jboss.cache.jmx.annotations.MBean;
+import org.jboss.cache.jmx.annotations.ManagedAttribute;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of the state transfer this cache is taking part in, either as the state provider or as the
+ * recipient, or of the last one if none is in progress.
+ * <p/>
+ * Bytes are counted on the streams handed over by JGroups, nodes as they are generated or integrated.  The number of
+ * nodes to expect is sent ahead of chunked in-memory state, and is used to estimate how much longer the transfer will
+ * take.
+ *
+ * @since 3.1
+ */
+@ThreadSafe
+@NonVolatile
+@MBean(objectName = "StateTransferProgress", description = "Progress of the current or last state transfer")
+public class StateTransferProgress
+{
+   private volatile boolean inProgress;
+   private volatile boolean providing;
+   private volatile long startTime;
+   private volatile long endTime;
+   private volatile long expectedNodes = -1;
+   private final AtomicLong nodes = new AtomicLong();
+   private final AtomicLong bytes = new AtomicLong();
+
+   /**
+    * Starts tracking state being provided to another cache.
+    *
+    * @return a stream counting the bytes written to the given stream
+    */
+   public OutputStream providing(OutputStream out)
+   {
+      start(true);
+      return new FilterOutputStream(out)
+      {
+         @Override
+         public void write(int b) throws IOException
+         {
+            out.write(b);
+            bytes.incrementAndGet();
+         }
+
+         @Override
+         public void write(byte[] b, int off, int len) throws IOException
+         {
+            out.write(b, off, len);
+            bytes.addAndGet(len);
+         }
+      };
+   }
+
+   /**
+    * Starts tracking state being received from another cache.
+    *
+    * @return a stream counting the bytes read from the given stream
+    */
+   public InputStream receiving(InputStream in)
+   {
+      start(false);
+      return new FilterInputStream(in)
+      {
+         @Override
+         public int read() throws IOException
+         {
+            int b = in.read();
+            if (b >= 0) bytes.incrementAndGet();
+            return b;
+         }
+
+         @Override
+         public int read(byte[] b, int off, int len) throws IOException
+         {
+            int read = in.read(b, off, len);
+            if (read > 0) bytes.addAndGet(read);
+            return read;
+         }
+
+         @Override
+         public long skip(long n) throws IOException
+         {
+            long skipped = in.skip(n);
+            if (skipped > 0) bytes.addAndGet(skipped);
+            return skipped;
+         }
+      };
+   }
+
+   private void start(boolean providing)
+   {
+      this.providing = providing;
+      nodes.set(0);
+      bytes.set(0);
+      expectedNodes = -1;
+      endTime = 0;
+      startTime = System.currentTimeMillis();
+      inProgress = true;
+   }
+
+   /**
+    * Stops tracking the current state transfer.
+    */
+   public void finished()
+   {
+      endTime = System.currentTimeMillis();
+      inProgress = false;
+   }
+
+   void setExpectedNodes(long expectedNodes)
+   {
+      this.expectedNodes = expectedNodes;
+   }
+
+   void addNodes(int count)
+   {
+      nodes.addAndGet(count);
+   }
+
+   @ManagedAttribute(name = "inProgress", description = "Whether a state transfer is in progress")
+   public boolean isInProgress()
+   {
+      return inProgress;
+   }
+
+   @ManagedAttribute(name = "providingState", description = "Whether this cache is, or was, the state provider, rather than the recipient")
+   public boolean isProvidingState()
+   {
+      return providing;
+   }
+
+   @ManagedAttribute(name = "bytesTransferred", description = "Number of bytes of state sent or received")
+   public long getBytesTransferred()
+   {
+      return bytes.get();
+   }
+
+   @ManagedAttribute(name = "nodesTransferred", description = "Number of in-memory nodes generated or integrated")
+   public long getNodesTransferred()
+   {
+      return nodes.get();
+   }
+
+   @ManagedAttribute(name = "expectedNodes", description = "Number of in-memory nodes in the state, or -1 if not known")
+   public long getExpectedNodes()
+   {
+      return expectedNodes;
+   }
+
+   @ManagedAttribute(name = "elapsedTime", description = "Time, in milliseconds, spent on the state transfer so far")
+   public long getElapsedTime()
+   {
+      long start = startTime;
+      if (start == 0) return 0;
+      return (inProgress ? System.currentTimeMillis() : endTime) - start;
+   }
+
+   @ManagedAttribute(name = "estimatedTimeRemaining", description = "Estimated time, in milliseconds, until all in-memory nodes have been transferred, or -1 if not known")
+   public long getEstimatedTimeRemaining()
+   {
+      if (!inProgress) return 0;
+      long expected = expectedNodes, done = nodes.get();
+      if (expected < 0 || done == 0) return -1;
+      if (done >= expected) return 0;
+      return getElapsedTime() * (expected - done) / done;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "StateTransferProgress{inProgress=" + inProgress + ", providing=" + providing + ", bytes=" + bytes
+            + ", nodes=" + nodes + ", expectedNodes=" + expectedNodes + ", elapsedTime=" + getElapsedTime() + "}";
+   }
+}
@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.util;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over 64-bit hashes.  Elements can be added concurrently but never removed, so {@link #mightContain(long)}
+ * never returns false for a hash that has been added, and returns true for a hash that has not been added with a
+ * probability that grows as more hashes are added.
+ * <p/>
+ * The filter is sized from the number of elements expected and the false positive rate wanted at that size.  The
+ * bit positions for a hash are derived from its two 32-bit halves by double hashing, so callers should pass well mixed
+ * hashes.
+ *
+ * @since 3.1
+ */
+@ThreadSafe
+public class BloomFilter
+{
+   private final AtomicLongArray words;
+   private final long numBits;
+   private final int numHashes;
+   private final AtomicLong bitsSet = new AtomicLong();
+
+   /**
+    * @param expectedInsertions number of elements the filter is sized for
+    * @param falsePositiveRate  false positive rate wanted once expectedInsertions elements have been added
+    */
+   public BloomFilter(long expectedInsertions, double falsePositiveRate)
+   {
+      if (expectedInsertions <= 0)
+         throw new IllegalArgumentException("Expected insertions must be positive, was " + expectedInsertions);
+      if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+         throw new IllegalArgumentException("False positive rate must be between 0 and 1, was " + falsePositiveRate);
+      long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+      int wordCount = (int) Math.min(Integer.MAX_VALUE, (bits + 63) >>> 6);
+      words = new AtomicLongArray(wordCount);
+      numBits = (long) wordCount << 6;
+      numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+   }
+
+   /**
+    * Adds a hash to the filter.
+    *
+    * @param hash hash to add
+    * @return true if this changed the filter, i.e. the hash was definitely not in it before
+    */
+   public boolean add(long hash)
+   {
+      long h1 = (int) hash;
+      long h2 = (int) (hash >>> 32);
+      boolean changed = false;
+      for (int i = 1; i <= numHashes; i++)
+      {
+         if (setBit(index(h1 + i * h2))) changed = true;
+      }
+      return changed;
+   }
+
+   /**
+    * @param hash hash to test
+    * @return false if the hash has definitely not been added, true if it might have been
+    */
+   public boolean mightContain(long hash)
+   {
+      long h1 = (int) hash;
+      long h2 = (int) (hash >>> 32);
+      for (int i = 1; i <= numHashes; i++)
+      {
+         long bit = index(h1 + i * h2);
+         if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+      }
+      return true;
+   }
+
+   /**
+    * @return the probability of {@link #mightContain(long)} returning true for a hash that has not been added, given
+    *         the bits set so far
+    */
+   public double getExpectedFalsePositiveRate()
+   {
+      return Math.pow((double) bitsSet.get() / numBits, numHashes);
+   }
+
+   public long getNumBits()
+   {
+      return numBits;
+   }
+
+   public int getNumHashes()
+   {
+      return numHashes;
+   }
+
+   private long index(long combinedHash)
+   {
+      return (combinedHash & Long.MAX_VALUE) % numBits;
+   }
+
+   private boolean setBit(long bit)
+   {
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      while (true)
+      {
+         long current = words.get(word);
+         if ((current & mask) != 0) return false;
+         if (words.compareAndSet(word, current, current | mask))
+         {
+            bitsSet.incrementAndGet();
+            return true;
+         }
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "BloomFilter{bits=" + numBits + ", hashes=" + numHashes + ", bitsSet=" + bitsSet.get() + '}';
+   }
+}
@@ -0,0 +1,342 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A Map that keeps its keys and values in a single array, alternating between keys and values, and finds keys by
+ * scanning the array.  Lookups are linear in the size of the map, but there are no hash buckets, entry objects or
+ * load factor slack, so for a handful of entries this map takes up a fraction of the memory of a
+ * {@link FastCopyHashMap} and is just as fast, since comparing a few keys costs about as much as hashing one.
+ * <p/>
+ * Intended for maps that hold up to {@link #MAX_SIZE} entries.  It will grow beyond that, but callers should move the
+ * entries to a hashed map instead.  Like {@link FastCopyHashMap}, {@link #clone()} copies a single array.  Entries are
+ * kept in insertion order, and null keys and values are allowed.  This map is not thread safe.
+ *
+ * @since 3.1
+ */
+public class CompactArrayMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable, Serializable
+{
+   private static final long serialVersionUID = -4218263117434758321L;
+
+   /**
+    * Number of entries beyond which a hashed map should be used instead.
+    */
+   public static final int MAX_SIZE = 8;
+
+   private static final int DEFAULT_CAPACITY = 4;
+
+   /**
+    * Keys at even indexes, each followed by its value
+    */
+   private transient Object[] table;
+
+   private transient int size;
+
+   /**
+    * Counter used to detect changes made outside of an iterator
+    */
+   private transient int modCount;
+
+   private transient EntrySet entrySet;
+
+   public CompactArrayMap()
+   {
+      this(DEFAULT_CAPACITY);
+   }
+
+   public CompactArrayMap(int initialCapacity)
+   {
+      if (initialCapacity < 0) throw new IllegalArgumentException("Can not have a negative size table!");
+      table = new Object[initialCapacity << 1];
+   }
+
+   public CompactArrayMap(Map<? extends K, ? extends V> map)
+   {
+      this(Math.max(map.size(), 1));
+      // the keys are known to be distinct
+      for (Map.Entry<? extends K, ? extends V> e : map.entrySet()) append(e.getKey(), e.getValue());
+   }
+
+   @Override
+   public int size()
+   {
+      return size;
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      return size == 0;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V get(Object key)
+   {
+      int i = indexOf(key);
+      return i < 0 ? null : (V) table[i + 1];
+   }
+
+   @Override
+   public boolean containsKey(Object key)
+   {
+      return indexOf(key) >= 0;
+   }
+
+   @Override
+   public boolean containsValue(Object value)
+   {
+      for (int i = 1, end = size << 1; i < end; i += 2)
+      {
+         if (eq(value, table[i])) return true;
+      }
+      return false;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V put(K key, V value)
+   {
+      int i = indexOf(key);
+      if (i >= 0)
+      {
+         V old = (V) table[i + 1];
+         table[i + 1] = value;
+         return old;
+      }
+      append(key, value);
+      return null;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V remove(Object key)
+   {
+      int i = indexOf(key);
+      if (i < 0) return null;
+      V old = (V) table[i + 1];
+      removeAt(i);
+      return old;
+   }
+
+   @Override
+   public void clear()
+   {
+      for (int i = 0, end = size << 1; i < end; i++) table[i] = null;
+      size = 0;
+      modCount++;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object clone()
+   {
+      try
+      {
+         CompactArrayMap<K, V> clone = (CompactArrayMap<K, V>) super.clone();
+         clone.table = table.clone();
+         clone.entrySet = null;
+         return clone;
+      }
+      catch (CloneNotSupportedException e)
+      {
+         // should never happen
+         return null;
+      }
+   }
+
+   @Override
+   public Set<Map.Entry<K, V>> entrySet()
+   {
+      if (entrySet == null) entrySet = new EntrySet();
+      return entrySet;
+   }
+
+   private int indexOf(Object key)
+   {
+      for (int i = 0, end = size << 1; i < end; i += 2)
+      {
+         if (eq(key, table[i])) return i;
+      }
+      return -1;
+   }
+
+   private void append(Object key, Object value)
+   {
+      int i = size << 1;
+      if (i == table.length)
+      {
+         Object[] newTable = new Object[Math.max(table.length << 1, 2)];
+         System.arraycopy(table, 0, newTable, 0, i);
+         table = newTable;
+      }
+      table[i] = key;
+      table[i + 1] = value;
+      size++;
+      modCount++;
+   }
+
+   private void removeAt(int i)
+   {
+      int end = size << 1;
+      // shift the following entries down, to keep them in insertion order
+      System.arraycopy(table, i + 2, table, i, end - i - 2);
+      table[end - 2] = null;
+      table[end - 1] = null;
+      size--;
+      modCount++;
+   }
+
+   private static boolean eq(Object o1, Object o2)
+   {
+      return o1 == o2 || (o1 != null && o1.equals(o2));
+   }
+
+   private void writeObject(java.io.ObjectOutputStream s) throws IOException
+   {
+      s.defaultWriteObject();
+      s.writeInt(size);
+      for (int i = 0, end = size << 1; i < end; i++) s.writeObject(table[i]);
+   }
+
+   private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException
+   {
+      s.defaultReadObject();
+      int size = s.readInt();
+      table = new Object[Math.max(size, 1) << 1];
+      for (int i = 0, end = size << 1; i < end; i++) table[i] = s.readObject();
+      this.size = size;
+   }
+
+   private class EntrySet extends AbstractSet<Map.Entry<K, V>>
+   {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator()
+      {
+         return new EntryIterator();
+      }
+
+      @Override
+      public int size()
+      {
+         return size;
+      }
+
+      @Override
+      public void clear()
+      {
+         CompactArrayMap.this.clear();
+      }
+   }
+
+   private class EntryIterator implements Iterator<Map.Entry<K, V>>
+   {
+      private int next = 0;
+      private int current = -1;
+      private int expectedCount = modCount;
+
+      public boolean hasNext()
+      {
+         return next < size << 1;
+      }
+
+      public Map.Entry<K, V> next()
+      {
+         if (modCount != expectedCount) throw new ConcurrentModificationException();
+         if (!hasNext()) throw new NoSuchElementException();
+         current = next;
+         next += 2;
+         return new WriteThroughEntry(current);
+      }
+
+      public void remove()
+      {
+         if (current < 0) throw new IllegalStateException();
+         if (modCount != expectedCount) throw new ConcurrentModificationException();
+         removeAt(current);
+         next = current;
+         current = -1;
+         expectedCount = modCount;
+      }
+   }
+
+   private class WriteThroughEntry implements Map.Entry<K, V>
+   {
+      private final K key;
+      private V value;
+
+      @SuppressWarnings("unchecked")
+      WriteThroughEntry(int index)
+      {
+         key = (K) table[index];
+         value = (V) table[index + 1];
+      }
+
+      public K getKey()
+      {
+         return key;
+      }
+
+      public V getValue()
+      {
+         return value;
+      }
+
+      public V setValue(V value)
+      {
+         V old = this.value;
+         this.value = value;
+         CompactArrayMap.this.put(key, value);
+         return old;
+      }
+
+      @Override
+      public boolean equals(Object o)
+      {
+         if (!(o instanceof Map.Entry)) return false;
+         Map.Entry e = (Map.Entry) o;
+         return eq(key, e.getKey()) && eq(value, e.getValue());
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+      }
+
+      @Override
+      public String toString()
+      {
+         return key + "=" + value;
+      }
+   }
+}
@@ -21,6 +21,7 @@
  */
 package org.jboss.cache.util;
 
+import java.io.Serializable;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Arrays;
@@ -54,8 +55,10 @@ import java.util.Set;
  * @param <K> key type
  * @param <V> value type
  */
-public class DeltaMap<K, V> extends AbstractMap<K, V>
+public class DeltaMap<K, V> extends AbstractMap<K, V> implements Serializable
 {
+   private static final long serialVersionUID = 7343546281947620915L;
+
 
    /**
     * Wrapped instance.
@@ -127,6 +130,18 @@ public class DeltaMap<K, V> extends AbstractMap<K, V>
       return excludeKeys(original, new HashSet<K>(Arrays.asList(exclude)));
    }
 
+   /**
+    * Creates and returns a DeltaMap for the same original map, with a copy of the modifications of this one.
+    *
+    * @return a new instance
+    */
+   public DeltaMap<K, V> copy()
+   {
+      DeltaMap<K, V> copy = new DeltaMap<K, V>(original, new HashSet<K>(exclude));
+      copy.changed.putAll(changed);
+      return copy;
+   }
+
    @Override
    public Set<java.util.Map.Entry<K, V>> entrySet()
    {
@@ -313,6 +328,14 @@ public class DeltaMap<K, V> extends AbstractMap<K, V>
 
    }
 
+   /**
+    * Serializes a copy of the entries, not the original map and the modifications.
+    */
+   private Object writeReplace()
+   {
+      return new HashMap<K, V>(this);
+   }
+
    /**
     * Returns a debug string.
     */
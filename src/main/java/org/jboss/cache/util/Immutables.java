@@ -205,6 +205,10 @@ public class Immutables
    {
       if (map instanceof FastCopyHashMap)
          return (T) ((FastCopyHashMap) map).clone();
+      if (map instanceof CompactArrayMap)
+         return (T) ((CompactArrayMap) map).clone();
+      if (map instanceof DeltaMap)
+         return (T) new FastCopyHashMap(map);
       if (map instanceof LinkedHashMap)
          return (T) ((LinkedHashMap) map).clone();
       if (map instanceof HashMap)
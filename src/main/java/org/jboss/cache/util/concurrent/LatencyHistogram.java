@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, for computing percentiles.  Values are counted in buckets whose width
+ * grows with the value, giving each bucket a relative width of at most 12.5%: values below 8 have a bucket each, and
+ * every power of two above that is split into 8 buckets.  Values of about 68 seconds and above share the last bucket.
+ * <p/>
+ * Like a {@link StripedCounter}, updates go to a set of buckets picked by the updating thread, so recording is a
+ * single uncontended atomic increment, and percentiles are computed by adding up the stripes.
+ *
+ * @since 3.1
+ */
+public class LatencyHistogram
+{
+   private static final int SUB_BUCKET_BITS = 3;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   /**
+    * Highest bit of the largest value with a bucket of its own.
+    */
+   private static final int MAX_BIT = 35;
+   private static final int BUCKETS = (MAX_BIT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts;
+   private final int mask;
+
+   public LatencyHistogram()
+   {
+      int stripes = StripedCounter.stripes();
+      counts = new AtomicLongArray(stripes * BUCKETS);
+      mask = stripes - 1;
+   }
+
+   /**
+    * Records a latency.
+    *
+    * @param nanos latency in nanoseconds; negative values are counted as 0
+    */
+   public void record(long nanos)
+   {
+      counts.incrementAndGet(StripedCounter.stripe(mask) * BUCKETS + bucket(nanos));
+   }
+
+   static int bucket(long value)
+   {
+      if (value < SUB_BUCKETS) return value < 0 ? 0 : (int) value;
+      int bit = 63 - Long.numberOfLeadingZeros(value);
+      if (bit > MAX_BIT) return BUCKETS - 1;
+      int shift = bit - SUB_BUCKET_BITS;
+      return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+   }
+
+   /**
+    * @return the largest value counted in a bucket
+    */
+   static long highestValue(int bucket)
+   {
+      if (bucket < SUB_BUCKETS) return bucket;
+      int shift = bucket / SUB_BUCKETS - 1;
+      return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+   }
+
+   /**
+    * @return the number of latencies recorded
+    */
+   public long getCount()
+   {
+      long count = 0;
+      for (int i = 0; i < counts.length(); i++) count += counts.get(i);
+      return count;
+   }
+
+   /**
+    * Returns the latency below which the given fraction of the recorded latencies fall.  The result is the upper
+    * bound of the bucket the percentile falls in, so may overstate it by up to 12.5%.
+    *
+    * @param fraction percentile as a fraction, e.g. 0.99
+    * @return the latency in nanoseconds, or 0 if nothing has been recorded
+    */
+   public long getPercentile(double fraction)
+   {
+      long[] merged = new long[BUCKETS];
+      long count = 0;
+      for (int i = 0; i < counts.length(); i++)
+      {
+         long c = counts.get(i);
+         merged[i % BUCKETS] += c;
+         count += c;
+      }
+      if (count == 0) return 0;
+
+      long rank = Math.max(1, (long) Math.ceil(fraction * count));
+      long seen = 0;
+      for (int bucket = 0; bucket < BUCKETS; bucket++)
+      {
+         seen += merged[bucket];
+         if (seen >= rank) return highestValue(bucket);
+      }
+      return highestValue(BUCKETS - 1);
+   }
+
+   public void reset()
+   {
+      for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "LatencyHistogram{count=" + getCount() + ", p50=" + getPercentile(0.5) + ", p99=" + getPercentile(0.99) + ", p999=" + getPercentile(0.999) + "}";
+   }
+}
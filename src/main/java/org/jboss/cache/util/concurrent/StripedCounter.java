@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2000 - 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.cache.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads updates over several cells, chosen by the updating thread, so that threads updating it
+ * concurrently rarely contend on the same cache line.  Reads add up all the cells, and so are more expensive than
+ * updates, which suits statistics that are updated on every invocation but only read occasionally.
+ * <p/>
+ * A {@link #get()} concurrent with updates may or may not include them, and a {@link #reset()} concurrent with
+ * updates may lose some of them.
+ *
+ * @since 3.1
+ */
+public class StripedCounter
+{
+   /**
+    * Distance between cells, in longs, so that each cell sits on a cache line of its own.
+    */
+   private static final int PADDING = 8;
+
+   private final AtomicLongArray cells;
+   private final int mask;
+
+   public StripedCounter()
+   {
+      int stripes = stripes();
+      cells = new AtomicLongArray(stripes * PADDING);
+      mask = stripes - 1;
+   }
+
+   /**
+    * @return the number of stripes to use for per-thread striping: the number of processors rounded up to a power of
+    *         two, up to 16
+    */
+   static int stripes()
+   {
+      int processors = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+      int stripes = 1;
+      while (stripes < processors) stripes <<= 1;
+      return stripes;
+   }
+
+   /**
+    * @param mask the number of stripes minus one
+    * @return the stripe the calling thread updates
+    */
+   static int stripe(int mask)
+   {
+      return (int) Thread.currentThread().getId() & mask;
+   }
+
+   public void increment()
+   {
+      cells.incrementAndGet(stripe(mask) * PADDING);
+   }
+
+   public void add(long delta)
+   {
+      cells.addAndGet(stripe(mask) * PADDING, delta);
+   }
+
+   public long get()
+   {
+      long sum = 0;
+      for (int i = 0; i < cells.length(); i += PADDING) sum += cells.get(i);
+      return sum;
+   }
+
+   public void reset()
+   {
+      for (int i = 0; i < cells.length(); i += PADDING) cells.set(i, 0);
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.valueOf(get());
+   }
+}
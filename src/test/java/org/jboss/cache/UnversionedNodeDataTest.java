@@ -0,0 +1,152 @@
+package org.jboss.cache;
+
+import org.jboss.cache.util.CompactArrayMap;
+import org.jboss.cache.util.DeltaMap;
+import org.jboss.cache.util.FastCopyHashMap;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests that {@link UnversionedNode} keeps its data in the smallest map suited to the number of attributes, and that
+ * copies of large nodes overlay their data rather than cloning it.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"unit"}, sequential = true, testName = "UnversionedNodeDataTest")
+public class UnversionedNodeDataTest
+{
+   UnversionedNode<String, Integer> node;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp()
+   {
+      node = new UnversionedNode<String, Integer>(Fqn.fromString("/a"), null, false);
+   }
+
+   public void testUpgradedAsAttributesAreAdded()
+   {
+      node.put("k0", 0);
+      assertEquals(1, node.getData().size());
+      assertFalse(node.getData() instanceof CompactArrayMap);
+
+      for (int i = 1; i < CompactArrayMap.MAX_SIZE; i++) node.put("k" + i, i);
+      assertTrue(node.getData() instanceof CompactArrayMap);
+      // replacing a value in a full map doesn't need a bigger one
+      node.put("k0", 100);
+      assertTrue(node.getData() instanceof CompactArrayMap);
+
+      node.put("k" + CompactArrayMap.MAX_SIZE, CompactArrayMap.MAX_SIZE);
+      assertTrue(node.getData() instanceof FastCopyHashMap);
+      assertEquals(CompactArrayMap.MAX_SIZE + 1, node.getData().size());
+      assertEquals(100, (int) node.get("k0"));
+   }
+
+   public void testDowngradedAsAttributesAreRemoved()
+   {
+      for (int i = 0; i <= CompactArrayMap.MAX_SIZE; i++) node.put("k" + i, i);
+      for (int i = 0; i < CompactArrayMap.MAX_SIZE - CompactArrayMap.MAX_SIZE / 2; i++) node.remove("k" + i);
+      assertTrue(node.getData() instanceof FastCopyHashMap);
+      node.remove("k" + (CompactArrayMap.MAX_SIZE - CompactArrayMap.MAX_SIZE / 2));
+      assertTrue(node.getData() instanceof CompactArrayMap);
+
+      while (node.getData().size() > 1) node.remove(node.getData().keySet().iterator().next());
+      assertFalse(node.getData() instanceof CompactArrayMap);
+      assertEquals(CompactArrayMap.MAX_SIZE, (int) node.get("k" + CompactArrayMap.MAX_SIZE));
+   }
+
+   public void testRemovingMissingKeyFromSingleAttribute()
+   {
+      node.put("k", 1);
+      assertNull(node.remove("other"));
+      assertEquals(1, (int) node.get("k"));
+   }
+
+   public void testPutAll()
+   {
+      Map<String, Integer> data = new HashMap<String, Integer>();
+      data.put("k1", 1);
+      data.put("k2", 2);
+      node.putAll(data);
+      assertTrue(node.getData() instanceof CompactArrayMap);
+      // overlapping keys are only counted once
+      node.putAll(data);
+      assertEquals(2, node.getData().size());
+
+      for (int i = 0; i < CompactArrayMap.MAX_SIZE; i++) data.put("x" + i, i);
+      node.putAll(data);
+      assertTrue(node.getData() instanceof FastCopyHashMap);
+      assertEquals(CompactArrayMap.MAX_SIZE + 2, node.getData().size());
+   }
+
+   public void testCopiesAreIndependent()
+   {
+      node.put("k1", 1);
+      node.put("k2", 2);
+      InternalNode<String, Integer> copy = node.copy();
+      assertTrue(copy.getData() instanceof CompactArrayMap);
+      copy.put("k1", 100);
+      assertEquals(1, (int) node.get("k1"));
+   }
+
+   public void testCopyOfLargeNodeOverlaysItsData()
+   {
+      for (int i = 0; i < 100; i++) node.put("k" + i, i);
+      Map<String, Integer> original = node.getData();
+      InternalNode<String, Integer> copy = node.copy();
+      assertTrue(copy.getData() instanceof DeltaMap);
+      assertSame(original, ((DeltaMap<String, Integer>) copy.getData()).getOriginal());
+
+      copy.put("k0", 100);
+      copy.put("new", 1);
+      copy.remove("k1");
+      assertEquals(100, (int) copy.get("k0"));
+      assertNull(copy.get("k1"));
+      assertEquals(100, copy.getData().size());
+      assertEquals(0, (int) node.get("k0"));
+      assertEquals(1, (int) node.get("k1"));
+      assertFalse(node.getData().containsKey("new"));
+      assertEquals(100, node.getData().size());
+   }
+
+   public void testOverlaysMergedOnceChangesOutgrowThem()
+   {
+      for (int i = 0; i < 100; i++) node.put("k" + i, i);
+      Map<String, Integer> original = node.getData();
+      InternalNode<String, Integer> version = node;
+      // sqrt(100) changes are carried along from copy to copy
+      for (int i = 0; i < 10; i++)
+      {
+         version = version.copy();
+         version.put("k" + i, -i);
+         assertSame(original, ((DeltaMap<String, Integer>) version.getData()).getOriginal());
+      }
+      version = version.copy();
+      assertTrue(version.getData() instanceof DeltaMap);
+      version.put("k10", -10);
+
+      version = version.copy();
+      assertTrue(version.getData() instanceof FastCopyHashMap);
+      assertEquals(100, version.getData().size());
+      for (int i = 0; i <= 10; i++) assertEquals(-i, (int) version.get("k" + i));
+      assertEquals(11, (int) version.get("k11"));
+      assertEquals(10, (int) node.get("k10"));
+   }
+
+   public void testRemovingEverythingFromOverlay()
+   {
+      for (int i = 0; i < 20; i++) node.put("k" + i, i);
+      InternalNode<String, Integer> copy = node.copy();
+      for (int i = 0; i < 20; i++) copy.remove("k" + i);
+      assertTrue(copy.getData().isEmpty());
+      assertTrue(copy.copy().getData().isEmpty());
+      assertEquals(20, node.getData().size());
+   }
+}
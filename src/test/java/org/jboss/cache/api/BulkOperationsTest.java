@@ -0,0 +1,247 @@
+package org.jboss.cache.api;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InvocationContext;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.commands.read.GetAllCommand;
+import org.jboss.cache.commands.read.GetDataMapCommand;
+import org.jboss.cache.commands.write.PutAllCommand;
+import org.jboss.cache.commands.write.PutDataMapCommand;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import static org.jboss.cache.factories.UnitTestConfigurationFactory.buildSingleCacheLoaderConfig;
+import org.jboss.cache.interceptors.base.CommandInterceptor;
+import org.jboss.cache.loader.CacheLoader;
+import org.jboss.cache.notifications.annotation.CacheListener;
+import org.jboss.cache.notifications.annotation.NodeModified;
+import org.jboss.cache.notifications.event.NodeModifiedEvent;
+import org.jboss.cache.transaction.DummyTransactionManagerLookup;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link org.jboss.cache.Cache#putAll(java.util.Map)} and {@link org.jboss.cache.Cache#getAll(java.util.Collection)}.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", sequential = true, testName = "api.BulkOperationsTest")
+public class BulkOperationsTest
+{
+   private static final Fqn A = Fqn.fromString("/a");
+   private static final Fqn B = Fqn.fromString("/a/b");
+   private static final Fqn C = Fqn.fromString("/c");
+   private static final Fqn MISSING = Fqn.fromString("/missing");
+
+   private CacheSPI<String, String> cache;
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      TestingUtil.killCaches(cache);
+      cache = null;
+   }
+
+   public void testPutAllAndGetAll() throws Exception
+   {
+      startCache(NodeLockingScheme.MVCC);
+      cache.putAll(data());
+
+      Map<Fqn, Map<String, String>> result = cache.getAll(Arrays.asList(C, A, B, MISSING));
+      assertEquals(3, result.size());
+      assertEquals("1", result.get(A).get("k"));
+      assertEquals("2", result.get(B).get("k"));
+      assertEquals("3", result.get(C).get("k"));
+      assertFalse(result.containsKey(MISSING));
+      assertEquals(cache.getData(B), result.get(B));
+   }
+
+   public void testSingleInvocation() throws Exception
+   {
+      startCache(NodeLockingScheme.MVCC);
+      CountingInterceptor counter = new CountingInterceptor();
+      cache.addInterceptor(counter, 0);
+
+      cache.putAll(data());
+      cache.getAll(Arrays.asList(A, B, C));
+
+      assertEquals(Collections.singletonList(PutAllCommand.class.getSimpleName() + " [/a, /a/b, /c]"), counter.writes);
+      assertEquals(Collections.singletonList(GetAllCommand.class.getSimpleName() + " [/a, /a/b, /c]"), counter.reads);
+   }
+
+   public void testSplitPerMarshallingRegion() throws Exception
+   {
+      startCache(NodeLockingScheme.MVCC, true);
+      for (Fqn region : Arrays.asList(A, C))
+      {
+         cache.getRegion(region, true).registerContextClassLoader(getClass().getClassLoader());
+      }
+      CountingInterceptor counter = new CountingInterceptor();
+      cache.addInterceptor(counter, 0);
+
+      cache.putAll(data());
+      Map<Fqn, Map<String, String>> result = cache.getAll(Arrays.asList(A, B, C, MISSING));
+
+      String putAll = PutAllCommand.class.getSimpleName();
+      String getAll = GetAllCommand.class.getSimpleName();
+      assertEquals(new HashSet<String>(Arrays.asList(putAll + " [/a, /a/b]", putAll + " [/c]")), new HashSet<String>(counter.writes));
+      assertEquals(2, counter.writes.size());
+      assertEquals(new HashSet<String>(Arrays.asList(getAll + " [/a, /a/b]", getAll + " [/c]", getAll + " [/missing]")),
+            new HashSet<String>(counter.reads));
+      assertEquals(3, counter.reads.size());
+      assertEquals(3, result.size());
+      assertEquals("1", result.get(A).get("k"));
+      assertEquals("2", result.get(B).get("k"));
+      assertEquals("3", result.get(C).get("k"));
+   }
+
+   public void testWrittenToAndLoadedFromCacheLoader() throws Exception
+   {
+      startCache(NodeLockingScheme.MVCC);
+      cache.putAll(data());
+      CacheLoader loader = cache.getCacheLoaderManager().getCacheLoader();
+      assertEquals("1", loader.get(A).get("k"));
+      assertEquals("3", loader.get(C).get("k"));
+
+      cache.evict(A, true);
+      cache.evict(C);
+      assertNull(cache.peek(C, false));
+
+      Map<Fqn, Map<String, String>> result = cache.getAll(Arrays.asList(A, B, C));
+      assertEquals("1", result.get(A).get("k"));
+      assertEquals("2", result.get(B).get("k"));
+      assertEquals("3", result.get(C).get("k"));
+   }
+
+   public void testTransactional() throws Exception
+   {
+      startCache(NodeLockingScheme.MVCC);
+      TransactionManager tm = cache.getTransactionManager();
+      CacheLoader loader = cache.getCacheLoaderManager().getCacheLoader();
+
+      tm.begin();
+      cache.putAll(data());
+      assertEquals(3, cache.getAll(Arrays.asList(A, B, C)).size());
+      tm.rollback();
+      assertTrue(cache.getAll(Arrays.asList(A, B, C)).isEmpty());
+      assertNull(loader.get(C));
+
+      tm.begin();
+      cache.putAll(data());
+      tm.commit();
+      assertEquals(3, cache.getAll(Arrays.asList(A, B, C)).size());
+      assertEquals("2", loader.get(B).get("k"));
+   }
+
+   public void testNotifications() throws Exception
+   {
+      startCache(NodeLockingScheme.MVCC);
+      ModificationListener listener = new ModificationListener();
+      cache.addCacheListener(listener);
+      cache.putAll(data());
+      assertEquals(Arrays.asList(A, B, C), listener.modified);
+   }
+
+   public void testPessimisticLocking() throws Exception
+   {
+      startCache(NodeLockingScheme.PESSIMISTIC);
+      cache.putAll(data());
+      Map<Fqn, Map<String, String>> result = cache.getAll(Arrays.asList(A, B, C, MISSING));
+      assertEquals(3, result.size());
+      assertEquals("2", result.get(B).get("k"));
+   }
+
+   public void testEmpty() throws Exception
+   {
+      startCache(NodeLockingScheme.MVCC);
+      cache.putAll(new HashMap<Fqn, Map<String, String>>());
+      assertTrue(cache.getAll(new ArrayList<Fqn>()).isEmpty());
+   }
+
+   private Map<Fqn, Map<String, String>> data()
+   {
+      Map<Fqn, Map<String, String>> data = new HashMap<Fqn, Map<String, String>>();
+      data.put(C, Collections.singletonMap("k", "3"));
+      data.put(B, Collections.singletonMap("k", "2"));
+      data.put(A, Collections.singletonMap("k", "1"));
+      return data;
+   }
+
+   private void startCache(NodeLockingScheme scheme) throws Exception
+   {
+      startCache(scheme, false);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void startCache(NodeLockingScheme scheme, boolean regionBasedMarshalling) throws Exception
+   {
+      Configuration c = new Configuration();
+      c.setUseRegionBasedMarshalling(regionBasedMarshalling);
+      c.setCacheMode(Configuration.CacheMode.LOCAL);
+      c.setNodeLockingScheme(scheme);
+      c.setTransactionManagerLookupClass(DummyTransactionManagerLookup.class.getName());
+      c.setCacheLoaderConfig(buildSingleCacheLoaderConfig(false, null, "org.jboss.cache.loader.testloaders.DummyInMemoryCacheLoader",
+            "", false, false, false, false, false));
+      cache = (CacheSPI<String, String>) new UnitTestCacheFactory<String, String>().createCache(c, getClass());
+   }
+
+   public static class CountingInterceptor extends CommandInterceptor
+   {
+      List<String> writes = new ArrayList<String>();
+      List<String> reads = new ArrayList<String>();
+
+      @Override
+      public Object visitPutAllCommand(InvocationContext ctx, PutAllCommand command) throws Throwable
+      {
+         writes.add(command.getClass().getSimpleName() + " " + command.getFqns());
+         return invokeNextInterceptor(ctx, command);
+      }
+
+      @Override
+      public Object visitPutDataMapCommand(InvocationContext ctx, PutDataMapCommand command) throws Throwable
+      {
+         writes.add(command.getClass().getSimpleName());
+         return invokeNextInterceptor(ctx, command);
+      }
+
+      @Override
+      public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable
+      {
+         reads.add(command.getClass().getSimpleName() + " " + command.getFqns());
+         return invokeNextInterceptor(ctx, command);
+      }
+
+      @Override
+      public Object visitGetDataMapCommand(InvocationContext ctx, GetDataMapCommand command) throws Throwable
+      {
+         reads.add(command.getClass().getSimpleName());
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+
+   @CacheListener
+   public static class ModificationListener
+   {
+      List<Fqn> modified = new ArrayList<Fqn>();
+
+      @NodeModified
+      public void nodeModified(NodeModifiedEvent e)
+      {
+         if (!e.isPre()) modified.add(e.getFqn());
+      }
+   }
+}
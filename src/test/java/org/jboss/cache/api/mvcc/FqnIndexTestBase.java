@@ -0,0 +1,169 @@
+package org.jboss.cache.api.mvcc;
+
+import org.jboss.cache.AbstractSingleCacheTest;
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.DataContainer;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InternalNode;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.Configuration.CacheMode;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import org.jboss.cache.factories.UnitTestConfigurationFactory;
+import org.jboss.cache.lock.IsolationLevel;
+import org.jboss.cache.transaction.DummyTransactionManagerLookup;
+import org.jboss.cache.util.TestingUtil;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.Map;
+
+/**
+ * Tests that lookups served by the Fqn index in the data container always reflect the tree.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"functional", "mvcc"})
+public abstract class FqnIndexTestBase extends AbstractSingleCacheTest<String, String>
+{
+   // deep enough to be indexed
+   protected Fqn A = Fqn.fromString("/x/y/a");
+   protected Fqn AB = Fqn.fromString("/x/y/a/b");
+   protected Fqn ABC = Fqn.fromString("/x/y/a/b/c");
+   protected boolean repeatableRead = true;
+
+   protected DataContainer dataContainer;
+   protected TransactionManager tm;
+
+   public CacheSPI<String, String> createCache()
+   {
+      CacheSPI<String, String> c = (CacheSPI<String, String>) new UnitTestCacheFactory<String, String>().createCache(UnitTestConfigurationFactory.createConfiguration(CacheMode.LOCAL), false, getClass());
+      c.getConfiguration().setNodeLockingScheme(NodeLockingScheme.MVCC);
+      c.getConfiguration().setTransactionManagerLookupClass(DummyTransactionManagerLookup.class.getName());
+      c.getConfiguration().setIsolationLevel(repeatableRead ? IsolationLevel.REPEATABLE_READ : IsolationLevel.READ_COMMITTED);
+      c.getConfiguration().setUseFqnIndex(true);
+      c.getConfiguration().setEvictionConfig(null);
+      c.start();
+      dataContainer = TestingUtil.extractComponentRegistry(c).getComponent(DataContainer.class);
+      tm = TestingUtil.extractComponentRegistry(c).getComponent(TransactionManager.class);
+      return c;
+   }
+
+   public void testReadsReflectUpdates()
+   {
+      cache.put(ABC, "k", "v1");
+      assert "v1".equals(cache.get(ABC, "k"));
+      cache.put(ABC, "k", "v2");
+      assert "v2".equals(cache.get(ABC, "k"));
+      assert "v2".equals(dataContainer.peekInternalNode(ABC, false).get("k"));
+      assert dataContainer.peekInternalNode(ABC, false) == walk(ABC);
+   }
+
+   public void testParentIsReturned()
+   {
+      cache.put(ABC, "k", "v");
+      cache.get(ABC, "k");
+      InternalNode[] nodes = dataContainer.peekInternalNodeAndDirectParent(ABC, false);
+      assert nodes[0] == walk(ABC);
+      assert nodes[1].getFqn().equals(AB);
+      assert nodes[1].getChildrenMap() == walk(AB).getChildrenMap();
+   }
+
+   public void testRemovedNodesNotReturned()
+   {
+      cache.put(ABC, "k", "v");
+      assert dataContainer.peekInternalNode(ABC, false) != null;
+      cache.removeNode(AB);
+      assert dataContainer.peekInternalNode(ABC, false) == null;
+      assert dataContainer.peekInternalNode(AB, false) == null;
+      assert cache.get(ABC, "k") == null;
+
+      cache.put(ABC, "k", "v2");
+      assert "v2".equals(cache.get(ABC, "k"));
+      assert dataContainer.peekInternalNode(ABC, false) == walk(ABC);
+   }
+
+   public void testRemovalInTransaction() throws Exception
+   {
+      cache.put(ABC, "k", "v");
+      cache.get(ABC, "k");
+      tm.begin();
+      cache.removeNode(ABC);
+      tm.commit();
+      assert dataContainer.peekInternalNode(ABC, false) == null;
+      assert !cache.getNode(AB).getChildrenNames().contains("c");
+   }
+
+   public void testEvictedNodesNotReturned()
+   {
+      cache.put(ABC, "k", "v");
+      cache.get(ABC, "k");
+      cache.evict(ABC);
+      assert dataContainer.peekInternalNode(ABC, false) == null;
+      assert cache.get(ABC, "k") == null;
+   }
+
+   public void testRemoveFromDataStructure()
+   {
+      cache.put(ABC, "k", "v");
+      cache.get(ABC, "k");
+      dataContainer.removeFromDataStructure(AB, true);
+      assert dataContainer.peekInternalNode(AB, false) == null;
+      assert dataContainer.peekInternalNode(ABC, false) == null;
+      assert walk(A).getChild("b") == null;
+   }
+
+   public void testDirectRemoval()
+   {
+      cache.put(ABC, "k", "v");
+      cache.get(ABC, "k");
+      cache.peek(A, false).removeChildDirect("b");
+      assert dataContainer.peekInternalNode(ABC, false) == null;
+      assert cache.get(ABC, "k") == null;
+
+      cache.put(ABC, "k", "v");
+      cache.get(ABC, "k");
+      cache.getRoot().removeChildrenDirect();
+      assert dataContainer.peekInternalNode(ABC, false) == null;
+      assert cache.get(ABC, "k") == null;
+   }
+
+   public void testDirectRemovalPurgesDetachedSubtree()
+   {
+      Fqn ABCD = Fqn.fromRelativeElements(ABC, "d");
+      cache.put(ABCD, "k", "v");
+      cache.get(ABC, "k");
+      cache.get(ABCD, "k");
+      assert index().containsKey(ABC) && index().containsKey(ABCD);
+      cache.peek(Fqn.fromString("/x/y"), false).removeChildDirect(Fqn.fromElements("a"));
+      assert !index().containsKey(A) && !index().containsKey(ABC) && !index().containsKey(ABCD);
+      assert walk(A) == null;
+
+      cache.put(ABCD, "k", "v");
+      cache.get(ABCD, "k");
+      assert index().containsKey(ABCD);
+      cache.peek(A, false).removeChildrenDirect();
+      assert !index().containsKey(ABC) && !index().containsKey(ABCD);
+      assert walk(AB) == null;
+   }
+
+   @SuppressWarnings("unchecked")
+   protected Map<Fqn, ?> index()
+   {
+      return (Map<Fqn, ?>) TestingUtil.extractField(dataContainer, "fqnIndex");
+   }
+
+   /**
+    * Walks the tree from the root without consulting the index.
+    */
+   protected InternalNode walk(Fqn fqn)
+   {
+      InternalNode n = dataContainer.peekInternalNode(Fqn.ROOT, false);
+      for (Object element : fqn.peekElements())
+      {
+         Map<Object, InternalNode> children = n.getChildrenMap();
+         n = children.get(element);
+         if (n == null) return null;
+      }
+      return n;
+   }
+}
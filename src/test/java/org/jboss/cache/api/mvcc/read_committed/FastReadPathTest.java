@@ -0,0 +1,202 @@
+package org.jboss.cache.api.mvcc.read_committed;
+
+import org.jboss.cache.AbstractSingleCacheTest;
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InvocationContext;
+import org.jboss.cache.RegionImpl;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.commands.read.GetKeyValueCommand;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.Configuration.CacheMode;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import org.jboss.cache.config.EvictionConfig;
+import org.jboss.cache.config.EvictionRegionConfig;
+import org.jboss.cache.config.Option;
+import org.jboss.cache.eviction.EvictionEvent;
+import org.jboss.cache.eviction.FIFOAlgorithmConfig;
+import org.jboss.cache.factories.UnitTestConfigurationFactory;
+import org.jboss.cache.interceptors.CacheMgmtInterceptor;
+import org.jboss.cache.interceptors.InterceptorChain;
+import org.jboss.cache.interceptors.base.CommandInterceptor;
+import org.jboss.cache.lock.IsolationLevel;
+import org.jboss.cache.notifications.EventLog;
+import org.jboss.cache.notifications.event.Event;
+import org.jboss.cache.notifications.event.NodeVisitedEvent;
+import org.jboss.cache.transaction.DummyTransactionManagerLookup;
+import org.jboss.cache.util.TestingUtil;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * Tests that non-transactional gets served without passing through the interceptor chain behave exactly as those
+ * that do.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"functional", "mvcc"}, testName = "api.mvcc.read_committed.FastReadPathTest")
+public class FastReadPathTest extends AbstractSingleCacheTest<String, String>
+{
+   Fqn A = Fqn.fromString("/a");
+   Fqn AB = Fqn.fromString("/a/b");
+
+   protected CacheSPI<String, String> createCache() throws Exception
+   {
+      Configuration c = UnitTestConfigurationFactory.createConfiguration(CacheMode.LOCAL);
+      c.setNodeLockingScheme(NodeLockingScheme.MVCC);
+      c.setIsolationLevel(IsolationLevel.READ_COMMITTED);
+      c.setTransactionManagerLookupClass(DummyTransactionManagerLookup.class.getName());
+      c.setExposeManagementStatistics(true);
+
+      FIFOAlgorithmConfig algorithmConfig = new FIFOAlgorithmConfig();
+      algorithmConfig.setMaxNodes(1000);
+      EvictionRegionConfig regionConfig = new EvictionRegionConfig(A, algorithmConfig);
+      EvictionConfig ec = new EvictionConfig();
+      ec.setWakeupInterval(-1);
+      ec.setEvictionRegionConfigs(Collections.singletonList(regionConfig));
+      c.setEvictionConfig(ec);
+
+      return (CacheSPI<String, String>) new UnitTestCacheFactory<String, String>().createCache(c, getClass());
+   }
+
+   public void testReads()
+   {
+      cache.put(AB, "k", "v");
+      assert "v".equals(cache.get(AB, "k"));
+      assert cache.get(AB, "nonexistent") == null;
+      assert cache.get(Fqn.fromString("/nonexistent"), "k") == null;
+      cache.removeNode(AB);
+      assert cache.get(AB, "k") == null;
+   }
+
+   public void testReadsWithinTransaction() throws Exception
+   {
+      cache.put(AB, "k", "v");
+      TransactionManager tm = cache.getTransactionManager();
+      tm.begin();
+      cache.put(AB, "k", "v2");
+      assert "v2".equals(cache.get(AB, "k"));
+      tm.rollback();
+      assert "v".equals(cache.get(AB, "k"));
+   }
+
+   public void testStatistics()
+   {
+      CacheMgmtInterceptor cmi = TestingUtil.findInterceptor(cache, CacheMgmtInterceptor.class);
+      cmi.resetStatistics();
+      cache.put(AB, "k", "v");
+      cache.get(AB, "k");
+      cache.get(AB, "nonexistent");
+      assert cmi.getHits() == 1 : "Expected 1 hit, was " + cmi.getHits();
+      assert cmi.getMisses() == 1 : "Expected 1 miss, was " + cmi.getMisses();
+   }
+
+   public void testNotifications()
+   {
+      cache.put(AB, "k", "v");
+      EventLog eventLog = new EventLog();
+      cache.addCacheListener(eventLog);
+      try
+      {
+         cache.get(AB, "k");
+         assert eventLog.events.size() == 2 : "Expected pre and post visit events, was " + eventLog.events;
+         for (Event e : eventLog.events)
+         {
+            assert e.getType() == Event.Type.NODE_VISITED;
+            assert ((NodeVisitedEvent) e).getFqn().equals(AB);
+         }
+
+         eventLog.events.clear();
+         cache.getInvocationContext().getOptionOverrides().setSuppressEventNotification(true);
+         cache.get(AB, "k");
+         assert eventLog.events.isEmpty();
+      }
+      finally
+      {
+         cache.removeCacheListener(eventLog);
+      }
+   }
+
+   public void testEvictionEvents()
+   {
+      cache.put(AB, "k", "v");
+      RegionImpl region = (RegionImpl) cache.getRegion(A, false);
+      region.getEvictionEventQueue().clear();
+      cache.get(AB, "k");
+      EvictionEvent event = region.getEvictionEventQueue().poll();
+      assert event != null : "Expected a visit event";
+      assert event.getEventType() == EvictionEvent.Type.VISIT_NODE_EVENT;
+      assert event.getFqn().equals(AB);
+
+      cache.get(AB, "nonexistent");
+      assert region.getEvictionEventQueue().isEmpty();
+   }
+
+   public void testChainModifications()
+   {
+      cache.put(AB, "k", "v");
+      CountingInterceptor counter = new CountingInterceptor();
+      InterceptorChain chain = TestingUtil.extractComponentRegistry(cache).getComponent(InterceptorChain.class);
+      chain.addInterceptor(counter, 0);
+      try
+      {
+         assert "v".equals(cache.get(AB, "k"));
+         assert counter.gets == 1 : "Custom interceptor should see reads";
+      }
+      finally
+      {
+         chain.removeInterceptor(0);
+      }
+
+      assert "v".equals(cache.get(AB, "k"));
+      assert counter.gets == 1 : "Reads should bypass the interceptor chain";
+   }
+
+   public void testOptionsIgnoredByEqualsUseChain()
+   {
+      cache.put(AB, "k", "v");
+      assert !readThroughChain() : "Expected a fast read";
+
+      // Option.equals() ignores these, but only the interceptor chain handles them
+      Option options = cache.getInvocationContext().getOptionOverrides();
+      options.setSkipCacheStatusCheck(true);
+      assert readThroughChain();
+      options.setSkipCacheStatusCheck(false);
+      options.setSyncReplTimeout(100);
+      assert readThroughChain();
+      options.setSyncReplTimeout(-1);
+      options.setGroupRequestMode(1);
+      assert readThroughChain();
+      options.setGroupRequestMode(-1);
+      assert !readThroughChain();
+   }
+
+   /**
+    * Reads a key, and tells whether the read passed through the interceptor chain, as the InvocationContextInterceptor
+    * clears the Fqns loaded on the way out while the fast read path leaves them alone.
+    */
+   private boolean readThroughChain()
+   {
+      InvocationContext ctx = cache.getInvocationContext();
+      ctx.setFqnsLoaded(new HashSet<Fqn>());
+      assert "v".equals(cache.get(AB, "k"));
+      boolean throughChain = ctx.getFqnsLoaded() == null;
+      ctx.setFqnsLoaded(null);
+      return throughChain;
+   }
+
+   public static class CountingInterceptor extends CommandInterceptor
+   {
+      int gets;
+
+      @Override
+      public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable
+      {
+         gets++;
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+}
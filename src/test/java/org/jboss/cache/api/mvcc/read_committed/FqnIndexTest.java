@@ -0,0 +1,13 @@
+package org.jboss.cache.api.mvcc.read_committed;
+
+import org.jboss.cache.api.mvcc.FqnIndexTestBase;
+import org.testng.annotations.Test;
+
+@Test(groups = {"functional", "mvcc"}, testName = "api.mvcc.read_committed.FqnIndexTest")
+public class FqnIndexTest extends FqnIndexTestBase
+{
+   public FqnIndexTest()
+   {
+      repeatableRead = false;
+   }
+}
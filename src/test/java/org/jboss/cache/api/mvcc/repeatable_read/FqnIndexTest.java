@@ -0,0 +1,13 @@
+package org.jboss.cache.api.mvcc.repeatable_read;
+
+import org.jboss.cache.api.mvcc.FqnIndexTestBase;
+import org.testng.annotations.Test;
+
+@Test(groups = {"functional", "mvcc"}, testName = "api.mvcc.repeatable_read.FqnIndexTest")
+public class FqnIndexTest extends FqnIndexTestBase
+{
+   public FqnIndexTest()
+   {
+      repeatableRead = true;
+   }
+}
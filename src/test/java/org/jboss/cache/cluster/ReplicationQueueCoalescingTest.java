@@ -0,0 +1,205 @@
+package org.jboss.cache.cluster;
+
+import org.jboss.cache.Fqn;
+import org.jboss.cache.RPCManager;
+import org.jboss.cache.commands.CommandsFactoryImpl;
+import org.jboss.cache.commands.ReplicableCommand;
+import org.jboss.cache.commands.remote.ReplicateCommand;
+import org.jboss.cache.commands.write.PutDataMapCommand;
+import org.jboss.cache.commands.write.PutKeyValueCommand;
+import org.jboss.cache.commands.write.RemoveNodeCommand;
+import org.jboss.cache.config.Configuration;
+import static org.testng.AssertJUnit.assertEquals;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests byte-based flushing and write coalescing in the {@link ReplicationQueue}, without a cluster.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"unit"}, sequential = true, testName = "cluster.ReplicationQueueCoalescingTest")
+public class ReplicationQueueCoalescingTest
+{
+   Fqn a = Fqn.fromString("/a");
+   Fqn b = Fqn.fromString("/b");
+   Configuration configuration;
+   ReplicationQueue replQ;
+   List<List<ReplicableCommand>> batches;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp()
+   {
+      configuration = new Configuration();
+      configuration.setCacheMode(Configuration.CacheMode.REPL_ASYNC);
+      configuration.setUseReplQueue(true);
+      configuration.setReplQueueInterval(-1);
+      configuration.setReplQueueMaxElements(1000);
+      batches = new ArrayList<List<ReplicableCommand>>();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      if (replQ != null) replQ.stop();
+   }
+
+   public void testWritesCoalesced()
+   {
+      configuration.setReplQueueCoalesceWrites(true);
+      startQueue();
+      replQ.add(put(a, "k", "1"));
+      replQ.add(put(b, "k", "1"));
+      replQ.add(put(a, "k", "2"));
+      replQ.add(put(a, "other", "1"));
+      assertEquals(3, replQ.elements.size());
+
+      replQ.flush();
+      assertEquals(1, batches.size());
+      List<ReplicableCommand> batch = batches.get(0);
+      assertEquals(3, batch.size());
+      assertPut(batch.get(0), a, "k", "2");
+      assertPut(batch.get(1), b, "k", "1");
+      assertPut(batch.get(2), a, "other", "1");
+   }
+
+   public void testOtherCommandsAreBarriers()
+   {
+      configuration.setReplQueueCoalesceWrites(true);
+      startQueue();
+      replQ.add(put(a, "k", "1"));
+      replQ.add(new ReplicateCommand(new RemoveNodeCommand(null, a)));
+      replQ.add(put(a, "k", "2"));
+      replQ.add(put(a, "k", "3"));
+
+      replQ.flush();
+      List<ReplicableCommand> batch = batches.get(0);
+      assertEquals(3, batch.size());
+      assertPut(batch.get(0), a, "k", "1");
+      assert batch.get(1) instanceof RemoveNodeCommand;
+      assertPut(batch.get(2), a, "k", "3");
+   }
+
+   public void testNotCoalescedAfterFlush()
+   {
+      configuration.setReplQueueCoalesceWrites(true);
+      startQueue();
+      replQ.add(put(a, "k", "1"));
+      replQ.flush();
+      replQ.add(put(a, "k", "2"));
+      assertEquals(1, replQ.elements.size());
+
+      replQ.flush();
+      assertEquals(2, batches.size());
+      assertPut(batches.get(0).get(0), a, "k", "1");
+      assertPut(batches.get(1).get(0), a, "k", "2");
+   }
+
+   public void testNotCoalescedByDefault()
+   {
+      startQueue();
+      replQ.add(put(a, "k", "1"));
+      replQ.add(put(a, "k", "2"));
+      assertEquals(2, replQ.elements.size());
+   }
+
+   public void testFlushOnMarshalledSize()
+   {
+      configuration.setReplQueueMaxBytes(ReplicationQueue.estimatedSize(put(a, "k", "1")) * 3);
+      startQueue();
+      replQ.add(put(a, "k", "1"));
+      replQ.add(put(b, "k", "1"));
+      assertEquals("Should not have flushed yet", 0, batches.size());
+
+      replQ.add(put(a, "other", "1"));
+      assertEquals(1, batches.size());
+      assertEquals(3, batches.get(0).size());
+      assertEquals(0, replQ.elements.size());
+
+      // the byte count starts again after a flush
+      replQ.add(put(a, "k", "2"));
+      assertEquals(1, batches.size());
+   }
+
+   public void testEstimatedSize()
+   {
+      int small = ReplicationQueue.estimatedSize(put(a, "k", "1"));
+      assert ReplicationQueue.estimatedSize(put(a, "k", "0123456789")) == small + 9;
+      assert ReplicationQueue.estimatedSize(put(Fqn.fromString("/a/b"), "k", "1")) > small;
+      assert ReplicationQueue.estimatedSize(new ReplicateCommand(new PutKeyValueCommand(null, a, "k", new byte[1000]))) > 1000;
+      Map<String, String> data = new HashMap<String, String>();
+      for (int i = 0; i < 10; i++) data.put("key" + i, "value" + i);
+      assert ReplicationQueue.estimatedSize(new ReplicateCommand(new PutDataMapCommand(null, a, data))) > 10 * (6 + 8);
+   }
+
+   public void testNotReplacedAcrossBarrier()
+   {
+      configuration.setReplQueueCoalesceWrites(true);
+      startQueue();
+      replQ.add(put(a, "k", "1"));
+      // a put that was registered for replacement only after a barrier was queued
+      ReplicationQueue.QueuedCommand stale = replQ.elements.peek().get();
+      replQ.add(new ReplicateCommand(new RemoveNodeCommand(null, a)));
+      replQ.pendingWrites.put(stale.key, replQ.elements.peek());
+      replQ.add(put(a, "k", "2"));
+
+      replQ.flush();
+      List<ReplicableCommand> batch = batches.get(0);
+      assertEquals(3, batch.size());
+      assertPut(batch.get(0), a, "k", "1");
+      assert batch.get(1) instanceof RemoveNodeCommand;
+      assertPut(batch.get(2), a, "k", "2");
+   }
+
+   private void startQueue()
+   {
+      replQ = new ReplicationQueue();
+      replQ.injectDependencies(recordingRpcManager(), configuration, new CommandsFactoryImpl());
+      replQ.start();
+   }
+
+   private ReplicateCommand put(Fqn fqn, String key, String value)
+   {
+      return new ReplicateCommand(new PutKeyValueCommand(null, fqn, key, value));
+   }
+
+   private void assertPut(ReplicableCommand command, Fqn fqn, String key, String value)
+   {
+      assert command instanceof PutKeyValueCommand : "Expected a put but was " + command;
+      PutKeyValueCommand put = (PutKeyValueCommand) command;
+      assertEquals(fqn, put.getFqn());
+      assertEquals(key, put.getKey());
+      assertEquals(value, put.getValue());
+   }
+
+   private RPCManager recordingRpcManager()
+   {
+      return (RPCManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RPCManager.class}, new InvocationHandler()
+      {
+         public Object invoke(Object proxy, Method method, Object[] args)
+         {
+            if (method.getName().equals("callRemoteMethods"))
+            {
+               // the queue wraps each command it holds, and sends a single command unwrapped
+               ReplicateCommand flushed = (ReplicateCommand) args[1];
+               List<ReplicableCommand> batch = new ArrayList<ReplicableCommand>();
+               for (ReplicableCommand c : flushed.isSingleCommand() ? Collections.singletonList(flushed.getSingleModification()) : flushed.getModifications())
+                  batch.add(((ReplicateCommand) c).getSingleModification());
+               batches.add(batch);
+               return Collections.emptyList();
+            }
+            return null;
+         }
+      });
+   }
+}
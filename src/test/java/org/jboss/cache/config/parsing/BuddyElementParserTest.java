@@ -32,6 +32,7 @@ public class BuddyElementParserTest
       assert brConfig.getBuddyLocatorConfig().getBuddyLocatorProperties().isEmpty();
       assert brConfig.isDataGravitationRemoveOnFind() : "default to true";
       assert brConfig.isDataGravitationSearchBackupTrees() : "default to true";
+      assert !brConfig.isDataGravitationBuddiesFirst() : "default to false";
       assert brConfig.isAutoDataGravitation() : "default to false";
    }
 
@@ -72,4 +73,18 @@ public class BuddyElementParserTest
       assert brConfig.getBuddyPoolName().equals("groupOne");
       assert brConfig.getBuddyLocatorConfig().getBuddyLocatorProperties().get("numBuddies").equals("3");
    }
+
+   public void testDataGravitationConfig() throws Exception
+   {
+      String xmlConfig =
+            "   <buddyReplication enabled=\"true\">\n" +
+            "      <dataGravitation auto=\"false\" removeOnFind=\"false\" searchBackupTrees=\"false\" buddiesFirst=\"true\"/>\n" +
+            "   </buddyReplication>";
+      Element element = XmlConfigHelper.stringToElementInCoreNS(xmlConfig);
+      BuddyReplicationConfig brConfig = parser.parseBuddyElement(element);
+      assert !brConfig.isAutoDataGravitation();
+      assert !brConfig.isDataGravitationRemoveOnFind();
+      assert !brConfig.isDataGravitationSearchBackupTrees();
+      assert brConfig.isDataGravitationBuddiesFirst();
+   }
 }
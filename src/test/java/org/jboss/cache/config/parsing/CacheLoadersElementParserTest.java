@@ -88,6 +88,37 @@ public class CacheLoadersElementParserTest
       assert config.getFirstCacheLoaderConfig().getSingletonStoreConfig() == null;
    }
 
+   public void testLookupFilters() throws Exception
+   {
+      String xmlStr =
+            "      <loaders passivation=\"false\">\n" +
+            "         <preload/>\n" +
+            "         <negativeLookupCache ttl=\"30000\" maxEntries=\"500\">\n" +
+            "            <region fqn=\"/a\"/>\n" +
+            "            <region fqn=\"/b/c\"/>\n" +
+            "         </negativeLookupCache>\n" +
+            "         <bloomFilter expectedNodes=\"100000\"/>\n" +
+            "         <loader class=\"org.jboss.cache.loader.JDBCCacheLoader\"/>\n" +
+            "      </loaders>";
+      CacheLoaderConfig config = getCacheLoaderConfig(xmlStr);
+      assert config.getNegativeLookupCacheTTL() == 30000;
+      assert config.getNegativeLookupCacheMaxEntries() == 500;
+      assert config.getNegativeLookupCacheRegions().equals("/a,/b/c");
+      assert config.getBloomFilterExpectedNodes() == 100000;
+   }
+
+   public void testLookupFiltersDisabledByDefault() throws Exception
+   {
+      String xmlStr =
+            "      <loaders passivation=\"false\">\n" +
+            "         <loader class=\"org.jboss.cache.loader.JDBCCacheLoader\"/>\n" +
+            "      </loaders>";
+      CacheLoaderConfig config = getCacheLoaderConfig(xmlStr);
+      assert config.getNegativeLookupCacheTTL() == 0;
+      assert config.getNegativeLookupCacheRegions() == null;
+      assert config.getBloomFilterExpectedNodes() == 0;
+   }
+
    public void testMultipleCacheLoaders() throws Exception
    {
       String xml =
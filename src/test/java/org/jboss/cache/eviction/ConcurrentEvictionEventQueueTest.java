@@ -0,0 +1,141 @@
+package org.jboss.cache.eviction;
+
+import org.jboss.cache.Fqn;
+import static org.jboss.cache.eviction.EvictionEvent.Type.*;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the ordering and coalescing of events in a {@link ConcurrentEvictionEventQueue}
+ *
+ * @since 3.1
+ */
+@Test(groups = {"unit"}, sequential = true, testName = "eviction.ConcurrentEvictionEventQueueTest")
+public class ConcurrentEvictionEventQueueTest
+{
+   Fqn fqn1 = Fqn.fromString("/a/b/c");
+   Fqn fqn2 = Fqn.fromString("/a/b/d");
+   ConcurrentEvictionEventQueue queue;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp()
+   {
+      queue = new ConcurrentEvictionEventQueue();
+   }
+
+   public void testStructuralEventsInOrder()
+   {
+      queue.offer(new EvictionEvent(fqn1, ADD_NODE_EVENT, 1));
+      queue.offer(new EvictionEvent(fqn2, ADD_NODE_EVENT, 1));
+      queue.offer(new EvictionEvent(fqn1, ADD_ELEMENT_EVENT, 1));
+      queue.offer(new EvictionEvent(fqn1, ADD_ELEMENT_EVENT, 1));
+      assertEquals(4, queue.size());
+
+      assertEvent(queue.poll(), fqn1, ADD_NODE_EVENT);
+      assertEvent(queue.poll(), fqn2, ADD_NODE_EVENT);
+      assertEvent(queue.poll(), fqn1, ADD_ELEMENT_EVENT);
+      assertEvent(queue.poll(), fqn1, ADD_ELEMENT_EVENT);
+      assertNull(queue.poll());
+      assertTrue(queue.isEmpty());
+   }
+
+   public void testVisitsCoalesced()
+   {
+      for (int i = 0; i < 10; i++) queue.offer(new EvictionEvent(fqn1, VISIT_NODE_EVENT, 0));
+      queue.offer(new EvictionEvent(fqn2, VISIT_NODE_EVENT, 0));
+      assertEquals(2, queue.size());
+
+      EvictionEvent visit = queue.poll();
+      assertEvent(visit, fqn1, VISIT_NODE_EVENT);
+      assertEquals(10, visit.getVisitCount());
+      visit = queue.poll();
+      assertEvent(visit, fqn2, VISIT_NODE_EVENT);
+      assertEquals(1, visit.getVisitCount());
+      assertNull(queue.poll());
+   }
+
+   public void testVisitsOrderedByLastVisit()
+   {
+      queue.offer(new EvictionEvent(fqn1, VISIT_NODE_EVENT, 0));
+      queue.offer(new EvictionEvent(fqn2, VISIT_NODE_EVENT, 0));
+      queue.offer(new EvictionEvent(fqn2, ADD_ELEMENT_EVENT, 1));
+      queue.offer(new EvictionEvent(fqn1, VISIT_NODE_EVENT, 0));
+      queue.offer(new EvictionEvent(fqn2, ADD_ELEMENT_EVENT, 1));
+      assertEvent(queue.peek(), fqn2, VISIT_NODE_EVENT);
+      assertEvent(queue.poll(), fqn2, VISIT_NODE_EVENT);
+      assertEvent(queue.poll(), fqn2, ADD_ELEMENT_EVENT);
+      assertEvent(queue.poll(), fqn1, VISIT_NODE_EVENT);
+      assertEvent(queue.poll(), fqn2, ADD_ELEMENT_EVENT);
+      assertNull(queue.poll());
+   }
+
+   public void testRemoveDiscardsPendingVisits()
+   {
+      queue.offer(new EvictionEvent(fqn1, VISIT_NODE_EVENT, 0));
+      queue.offer(new EvictionEvent(fqn1, REMOVE_NODE_EVENT, 0));
+      assertEvent(queue.poll(), fqn1, REMOVE_NODE_EVENT);
+      assertNull("A visit before a removal must not re-add the node", queue.poll());
+   }
+
+   public void testVisitsWhileDraining()
+   {
+      queue.offer(new EvictionEvent(fqn1, VISIT_NODE_EVENT, 0));
+      queue.offer(new EvictionEvent(fqn2, VISIT_NODE_EVENT, 0));
+      assertEvent(queue.poll(), fqn1, VISIT_NODE_EVENT);
+      // fqn1's record has been retired, so this visit starts a new one
+      queue.offer(new EvictionEvent(fqn1, VISIT_NODE_EVENT, 0));
+      assertEvent(queue.poll(), fqn2, VISIT_NODE_EVENT);
+      assertEvent(queue.poll(), fqn1, VISIT_NODE_EVENT);
+      assertNull(queue.poll());
+   }
+
+   public void testConcurrentVisitsCounted() throws Exception
+   {
+      final int threads = 4, visits = 10000;
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] writers = new Thread[threads];
+      for (int i = 0; i < threads; i++)
+      {
+         writers[i] = new Thread()
+         {
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+               for (int j = 0; j < visits; j++) queue.offer(new EvictionEvent(fqn1, VISIT_NODE_EVENT, 0));
+            }
+         };
+         writers[i].start();
+      }
+
+      start.countDown();
+      int counted = 0;
+      boolean running = true;
+      while (running)
+      {
+         running = false;
+         for (Thread t : writers) running |= t.isAlive();
+         EvictionEvent e;
+         while ((e = queue.poll()) != null) counted += e.getVisitCount();
+      }
+      assertEquals("No visit should be lost while draining", threads * visits, counted);
+   }
+
+   private void assertEvent(EvictionEvent event, Fqn fqn, EvictionEvent.Type type)
+   {
+      assert event != null : "Expected a " + type + " event for " + fqn;
+      assertEquals(fqn, event.getFqn());
+      assertEquals(type, event.getEventType());
+   }
+}
@@ -0,0 +1,114 @@
+package org.jboss.cache.eviction;
+
+import org.jboss.cache.Fqn;
+import org.jboss.cache.Region;
+import org.jboss.cache.RegionRegistry;
+import org.jboss.cache.config.EvictionRegionConfig;
+import org.jboss.cache.util.TestingUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests sequential and parallel processing of eviction regions by the {@link EvictionTimerTask}
+ *
+ * @since 3.1
+ */
+@Test(groups = {"unit"}, sequential = true, testName = "eviction.EvictionTimerTaskTest")
+public class EvictionTimerTaskTest
+{
+   EvictionTimerTask timerTask;
+   RegionRegistry registry;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp()
+   {
+      timerTask = new EvictionTimerTask();
+      registry = new RegionRegistry();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      timerTask.stop();
+   }
+
+   public void testSequentialProcessing()
+   {
+      CountingRegion a = new CountingRegion("/a", null);
+      CountingRegion b = new CountingRegion("/b", null);
+      timerTask.init(200, null, registry);
+      waitForRuns(a, 2);
+      waitForRuns(b, 2);
+      assert timerTask.getRegionStatistics().get(a.fqn).getRuns() >= 2;
+      assert timerTask.getRegionStatistics().get(b.fqn).getRuns() >= 2;
+   }
+
+   public void testSlowRegionDoesNotHoldUpOthers() throws Exception
+   {
+      CountDownLatch release = new CountDownLatch(1);
+      CountingRegion slow = new CountingRegion("/slow", release);
+      CountingRegion fast = new CountingRegion("/fast", null);
+      timerTask.init(200, 2, null, registry);
+      try
+      {
+         waitForRuns(fast, 5);
+         assert slow.runs.get() == 1 : "Slow region should not be processed again while still being processed";
+         assert timerTask.getRegionStatistics().get(slow.fqn).getSkipped() > 0;
+         // only the first run waits for the slow region, for up to a wakeup interval
+         assert timerTask.getLastRunTime() < 200 : "Later runs should not wait for the slow region";
+      }
+      finally
+      {
+         release.countDown();
+      }
+      waitForRuns(slow, 2);
+      assert timerTask.getRegionStatistics().get(slow.fqn).getRuns() >= 1;
+   }
+
+   private void waitForRuns(CountingRegion region, int runs)
+   {
+      for (int i = 0; i < 100 && region.runs.get() < runs; i++) TestingUtil.sleepThread(100);
+      assert region.runs.get() >= runs : "Region " + region.fqn + " only processed " + region.runs.get() + " times";
+   }
+
+   /**
+    * A region that counts how often its eviction queues are processed, optionally blocking until released.
+    */
+   class CountingRegion implements InvocationHandler
+   {
+      final Fqn fqn;
+      final CountDownLatch release;
+      final AtomicInteger runs = new AtomicInteger();
+      final EvictionRegionConfig config;
+
+      CountingRegion(String fqn, CountDownLatch release)
+      {
+         this.fqn = Fqn.fromString(fqn);
+         this.release = release;
+         config = new EvictionRegionConfig(this.fqn, new NullEvictionAlgorithmConfig());
+         registry.put(this.fqn, (Region) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Region.class}, this));
+      }
+
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+      {
+         String name = method.getName();
+         if (name.equals("getFqn")) return fqn;
+         if (name.equals("getEvictionRegionConfig")) return config;
+         if (name.equals("processEvictionQueues"))
+         {
+            runs.incrementAndGet();
+            if (release != null) release.await();
+         }
+         if (name.equals("hashCode")) return System.identityHashCode(proxy);
+         if (name.equals("equals")) return proxy == args[0];
+         return null;
+      }
+   }
+}
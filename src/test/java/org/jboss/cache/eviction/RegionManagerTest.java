@@ -136,4 +136,43 @@ public class RegionManagerTest
          }
       }
    }
+
+   public void testResolutionFollowsRegionChanges()
+   {
+      RegionManager rm = new RegionManagerImpl();
+      ((RegionManagerImpl) rm).injectDependencies(null, null, null, null, null, new RegionRegistry());
+      rm.getRegion(DEFAULT_REGION, true).setEvictionRegionConfig(config);
+      Fqn deep = Fqn.fromString("/a/b/c/d/e/f");
+      assertEquals(DEFAULT_REGION, rm.getRegion(deep, false).getFqn());
+
+      rm.getRegion(A_B, true).setEvictionRegionConfig(config);
+      assertEquals(A_B, rm.getRegion(deep, false).getFqn());
+      assertEquals(DEFAULT_REGION, rm.getRegion(A_BC, false).getFqn());
+
+      rm.getRegion(A_B_C, true);
+      assertEquals(A_B_C, rm.getRegion(deep, Region.Type.ANY, false).getFqn());
+      // not an eviction region until it is given an eviction config
+      assertEquals(A_B, rm.getRegion(deep, Region.Type.EVICTION, false).getFqn());
+      rm.getRegion(A_B_C, false).setEvictionRegionConfig(config);
+      assertEquals(A_B_C, rm.getRegion(deep, Region.Type.EVICTION, false).getFqn());
+
+      assertNull(rm.getRegion(deep, Region.Type.MARSHALLING, false));
+      rm.getRegion(A_B, false).registerContextClassLoader(getClass().getClassLoader());
+      assertEquals(A_B, rm.getRegion(deep, Region.Type.MARSHALLING, false).getFqn());
+
+      assertTrue(rm.removeRegion(A_B_C));
+      assertEquals(A_B, rm.getRegion(deep, Region.Type.EVICTION, false).getFqn());
+      rm.reset();
+      assertNull(rm.getRegion(deep, false));
+   }
+
+   public void testNonStringFqnElements()
+   {
+      RegionManager rm = new RegionManagerImpl();
+      ((RegionManagerImpl) rm).injectDependencies(null, null, null, null, null, new RegionRegistry());
+      Fqn numbered = Fqn.fromElements("a", 1);
+      rm.getRegion(numbered, true);
+      assertEquals(numbered, rm.getRegion(Fqn.fromElements("a", 1, "x"), false).getFqn());
+      assertNull(rm.getRegion(Fqn.fromElements("a", "1", "x"), false));
+   }
 }
@@ -0,0 +1,113 @@
+package org.jboss.cache.interceptors;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InvocationContext;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.commands.write.PutKeyValueCommand;
+import org.jboss.cache.interceptors.base.CommandInterceptor;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests profiling the {@link InterceptorChain}
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", sequential = true, testName = "interceptors.InterceptorProfilingTest")
+public class InterceptorProfilingTest
+{
+   private static final long SLEEP_MILLIS = 5;
+
+   CacheSPI<Object, Object> cache;
+   InterceptorChain chain;
+   Fqn fqn = Fqn.fromString("/a/b");
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp()
+   {
+      cache = (CacheSPI<Object, Object>) new UnitTestCacheFactory<Object, Object>().createCache(getClass());
+      chain = TestingUtil.extractComponentRegistry(cache).getComponent(InterceptorChain.class);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      TestingUtil.killCaches(cache);
+      cache = null;
+   }
+
+   public void testInclusiveAndExclusiveTimes()
+   {
+      chain.setProfilingSampleInterval(1);
+      chain.setProfilingEnabled(true);
+      // added after profiling started, so only picked up on the next invocation
+      SleepingInterceptor sleeping = new SleepingInterceptor();
+      chain.addInterceptor(sleeping, 1);
+
+      for (int i = 0; i < 10; i++) cache.put(fqn, "k", i);
+
+      InterceptorProfiler profiler = chain.getProfiler();
+      assertEquals(10, profiler.getSampledInvocations());
+      List<CommandInterceptor> interceptors = chain.asList();
+      InterceptorProfiler.Stats first = profiler.getStats(interceptors.get(0));
+      InterceptorProfiler.Stats slow = profiler.getStats(sleeping);
+      assertEquals(10, first.getCalls());
+      assertEquals(10, slow.getCalls());
+      assert slow.getExclusiveNanos() >= 10 * SLEEP_MILLIS * 1000000 : "Expected the sleep to be charged to the interceptor: " + slow;
+      assert first.getExclusiveNanos() < first.getInclusiveNanos();
+      assert first.getInclusiveNanos() >= slow.getInclusiveNanos();
+      // the sleep isn't charged to any other interceptor
+      for (CommandInterceptor i : interceptors)
+      {
+         InterceptorProfiler.Stats stats = profiler.getStats(i);
+         if (i != sleeping && stats != null) assert stats.getExclusiveNanos() < 10 * SLEEP_MILLIS * 1000000 : i + " " + stats;
+      }
+
+      List<Map.Entry<Class<?>, InterceptorProfiler.Stats>> byCommand = profiler.getStatsByCommand(sleeping);
+      assertEquals(1, byCommand.size());
+      assertEquals(PutKeyValueCommand.class, byCommand.get(0).getKey());
+      assert chain.getInterceptorDetails().contains("PutKeyValueCommand: calls=10");
+
+      chain.resetProfiling();
+      assertNull(profiler.getStats(sleeping));
+   }
+
+   public void testSampling()
+   {
+      chain.setProfilingSampleInterval(4);
+      chain.setProfilingEnabled(true);
+      for (int i = 0; i < 20; i++) cache.put(fqn, "k", i);
+      assertEquals(5, chain.getProfiler().getSampledInvocations());
+      assertEquals(5, chain.getProfiler().getStats(chain.getFirstInChain()).getCalls());
+   }
+
+   public void testDisabled()
+   {
+      assert !chain.isProfilingEnabled();
+      chain.setProfilingEnabled(true);
+      cache.put(fqn, "k", "v");
+      chain.setProfilingEnabled(false);
+      assertNull(chain.getProfiler());
+      cache.put(fqn, "k", "v2");
+      assert !chain.getInterceptorDetails().contains("calls=");
+      assertEquals("v2", cache.get(fqn, "k"));
+   }
+
+   public static class SleepingInterceptor extends CommandInterceptor
+   {
+      @Override
+      public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable
+      {
+         Thread.sleep(SLEEP_MILLIS);
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+}
@@ -0,0 +1,158 @@
+package org.jboss.cache.loader;
+
+import org.jboss.cache.Fqn;
+import org.jboss.cache.Modification;
+import org.jboss.cache.loader.testloaders.DummyInMemoryCacheLoader;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Tests the {@link AsyncCacheLoader} when coalescing modifications per node.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"unit"}, sequential = true, testName = "loader.AsyncCacheLoaderCoalescingTest")
+public class AsyncCacheLoaderCoalescingTest
+{
+   Fqn a = Fqn.fromString("/a");
+   Fqn ab = Fqn.fromString("/a/b");
+   RecordingCacheLoader delegate;
+   AsyncCacheLoader loader;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp() throws Exception
+   {
+      delegate = new RecordingCacheLoader();
+      loader = new AsyncCacheLoader(delegate);
+      AsyncCacheLoaderConfig config = new AsyncCacheLoaderConfig();
+      Properties props = new Properties();
+      props.setProperty("cache.async.coalesce", "true");
+      // only flush when stopped, or before a move
+      props.setProperty("cache.async.coalesceInterval", "600000");
+      config.setProperties(props);
+      loader.setConfig(config);
+      loader.start();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      loader.stop();
+   }
+
+   public void testRepeatedWritesCoalesced() throws Exception
+   {
+      for (int i = 0; i < 100; i++) loader.put(a, "k", i);
+      loader.put(ab, "k", "v");
+      loader.stop();
+
+      assertEquals(2, delegate.written.size());
+      assertEquals(99, delegate.get(a).get("k"));
+      assertEquals("v", delegate.get(ab).get("k"));
+   }
+
+   public void testPartialWritesMerged() throws Exception
+   {
+      delegate.put(a, "existing", "value");
+      loader.put(a, "k1", "v1");
+      loader.put(a, "k2", "v2");
+      loader.remove(a, "k1");
+      loader.stop();
+
+      Map<Object, Object> data = delegate.get(a);
+      assertEquals("value", data.get("existing"));
+      assertEquals("v2", data.get("k2"));
+      assertFalse(data.containsKey("k1"));
+   }
+
+   public void testDataMapsAreDefinitive() throws Exception
+   {
+      delegate.put(a, "existing", "value");
+      Map<Object, Object> map = new HashMap<Object, Object>();
+      map.put("k1", "v1");
+      loader.put(a, map);
+      loader.put(a, "k2", "v2");
+      loader.stop();
+
+      assertEquals(1, delegate.written.size());
+      assertEquals(Modification.ModificationType.PUT_DATA, delegate.written.get(0).getType());
+      Map<Object, Object> data = delegate.get(a);
+      assertEquals(2, data.size());
+      assertEquals("v1", data.get("k1"));
+      assertEquals("v2", data.get("k2"));
+   }
+
+   public void testRemoveData() throws Exception
+   {
+      delegate.put(a, "existing", "value");
+      loader.put(a, "k1", "v1");
+      loader.removeData(a);
+      loader.put(a, "k2", "v2");
+      loader.stop();
+
+      Map<Object, Object> data = delegate.get(a);
+      assertEquals(1, data.size());
+      assertEquals("v2", data.get("k2"));
+   }
+
+   public void testRemoveNodeBeforeLaterWrites() throws Exception
+   {
+      delegate.put(ab, "existing", "value");
+      loader.put(ab, "k1", "v1");
+      loader.remove(a);
+      loader.put(ab, "k2", "v2");
+      loader.stop();
+
+      assertTrue(delegate.exists(a));
+      Map<Object, Object> data = delegate.get(ab);
+      assertEquals(1, data.size());
+      assertEquals("v2", data.get("k2"));
+   }
+
+   public void testRemoveNodeDiscardsPendingChangesBelow() throws Exception
+   {
+      loader.put(ab, "k1", "v1");
+      loader.remove(a);
+      loader.stop();
+
+      assertEquals(1, delegate.written.size());
+      assertEquals(Modification.ModificationType.REMOVE_NODE, delegate.written.get(0).getType());
+      assertFalse(delegate.exists(ab));
+   }
+
+   public void testMoveWrittenAfterPendingChanges() throws Exception
+   {
+      Fqn c = Fqn.fromString("/c");
+      loader.put(ab, "k", "v");
+      loader.put(Collections.singletonList(new Modification(Modification.ModificationType.MOVE, ab, c)));
+
+      // moves are written synchronously
+      Map<Object, Object> data = delegate.get(Fqn.fromString("/c/b"));
+      assertEquals("v", data.get("k"));
+      assertNull(delegate.get(ab));
+   }
+
+   public static class RecordingCacheLoader extends DummyInMemoryCacheLoader
+   {
+      final List<Modification> written = Collections.synchronizedList(new ArrayList<Modification>());
+
+      @Override
+      public void put(List<Modification> modifications) throws Exception
+      {
+         written.addAll(modifications);
+         super.put(modifications);
+      }
+   }
+}
@@ -0,0 +1,106 @@
+package org.jboss.cache.loader;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.Modification;
+import org.jboss.cache.factories.UnitTestConfigurationFactory;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the tests defined in JDBCCacheLoaderTest against {@link AttributeRowJDBCCacheLoader}, which stores each
+ * attribute of a node in a row of its own.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", testName = "loader.AttributeRowJDBCCacheLoaderTest")
+public class AttributeRowJDBCCacheLoaderTest extends JDBCCacheLoaderTest
+{
+   @Override
+   protected void configureCache(CacheSPI cache) throws Exception
+   {
+      cache.getConfiguration().setCacheLoaderConfig(UnitTestConfigurationFactory.buildSingleCacheLoaderConfig(false, "",
+            AttributeRowJDBCCacheLoader.class.getName(), props, false, true, false, false, false));
+   }
+
+   public void testSingleAttributeUpdate() throws Exception
+   {
+      Map<Object, Object> data = new HashMap<Object, Object>();
+      for (int i = 0; i < 100; i++) data.put("k" + i, "v" + i);
+      loader.put(FQN, data);
+
+      assertEquals("v50", loader.put(FQN, "k50", "updated"));
+      assertNull(loader.put(FQN, "k100", "added"));
+      assertEquals("v7", loader.remove(FQN, "k7"));
+      assertNull(loader.remove(FQN, "k7"));
+
+      data.put("k50", "updated");
+      data.put("k100", "added");
+      data.remove("k7");
+      assertEquals(data, loader.get(FQN));
+   }
+
+   public void testNonStringKeys() throws Exception
+   {
+      loader.put(FQN, 1, "int");
+      loader.put(FQN, 1L, "long");
+      loader.put(FQN, "1", "string");
+      assertEquals("int", loader.put(FQN, 1, "int again"));
+
+      Map<Object, Object> data = loader.get(FQN);
+      assertEquals(3, data.size());
+      assertEquals("int again", data.get(1));
+      assertEquals("long", data.get(1L));
+      assertEquals("string", data.get("1"));
+
+      assertEquals("long", loader.remove(FQN, 1L));
+      assertEquals(2, loader.get(FQN).size());
+   }
+
+   public void testNullValues() throws Exception
+   {
+      loader.put(FQN, "k", null);
+      assertTrue(loader.get(FQN).containsKey("k"));
+      assertNull(loader.put(FQN, "k", "v"));
+      assertEquals("v", loader.get(FQN).get("k"));
+   }
+
+   public void testBatchedModifications() throws Exception
+   {
+      Fqn child = Fqn.fromRelativeElements(FQN, "child");
+      loader.put(FQN, "a", "1");
+      loader.put(FQN, "b", "2");
+
+      List<Modification> mods = new ArrayList<Modification>();
+      mods.add(new Modification(Modification.ModificationType.PUT_KEY_VALUE, FQN, "a", "updated"));
+      mods.add(new Modification(Modification.ModificationType.REMOVE_KEY_VALUE, FQN, "b"));
+      mods.add(new Modification(Modification.ModificationType.PUT_KEY_VALUE, FQN, "c", "3"));
+      mods.add(new Modification(Modification.ModificationType.PUT_KEY_VALUE, child, "x", "y"));
+      mods.add(new Modification(Modification.ModificationType.REMOVE_DATA, child));
+      mods.add(new Modification(Modification.ModificationType.PUT_KEY_VALUE, child, "z", "w"));
+      loader.put(mods);
+
+      Map<Object, Object> expected = new HashMap<Object, Object>();
+      expected.put("a", "updated");
+      expected.put("c", "3");
+      assertEquals(expected, loader.get(FQN));
+      assertEquals(1, loader.get(child).size());
+      assertEquals("w", loader.get(child).get("z"));
+      assertTrue(loader.getChildrenNames(FQN).contains("child"));
+   }
+
+   public void testAttributeTableDefaults()
+   {
+      AttributeRowJDBCCacheLoaderConfig config = (AttributeRowJDBCCacheLoaderConfig) loader.getConfig();
+      assertEquals(config.getTable() + "_attr", config.getAttributeTable());
+      assertEquals("attr_key", config.getKeyColumn());
+      assertEquals("attr_value", config.getValueColumn());
+   }
+}
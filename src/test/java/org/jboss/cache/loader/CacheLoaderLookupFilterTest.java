@@ -0,0 +1,205 @@
+package org.jboss.cache.loader;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.CacheLoaderConfig;
+import org.jboss.cache.config.Configuration;
+import static org.jboss.cache.factories.UnitTestConfigurationFactory.buildSingleCacheLoaderConfig;
+import org.jboss.cache.loader.testloaders.DummyInMemoryCacheLoader;
+import org.jboss.cache.transaction.DummyTransactionManagerLookup;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.Collections;
+
+/**
+ * Tests that {@link CacheLoaderLookupFilter} keeps lookups of absent nodes from the cache loader, without hiding nodes
+ * that are present.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", sequential = true, testName = "loader.CacheLoaderLookupFilterTest")
+public class CacheLoaderLookupFilterTest
+{
+   private static final Fqn MISSING = Fqn.fromString("/missing");
+
+   private CacheSPI<String, String> cache;
+   private CacheLoaderLookupFilter filter;
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      TestingUtil.killCaches(cache);
+      cache = null;
+   }
+
+   public void testMissesRemembered() throws Exception
+   {
+      startCache(60000, null, 0, false);
+      assertNull(cache.get(MISSING, "k"));
+      assertNull(cache.get(MISSING, "k"));
+      assertEquals(1, filter.getLoaderMisses());
+      assertEquals(1, filter.getNegativeCacheHits());
+      assertEquals(1d, filter.getMissRate());
+   }
+
+   public void testStoredNodeForgotten() throws Exception
+   {
+      startCache(60000, null, 0, false);
+      assertNull(cache.get(MISSING, "k"));
+      cache.put(MISSING, "k", "v");
+      cache.evict(MISSING);
+      assertEquals("v", cache.get(MISSING, "k"));
+      assertEquals(0, filter.getNegativeCacheSize());
+   }
+
+   public void testMissesExpire() throws Exception
+   {
+      startCache(50, null, 0, false);
+      assertNull(cache.get(MISSING, "k"));
+      Thread.sleep(100);
+      assertNull(cache.get(MISSING, "k"));
+      assertEquals(2, filter.getLoaderMisses());
+      assertEquals(0, filter.getNegativeCacheHits());
+   }
+
+   public void testRegions() throws Exception
+   {
+      startCache(60000, "/a, /b/c", 0, false);
+      for (int i = 0; i < 2; i++)
+      {
+         assertNull(cache.get("/a/x", "k"));
+         assertNull(cache.get("/b/x", "k"));
+      }
+      assertEquals("Only misses in /a are remembered", 1, filter.getNegativeCacheSize());
+      assertEquals(3, filter.getLoaderMisses());
+      assertEquals(1, filter.getNegativeCacheHits());
+   }
+
+   public void testMaxEntries() throws Exception
+   {
+      startCache(60000, null, 0, false);
+      for (int i = 0; i < 20; i++) assertNull(cache.get("/" + i, "k"));
+      assertEquals(10, filter.getNegativeCacheSize());
+   }
+
+   public void testExpiredEntriesMakeRoom() throws Exception
+   {
+      startCache(50, null, 0, false);
+      for (int i = 0; i < 10; i++) assertNull(cache.get("/" + i, "k"));
+      Thread.sleep(100);
+      for (int i = 10; i < 20; i++) assertNull(cache.get("/" + i, "k"));
+      assertEquals(10, filter.getNegativeCacheSize());
+      assertNull(cache.get("/19", "k"));
+      assertEquals(1, filter.getNegativeCacheHits());
+   }
+
+   public void testBloomFilter() throws Exception
+   {
+      startCache(0, null, 1000, false);
+      cache.put("/a/b", "k", "v");
+      cache.evict(Fqn.fromString("/a"), true);
+
+      assertEquals("v", cache.get("/a/b", "k"));
+      long loaderLookups = filter.getLoaderLookups();
+      assertNull(cache.get(MISSING, "k"));
+      assertEquals(loaderLookups, filter.getLoaderLookups());
+      assert filter.getBloomFilterRejections() > 0;
+      assert filter.getExpectedFalsePositiveRate() > 0;
+   }
+
+   public void testBloomFilterRebuilt() throws Exception
+   {
+      startCache(60000, null, 1000, false);
+      // written behind the cache's back, as when persistent state is integrated
+      cache.getCacheLoaderManager().getCacheLoader().put(Fqn.fromString("/x/y"), Collections.singletonMap("k", "v"));
+      assertNull(cache.get("/x/y", "k"));
+      assert filter.getBloomFilterRejections() > 0;
+
+      filter.rebuild();
+      assertEquals("v", cache.get("/x/y", "k"));
+   }
+
+   public void testTransactionalWrites() throws Exception
+   {
+      startCache(60000, null, 1000, false);
+      assertNull(cache.get("/a/b", "k"));
+      TransactionManager tm = cache.getTransactionManager();
+      tm.begin();
+      cache.put("/a/b", "k", "v");
+      cache.put("/c", "k", "v");
+      tm.commit();
+
+      tm.begin();
+      cache.move(Fqn.fromString("/a"), Fqn.fromString("/c"));
+      tm.commit();
+      cache.evict(Fqn.ROOT, true);
+
+      assertEquals("v", cache.get("/c/a/b", "k"));
+      assertNull(cache.get("/a/b", "k"));
+   }
+
+   public void testLookupBetweenPrepareAndCommit() throws Exception
+   {
+      startCache(60000, null, 1000, false, LookupBeforeCommitLoader.class.getName());
+      LookupBeforeCommitLoader.filter = filter;
+      TransactionManager tm = cache.getTransactionManager();
+      tm.begin();
+      cache.put(MISSING, "k", "v");
+      tm.commit();
+      cache.evict(MISSING);
+
+      assertEquals("v", cache.get(MISSING, "k"));
+   }
+
+   public void testBloomFilterNotUsedWithSharedLoader() throws Exception
+   {
+      startCache(0, null, 1000, true);
+      assert !filter.isEnabled();
+      assertNull(cache.get(MISSING, "k"));
+      assertEquals(0, filter.getLookups());
+   }
+
+   private void startCache(long ttl, String regions, long bloomFilterExpectedNodes, boolean shared) throws Exception
+   {
+      startCache(ttl, regions, bloomFilterExpectedNodes, shared, DummyInMemoryCacheLoader.class.getName());
+   }
+
+   @SuppressWarnings("unchecked")
+   private void startCache(long ttl, String regions, long bloomFilterExpectedNodes, boolean shared, String loaderClass) throws Exception
+   {
+      Configuration c = new Configuration();
+      c.setCacheMode(Configuration.CacheMode.LOCAL);
+      c.setNodeLockingScheme(Configuration.NodeLockingScheme.MVCC);
+      c.setTransactionManagerLookupClass(DummyTransactionManagerLookup.class.getName());
+      CacheLoaderConfig clc = buildSingleCacheLoaderConfig(false, null, loaderClass, "", false, false, shared, false, false);
+      clc.setNegativeLookupCacheTTL(ttl);
+      clc.setNegativeLookupCacheMaxEntries(10);
+      clc.setNegativeLookupCacheRegions(regions);
+      clc.setBloomFilterExpectedNodes(bloomFilterExpectedNodes);
+      c.setCacheLoaderConfig(clc);
+      cache = (CacheSPI<String, String>) new UnitTestCacheFactory<String, String>().createCache(c, getClass());
+      filter = TestingUtil.extractComponentRegistry(cache).getComponent(CacheLoaderLookupFilter.class);
+   }
+
+   /**
+    * Looks up the nodes of a transaction as it is committed, as a concurrent reader not holding their locks may.
+    */
+   public static class LookupBeforeCommitLoader extends DummyInMemoryCacheLoader
+   {
+      static volatile CacheLoaderLookupFilter filter;
+
+      @Override
+      public void commit(Object tx) throws Exception
+      {
+         long stamp = filter.getWriteStamp(MISSING);
+         filter.recordLoaderLookup(MISSING, exists(MISSING), stamp);
+         super.commit(tx);
+      }
+   }
+}
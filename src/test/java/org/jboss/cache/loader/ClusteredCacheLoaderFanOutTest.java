@@ -0,0 +1,145 @@
+package org.jboss.cache.loader;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.buddyreplication.GravitateResult;
+import org.jboss.cache.interceptors.LegacyDataGravitatorInterceptor;
+import org.jboss.cache.marshall.NodeData;
+import org.jgroups.Address;
+import org.jgroups.stack.IpAddress;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Tests how remote gets are fanned out by the {@link ClusteredCacheLoader} and data gravitation, without a cluster.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"unit"}, sequential = true, testName = "loader.ClusteredCacheLoaderFanOutTest")
+public class ClusteredCacheLoaderFanOutTest
+{
+   List<Address> members;
+   Address local;
+   ClusteredCacheLoaderConfig config;
+   ClusteredCacheLoader loader;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp() throws Exception
+   {
+      members = new ArrayList<Address>();
+      for (int i = 0; i < 10; i++) members.add(new IpAddress("127.0.0.1", 7800 + i));
+      local = members.get(0);
+      config = new ClusteredCacheLoaderConfig();
+      loader = new ClusteredCacheLoader();
+      loader.setConfig(config);
+      loader.setCache(cacheWithView());
+   }
+
+   public void testNoPreferredMembersByDefault()
+   {
+      assertTrue(loader.getPreferredMembers(Fqn.fromString("/a")).isEmpty());
+   }
+
+   public void testPreferredMembers()
+   {
+      config.setPreferredMembers(2);
+      for (int i = 0; i < 100; i++)
+      {
+         Fqn fqn = Fqn.fromElements("sessions", i);
+         List<Address> preferred = loader.getPreferredMembers(fqn);
+         assertEquals(2, new HashSet<Address>(preferred).size());
+         assertFalse(preferred.contains(local));
+         assertEquals("The same Fqn must map to the same members", preferred, loader.getPreferredMembers(fqn));
+      }
+   }
+
+   public void testPreferredMembersSpread()
+   {
+      config.setPreferredMembers(1);
+      HashSet<Address> chosen = new HashSet<Address>();
+      for (int i = 0; i < 100; i++) chosen.addAll(loader.getPreferredMembers(Fqn.fromElements("sessions", i)));
+      assertEquals(members.size() - 1, chosen.size());
+   }
+
+   public void testAllMembersPreferred()
+   {
+      config.setPreferredMembers(members.size());
+      assertTrue("Should ask everyone at once", loader.getPreferredMembers(Fqn.fromString("/a")).isEmpty());
+   }
+
+   public void testPreferredMembersProperty() throws Exception
+   {
+      ClusteredCacheLoaderConfig c = new ClusteredCacheLoaderConfig();
+      Properties props = new Properties();
+      props.setProperty("timeout", "500");
+      props.setProperty("preferredMembers", "3");
+      c.setProperties(props);
+      assertEquals(500, c.getTimeout());
+      assertEquals(3, c.getPreferredMembers());
+   }
+
+   public void testLoaderFilterStopsAtFirstFoundResponse()
+   {
+      ClusteredCacheLoader.ResponseValidityFilter filter = new ClusteredCacheLoader.ResponseValidityFilter(members, local);
+      filter.isAcceptable(Arrays.asList(false, null), members.get(1));
+      filter.isAcceptable(new Exception(), members.get(2));
+      assertTrue(filter.needMoreResponses());
+      filter.isAcceptable(Arrays.asList(true, "value"), members.get(3));
+      assertFalse("Should not wait for the remaining members", filter.needMoreResponses());
+   }
+
+   public void testLoaderFilterWaitsForAllIfNotFound()
+   {
+      ClusteredCacheLoader.ResponseValidityFilter filter = new ClusteredCacheLoader.ResponseValidityFilter(members.subList(0, 3), local);
+      filter.isAcceptable(Arrays.asList(false, null), members.get(1));
+      assertTrue(filter.needMoreResponses());
+      filter.isAcceptable(Arrays.asList(false, null), members.get(2));
+      assertFalse(filter.needMoreResponses());
+   }
+
+   public void testGravitationFilterStopsAtFirstFoundResponse()
+   {
+      LegacyDataGravitatorInterceptor.ResponseValidityFilter filter = new LegacyDataGravitatorInterceptor.ResponseValidityFilter(3);
+      filter.isAcceptable(GravitateResult.noDataFound(), members.get(1));
+      assertTrue(filter.needMoreResponses());
+      filter.isAcceptable(GravitateResult.subtreeResult(Collections.<NodeData>emptyList(), Fqn.fromString("/backup")), members.get(2));
+      assertFalse(filter.needMoreResponses());
+   }
+
+   public void testGravitationFilterCountsExceptions()
+   {
+      LegacyDataGravitatorInterceptor.ResponseValidityFilter filter = new LegacyDataGravitatorInterceptor.ResponseValidityFilter(members.size(), local);
+      for (int i = 1; i < members.size(); i++)
+      {
+         assertTrue(filter.needMoreResponses());
+         filter.isAcceptable(i % 2 == 0 ? GravitateResult.noDataFound() : new Exception(), members.get(i));
+      }
+      assertFalse(filter.needMoreResponses());
+   }
+
+   private CacheSPI cacheWithView()
+   {
+      return (CacheSPI) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{CacheSPI.class}, new InvocationHandler()
+      {
+         public Object invoke(Object proxy, Method method, Object[] args)
+         {
+            if (method.getName().equals("getMembers")) return members;
+            if (method.getName().equals("getLocalAddress")) return local;
+            return null;
+         }
+      });
+   }
+}
@@ -0,0 +1,188 @@
+package org.jboss.cache.loader;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.DataContainer;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InternalNode;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.Configuration;
+import static org.jboss.cache.factories.UnitTestConfigurationFactory.buildSingleCacheLoaderConfig;
+import org.jboss.cache.interceptors.CacheLoaderInterceptor;
+import org.jboss.cache.loader.testloaders.DummyInMemoryCacheLoader;
+import org.jboss.cache.mvcc.NodeReference;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that concurrent callers missing the same node load it from the cache loader only once.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", sequential = true, testName = "loader.ConcurrentLoadCoalescingTest")
+public class ConcurrentLoadCoalescingTest
+{
+   private static final Fqn A = Fqn.fromString("/a");
+   private static final int THREADS = 5;
+
+   private CacheSPI<String, String> cache;
+   private ExecutorService executor;
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      BlockingLoader.release.countDown();
+      BlockingLoader.childrenRelease.countDown();
+      if (executor != null) executor.shutdownNow();
+      TestingUtil.killCaches(cache);
+      cache = null;
+   }
+
+   public void testConcurrentMissesLoadOnce() throws Exception
+   {
+      startCache();
+      CacheLoaderInterceptor interceptor = TestingUtil.findInterceptor(cache, CacheLoaderInterceptor.class);
+
+      cache.put(A, "k", "v");
+      cache.evict(A);
+      BlockingLoader.reset(A);
+
+      executor = Executors.newFixedThreadPool(THREADS);
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < THREADS; i++)
+      {
+         results.add(executor.submit(new Callable<String>()
+         {
+            public String call()
+            {
+               return cache.get(A, "k");
+            }
+         }));
+      }
+      assert BlockingLoader.entered.await(10, TimeUnit.SECONDS) : "Node was not loaded";
+      // give the other callers time to queue up behind the first load
+      Thread.sleep(500);
+      BlockingLoader.release.countDown();
+
+      for (Future<String> result : results) assertEquals("v", result.get(10, TimeUnit.SECONDS));
+      assertEquals(1, BlockingLoader.loads.get());
+      assertEquals(THREADS - 1, interceptor.getCacheLoaderCoalescedLoads());
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testLoadIntoNodeCreatedWhileListingChildren() throws Exception
+   {
+      startCache();
+      cache.put(A, "k", "v");
+      cache.evict(A);
+      BlockingLoader.reset(A);
+      BlockingLoader.blockChildren = true;
+
+      executor = Executors.newFixedThreadPool(2);
+      // creates A as a node whose data isn't loaded yet, and holds its lock while listing its children
+      Future<?> listing = executor.submit(new Callable<Object>()
+      {
+         public Object call()
+         {
+            return cache.getChildrenNames(A);
+         }
+      });
+      assert BlockingLoader.childrenEntered.await(10, TimeUnit.SECONDS) : "Children were not listed";
+      Future<String> reading = executor.submit(new Callable<String>()
+      {
+         public String call()
+         {
+            return cache.get(A, "k");
+         }
+      });
+      // let the reader look up A and queue up for its lock
+      Thread.sleep(500);
+      BlockingLoader.childrenRelease.countDown();
+      listing.get(10, TimeUnit.SECONDS);
+
+      assert BlockingLoader.entered.await(10, TimeUnit.SECONDS) : "Node was not loaded";
+      InternalNode<String, String> created = TestingUtil.extractComponentRegistry(cache).getComponent(DataContainer.class).peekInternalNode(A, true);
+      if (created instanceof NodeReference) created = ((NodeReference<String, String>) created).getDelegate();
+      BlockingLoader.release.countDown();
+
+      assertEquals("v", reading.get(10, TimeUnit.SECONDS));
+      assertEquals("v", cache.get(A, "k"));
+      // the data was loaded into a copy of the node, not the node readers may have seen
+      assertFalse(created.isDataLoaded());
+      assertTrue(created.getData().isEmpty());
+   }
+
+   @SuppressWarnings("unchecked")
+   private void startCache() throws Exception
+   {
+      Configuration c = new Configuration();
+      c.setCacheMode(Configuration.CacheMode.LOCAL);
+      c.setNodeLockingScheme(Configuration.NodeLockingScheme.MVCC);
+      c.setCacheLoaderConfig(buildSingleCacheLoaderConfig(false, null, BlockingLoader.class.getName(),
+            "", false, false, false, false, false));
+      cache = (CacheSPI<String, String>) new UnitTestCacheFactory<String, String>().createCache(c, getClass());
+   }
+
+   /**
+    * Counts loads of a node, holding up the first one until released.  Optionally holds up listing its children too.
+    */
+   public static class BlockingLoader extends DummyInMemoryCacheLoader
+   {
+      static volatile Fqn watched;
+      static final AtomicInteger loads = new AtomicInteger();
+      static volatile CountDownLatch entered = new CountDownLatch(1);
+      static volatile CountDownLatch release = new CountDownLatch(1);
+      static volatile boolean blockChildren;
+      static volatile CountDownLatch childrenEntered = new CountDownLatch(1);
+      static volatile CountDownLatch childrenRelease = new CountDownLatch(1);
+
+      static void reset(Fqn fqn)
+      {
+         loads.set(0);
+         entered = new CountDownLatch(1);
+         release = new CountDownLatch(1);
+         blockChildren = false;
+         childrenEntered = new CountDownLatch(1);
+         childrenRelease = new CountDownLatch(1);
+         watched = fqn;
+      }
+
+      @Override
+      public Set<?> getChildrenNames(Fqn fqn) throws Exception
+      {
+         if (blockChildren && fqn.equals(watched))
+         {
+            childrenEntered.countDown();
+            childrenRelease.await(10, TimeUnit.SECONDS);
+         }
+         return super.getChildrenNames(fqn);
+      }
+
+      @Override
+      public Map<Object, Object> get(Fqn name) throws Exception
+      {
+         if (name.equals(watched))
+         {
+            loads.incrementAndGet();
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+         }
+         return super.get(name);
+      }
+   }
+}
@@ -71,4 +71,31 @@ public class JDBCCacheLoaderConfigTest
       assert !config.isBatchEnabled();
       assert config.getBatchSize() == 1001;
    }
+
+   public void testAttributeRowSettings()
+   {
+      Properties props = new Properties();
+      props.put("cache.jdbc.table.name", "nodes");
+      props.put("cache.jdbc.fqn.column", "path");
+      props.put("cache.jdbc.node.type", "blob");
+      props.put("cache.jdbc.datasource", "java:/CacheDS");
+      AttributeRowJDBCCacheLoaderConfig config = new AttributeRowJDBCCacheLoaderConfig();
+      config.setProperties(props);
+      assertEquals(AttributeRowJDBCCacheLoader.class.getName(), config.getClassName());
+      assertEquals("nodes_attr", config.getAttributeTable());
+      assertEquals("CREATE TABLE nodes_attr(path VARCHAR(255) NOT NULL, attr_key VARCHAR(255) NOT NULL, attr_value blob, PRIMARY KEY (path, attr_key))",
+            config.getCreateAttributeTableDDL());
+      assertEquals("SELECT a.attr_key, a.attr_value FROM nodes n LEFT OUTER JOIN nodes_attr a ON n.path = a.path WHERE n.path = ?",
+            config.getSelectAttributesSql());
+
+      props.put("cache.jdbc.attribute.table", "attributes");
+      props.put("cache.jdbc.attribute.key.column", "name");
+      props.put("cache.jdbc.attribute.key.type", "VARCHAR(64)");
+      props.put("cache.jdbc.attribute.value.column", "data");
+      AttributeRowJDBCCacheLoaderConfig other = new AttributeRowJDBCCacheLoaderConfig();
+      other.setProperties(props);
+      assertEquals("UPDATE attributes SET data = ? WHERE path = ? AND name = ?", other.getUpdateAttributeSql());
+      assertTrue(other.getCreateAttributeTableDDL().contains("name VARCHAR(64) NOT NULL"));
+      assertFalse(config.equals(other));
+   }
 }
@@ -0,0 +1,118 @@
+package org.jboss.cache.loader;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.factories.UnitTestConfigurationFactory;
+import org.jboss.cache.loader.log.LogCacheLoader;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Tests {@link LogCacheLoader}, with small segments so that segments are sealed and compacted while testing.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"functional"}, testName = "loader.LogCacheLoaderTest")
+public class LogCacheLoaderTest extends CacheLoaderTestsBase
+{
+   private String tmpCLLoc = TestingUtil.TEST_FILES + getClass().getName();
+
+   @BeforeTest
+   @AfterTest
+   public void removeCacheLoaderFolder()
+   {
+      TestingUtil.recursiveFileRemove(tmpCLLoc);
+   }
+
+   protected void configureCache(CacheSPI cache) throws Exception
+   {
+      cache.getConfiguration().setCacheLoaderConfig(UnitTestConfigurationFactory.buildSingleCacheLoaderConfig(false, "", "org.jboss.cache.loader.log.LogCacheLoader",
+            "location=" + tmpCLLoc + "\nsegment.size=4096", false, true, false, false, false));
+   }
+
+   public void testRecovery() throws Exception
+   {
+      Fqn a = Fqn.fromString("/a"), ab = Fqn.fromString("/a/b"), ac = Fqn.fromString("/a/c");
+      loader.put(ab, "k", "v1");
+      loader.put(ac, "k", "v");
+      loader.put(ab, "k", "v2");
+      loader.remove(ac);
+      loader.put(Fqn.fromString("/d/e"), "k", "v");
+      loader.remove(Fqn.fromString("/d"));
+
+      restart();
+      assertEquals("v2", loader.get(ab).get("k"));
+      assertTrue(loader.exists(a));
+      assertFalse(loader.exists(ac));
+      assertFalse(loader.exists(Fqn.fromString("/d")));
+      assertEquals(new HashSet<Object>(Arrays.asList("b")), loader.getChildrenNames(a));
+   }
+
+   public void testPartiallyWrittenRecordDiscarded() throws Exception
+   {
+      Fqn fqn = Fqn.fromString("/a");
+      loader.put(fqn, "k", "v");
+      loader.stop();
+
+      // a crash part way through writing a record
+      File[] segments = segmentFiles();
+      FileOutputStream out = new FileOutputStream(segments[segments.length - 1], true);
+      out.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+      out.close();
+
+      loader.start();
+      assertEquals("v", loader.get(fqn).get("k"));
+      loader.put(fqn, "k2", "v2");
+      restart();
+      assertEquals("v", loader.get(fqn).get("k"));
+      assertEquals("v2", loader.get(fqn).get("k2"));
+   }
+
+   public void testCompaction() throws Exception
+   {
+      Fqn fqn = Fqn.fromString("/a");
+      Fqn removed = Fqn.fromString("/removed");
+      loader.put(removed, "k", "v");
+      loader.remove(removed);
+      for (int i = 0; i < 500; i++) loader.put(fqn, "k", i);
+      loader.put(Fqn.fromString("/b"), "k", "v");
+
+      // compaction may already be running in the background
+      for (int i = 0; i < 50 && segmentFiles().length > 2; i++)
+      {
+         ((LogCacheLoader) loader).compact();
+         TestingUtil.sleepThread(100);
+      }
+      assertTrue("Segments should have been compacted: " + Arrays.asList(segmentFiles()), segmentFiles().length <= 2);
+      assertEquals(499, loader.get(fqn).get("k"));
+
+      restart();
+      assertEquals(499, loader.get(fqn).get("k"));
+      assertEquals("v", loader.get(Fqn.fromString("/b")).get("k"));
+      assertNull(loader.get(removed));
+   }
+
+   private void restart() throws Exception
+   {
+      loader.stop();
+      loader.start();
+   }
+
+   private File[] segmentFiles()
+   {
+      File[] files = new File(tmpCLLoc).listFiles();
+      Arrays.sort(files);
+      return files;
+   }
+}
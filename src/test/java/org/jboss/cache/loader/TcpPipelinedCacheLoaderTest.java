@@ -0,0 +1,262 @@
+package org.jboss.cache.loader;
+
+import org.jboss.cache.Cache;
+import org.jboss.cache.CacheException;
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.config.CacheLoaderConfig;
+import org.jboss.cache.loader.tcp.PipelinedConnection;
+import org.jboss.cache.loader.tcp.TcpCacheOperations;
+import org.jboss.cache.notifications.annotation.CacheListener;
+import org.jboss.cache.notifications.annotation.NodeModified;
+import org.jboss.cache.notifications.event.NodeModifiedEvent;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the TcpDelegatingCacheLoader tests over a pool of pipelined connections.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", testName = "loader.TcpPipelinedCacheLoaderTest")
+public class TcpPipelinedCacheLoaderTest extends TcpCacheLoaderTest
+{
+   @Override
+   protected void configureCache(CacheSPI cache) throws Exception
+   {
+      CacheLoaderConfig clc = new CacheLoaderConfig();
+      TcpDelegatingCacheLoaderConfig tcpCfg = new TcpDelegatingCacheLoaderConfig(TCP_CACHE_SERVER_HOST, TCP_CACHE_SERVER_PORT, TCP_CACHE_LOADER_TIMEOUT_MS);
+      tcpCfg.setReconnectWaitTime(CACHE_SERVER_RESTART_DELAY_MS);
+      tcpCfg.setFetchPersistentState(false);
+      tcpCfg.setPipelined(true);
+      tcpCfg.setConnections(2);
+      clc.addIndividualCacheLoaderConfig(tcpCfg);
+      cache.getConfiguration().setCacheLoaderConfig(clc);
+   }
+
+   public void testConcurrentRequests() throws Exception
+   {
+      final int threads = 10, requests = 100;
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Throwable> failures = new ArrayList<Throwable>();
+      Thread[] callers = new Thread[threads];
+      for (int i = 0; i < threads; i++)
+      {
+         final Fqn fqn = Fqn.fromElements("concurrent", i);
+         callers[i] = new Thread()
+         {
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  for (int j = 0; j < requests; j++)
+                  {
+                     loader.put(fqn, "k", j);
+                     assertEquals(j, loader.get(fqn).get("k"));
+                  }
+               }
+               catch (Throwable t)
+               {
+                  synchronized (failures)
+                  {
+                     failures.add(t);
+                  }
+               }
+            }
+         };
+         callers[i].start();
+      }
+
+      start.countDown();
+      for (Thread t : callers) t.join();
+      assertEquals(failures.toString(), 0, failures.size());
+      assertEquals(threads, loader.getChildrenNames(Fqn.fromString("/concurrent")).size());
+   }
+
+   public void testOversizedFrameClosesConnection() throws Exception
+   {
+      Socket socket = openMultiplexedSocket();
+      try
+      {
+         DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+         out.writeInt(Integer.MAX_VALUE);
+         out.writeInt(1);
+         out.flush();
+         assertEquals(-1, socket.getInputStream().read());
+      }
+      finally
+      {
+         socket.close();
+      }
+      // other connections are unaffected
+      loader.put(Fqn.fromString("/after"), "k", "v");
+      assertEquals("v", loader.get(Fqn.fromString("/after")).get("k"));
+   }
+
+   public void testEveryPipelinedRequestAnswered() throws Exception
+   {
+      // far more requests than the server dispatches to its workers at once, so reading is suspended and resumed
+      final int requests = 1000;
+      Socket socket = openMultiplexedSocket();
+      try
+      {
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+         for (int id = 0; id < requests; id++)
+         {
+            // a request without arguments, answered with an exception
+            out.writeInt(5);
+            out.writeInt(id);
+            out.writeByte(TcpCacheOperations.GET);
+         }
+         out.flush();
+
+         DataInputStream in = new DataInputStream(socket.getInputStream());
+         Set<Integer> answered = new HashSet<Integer>();
+         for (int i = 0; i < requests; i++)
+         {
+            byte[] response = new byte[in.readInt()];
+            in.readFully(response);
+            answered.add(new DataInputStream(new ByteArrayInputStream(response)).readInt());
+         }
+         assertEquals(requests, answered.size());
+      }
+      finally
+      {
+         socket.close();
+      }
+   }
+
+   public void testResponsesHeldBackForClientNotReading() throws Exception
+   {
+      // enough responses to fill the socket buffers, none of which is read
+      final int requests = 20000;
+      Socket socket = openMultiplexedSocket();
+      try
+      {
+         final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+         Thread writer = new Thread()
+         {
+            public void run()
+            {
+               try
+               {
+                  for (int id = 0; id < requests; id++)
+                  {
+                     out.writeInt(5);
+                     out.writeInt(id);
+                     out.writeByte(TcpCacheOperations.GET);
+                  }
+                  out.flush();
+               }
+               catch (Exception e)
+               {
+                  // the socket is closed once the test is done, while writing is blocked
+               }
+            }
+         };
+         writer.setDaemon(true);
+         writer.start();
+         writer.join(2000);
+         TestingUtil.sleepThread(500);
+
+         Queue<?> writeQueue = null;
+         for (Object conn : (Set<?>) TestingUtil.extractField(cacheServer, "conns"))
+         {
+            if (conn.getClass().getSimpleName().equals("MultiplexedConnection"))
+               writeQueue = (Queue<?>) TestingUtil.extractField(conn, "writeQueue");
+         }
+         assert writeQueue != null;
+         synchronized (writeQueue)
+         {
+            assert writeQueue.size() <= 64 : "Responses queued: " + writeQueue.size();
+         }
+      }
+      finally
+      {
+         socket.close();
+      }
+   }
+
+   public void testTimedOutRequestKeepsConnections() throws Exception
+   {
+      final Fqn slow = Fqn.fromString("/slow");
+      final CountDownLatch release = new CountDownLatch(1);
+      Cache<Object, Object> serverCache = cacheServer.getCache();
+      Object blocker = new SlowWrites(slow, release);
+      serverCache.addCacheListener(blocker);
+
+      TcpDelegatingCacheLoaderConfig tcpCfg = new TcpDelegatingCacheLoaderConfig(TCP_CACHE_SERVER_HOST, TCP_CACHE_SERVER_PORT, 500);
+      tcpCfg.setReconnectWaitTime(100);
+      tcpCfg.setReadTimeout(100);
+      tcpCfg.setPipelined(true);
+      TcpDelegatingCacheLoader timingOut = new TcpDelegatingCacheLoader();
+      timingOut.setConfig(tcpCfg);
+      timingOut.setCache(cache);
+      timingOut.start();
+      try
+      {
+         PipelinedConnection[] pool = timingOut.pool;
+         try
+         {
+            timingOut.put(slow, "k", "v");
+            assert false : "Should have timed out";
+         }
+         catch (CacheException expected)
+         {
+         }
+         // not torn down and replaced
+         assert timingOut.pool == pool;
+         for (PipelinedConnection connection : pool) assert connection.isOpen();
+      }
+      finally
+      {
+         release.countDown();
+         serverCache.removeCacheListener(blocker);
+         timingOut.stop();
+      }
+   }
+
+   @CacheListener
+   public static class SlowWrites
+   {
+      private final Fqn fqn;
+      private final CountDownLatch release;
+
+      SlowWrites(Fqn fqn, CountDownLatch release)
+      {
+         this.fqn = fqn;
+         this.release = release;
+      }
+
+      @NodeModified
+      public void nodeModified(NodeModifiedEvent e) throws InterruptedException
+      {
+         if (e.isPre() && e.getFqn().equals(fqn)) release.await(10, TimeUnit.SECONDS);
+      }
+   }
+
+   private Socket openMultiplexedSocket() throws Exception
+   {
+      Socket socket = new Socket(TCP_CACHE_SERVER_HOST, TCP_CACHE_SERVER_PORT);
+      socket.setSoTimeout(10000);
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.writeInt(TcpCacheOperations.MULTIPLEXED_PROTOCOL_MAGIC);
+      out.flush();
+      return socket;
+   }
+}
@@ -0,0 +1,320 @@
+package org.jboss.cache.marshall;
+
+import org.jboss.cache.CacheException;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.commands.ReplicableCommand;
+import org.jboss.cache.commands.remote.ReplicateCommand;
+import org.jboss.cache.commands.write.PutDataMapCommand;
+import org.jboss.cache.commands.write.PutKeyValueCommand;
+import org.jboss.cache.transaction.GlobalTransaction;
+import org.jboss.cache.util.CompactArrayMap;
+import org.jboss.cache.util.DeltaMap;
+import org.jboss.cache.util.FastCopyHashMap;
+import org.jboss.cache.util.Immutables;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the marshaller tests against the 3.1.1 wire format, and tests its dictionary of strings and classes and its
+ * compact encodings.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"functional"}, testName = "marshall.CacheMarshaller311Test")
+public class CacheMarshaller311Test extends CacheMarshaller210Test
+{
+   public CacheMarshaller311Test()
+   {
+      currentVersion = "3.1.1";
+      currentVersionShort = 311;
+      expectedMarshallerClass = CacheMarshaller311.class;
+   }
+
+   public void testRepeatedStringsWrittenOnce() throws Exception
+   {
+      List<ReplicableCommand> puts = new ArrayList<ReplicableCommand>();
+      for (int i = 0; i < 20; i++)
+      {
+         puts.add(new PutKeyValueCommand(null, Fqn.fromElements("sessions", "webapp", "session-" + (i % 4)), "attribute", "value"));
+      }
+      ReplicateCommand batch = new ReplicateCommand(puts);
+
+      byte[] bytes = marshall(marshaller311(), batch);
+      assertEquals(batch, unmarshall(marshaller311(), bytes));
+      int size300 = marshall(marshaller300(), batch).length;
+      assert bytes.length < size300 : "Expected fewer than " + size300 + " bytes but was " + bytes.length;
+   }
+
+   public void testLongStringsNotInDictionary() throws Exception
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i <= CacheMarshaller311.MAX_DICTIONARY_STRING_LENGTH; i++) sb.append('x');
+      String longString = sb.toString();
+      List<String> list = new ArrayList<String>();
+      list.add(longString);
+      list.add("short");
+      list.add(longString);
+      list.add("short");
+
+      assertEquals(list, unmarshall(marshaller311(), marshall(marshaller311(), list)));
+   }
+
+   public void testExternalizableWrittenWithoutClassDescriptor() throws Exception
+   {
+      List<Point> points = new ArrayList<Point>();
+      for (int i = 0; i < 10; i++) points.add(new Point(i, i * 2));
+
+      byte[] bytes = marshall(marshaller311(), points);
+      assertEquals(points, unmarshall(marshaller311(), bytes));
+      int size300 = marshall(marshaller300(), points).length;
+      assert bytes.length < size300 : "Expected fewer than " + size300 + " bytes but was " + bytes.length;
+   }
+
+   public void testExternalizableWithReadResolve() throws Exception
+   {
+      assert !marshaller311().isExternalizable(Singleton.class);
+      assertSame(Singleton.INSTANCE, unmarshall(marshaller311(), marshall(marshaller311(), Singleton.INSTANCE)));
+   }
+
+   public void testNonExternalizableClassNotInstantiated() throws Exception
+   {
+      byte[] bytes = marshall(marshaller311(), new Point(1, 2));
+      // a class name of the same length, so that only the class changes
+      byte[] point = Point.class.getName().getBytes("UTF-8");
+      byte[] other = Probe.class.getName().getBytes("UTF-8");
+      int at = indexOf(bytes, point);
+      System.arraycopy(other, 0, bytes, at, other.length);
+      try
+      {
+         unmarshall(marshaller311(), bytes);
+         assert false : "Should not read a class that isn't Externalizable";
+      }
+      catch (CacheException expected)
+      {
+      }
+      assert !Probe.constructed;
+   }
+
+   public void testVariableLengthNumbers() throws Exception
+   {
+      Object[] numbers = {0, 1, -1, 63, -64, 64, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE, 1 << 27, -(1 << 27) - 1,
+            0L, -1L, 12000L, System.currentTimeMillis(), Long.MAX_VALUE, Long.MIN_VALUE, 1L << 55, -(1L << 55) - 1};
+      for (Object n : numbers)
+      {
+         Object read = unmarshall(marshaller311(), marshall(marshaller311(), n));
+         assertEquals(n, read);
+         assertEquals(n.getClass(), read.getClass());
+      }
+
+      assert marshall(marshaller311(), 5).length < marshall(marshaller300(), 5).length;
+      assert marshall(marshaller311(), 5L).length < marshall(marshaller300(), 5L).length;
+      // large values never take more space than a fixed-width int or long
+      assertEquals(marshall(marshaller300(), Integer.MIN_VALUE).length, marshall(marshaller311(), Integer.MIN_VALUE).length);
+      assertEquals(marshall(marshaller300(), Long.MAX_VALUE).length, marshall(marshaller311(), Long.MAX_VALUE).length);
+   }
+
+   public void testZigZag()
+   {
+      assertEquals(0, CacheMarshaller311.zigZag(0));
+      assertEquals(1, CacheMarshaller311.zigZag(-1));
+      assertEquals(2, CacheMarshaller311.zigZag(1));
+      assertEquals(-1, CacheMarshaller311.zigZag(Integer.MIN_VALUE));
+      assertEquals(Integer.MIN_VALUE, CacheMarshaller311.unZigZag(CacheMarshaller311.zigZag(Integer.MIN_VALUE)));
+      assertEquals(Long.MAX_VALUE, CacheMarshaller311.unZigZag(CacheMarshaller311.zigZag(Long.MAX_VALUE)));
+   }
+
+   public void testCompactMaps() throws Exception
+   {
+      Map<String, String> one = new HashMap<String, String>();
+      one.put("k", "v");
+      Map<String, String> three = new HashMap<String, String>(one);
+      three.put("k2", "v2");
+      three.put("k3", "v3");
+
+      assertSame(Collections.emptyMap(), roundTrip(Collections.emptyMap()));
+      assertSame(Collections.emptyMap(), roundTrip(Immutables.immutableMapCopy(new HashMap())));
+      assertEquals(Collections.singletonMap("k", "v"), roundTrip(Collections.singletonMap("k", "v")));
+      assertEquals(one, roundTrip(Immutables.immutableMapCopy(one)));
+      Map read = (Map) roundTrip(Immutables.immutableMapCopy(three));
+      assertEquals(three, read);
+      assert Immutables.isImmutable(read);
+
+      // mutable maps are read back as the same type
+      assertEquals(HashMap.class, roundTrip(new HashMap()).getClass());
+      assertEquals(one, roundTrip(new FastCopyHashMap<String, String>(one)));
+      assertEquals(FastCopyHashMap.class, roundTrip(new FastCopyHashMap<String, String>(one)).getClass());
+
+      int size300 = marshall(marshaller300(), Collections.singletonMap("k", "v")).length;
+      assert marshall(marshaller311(), Collections.singletonMap("k", "v")).length < size300;
+   }
+
+   public void testNodeDataMaps() throws Exception
+   {
+      Map<String, String> data = new HashMap<String, String>();
+      for (int i = 0; i < 3; i++) data.put("k" + i, "v" + i);
+      DeltaMap<String, String> delta = DeltaMap.create(new FastCopyHashMap<String, String>(data));
+      delta.put("k3", "v3");
+
+      // the maps nodes keep their data in are written like a FastCopyHashMap, which older versions can read too
+      for (Marshaller m : new Marshaller[]{marshaller300(), marshaller311()})
+      {
+         Object read = unmarshall(m, marshall(m, new CompactArrayMap<String, String>(data)));
+         assertEquals(data, read);
+         assertEquals(FastCopyHashMap.class, read.getClass());
+         read = unmarshall(m, marshall(m, delta));
+         assertEquals(delta, read);
+         assertEquals(FastCopyHashMap.class, read.getClass());
+      }
+   }
+
+   public void testPutDataMapCommand() throws Exception
+   {
+      Map<String, Object> data = new HashMap<String, Object>();
+      data.put("count", 1);
+      data.put("timestamp", System.currentTimeMillis());
+      data.put("enabled", true);
+      data.put("name", "value");
+      GlobalTransaction gtx = new GlobalTransaction();
+      gtx.setId(1234);
+      ReplicateCommand command = new ReplicateCommand(new PutDataMapCommand(gtx, Fqn.fromElements("sessions", "webapp", "session-1"), data));
+
+      byte[] bytes = marshall(marshaller311(), command);
+      assertEquals(command, unmarshall(marshaller311(), bytes));
+      int size300 = marshall(marshaller300(), command).length;
+      assert bytes.length < size300 : "Expected fewer than " + size300 + " bytes but was " + bytes.length;
+   }
+
+   private Object roundTrip(Object o) throws Exception
+   {
+      return unmarshall(marshaller311(), marshall(marshaller311(), o));
+   }
+
+   private CacheMarshaller311 marshaller311()
+   {
+      return (CacheMarshaller311) threadLocal.get().marshaller.getMarshaller(311);
+   }
+
+   private CacheMarshaller300 marshaller300()
+   {
+      return (CacheMarshaller300) threadLocal.get().marshaller.getMarshaller(30);
+   }
+
+   private byte[] marshall(Marshaller m, Object o) throws Exception
+   {
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bout);
+      m.objectToObjectStream(o, out);
+      out.close();
+      return bout.toByteArray();
+   }
+
+   private static int indexOf(byte[] bytes, byte[] part)
+   {
+      for (int i = 0; i + part.length <= bytes.length; i++)
+      {
+         int j = 0;
+         while (j < part.length && bytes[i + j] == part[j]) j++;
+         if (j == part.length) return i;
+      }
+      throw new IllegalArgumentException("Not found");
+   }
+
+   private Object unmarshall(Marshaller m, byte[] bytes) throws Exception
+   {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+      try
+      {
+         return m.objectFromObjectStream(in);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   public static class Point implements Externalizable
+   {
+      int x, y;
+
+      public Point()
+      {
+      }
+
+      Point(int x, int y)
+      {
+         this.x = x;
+         this.y = y;
+      }
+
+      public void writeExternal(ObjectOutput out) throws IOException
+      {
+         out.writeInt(x);
+         out.writeInt(y);
+      }
+
+      public void readExternal(ObjectInput in) throws IOException
+      {
+         x = in.readInt();
+         y = in.readInt();
+      }
+
+      @Override
+      public boolean equals(Object o)
+      {
+         return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return 31 * x + y;
+      }
+   }
+
+   /**
+    * Not Externalizable, with a name as long as that of {@link Point}.
+    */
+   public static class Probe
+   {
+      static boolean constructed;
+
+      public Probe()
+      {
+         constructed = true;
+      }
+   }
+
+   public static class Singleton implements Externalizable
+   {
+      static final Singleton INSTANCE = new Singleton();
+
+      public void writeExternal(ObjectOutput out)
+      {
+      }
+
+      public void readExternal(ObjectInput in)
+      {
+      }
+
+      private Object readResolve() throws ObjectStreamException
+      {
+         return INSTANCE;
+      }
+   }
+}
@@ -22,7 +22,10 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Test(groups = "functional", testName = "marshall.CacheMarshallerTestBase")
 public abstract class CacheMarshallerTestBase extends AbstractVersionAwareMarshallerTest
@@ -100,7 +103,8 @@ public abstract class CacheMarshallerTestBase extends AbstractVersionAwareMarsha
       assertEquals(CacheMarshaller200.class, marshaller.getMarshaller(20).getClass());
       assertEquals(CacheMarshaller210.class, marshaller.getMarshaller(21).getClass());
 
-      assert marshaller.marshallers.size() == 3 : "Should have 3 marshallers now";
+      Set<Class> expectedClasses = new HashSet<Class>(Arrays.asList(expectedMarshallerClass, latestMarshallerClass, CacheMarshaller200.class, CacheMarshaller210.class));
+      assert marshaller.marshallers.size() == expectedClasses.size() : "Should have " + expectedClasses.size() + " marshallers now";
    }
 
    public void testStringBasedFqn() throws Exception
@@ -0,0 +1,226 @@
+package org.jboss.cache.marshall;
+
+import org.jboss.cache.CacheException;
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.ExternalizerConfig;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests serializing {@link MarshalledValue}s using registered {@link Externalizer}s.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", sequential = true, testName = "marshall.MarshalledValueSerializerTest")
+public class MarshalledValueSerializerTest
+{
+   MarshalledValueSerializer serializer;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp()
+   {
+      serializer = createSerializer(new ExternalizerConfig(1, Person.class, new PersonExternalizer()),
+                                    new ExternalizerConfig(2, Token.class, new TokenExternalizer()));
+   }
+
+   public void testExternalizedRoundTrip() throws Exception
+   {
+      Person friend = new Person("Bob", 40, null, null);
+      Person person = new Person("Alice", 30, friend, new ArrayList<String>(Arrays.asList("a", "b")));
+      byte[] raw = serializer.serialize(person);
+      assertEquals(person, serializer.deserialize(raw));
+   }
+
+   public void testExternalizedFormIsSmaller() throws Exception
+   {
+      Person person = new Person("Alice", 30, null, null);
+      int externalized = serializer.serialize(person).length;
+      int serialized = MarshalledValueSerializer.DEFAULT.serialize(person).length;
+      assert externalized * 4 < serialized : "Externalized to " + externalized + " bytes, serialized to " + serialized;
+   }
+
+   public void testJavaSerializationForOtherTypes() throws Exception
+   {
+      List<String> list = new ArrayList<String>(Arrays.asList("a", "b"));
+      byte[] raw = serializer.serialize(list);
+      // values serialized before externalizers were introduced can still be read
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(list);
+      oos.close();
+      assert Arrays.equals(baos.toByteArray(), raw);
+      assertEquals(list, serializer.deserialize(raw));
+   }
+
+   public void testBufferReused() throws Exception
+   {
+      byte[] first = serializer.serialize(new Person("Alice", 30, null, null));
+      byte[] copy = first.clone();
+      byte[] second = serializer.serialize(new Person("Bob", 40, null, null));
+      assert Arrays.equals(copy, first) : "Serializing a value must not change the bytes of earlier ones";
+      assertEquals("Bob", ((Person) serializer.deserialize(second)).name);
+   }
+
+   public void testUnknownExternalizer() throws Exception
+   {
+      byte[] raw = serializer.serialize(new Person("Alice", 30, null, null));
+      try
+      {
+         createSerializer().deserialize(raw);
+         assert false : "Should have failed";
+      }
+      catch (CacheException expected)
+      {
+      }
+   }
+
+   public void testMarshalledValue() throws Exception
+   {
+      Token token = new Token("t");
+      try
+      {
+         new MarshalledValue(token);
+         assert false : "Token is not serializable";
+      }
+      catch (NotSerializableException expected)
+      {
+      }
+
+      MarshalledValue mv = new MarshalledValue(token, serializer);
+      mv.serialize();
+      mv.compact(true, false);
+      assertNull(mv.instance);
+      assertEquals(token, mv.get());
+      assertEquals(new MarshalledValue(token, serializer), mv);
+   }
+
+   public void testCache() throws Exception
+   {
+      Configuration c = new Configuration();
+      c.setUseLazyDeserialization(true);
+      c.setExternalizers(Arrays.asList(new ExternalizerConfig(1, Person.class, new PersonExternalizer())));
+      CacheSPI<Object, Object> cache = (CacheSPI<Object, Object>) new UnitTestCacheFactory<Object, Object>().createCache(c, getClass());
+      try
+      {
+         Person person = new Person("Alice", 30, null, null);
+         cache.put(Fqn.fromString("/a"), "k", person);
+         Object stored = cache.peek(Fqn.fromString("/a"), false).getDirect("k");
+         assert stored instanceof MarshalledValue;
+         ((MarshalledValue) stored).compact(true, true);
+         assertEquals(person, cache.get(Fqn.fromString("/a"), "k"));
+      }
+      finally
+      {
+         TestingUtil.killCaches(cache);
+      }
+   }
+
+   private MarshalledValueSerializer createSerializer(ExternalizerConfig... externalizers)
+   {
+      Configuration c = new Configuration();
+      c.setExternalizers(Arrays.asList(externalizers));
+      MarshalledValueSerializer serializer = new MarshalledValueSerializer();
+      serializer.injectDependencies(c);
+      serializer.start();
+      return serializer;
+   }
+
+   public static class Person implements Serializable
+   {
+      final String name;
+      final int age;
+      final Person friend;
+      final List<String> tags;
+
+      Person(String name, int age, Person friend, List<String> tags)
+      {
+         this.name = name;
+         this.age = age;
+         this.friend = friend;
+         this.tags = tags;
+      }
+
+      public boolean equals(Object o)
+      {
+         if (!(o instanceof Person)) return false;
+         Person p = (Person) o;
+         return name.equals(p.name) && age == p.age && (friend == null ? p.friend == null : friend.equals(p.friend))
+               && (tags == null ? p.tags == null : tags.equals(p.tags));
+      }
+
+      public int hashCode()
+      {
+         return name.hashCode() * 31 + age;
+      }
+   }
+
+   /**
+    * Not serializable
+    */
+   public static class Token
+   {
+      final String value;
+
+      Token(String value)
+      {
+         this.value = value;
+      }
+
+      public boolean equals(Object o)
+      {
+         return o instanceof Token && value.equals(((Token) o).value);
+      }
+
+      public int hashCode()
+      {
+         return value.hashCode();
+      }
+   }
+
+   public static class TokenExternalizer implements Externalizer<Token>
+   {
+      public void writeObject(ObjectOutput output, Token token) throws IOException
+      {
+         output.writeUTF(token.value);
+      }
+
+      public Token readObject(ObjectInput input) throws IOException
+      {
+         return new Token(input.readUTF());
+      }
+   }
+
+   public static class PersonExternalizer implements Externalizer<Person>
+   {
+      public void writeObject(ObjectOutput output, Person person) throws IOException
+      {
+         output.writeUTF(person.name);
+         output.writeInt(person.age);
+         output.writeObject(person.friend);
+         output.writeObject(person.tags);
+      }
+
+      @SuppressWarnings("unchecked")
+      public Person readObject(ObjectInput input) throws IOException, ClassNotFoundException
+      {
+         return new Person(input.readUTF(), input.readInt(), (Person) input.readObject(), (List<String>) input.readObject());
+      }
+   }
+}
@@ -6,10 +6,12 @@
  */
 package org.jboss.cache.marshall;
 
+import org.jboss.cache.Fqn;
 import org.jboss.cache.Version;
 import org.jboss.cache.config.Configuration;
 import org.jboss.cache.factories.ComponentRegistry;
 import org.jboss.cache.invocation.CacheInvocationDelegate;
+import org.jboss.cache.transaction.GlobalTransaction;
 import org.jboss.util.stream.MarshalledValueInputStream;
 import static org.testng.AssertJUnit.assertEquals;
 import org.testng.annotations.AfterMethod;
@@ -18,6 +20,10 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Tests the enhanced treecache marshaller
@@ -41,7 +47,19 @@ public class VersionAwareMarshallerTest extends AbstractVersionAwareMarshallerTe
 
    public void testMarshallerSelection()
    {
-      VersionAwareMarshaller marshaller = createVAMandRestartCache("2.2.0.GA");
+      VersionAwareMarshaller marshaller = createVAMandRestartCache("3.1.1");
+      assertEquals(CacheMarshaller311.class, marshaller.defaultMarshaller.getClass());
+
+      marshaller = createVAMandRestartCache("3.1.0.GA");
+      assertEquals(CacheMarshaller300.class, marshaller.defaultMarshaller.getClass());
+
+      marshaller = createVAMandRestartCache("3.2.0.GA");
+      assertEquals(CacheMarshaller300.class, marshaller.defaultMarshaller.getClass());
+
+      marshaller = createVAMandRestartCache("3.0.0.GA");
+      assertEquals(CacheMarshaller300.class, marshaller.defaultMarshaller.getClass());
+
+      marshaller = createVAMandRestartCache("2.2.0.GA");
       assertEquals(CacheMarshaller210.class, marshaller.defaultMarshaller.getClass());
 
       marshaller = createVAMandRestartCache("2.1.0.GA");
@@ -81,6 +99,34 @@ public class VersionAwareMarshallerTest extends AbstractVersionAwareMarshallerTe
       assertEquals("Version header short should be '30'", 31, in.readShort());
    }
 
+   public void testVersionHeader311() throws Exception
+   {
+      VersionAwareMarshaller marshaller = createVAMandRestartCache("3.1.1");
+
+      byte[] bytes = marshaller.objectToByteBuffer("Hello");
+      ObjectInputStream in = new MarshalledValueInputStream(new ByteArrayInputStream(bytes));
+      assertEquals("Version header short should be '311'", 311, in.readShort());
+      assertEquals("Hello", marshaller.objectFromByteBuffer(bytes));
+   }
+
+   public void testReleasedFormatUnchanged() throws Exception
+   {
+      // released 3.1.0.GA peers read id 31 with CacheMarshaller300, so the compact encodings must not be written for it
+      List<Object> values = new ArrayList<Object>(Arrays.asList(5, 5L, true, Collections.emptyMap(), Collections.singletonMap("k", "v"),
+            Fqn.fromString("/a/b"), new GlobalTransaction()));
+      byte[] bytes300 = createVAMandRestartCache("3.0.0.GA").objectToByteBuffer(values);
+      byte[] bytes310 = createVAMandRestartCache("3.1.0.GA").objectToByteBuffer(values);
+
+      assertEquals(bytes300.length, bytes310.length);
+      int differences = 0;
+      for (int i = 0; i < bytes300.length; i++)
+      {
+         if (bytes300[i] != bytes310[i]) differences++;
+      }
+      assertEquals("Only the version header should differ", 1, differences);
+      assert createVAMandRestartCache("3.1.1").objectToByteBuffer(values).length < bytes310.length;
+   }
+
    public void testVersionHeader210() throws Exception
    {
       VersionAwareMarshaller marshaller = createVAMandRestartCache("2.1.0.GA");
@@ -160,6 +160,26 @@ public class MgmtCoreTest
       assertEquals("Misses count error after reset: ", new Long(0), new Long(mgmt.getMisses()));
    }
 
+   public void testLatencyPercentiles() throws Exception
+   {
+      loadCacheData();
+      CacheMgmtInterceptor mgmt = getCacheMgmtInterceptor();
+      for (int i = 0; i < 100; i++) cache.get("Europe/Austria", CAPITAL);
+      cache.evict(Fqn.fromString("Europe/Poland"));
+
+      assert mgmt.getReadLatencyP50() > 0;
+      assert mgmt.getReadLatencyP50() <= mgmt.getReadLatencyP99();
+      assert mgmt.getReadLatencyP99() <= mgmt.getReadLatencyP999();
+      assert mgmt.getPutLatencyP99() > 0;
+      assert mgmt.getPutMapLatencyP99() > 0;
+      assert mgmt.getEvictionLatencyP99() > 0;
+      assertEquals(mgmt.getReadLatencyP99(), mgmt.dumpStatistics().get("ReadLatencyP99"));
+
+      mgmt.resetStatistics();
+      assertEquals(0, mgmt.getReadLatencyP50());
+      assertEquals(0, mgmt.getPutLatencyP999());
+   }
+
    private void loadCacheData()
    {
       cache.put("Europe", new HashMap());
@@ -0,0 +1,111 @@
+package org.jboss.cache.mvcc;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import org.jboss.cache.lock.IsolationLevel;
+import org.jboss.cache.transaction.DummyTransactionManagerLookup;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests updates of nodes large enough for their MVCC copies to overlay the data of the node copied.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", sequential = true, testName = "mvcc.LargeNodeUpdateTest")
+public class LargeNodeUpdateTest
+{
+   private static final Fqn FQN = Fqn.fromString("/large");
+   private static final int SIZE = 100;
+
+   private CacheSPI<String, Integer> cache;
+   private TransactionManager tm;
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      TestingUtil.killCaches(cache);
+      cache = null;
+   }
+
+   public void testReadCommitted() throws Exception
+   {
+      doTest(IsolationLevel.READ_COMMITTED);
+   }
+
+   public void testRepeatableRead() throws Exception
+   {
+      doTest(IsolationLevel.REPEATABLE_READ);
+   }
+
+   public void testManySuccessiveUpdates() throws Exception
+   {
+      startCache(IsolationLevel.READ_COMMITTED);
+      Map<String, Integer> expected = new HashMap<String, Integer>(cache.getData(FQN));
+      for (int i = 0; i < SIZE * 3; i++)
+      {
+         String key = "k" + (i * 7 % (SIZE + 20));
+         if (i % 5 == 0)
+         {
+            cache.remove(FQN, key);
+            expected.remove(key);
+         }
+         else
+         {
+            cache.put(FQN, key, -i);
+            expected.put(key, -i);
+         }
+      }
+      assertEquals(expected, cache.getData(FQN));
+   }
+
+   private void doTest(IsolationLevel isolationLevel) throws Exception
+   {
+      startCache(isolationLevel);
+
+      tm.begin();
+      cache.put(FQN, "k0", -1);
+      cache.remove(FQN, "k1");
+      assertEquals(SIZE - 1, cache.getData(FQN).size());
+      Transaction tx = tm.suspend();
+      assertEquals(0, (int) cache.get(FQN, "k0"));
+      assertEquals(1, (int) cache.get(FQN, "k1"));
+      tm.resume(tx);
+      tm.rollback();
+      assertEquals(0, (int) cache.get(FQN, "k0"));
+      assertEquals(SIZE, cache.getData(FQN).size());
+
+      tm.begin();
+      cache.put(FQN, "k0", -1);
+      cache.remove(FQN, "k1");
+      tm.commit();
+      assertEquals(-1, (int) cache.get(FQN, "k0"));
+      assertNull(cache.get(FQN, "k1"));
+      assertEquals(SIZE - 1, cache.getData(FQN).size());
+   }
+
+   @SuppressWarnings("unchecked")
+   private void startCache(IsolationLevel isolationLevel)
+   {
+      Configuration c = new Configuration();
+      c.setNodeLockingScheme(NodeLockingScheme.MVCC);
+      c.setIsolationLevel(isolationLevel);
+      c.setTransactionManagerLookupClass(DummyTransactionManagerLookup.class.getName());
+      cache = (CacheSPI<String, Integer>) new UnitTestCacheFactory<String, Integer>().createCache(c, getClass());
+      tm = cache.getTransactionManager();
+      Map<String, Integer> data = new HashMap<String, Integer>();
+      for (int i = 0; i < SIZE; i++) data.put("k" + i, i);
+      cache.put(FQN, data);
+   }
+}
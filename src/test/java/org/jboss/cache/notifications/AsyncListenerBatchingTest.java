@@ -0,0 +1,207 @@
+package org.jboss.cache.notifications;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.Configuration.ListenerAsyncOverflowPolicy;
+import org.jboss.cache.notifications.annotation.CacheListener;
+import org.jboss.cache.notifications.annotation.NodeModified;
+import org.jboss.cache.notifications.event.NodeModifiedEvent;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests batched delivery of events to asynchronous listeners, and the overflow policies of their queues.
+ *
+ * @since 3.1
+ */
+@Test(groups = "functional", sequential = true, testName = "notifications.AsyncListenerBatchingTest")
+public class AsyncListenerBatchingTest
+{
+   private CacheSPI<Object, Object> cache;
+   private NotifierImpl notifier;
+   private BlockingListener listener;
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      if (listener != null) listener.release.countDown();
+      TestingUtil.killCaches(cache);
+      cache = null;
+   }
+
+   public void testEventsDeliveredInOrderInBatches() throws Exception
+   {
+      startCache(1000, ListenerAsyncOverflowPolicy.BLOCK);
+      modify("/first");
+      listener.awaitEntered();
+      for (int i = 0; i < 100; i++) modify("/" + (i % 7) + "/" + i);
+      listener.release.countDown();
+
+      List<String> expected = new ArrayList<String>();
+      expected.add("/first");
+      for (int i = 0; i < 100; i++) expected.add("/" + (i % 7) + "/" + i);
+      listener.awaitEvents(expected.size());
+      assertEquals(expected, listener.received());
+      assertEquals(101, notifier.getAsyncEventsDelivered());
+      assertEquals("The first event, then everything queued while it was delivered", 2, notifier.getAsyncBatchesDelivered());
+      assertEquals(0, notifier.getAsyncQueueDepth());
+   }
+
+   public void testDropOldest() throws Exception
+   {
+      startCache(3, ListenerAsyncOverflowPolicy.DROP_OLDEST);
+      modify("/first");
+      listener.awaitEntered();
+      for (int i = 0; i < 5; i++) modify("/" + i);
+      assertEquals(3, notifier.getAsyncQueueDepth());
+      assertEquals(2, notifier.getAsyncEventsDropped());
+      assertTrue(notifier.getAsyncLag() >= 0);
+      listener.release.countDown();
+
+      listener.awaitEvents(4);
+      assertEquals(Arrays.asList("/first", "/2", "/3", "/4"), listener.received());
+   }
+
+   public void testCoalesce() throws Exception
+   {
+      startCache(3, ListenerAsyncOverflowPolicy.COALESCE);
+      modify("/first");
+      listener.awaitEntered();
+      modify("/a", "1");
+      modify("/b", "1");
+      modify("/c", "1");
+      modify("/a", "2");
+      assertEquals(1, notifier.getAsyncEventsCoalesced());
+      listener.release.countDown();
+
+      listener.awaitEvents(4);
+      assertEquals(Arrays.asList("/first", "/b", "/c", "/a"), listener.received());
+      assertEquals("2", listener.values.get(3));
+   }
+
+   public void testBlock() throws Exception
+   {
+      startCache(2, ListenerAsyncOverflowPolicy.BLOCK);
+      modify("/first");
+      listener.awaitEntered();
+      modify("/a");
+      modify("/b");
+
+      final CountDownLatch modified = new CountDownLatch(1);
+      Thread writer = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            modify("/c");
+            modified.countDown();
+         }
+      };
+      writer.start();
+      assert !modified.await(200, TimeUnit.MILLISECONDS) : "Should wait for room in the queue";
+
+      listener.release.countDown();
+      assert modified.await(10, TimeUnit.SECONDS);
+      listener.awaitEvents(4);
+      assertEquals(Arrays.asList("/first", "/a", "/b", "/c"), listener.received());
+      assertEquals(0, notifier.getAsyncEventsDropped());
+   }
+
+   public void testReAddedListenerWaitsForOldQueue() throws Exception
+   {
+      startCache(1000, ListenerAsyncOverflowPolicy.BLOCK, 2);
+      modify("/first");
+      listener.awaitEntered();
+      modify("/a");
+      cache.removeCacheListener(listener);
+      cache.addCacheListener(listener);
+      modify("/b");
+      Thread.sleep(200);
+      assertEquals("Events for the re-added listener wait for those queued before it was removed",
+            Collections.singletonList("/first"), listener.received());
+      listener.release.countDown();
+
+      listener.awaitEvents(3);
+      assertEquals(Arrays.asList("/first", "/a", "/b"), listener.received());
+      assertEquals(0, notifier.getAsyncQueueDepth());
+   }
+
+   private void startCache(int queueSize, ListenerAsyncOverflowPolicy policy)
+   {
+      startCache(queueSize, policy, 1);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void startCache(int queueSize, ListenerAsyncOverflowPolicy policy, int poolSize)
+   {
+      Configuration c = new Configuration();
+      c.setCacheMode(Configuration.CacheMode.LOCAL);
+      c.setListenerAsyncPoolSize(poolSize);
+      c.setListenerAsyncQueueSize(queueSize);
+      c.setListenerAsyncBatching(true);
+      c.setListenerAsyncOverflowPolicy(policy);
+      cache = (CacheSPI<Object, Object>) new UnitTestCacheFactory<Object, Object>().createCache(c, getClass());
+      notifier = (NotifierImpl) cache.getNotifier();
+      listener = new BlockingListener();
+      cache.addCacheListener(listener);
+   }
+
+   private void modify(String fqn)
+   {
+      modify(fqn, "v");
+   }
+
+   private void modify(String fqn, String value)
+   {
+      notifier.notifyNodeModified(Fqn.fromString(fqn), false, NodeModifiedEvent.ModificationType.PUT_DATA,
+            Collections.singletonMap("k", value), cache.getInvocationContext());
+   }
+
+   /**
+    * Records the nodes it is notified about, and holds up the first notification until released.
+    */
+   @CacheListener(sync = false)
+   public static class BlockingListener
+   {
+      final CountDownLatch entered = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final List<String> fqns = Collections.synchronizedList(new ArrayList<String>());
+      final List<Object> values = Collections.synchronizedList(new ArrayList<Object>());
+
+      @NodeModified
+      public void nodeModified(NodeModifiedEvent e) throws InterruptedException
+      {
+         fqns.add(e.getFqn().toString());
+         values.add(e.getData().get("k"));
+         entered.countDown();
+         release.await();
+      }
+
+      void awaitEntered() throws InterruptedException
+      {
+         assert entered.await(10, TimeUnit.SECONDS) : "Listener was not notified";
+      }
+
+      void awaitEvents(int count) throws InterruptedException
+      {
+         for (int i = 0; i < 1000 && fqns.size() < count; i++) Thread.sleep(10);
+      }
+
+      List<String> received()
+      {
+         return new ArrayList<String>(fqns);
+      }
+   }
+}
@@ -0,0 +1,199 @@
+package org.jboss.cache.notifications;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.InvocationContext;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.notifications.annotation.CacheListener;
+import org.jboss.cache.notifications.annotation.NodeCreated;
+import org.jboss.cache.notifications.annotation.NodeVisited;
+import org.jboss.cache.notifications.event.Event;
+import org.jboss.cache.notifications.event.EventImpl;
+import org.jboss.cache.notifications.event.NodeEvent;
+import org.jboss.cache.util.TestingUtil;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests when {@link NotifierImpl} reuses event instances across notifications.
+ *
+ * @since 3.1
+ */
+@Test(groups = "unit", sequential = true, testName = "notifications.NotifierEventReuseTest")
+public class NotifierEventReuseTest
+{
+   private CacheSPI<Object, Object> cache;
+   private Notifier notifier;
+   private InvocationContext ctx;
+   private Fqn a = Fqn.fromString("/a");
+   private Fqn b = Fqn.fromString("/b");
+
+   @BeforeMethod
+   @SuppressWarnings("unchecked")
+   public void setUp()
+   {
+      Configuration c = new Configuration();
+      c.setCacheMode(Configuration.CacheMode.LOCAL);
+      // async listeners are called back in the caller's thread, so that they can be checked synchronously
+      c.setListenerAsyncPoolSize(0);
+      cache = (CacheSPI<Object, Object>) new UnitTestCacheFactory<Object, Object>().createCache(c, getClass());
+      notifier = cache.getNotifier();
+      ctx = cache.getInvocationContext();
+   }
+
+   @AfterMethod
+   public void tearDown()
+   {
+      TestingUtil.killCaches(cache);
+      cache = null;
+   }
+
+   public void testEventsReused()
+   {
+      ReusingListener listener = new ReusingListener();
+      notifier.addCacheListener(listener);
+      notifier.notifyNodeVisited(a, true, ctx);
+      notifier.notifyNodeVisited(b, false, ctx);
+
+      assertEquals(2, listener.events.size());
+      assertSame(listener.events.get(0), listener.events.get(1));
+      assertEquals("/a true", listener.seen.get(0));
+      assertEquals("/b false", listener.seen.get(1));
+      // a reused event is cleared once listeners have seen it
+      assertEquals(null, ((NodeEvent) listener.events.get(0)).getFqn());
+   }
+
+   public void testEventsNotReusedByDefault()
+   {
+      EventLog log = new EventLog();
+      notifier.addCacheListener(log);
+      notifier.notifyNodeVisited(a, true, ctx);
+      notifier.notifyNodeVisited(b, false, ctx);
+
+      assertEquals(2, log.events.size());
+      assertNotSame(log.events.get(0), log.events.get(1));
+      assertEquals(a, ((NodeEvent) log.events.get(0)).getFqn());
+   }
+
+   public void testOneRetainingListenerPreventsReuse()
+   {
+      ReusingListener listener = new ReusingListener();
+      EventLog log = new EventLog();
+      notifier.addCacheListener(listener);
+      notifier.addCacheListener(log);
+      notifier.notifyNodeVisited(a, true, ctx);
+      notifier.notifyNodeVisited(b, false, ctx);
+      assertNotSame(listener.events.get(0), listener.events.get(1));
+
+      notifier.removeCacheListener(log);
+      notifier.notifyNodeVisited(a, true, ctx);
+      notifier.notifyNodeVisited(b, false, ctx);
+      assertSame(listener.events.get(2), listener.events.get(3));
+   }
+
+   public void testListenerAddedAfterAcquiringNeverSeesReusedEvent() throws Exception
+   {
+      ReusingListener listener = new ReusingListener();
+      notifier.addCacheListener(listener);
+      Object listeners = TestingUtil.extractField(notifier, "nodeVisitedListeners");
+      Method acquireEvent = NotifierImpl.class.getDeclaredMethod("acquireEvent", NotifierImpl.ListenerList.class);
+      Method invokeListeners = NotifierImpl.class.getDeclaredMethod("invokeListeners", NotifierImpl.ListenerList.class, EventImpl.class);
+      acquireEvent.setAccessible(true);
+      invokeListeners.setAccessible(true);
+
+      // a listener retaining events is registered between the pooled event being acquired and passed to listeners
+      EventImpl e = (EventImpl) acquireEvent.invoke(notifier, listeners);
+      e.setFqn(a);
+      e.setType(Event.Type.NODE_VISITED);
+      EventLog log = new EventLog();
+      notifier.addCacheListener(log);
+      invokeListeners.invoke(notifier, listeners, e);
+      notifier.notifyNodeVisited(b, false, ctx);
+
+      for (Event seen : log.events) assertTrue(seen != e);
+      assertEquals(b, ((NodeEvent) log.events.get(log.events.size() - 1)).getFqn());
+   }
+
+   public void testAsyncListenersNeverReuseEvents()
+   {
+      AsyncReusingListener listener = new AsyncReusingListener();
+      notifier.addCacheListener(listener);
+      notifier.notifyNodeVisited(a, true, ctx);
+      notifier.notifyNodeVisited(b, false, ctx);
+
+      assertNotSame(listener.events.get(0), listener.events.get(1));
+   }
+
+   public void testNestedNotificationsUseAnotherEvent()
+   {
+      NestingListener listener = new NestingListener();
+      notifier.addCacheListener(listener);
+      notifier.notifyNodeVisited(a, true, ctx);
+
+      assertEquals(1, listener.created.size());
+      assertNotSame(listener.visited, listener.created.get(0));
+      assertEquals("/a", listener.visitedFqnAfterNesting);
+      assertTrue(listener.visitedEventStillPre);
+   }
+
+   @CacheListener(reuseEvents = true)
+   public static class ReusingListener
+   {
+      List<Event> events = new ArrayList<Event>();
+      List<String> seen = new ArrayList<String>();
+
+      @NodeVisited
+      public void nodeVisited(Event e)
+      {
+         NodeEvent ne = (NodeEvent) e;
+         events.add(e);
+         seen.add(ne.getFqn() + " " + ne.isPre());
+      }
+   }
+
+   @CacheListener(sync = false, reuseEvents = true)
+   public static class AsyncReusingListener
+   {
+      List<Event> events = new ArrayList<Event>();
+
+      @NodeVisited
+      public void nodeVisited(Event e)
+      {
+         events.add(e);
+      }
+   }
+
+   @CacheListener(reuseEvents = true)
+   public class NestingListener
+   {
+      Event visited;
+      List<Event> created = new ArrayList<Event>();
+      String visitedFqnAfterNesting;
+      boolean visitedEventStillPre;
+
+      @NodeVisited
+      public void nodeVisited(Event e)
+      {
+         visited = e;
+         notifier.notifyNodeCreated(b, false, ctx);
+         visitedFqnAfterNesting = ((NodeEvent) e).getFqn().toString();
+         visitedEventStillPre = e.isPre();
+      }
+
+      @NodeCreated
+      public void nodeCreated(Event e)
+      {
+         created.add(e);
+      }
+   }
+}
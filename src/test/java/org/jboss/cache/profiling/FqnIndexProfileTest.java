@@ -0,0 +1,76 @@
+package org.jboss.cache.profiling;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.DataContainer;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.config.Configuration.NodeLockingScheme;
+import org.jboss.cache.util.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares read latency of {@link org.jboss.cache.DataContainer#peekInternalNode(org.jboss.cache.Fqn, boolean)} with
+ * and without the Fqn index, for trees of varying depth.
+ * <p/>
+ * Important - make sure you only enable these tests locally!
+ *
+ * @see org.jboss.cache.config.Configuration#isUseFqnIndex()
+ */
+@Test(groups = "profiling", testName = "profiling.FqnIndexProfileTest", enabled = false)
+public class FqnIndexProfileTest
+{
+   // adjust these values
+   int[] depths = {1, 3, 5, 7};
+   int numNodes = 10000;
+   int warmupLoops = 200000;
+   int numLoops = 2000000;
+
+   Random r = new Random();
+
+   public void testLookupLatency()
+   {
+      for (int depth : depths)
+      {
+         long walk = timeLookups(depth, false);
+         long indexed = timeLookups(depth, true);
+         System.out.println("Depth " + depth + ": tree walk " + walk / numLoops + " ns/lookup, Fqn index " + indexed / numLoops + " ns/lookup");
+      }
+   }
+
+   private long timeLookups(int depth, boolean useFqnIndex)
+   {
+      Configuration cfg = new Configuration();
+      cfg.setNodeLockingScheme(NodeLockingScheme.MVCC);
+      cfg.setUseFqnIndex(useFqnIndex);
+      CacheSPI<String, String> cache = (CacheSPI<String, String>) new UnitTestCacheFactory<String, String>().createCache(cfg, getClass());
+      try
+      {
+         List<Fqn> fqns = new ArrayList<Fqn>(numNodes);
+         for (int i = 0; i < numNodes; i++)
+         {
+            Object[] elements = new Object[depth];
+            for (int j = 0; j < depth - 1; j++) elements[j] = "level" + j + "_" + r.nextInt(10);
+            elements[depth - 1] = "node" + i;
+            Fqn fqn = Fqn.fromElements(elements);
+            cache.put(fqn, "k", "v");
+            fqns.add(fqn);
+         }
+
+         DataContainer dc = TestingUtil.extractComponentRegistry(cache).getComponent(DataContainer.class);
+         for (int i = 0; i < warmupLoops; i++) dc.peekInternalNode(fqns.get(i % numNodes), false);
+
+         long start = System.nanoTime();
+         for (int i = 0; i < numLoops; i++) dc.peekInternalNode(fqns.get(i % numNodes), false);
+         return System.nanoTime() - start;
+      }
+      finally
+      {
+         TestingUtil.killCaches(cache);
+      }
+   }
+}
@@ -0,0 +1,109 @@
+package org.jboss.cache.profiling;
+
+import org.jboss.cache.Fqn;
+import org.jboss.cache.commands.remote.ReplicateCommand;
+import org.jboss.cache.commands.write.PutDataMapCommand;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.factories.ComponentRegistry;
+import org.jboss.cache.invocation.CacheInvocationDelegate;
+import org.jboss.cache.marshall.AbstractVersionAwareMarshallerTest;
+import org.jboss.cache.marshall.VersionAwareMarshaller;
+import org.jboss.cache.transaction.GlobalTransaction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prints the number of bytes, and time taken, to marshall a replicated {@link PutDataMapCommand} with each wire format.
+ * <p/>
+ * Importnat - make sure you inly enable these tests locally!
+ */
+@Test(groups = "profiling", testName = "profiling.MarshalledSizeTest", enabled = false)
+public class MarshalledSizeTest extends AbstractVersionAwareMarshallerTest
+{
+   static final String[] VERSIONS = {"2.0.0.GA", "2.1.0.GA", "3.0.0.GA", "3.1.0.GA", "3.1.1"};
+   static final int[] MAP_SIZES = {0, 1, 4, 16};
+   static final int LOOPS = 100000;
+
+   @BeforeMethod
+   public void setUp()
+   {
+      cr = new ComponentRegistry(new Configuration(), new CacheInvocationDelegate());
+   }
+
+   public void testPutDataMapCommand() throws Exception
+   {
+      System.out.println("Bytes per replicated PutDataMapCommand, by number of attributes: " + toString(MAP_SIZES));
+      for (String version : VERSIONS)
+      {
+         VersionAwareMarshaller marshaller = createVAMandRestartCache(version);
+         int[] sizes = new int[MAP_SIZES.length];
+         for (int i = 0; i < MAP_SIZES.length; i++)
+         {
+            sizes[i] = marshaller.objectToBuffer(command(MAP_SIZES[i], false)).getLength();
+         }
+         System.out.println(version + ": " + toString(sizes));
+      }
+
+      System.out.println("Bytes per transactional PutDataMapCommand");
+      for (String version : VERSIONS)
+      {
+         VersionAwareMarshaller marshaller = createVAMandRestartCache(version);
+         System.out.println(version + ": " + marshaller.objectToBuffer(command(4, true)).getLength());
+      }
+   }
+
+   public void testMarshallingTime() throws Exception
+   {
+      ReplicateCommand command = command(4, false);
+      for (String version : VERSIONS)
+      {
+         VersionAwareMarshaller marshaller = createVAMandRestartCache(version);
+         // warm up
+         for (int i = 0; i < LOOPS; i++) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(command));
+
+         long start = System.nanoTime();
+         for (int i = 0; i < LOOPS; i++) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(command));
+         long nanos = System.nanoTime() - start;
+         System.out.println(version + ": " + (nanos / LOOPS) + " ns per round trip");
+      }
+   }
+
+   private ReplicateCommand command(int attributes, boolean transactional)
+   {
+      Map<Object, Object> data = new HashMap<Object, Object>();
+      for (int i = 0; i < attributes; i++)
+      {
+         switch (i % 4)
+         {
+            case 0:
+               data.put("count-" + i, i);
+               break;
+            case 1:
+               data.put("timestamp-" + i, 1240000000000L + i);
+               break;
+            case 2:
+               data.put("enabled-" + i, Boolean.TRUE);
+               break;
+            default:
+               data.put("name-" + i, "value-" + i);
+         }
+      }
+      GlobalTransaction gtx = null;
+      if (transactional)
+      {
+         gtx = new GlobalTransaction();
+         gtx.setId(1234);
+      }
+      return new ReplicateCommand(new PutDataMapCommand(gtx, Fqn.fromElements("sessions", "webapp", "session-1"), data));
+   }
+
+   private String toString(int[] values)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int v : values) sb.append(sb.length() == 0 ? "" : ", ").append(v);
+      return sb.toString();
+   }
+}
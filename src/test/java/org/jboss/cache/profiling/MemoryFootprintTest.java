@@ -16,6 +16,8 @@ import java.io.IOException;
 public class MemoryFootprintTest
 {
    int numFqns = 100000;
+   // typical nodes hold a few attributes, which are kept in a CompactArrayMap
+   int numAttributes = 4;
 
    public void testLocal() throws IOException
    {
@@ -27,10 +29,13 @@ public class MemoryFootprintTest
 
       for (int i = 100000; i < 100000 + numFqns; i++)
       {
-         String key = "keyX" + i;
-         String value = "valX" + i;
          Fqn fqn = Fqn.fromElements(i);
-         c.put(fqn, key, value);
+         for (int j = 0; j < numAttributes; j++)
+         {
+            String key = "keyX" + i + "_" + j;
+            String value = "valX" + i + "_" + j;
+            c.put(fqn, key, value);
+         }
       }
 
       System.out.println("Hit enter when done");
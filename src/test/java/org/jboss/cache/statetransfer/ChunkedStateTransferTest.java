@@ -0,0 +1,161 @@
+package org.jboss.cache.statetransfer;
+
+import org.jboss.cache.CacheSPI;
+import org.jboss.cache.Fqn;
+import org.jboss.cache.UnitTestCacheFactory;
+import org.jboss.cache.Version;
+import org.jboss.cache.config.Configuration;
+import org.jboss.cache.util.TestingUtil;
+import org.jboss.util.stream.MarshalledValueInputStream;
+import org.jboss.util.stream.MarshalledValueOutputStream;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Tests writing in-memory state in chunks, and the progress reported while doing so, without a cluster.
+ *
+ * @since 3.1
+ */
+@Test(groups = {"functional"}, sequential = true, testName = "statetransfer.ChunkedStateTransferTest")
+public class ChunkedStateTransferTest
+{
+   private static final int NODES = 25;
+
+   CacheSPI<Object, Object> provider, recipient;
+
+   @BeforeMethod(alwaysRun = true)
+   public void setUp()
+   {
+      provider = createCache();
+      recipient = createCache();
+      for (int i = 0; i < NODES; i++) provider.put(Fqn.fromString("/a/" + (i % 5) + "/" + i), "k", i);
+      recipient.put(Fqn.fromString("/stale"), "k", "v");
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown()
+   {
+      TestingUtil.killCaches(provider, recipient);
+      provider = null;
+      recipient = null;
+   }
+
+   public void testChunkedState() throws Exception
+   {
+      provider.getConfiguration().setStateRetrievalChunkSize(4);
+      transferState();
+      assertStateTransferred();
+      // root, /a, 5 parents and their children
+      assertProgress(provider, 1 + 1 + 5 + NODES);
+      assertProgress(recipient, 1 + 1 + 5 + NODES);
+   }
+
+   public void testChunkLargerThanState() throws Exception
+   {
+      provider.getConfiguration().setStateRetrievalChunkSize(1000);
+      transferState();
+      assertStateTransferred();
+   }
+
+   public void testSingleList() throws Exception
+   {
+      provider.getConfiguration().setStateRetrievalChunkSize(0);
+      transferState();
+      assertStateTransferred();
+      assertProgress(recipient, 1 + 1 + 5 + NODES);
+   }
+
+   public void testEmptyState() throws Exception
+   {
+      provider.getConfiguration().setStateRetrievalChunkSize(4);
+      provider.removeNode(Fqn.fromString("/a"));
+      transferState();
+      assertNull(recipient.getNode(Fqn.fromString("/stale")));
+      assertFalse(recipient.getRoot().hasChild("a"));
+   }
+
+   public void testSingleListByDefault() throws Exception
+   {
+      assertEquals(0, provider.getConfiguration().getStateRetrievalChunkSize());
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new MarshalledValueOutputStream(bytes);
+      TestingUtil.extractComponentRegistry(provider).getComponent(StateTransferManager.class).getState(out, Fqn.ROOT, 10000, false, false);
+      out.close();
+
+      // released versions, 3.1.0.GA included, read any state stream as a single list whatever its version
+      ObjectInputStream in = new MarshalledValueInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      assertEquals(true, provider.getMarshaller().objectFromObjectStream(in));
+      assertEquals(DefaultStateTransferGenerator.STATE_TRANSFER_VERSION, provider.getMarshaller().objectFromObjectStream(in));
+      assert DefaultStateTransferGenerator.CHUNKED_STATE_TRANSFER_VERSION != Version.getVersionShort("3.1.0.GA");
+   }
+
+   private void transferState() throws Exception
+   {
+      StateTransferManager providerManager = TestingUtil.extractComponentRegistry(provider).getComponent(StateTransferManager.class);
+      StateTransferManager recipientManager = TestingUtil.extractComponentRegistry(recipient).getComponent(StateTransferManager.class);
+      StateTransferProgress providerProgress = progressOf(provider);
+      StateTransferProgress recipientProgress = progressOf(recipient);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new MarshalledValueOutputStream(providerProgress.providing(bytes));
+      try
+      {
+         providerManager.getState(out, Fqn.ROOT, 10000, false, false);
+      }
+      finally
+      {
+         out.close();
+         providerProgress.finished();
+      }
+
+      ObjectInputStream in = new MarshalledValueInputStream(recipientProgress.receiving(new ByteArrayInputStream(bytes.toByteArray())));
+      try
+      {
+         recipientManager.setState(in, Fqn.ROOT);
+      }
+      finally
+      {
+         in.close();
+         recipientProgress.finished();
+      }
+   }
+
+   private void assertStateTransferred()
+   {
+      assertNull(recipient.getNode(Fqn.fromString("/stale")));
+      for (int i = 0; i < NODES; i++)
+         assertEquals(i, recipient.get(Fqn.fromString("/a/" + (i % 5) + "/" + i), "k"));
+   }
+
+   private void assertProgress(CacheSPI<Object, Object> cache, long nodes)
+   {
+      StateTransferProgress progress = progressOf(cache);
+      assertFalse(progress.isInProgress());
+      assertEquals(nodes, progress.getExpectedNodes());
+      assertEquals(nodes, progress.getNodesTransferred());
+      assert progress.getBytesTransferred() > 0;
+   }
+
+   private StateTransferProgress progressOf(CacheSPI<Object, Object> cache)
+   {
+      return TestingUtil.extractComponentRegistry(cache).getComponent(StateTransferProgress.class);
+   }
+
+   @SuppressWarnings("unchecked")
+   private CacheSPI<Object, Object> createCache()
+   {
+      Configuration c = new Configuration();
+      c.setCacheMode(Configuration.CacheMode.LOCAL);
+      c.setNodeLockingScheme(Configuration.NodeLockingScheme.MVCC);
+      return (CacheSPI<Object, Object>) new UnitTestCacheFactory<Object, Object>().createCache(c, getClass());
+   }
+}
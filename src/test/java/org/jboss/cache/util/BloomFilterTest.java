@@ -0,0 +1,58 @@
+package org.jboss.cache.util;
+
+import static org.testng.AssertJUnit.assertEquals;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * @since 3.1
+ */
+@Test(groups = "unit", testName = "util.BloomFilterTest")
+public class BloomFilterTest
+{
+   public void testNoFalseNegatives()
+   {
+      BloomFilter filter = new BloomFilter(10000, 0.01);
+      Random r = new Random(42);
+      long[] added = new long[10000];
+      for (int i = 0; i < added.length; i++)
+      {
+         added[i] = r.nextLong();
+         filter.add(added[i]);
+      }
+      for (long hash : added) assert filter.mightContain(hash) : "Should contain " + hash;
+   }
+
+   public void testFalsePositiveRate()
+   {
+      BloomFilter filter = new BloomFilter(10000, 0.01);
+      Random r = new Random(7);
+      for (int i = 0; i < 10000; i++) filter.add(r.nextLong());
+
+      int falsePositives = 0;
+      for (int i = 0; i < 100000; i++)
+      {
+         if (filter.mightContain(r.nextLong())) falsePositives++;
+      }
+      double rate = falsePositives / 100000d;
+      assert rate < 0.02 : "False positive rate " + rate;
+      assert Math.abs(filter.getExpectedFalsePositiveRate() - 0.01) < 0.005 : "Expected false positive rate " + filter.getExpectedFalsePositiveRate();
+   }
+
+   public void testAddReportsChange()
+   {
+      BloomFilter filter = new BloomFilter(100, 0.01);
+      assert !filter.mightContain(12345L);
+      assert filter.add(12345L);
+      assert !filter.add(12345L);
+      assert filter.mightContain(12345L);
+   }
+
+   public void testEmpty()
+   {
+      BloomFilter filter = new BloomFilter(100, 0.01);
+      assertEquals(0d, filter.getExpectedFalsePositiveRate());
+      assert filter.getNumHashes() == 7 : "Hashes: " + filter.getNumHashes();
+   }
+}
@@ -0,0 +1,117 @@
+package org.jboss.cache.util;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+@Test(groups = "unit", testName = "util.CompactArrayMapTest")
+public class CompactArrayMapTest
+{
+   public void testPutGetRemove()
+   {
+      Map<String, String> map = new CompactArrayMap<String, String>();
+      Map<String, String> expected = new HashMap<String, String>();
+      for (int i = 0; i < 20; i++)
+      {
+         assertNull(map.put("k" + i, "v" + i));
+         expected.put("k" + i, "v" + i);
+      }
+      assertEquals("v3", map.put("k3", "new"));
+      expected.put("k3", "new");
+      assertEquals(expected, map);
+      assertEquals(expected.hashCode(), map.hashCode());
+
+      assertEquals("v0", map.remove("k0"));
+      assertEquals("v19", map.remove("k19"));
+      assertNull(map.remove("dont exist"));
+      assertEquals(18, map.size());
+      assertFalse(map.containsKey("k0"));
+      assertEquals("new", map.get("k3"));
+   }
+
+   public void testNullKeysAndValues()
+   {
+      Map<String, String> map = new CompactArrayMap<String, String>();
+      map.put(null, "v");
+      map.put("k", null);
+      assertEquals("v", map.get(null));
+      assertTrue(map.containsKey("k"));
+      assertTrue(map.containsValue(null));
+      assertNull(map.get("other"));
+   }
+
+   public void testKeptInInsertionOrder()
+   {
+      Map<String, String> map = new CompactArrayMap<String, String>();
+      map.put("c", "1");
+      map.put("a", "2");
+      map.put("b", "3");
+      map.remove("a");
+      map.put("a", "4");
+      Iterator<String> keys = map.keySet().iterator();
+      assertEquals("c", keys.next());
+      assertEquals("b", keys.next());
+      assertEquals("a", keys.next());
+      assertFalse(keys.hasNext());
+   }
+
+   public void testIteratorRemoveAndSetValue()
+   {
+      Map<String, String> map = new CompactArrayMap<String, String>();
+      for (int i = 0; i < 6; i++) map.put("k" + i, "v" + i);
+      for (Iterator<Map.Entry<String, String>> it = map.entrySet().iterator(); it.hasNext();)
+      {
+         Map.Entry<String, String> e = it.next();
+         if (e.getKey().equals("k1") || e.getKey().equals("k2"))
+            it.remove();
+         else
+            e.setValue("x");
+      }
+      assertEquals(4, map.size());
+      assertFalse(map.containsKey("k1"));
+      assertFalse(map.containsKey("k2"));
+      for (String value : map.values()) assertEquals("x", value);
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testCloneIsIndependent()
+   {
+      CompactArrayMap<String, String> map = new CompactArrayMap<String, String>();
+      map.put("k1", "v1");
+      map.put("k2", "v2");
+      Map<String, String> clone = (Map<String, String>) map.clone();
+      clone.put("k1", "changed");
+      clone.put("k3", "v3");
+      assertEquals("v1", map.get("k1"));
+      assertEquals(2, map.size());
+      assertEquals(3, clone.size());
+   }
+
+   public void testSerialization() throws Exception
+   {
+      Map<String, String> map = new CompactArrayMap<String, String>();
+      map.put("k1", "v1");
+      map.put("k2", "v2");
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(map);
+      oos.close();
+      Object map2 = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+
+      assert map2 instanceof CompactArrayMap;
+      assertEquals(map, map2);
+      ((Map) map2).put("k3", "v3");
+      assertEquals(3, ((Map) map2).size());
+   }
+}
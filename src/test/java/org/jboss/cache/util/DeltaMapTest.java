@@ -1,6 +1,7 @@
 package org.jboss.cache.util;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.fail;
 
 import java.util.HashMap;
@@ -153,6 +154,21 @@ public class DeltaMapTest
       }
    }
    
+   public void testCopy() throws Exception
+   {
+      dm.remove(Y);
+      dm.put(K, Z);
+      DeltaMap<String, String> copy = dm.copy();
+      assertSame(hm, copy.getOriginal());
+      assertEquals(dm, copy);
+      copy.put(Y, K);
+      copy.remove(null);
+      assertEquals(false, dm.containsKey(Y));
+      assertEquals(true, dm.containsKey(null));
+      assertEquals(2, dm.size());
+      assertEquals(backup, hm);
+   }
+
    public void testEx() {
 HashMap<String, String> hm = new HashMap<String, String>();
 hm.put("a", "apple");
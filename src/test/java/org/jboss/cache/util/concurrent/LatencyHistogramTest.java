@@ -0,0 +1,92 @@
+package org.jboss.cache.util.concurrent;
+
+import static org.testng.AssertJUnit.assertEquals;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the {@link LatencyHistogram} and {@link StripedCounter}
+ *
+ * @since 3.1
+ */
+@Test(groups = {"unit"}, testName = "util.concurrent.LatencyHistogramTest")
+public class LatencyHistogramTest
+{
+   public void testBuckets()
+   {
+      for (long value = 0; value < 100000; value++)
+      {
+         int bucket = LatencyHistogram.bucket(value);
+         assert LatencyHistogram.highestValue(bucket) >= value : "Bucket " + bucket + " does not hold " + value;
+         assert bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value : "Value " + value + " also fits bucket " + (bucket - 1);
+         // no bucket is wider than 12.5% of its values
+         assert LatencyHistogram.highestValue(bucket) <= value + value / 8 : "Bucket " + bucket + " too wide for " + value;
+      }
+      assertEquals(0, LatencyHistogram.bucket(-1));
+      assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.bucket(1L << 40));
+   }
+
+   public void testPercentiles()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      assertEquals(0, histogram.getPercentile(0.5));
+      for (int i = 1; i <= 1000; i++) histogram.record(i * 1000);
+      histogram.record(5000000000L);
+
+      assertEquals(1001, histogram.getCount());
+      assertWithin(501000, histogram.getPercentile(0.5));
+      assertWithin(991000, histogram.getPercentile(0.99));
+      assertWithin(1000000, histogram.getPercentile(0.999));
+      assertWithin(5000000000L, histogram.getPercentile(1));
+
+      histogram.reset();
+      assertEquals(0, histogram.getCount());
+      assertEquals(0, histogram.getPercentile(0.99));
+   }
+
+   public void testConcurrentUpdates() throws Exception
+   {
+      final int threads = 8, updates = 50000;
+      final LatencyHistogram histogram = new LatencyHistogram();
+      final StripedCounter counter = new StripedCounter();
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] writers = new Thread[threads];
+      for (int i = 0; i < threads; i++)
+      {
+         writers[i] = new Thread()
+         {
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+               for (int j = 0; j < updates; j++)
+               {
+                  histogram.record(j);
+                  counter.increment();
+                  counter.add(2);
+               }
+            }
+         };
+         writers[i].start();
+      }
+
+      start.countDown();
+      for (Thread t : writers) t.join();
+      assertEquals(threads * updates, histogram.getCount());
+      assertEquals(3L * threads * updates, counter.get());
+      counter.reset();
+      assertEquals(0, counter.get());
+   }
+
+   private void assertWithin(long expected, long actual)
+   {
+      assert actual >= expected && actual <= expected + expected / 8 : "Expected " + expected + " within 12.5%, was " + actual;
+   }
+}